@@ -1,30 +1,92 @@
 package bg.sofia.uni.fmi.mjt.splitwise.client;
 
 import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.NotificationResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
 import bg.sofia.uni.fmi.mjt.splitwise.client.exception.ServerNotWorkingException;
-import com.google.gson.Gson;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.FrameDecompressor;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.ResponseFields;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.WireFormat;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
 
+/**
+ * Sends requests in JSON or in the binary protocol. Every request gets an id, which the server sends back with its
+ * response, so many requests can be in flight on the connection at once: sendAsync() returns after writing the
+ * request and a reader thread completes the future of every response. sendRequest() waits for its future.
+ * The server answers in the format of the first request, so a client uses one format for its whole connection.
+ * The reader gives the notifications pushed by the server to the listener of listenForPushes().
+ * A client may ask for compression when it connects; the server then deflates the bigger responses and the reader
+ * inflates them. An older server refuses it and the responses stay as they are.
+ */
 public class Client {
     private static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
     private static final int BUFFER_SIZE = 1024;
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_EARLY_PUSHES = 64;
+    private static final String CLOSED_MESSAGE = "The server closed the connection";
 
-    private Gson gson;
+    private final WireFormat format;
+    private final boolean compression;
+    private boolean compressed; //whether the server has agreed to compress
 
-    private ByteBuffer buffer;
+    private FrameDecompressor decompressor; //used only by the reader; null until the first compressed frame
+
+    private ByteBuffer buffer; //used only by the reader
 
     private SocketChannel socketChannel;
 
+    private final AtomicLong nextId;
+    private final Object writeLock; //so the frames of concurrent requests do not interleave
+    //the requests waiting for a response, oldest first; guarded by itself
+    private final Map<Long, CompletableFuture<ResponseFields>> inFlight;
+    private boolean closed;
+
+    //the pushes which arrive before there is a listener; guarded by itself, like the listener
+    private final Queue<NotificationResponse> earlyPushes;
+    private Consumer<NotificationResponse> pushListener;
+
     public Client() {
+        this(WireFormat.JSON);
+    }
+
+    public Client(WireFormat format) {
+        this(format, false);
+    }
+
+    /**
+     * @param compression whether to ask the server to compress its responses
+     */
+    public Client(WireFormat format, boolean compression) {
+        this.format = format;
+        this.compression = compression;
+
         buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-        gson = new Gson();
+        nextId = new AtomicLong();
+        writeLock = new Object();
+        inFlight = new LinkedHashMap<>();
+        earlyPushes = new ArrayDeque<>();
     }
 
     public void run() throws ServerNotWorkingException {
@@ -34,33 +96,238 @@ public class Client {
         } catch (IOException e) {
             throw new ServerNotWorkingException("The server is not working", e);
         }
+
+        Thread.ofPlatform().daemon().name("splitwise-response-reader").start(this::readResponses);
+
+        if (compression) {
+            negotiateCompression();
+        }
+    }
+
+    /**
+     * @return whether the server compresses its responses on this connection
+     */
+    public boolean isCompressed() {
+        return compressed;
     }
 
     public void stop() {
         try {
-            socketChannel.close();
+            socketChannel.close(); //the reader fails the requests still in flight
         } catch (IOException e) {
             throw new RuntimeException("The connection could not be closed", e);
         }
     }
 
-    public String sendRequest(Command command) {
+    /**
+     * @param type the type of the expected response; the fields which an error response does not have are empty
+     */
+    public <T extends Response> T sendRequest(Command command, Class<T> type) {
         try {
-            buffer.clear();
-            buffer.put(gson.toJson(command).getBytes());
-            buffer.flip(); // switch to reading mode
-            socketChannel.write(buffer); // buffer drain
+            return sendAsync(command, type).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the response", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("There is a problem with the network communication", e.getCause());
+        }
+    }
 
-            buffer.clear(); // switch to writing mode
-            socketChannel.read(buffer); // buffer fill
-            buffer.flip(); // switch to reading mode
+    /**
+     * Writes the request and returns without waiting for its response. It can be called from any thread.
+     *
+     * @param type the type of the expected response; the fields which an error response does not have are empty
+     * @return completed with the response or with an IOException if the connection fails first
+     */
+    public <T extends Response> CompletableFuture<T> sendAsync(Command command, Class<T> type) {
+        command.setId(nextId.incrementAndGet());
+        byte[] request = switch (format) {
+            case BINARY -> BinaryProtocol.encodeCommand(command);
+            case JSON -> JsonProtocol.encodeCommand(command);
+        };
+
+        CompletableFuture<ResponseFields> response = new CompletableFuture<>();
+        synchronized (inFlight) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException(CLOSED_MESSAGE));
+            }
+            inFlight.put(command.id(), response); //before writing, so the response cannot come first
+        }
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(request.length);
+            header.flip();
+
+            synchronized (writeLock) {
+                writeFully(new ByteBuffer[] {header, ByteBuffer.wrap(request)});
+            }
+        } catch (IOException e) {
+            synchronized (inFlight) {
+                inFlight.remove(command.id());
+            }
+            response.completeExceptionally(e);
+        }
+
+        return response.thenApply(fields -> fields.build(type));
+    }
+
+    /**
+     * Sends the commands as one BATCH, which the server executes in one go, answering each of them in order
+     */
+    public CompletableFuture<BatchResponse> sendBatchAsync(List<Command> commands) {
+        return sendAsync(Command.batch(commands), BatchResponse.class);
+    }
+
+    /**
+     * Starts showing the notifications which the server pushes; call it after the server has accepted a subscription
+     *
+     * @param listener gets every pushed notification on the reader thread
+     */
+    public void listenForPushes(Consumer<NotificationResponse> listener) {
+        synchronized (earlyPushes) {
+            pushListener = listener;
+
+            NotificationResponse push;
+            while ((push = earlyPushes.poll()) != null) {
+                listener.accept(push);
+            }
+        }
+    }
+
+    private void negotiateCompression() throws ServerNotWorkingException {
+        try {
+            Command command = new Command(CommandName.COMPRESS, new String[] {FrameDecompressor.DEFLATE});
+            compressed = sendRequest(command, Response.class).isOk();
+        } catch (RuntimeException e) {
+            throw new ServerNotWorkingException("The server is not working", e);
+        }
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                ResponseFields fields = decode(readFrame());
 
-            byte[] byteArray = new byte[buffer.remaining()];
-            buffer.get(byteArray);
+                if (fields.isPushed()) {
+                    deliverPush(fields.build(NotificationResponse.class));
+                    continue;
+                }
 
-            return new String(byteArray, StandardCharsets.UTF_8); // buffer drain
+                CompletableFuture<ResponseFields> request = takeRequest(fields.getId());
+                if (request != null) {
+                    request.complete(fields);
+                }
+            }
         } catch (Exception e) {
-            throw new RuntimeException("There is a problem with the network communication", e);
+            failRequests(e);
+        } finally {
+            if (decompressor != null) {
+                decompressor.close();
+            }
+        }
+    }
+
+    private void deliverPush(NotificationResponse push) {
+        synchronized (earlyPushes) {
+            if (pushListener != null) {
+                pushListener.accept(push);
+            } else if (earlyPushes.size() < MAX_EARLY_PUSHES) {
+                earlyPushes.add(push);
+            }
+        }
+    }
+
+    /**
+     * @param id 0 if the server could not read the id of the command; it answers in order, so that is the oldest one
+     */
+    private CompletableFuture<ResponseFields> takeRequest(long id) {
+        synchronized (inFlight) {
+            if (id != 0) {
+                return inFlight.remove(id);
+            }
+
+            Iterator<CompletableFuture<ResponseFields>> oldest = inFlight.values().iterator();
+            if (!oldest.hasNext()) {
+                return null;
+            }
+
+            CompletableFuture<ResponseFields> request = oldest.next();
+            oldest.remove();
+            return request;
+        }
+    }
+
+    private void failRequests(Exception cause) {
+        List<CompletableFuture<ResponseFields>> failed;
+        synchronized (inFlight) {
+            closed = true;
+            failed = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+        }
+
+        for (CompletableFuture<ResponseFields> request : failed) {
+            request.completeExceptionally(new IOException(CLOSED_MESSAGE, cause));
+        }
+    }
+
+    private ResponseFields decode(byte[] frame) {
+        return switch (format) {
+            case BINARY -> BinaryProtocol.decodeFields(frame);
+            case JSON -> JsonProtocol.decodeFields(frame);
+        };
+    }
+
+    private byte[] readFrame() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header);
+        header.flip();
+
+        int length = header.getInt();
+        boolean isCompressed = (length & FrameDecompressor.COMPRESSED) != 0;
+        length &= ~FrameDecompressor.COMPRESSED;
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid response length: " + length);
+        }
+
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocateDirect(length);
+        }
+
+        buffer.clear();
+        buffer.limit(length);
+        readFully(buffer);
+        buffer.flip(); // switch to reading mode
+
+        byte[] byteArray = new byte[buffer.remaining()];
+        buffer.get(byteArray);
+
+        return isCompressed ? decompress(byteArray) : byteArray; // buffer drain
+    }
+
+    private byte[] decompress(byte[] compressedFrame) throws IOException {
+        if (decompressor == null) {
+            decompressor = new FrameDecompressor(MAX_FRAME_SIZE);
+        }
+
+        try {
+            return decompressor.decompress(compressedFrame);
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed response", e);
+        }
+    }
+
+    private void writeFully(ByteBuffer[] buffers) throws IOException {
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            socketChannel.write(buffers);
+        }
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (socketChannel.read(target) < 0) {
+                throw new IOException(CLOSED_MESSAGE);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -9,12 +9,23 @@ import bg.sofia.uni.fmi.mjt.splitwise.client.exception.ServerNotWorkingException
 import bg.sofia.uni.fmi.mjt.splitwise.client.exception.UnknownCommandException;
 import bg.sofia.uni.fmi.mjt.splitwise.client.io.ConsoleUI;
 import bg.sofia.uni.fmi.mjt.splitwise.client.io.UserInterface;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.WireFormat;
 
+import java.util.Arrays;
+
+/**
+ * Options (all optional):
+ * --wire=binary|json  the format of the requests and responses (default binary); json for the older servers
+ * --compress          ask the server to compress the bigger responses, for slow networks
+ */
 public class RunClient {
+    private static final String WIRE_OPTION = "--wire=";
+    private static final String COMPRESS_OPTION = "--compress";
+
     public static void main(String[] args) {
         UserInterface ui = new ConsoleUI();
 
-        Client client = new Client();
+        Client client = new Client(wireFormat(args), Arrays.asList(args).contains(COMPRESS_OPTION));
         try {
             client.run();
         } catch (ServerNotWorkingException e) {
@@ -47,4 +58,14 @@ public class RunClient {
             commandExecutor.execute(command);
         }
     }
+
+    private static WireFormat wireFormat(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith(WIRE_OPTION)) {
+                return WireFormat.valueOf(arg.substring(WIRE_OPTION.length()).toUpperCase());
+            }
+        }
+
+        return WireFormat.BINARY;
+    }
 }
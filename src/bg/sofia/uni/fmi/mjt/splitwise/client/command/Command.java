@@ -1,14 +1,32 @@
 package bg.sofia.uni.fmi.mjt.splitwise.client.command;
 
+import java.util.List;
+
 public class Command {
+    private static final String[] NO_ARGUMENTS = new String[0];
+
     private CommandName commandName;
     private String[] arguments;
+    private String token; //of the session of the logged-in user, which the server executes the command as
+    private long id; //set by the client, which matches the response by it
+    private List<Command> commands; //of a batch
 
     public Command(CommandName commandName, String[] arguments) {
         this.commandName = commandName;
         this.arguments = arguments;
     }
 
+    /**
+     * @param commands executed by the server as the user of the token of the batch; the server refuses LOGIN, LOG_OUT,
+     *                 SUBSCRIBE, UNSUBSCRIBE and BATCH in a batch
+     */
+    public static Command batch(List<Command> commands) {
+        Command batch = new Command(CommandName.BATCH, NO_ARGUMENTS);
+        batch.commands = commands;
+
+        return batch;
+    }
+
     public CommandName commandName() {
         return commandName;
     }
@@ -30,12 +48,23 @@ public class Command {
         arguments = copy;
     }
 
-    public void addUsernameInFront(String username) { //adds the username of the logged-in user
-        String[] copy = new String[arguments.length + 1];
+    public String token() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public long id() {
+        return id;
+    }
 
-        copy[0] = username;
+    public void setId(long id) {
+        this.id = id;
+    }
 
-        System.arraycopy(arguments, 0, copy, 1, arguments.length);
-        arguments = copy;
+    public List<Command> commands() {
+        return commands;
     }
 }
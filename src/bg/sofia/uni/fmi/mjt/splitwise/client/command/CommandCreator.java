@@ -14,8 +14,13 @@ public class CommandCreator {
     }
 
     public Command readCommand() throws UnknownCommandException {
-        String input = userInterface.read();
+        return parse(userInterface.read());
+    }
 
+    /**
+     * @param input a command as the user types it
+     */
+    public static Command parse(String input) throws UnknownCommandException {
         List<String> tokens = getCommandArguments(input);
         String[] args = tokens.subList(1, tokens.size()).toArray(new String[0]);
 
@@ -48,7 +53,7 @@ public class CommandCreator {
         return tokens;
     }
 
-    private CommandName getCommandName(String userCommand) throws UnknownCommandException {
+    private static CommandName getCommandName(String userCommand) throws UnknownCommandException {
         for (CommandName commandName : CommandName.values()) {
             if (userCommand.equals(commandName.userCommand)) {
                 return commandName;
@@ -4,17 +4,25 @@ import bg.sofia.uni.fmi.mjt.splitwise.client.Client;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.LoginResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.NotificationResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.PaymentsResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.client.exception.UnknownCommandException;
 import bg.sofia.uni.fmi.mjt.splitwise.client.io.UserInterface;
 import bg.sofia.uni.fmi.mjt.splitwise.client.session.UserSession;
-import com.google.gson.Gson;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class CommandExecutor {
     public static final String NEED_LOGIN_MESSAGE = "You need to be logged-in to perform this action";
@@ -23,23 +31,28 @@ public class CommandExecutor {
             " to log out and then try again.";
     public static final String NO_PAYMENTS_MESSAGE = "You have not payed anything so far";
     public static final String NO_NOTIFICATIONS_MESSAGE = "No notifications to show since your last login!";
+    public static final String MORE_NOTIFICATIONS_MESSAGE = "%d more notifications. Type %s to see them";
     public static final String FRIENDS = "Friends:";
     public static final String GROUPS = "Groups:";
+    public static final String CANNOT_READ_FILE_MESSAGE = "Could not read the file %s";
+    public static final String NOT_IMPORTABLE_MESSAGE = "Line %d: only splits and receives can be imported";
+    public static final String LINE_ERROR_MESSAGE = "Line %d: %s";
+    public static final String IMPORTED_MESSAGE = "Imported %d of %d commands";
+    private static final String BEFORE_OPTION = "before=";
+    private static final String COMMENT = "#";
+    private static final int IMPORT_BATCH_SIZE = 256; //commands per BATCH; the batches are sent without waiting
 
     private UserInterface ui;
     private Client httpClient;
 
-    private Gson gson;
-
     private CommandValidator validator;
+    private boolean subscribed;
 
     public CommandExecutor(UserInterface ui, Client httpClient, CommandValidator validator) {
         this.ui = ui;
         this.httpClient = httpClient;
 
         this.validator = validator;
-
-        gson = new Gson();
     }
 
     public void execute(Command command) {
@@ -61,9 +74,14 @@ public class CommandExecutor {
                     case ADD_FRIEND -> addFriend(command);
                     case RECEIVE, RECEIVE_GROUP -> receive(command);
                     case PAYMENTS -> showPayments(command);
+                    case NOTIFICATIONS -> showNotifications(command);
+                    case SUBSCRIBE -> subscribe(command);
+                    case UNSUBSCRIBE -> unsubscribe(command);
                     case GET_STATUS -> showStatus(command);
-                    case CREATE_GROUP -> createGroup(command);
+                    case SETTLE_UP -> settleUp(command);
+                    case CREATE_GROUP, CREATE_LEDGER_GROUP -> createGroup(command);
                     case LOG_OUT -> logOut();
+                    case BATCH -> importCommands(command);
                     default -> ui.writeError(ALREADY_LOGGED_IN_MESSAGE);
                 }
             }
@@ -74,10 +92,10 @@ public class CommandExecutor {
 
     private void signUp(Command command) {
         if (validator.validateSignUp(command)) {
-            Response response = gson.fromJson(httpClient.sendRequest(command), Response.class);
+            LoginResponse response = httpClient.sendRequest(command, LoginResponse.class);
 
             if (response.isOk()) {
-                UserSession.logIn(command.arguments()[0]);
+                UserSession.logIn(command.arguments()[0], response.getToken());
                 ui.write(response.getResponse());
             } else {
                 ui.writeError(response.getResponse());
@@ -95,14 +113,24 @@ public class CommandExecutor {
 
         ui.write(CommandName.ADD_FRIEND.userCommand + " <username>");
         ui.write(CommandName.CREATE_GROUP.userCommand + " <group_name> <username> <username> ... <username>");
+        ui.write(CommandName.CREATE_LEDGER_GROUP.userCommand +
+            " <group_name> <username> <username> ... <username> //a group for many members, keeps only net balances");
         ui.write(CommandName.SPLIT.userCommand + " <amount> <username> <reason_for_payment>");
         ui.write(CommandName.SPLIT_GROUP.userCommand +
             " <amount> <group_name> <reason_for_payment> //split money between all members in a group");
         ui.write(CommandName.GET_STATUS.userCommand);
+        ui.write(CommandName.SETTLE_UP.userCommand +
+            " [group_name] //the fewest payments which settle your debts with friends or in a group");
         ui.write(CommandName.RECEIVE.userCommand + " <amount> <from> //mark money as received");
         ui.write(CommandName.RECEIVE_GROUP.userCommand +
             " <amount> <group_name> <from> //mark money as received from a friend in a group");
-        ui.write(CommandName.PAYMENTS.userCommand + " //see all payments made by you");
+        ui.write(CommandName.PAYMENTS.userCommand +
+            " [limit=N] [before=N] [from=yyyy-MM-dd] [to=yyyy-MM-dd] //see the payments made by you, newest first");
+        ui.write(CommandName.NOTIFICATIONS.userCommand + " //see the next page of your unread notifications");
+        ui.write(CommandName.SUBSCRIBE.userCommand + " //see the new notifications right away");
+        ui.write(CommandName.UNSUBSCRIBE.userCommand);
+        ui.write(CommandName.BATCH.userCommand +
+            " <file> //execute the splits and receives in the file, one per line as you would type them");
         ui.write(CommandName.LOG_OUT.userCommand);
     }
 
@@ -111,22 +139,57 @@ public class CommandExecutor {
             return;
         }
 
-        String responseJson = httpClient.sendRequest(command);
-        Response response = gson.fromJson(responseJson, Response.class);
+        LoginResponse response = httpClient.sendRequest(command, LoginResponse.class);
         if (!response.isOk()) {
             ui.writeError(response.getResponse());
             return;
         }
 
-        UserSession.logIn(command.arguments()[0]);
+        UserSession.logIn(command.arguments()[0], response.getToken());
 
         ui.write(response.getResponse());
 
-        NotificationResponse nResponse = gson.fromJson(responseJson, NotificationResponse.class);
-        if (nResponse.getFriendsNotifications().isEmpty() && nResponse.getGroupNotifications().isEmpty()) {
-            ui.write(NO_NOTIFICATIONS_MESSAGE);
-        } else {
-            printNotifications(nResponse);
+        printNotifications(response);
+    }
+
+    private void showNotifications(Command command) {
+        if (!validator.validateArgumentsCount(command)) {
+            return;
+        }
+
+        command.setToken(UserSession.getToken());
+
+        NotificationResponse response = httpClient.sendRequest(command, NotificationResponse.class);
+        if (!response.isOk()) {
+            ui.writeError(response.getResponse());
+            return;
+        }
+
+        printNotifications(response);
+    }
+
+    private void subscribe(Command command) {
+        if (!validator.validateArgumentsCount(command)) {
+            return;
+        }
+
+        command.setToken(UserSession.getToken());
+
+        Response response = httpClient.sendRequest(command, Response.class);
+        if (!response.isOk()) {
+            ui.writeError(response.getResponse());
+            return;
+        }
+
+        subscribed = true;
+        httpClient.listenForPushes(this::printPushedNotification);
+        ui.write(response.getResponse());
+    }
+
+    private void unsubscribe(Command command) {
+        if (validator.validateArgumentsCount(command)) {
+            printSimpleResponse(command);
+            subscribed = false;
         }
     }
 
@@ -148,6 +211,89 @@ public class CommandExecutor {
         }
     }
 
+    private void importCommands(Command command) {
+        if (!validator.validateArgumentsCount(command)) {
+            return;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Path.of(command.arguments()[0]));
+        } catch (IOException | InvalidPathException e) {
+            ui.writeError(CANNOT_READ_FILE_MESSAGE.formatted(command.arguments()[0]));
+            return;
+        }
+
+        List<Command> commands = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+
+            Command imported = readImportedCommand(line, i + 1);
+            if (imported == null) {
+                return; //nothing is sent unless the whole file is valid
+            }
+            commands.add(imported);
+            lineNumbers.add(i + 1);
+        }
+
+        List<CompletableFuture<BatchResponse>> batches = new ArrayList<>();
+        for (int start = 0; start < commands.size(); start += IMPORT_BATCH_SIZE) {
+            int end = Math.min(start + IMPORT_BATCH_SIZE, commands.size());
+            Command batch = Command.batch(commands.subList(start, end));
+            batch.setToken(UserSession.getToken());
+            batches.add(httpClient.sendAsync(batch, BatchResponse.class));
+        }
+
+        int imported = 0;
+        int index = 0;
+        for (CompletableFuture<BatchResponse> batch : batches) {
+            BatchResponse response = batch.join();
+            if (!response.isOk()) {
+                ui.writeError(response.getResponse());
+                return;
+            }
+
+            for (int i = 0; i < response.size(); i++, index++) {
+                Response result = response.getResponse(i, Response.class);
+                if (result.isOk()) {
+                    imported++;
+                } else {
+                    ui.writeError(LINE_ERROR_MESSAGE.formatted(lineNumbers.get(index), result.getResponse()));
+                }
+            }
+        }
+
+        ui.write(IMPORTED_MESSAGE.formatted(imported, commands.size()));
+    }
+
+    /**
+     * @return null if the line is not a valid split or receive; the error has been shown
+     */
+    private Command readImportedCommand(String line, int lineNumber) {
+        Command imported;
+        try {
+            imported = CommandCreator.parse(line);
+        } catch (UnknownCommandException e) {
+            ui.writeError(LINE_ERROR_MESSAGE.formatted(lineNumber, e.getMessage()));
+            return null;
+        }
+
+        boolean valid = switch (imported.commandName()) {
+            case SPLIT, SPLIT_GROUP -> validator.validateSplit(imported);
+            case RECEIVE, RECEIVE_GROUP -> validator.validateReceive(imported);
+            default -> {
+                ui.writeError(NOT_IMPORTABLE_MESSAGE.formatted(lineNumber));
+                yield false;
+            }
+        };
+
+        return valid ? imported : null;
+    }
+
     private void createGroup(Command command) {
         if (validator.validateCreateGroup(command)) {
             printSimpleResponse(command);
@@ -155,21 +301,26 @@ public class CommandExecutor {
     }
 
     private void showPayments(Command command) {
-        if (command.arguments().length > 0) {
+        if (command.arguments().length > CommandLength.PAYMENTS.length) {
             ui.writeError(CommandValidator.TOO_MANY_ARGUMENTS_MESSAGE);
             return;
         }
 
-        command.addUsernameInFront(UserSession.getLoggedInUser());
+        List<String> options = new ArrayList<>();
+        for (String option : command.arguments()) {
+            if (!option.startsWith(BEFORE_OPTION)) {
+                options.add(option);
+            }
+        }
+
+        command.setToken(UserSession.getToken());
 
-        String responseJson = httpClient.sendRequest(command);
-        Response response = gson.fromJson(responseJson, Response.class);
-        if (!response.isOk()) {
-            ui.writeError(response.getResponse());
+        PaymentsResponse paymentsResponse = httpClient.sendRequest(command, PaymentsResponse.class);
+        if (!paymentsResponse.isOk()) {
+            ui.writeError(paymentsResponse.getResponse());
             return;
         }
 
-        PaymentsResponse paymentsResponse = gson.fromJson(httpClient.sendRequest(command), PaymentsResponse.class);
         List<Payment> payments = paymentsResponse.getPayments();
         if (payments.isEmpty()) {
             ui.write(NO_PAYMENTS_MESSAGE);
@@ -178,6 +329,11 @@ public class CommandExecutor {
         for (Payment p : payments) {
             ui.write(p.toString());
         }
+
+        if (paymentsResponse.getNextCursor() != PaymentsResponse.NO_MORE) {
+            options.add(BEFORE_OPTION + paymentsResponse.getNextCursor());
+            ui.write("For older payments: " + CommandName.PAYMENTS.userCommand + " " + String.join(" ", options));
+        }
     }
 
     private void showStatus(Command command) {
@@ -189,15 +345,33 @@ public class CommandExecutor {
         printSimpleResponse(command);
     }
 
+    private void settleUp(Command command) {
+        if (command.arguments().length > CommandLength.SETTLE_UP.length) {
+            ui.writeError(CommandValidator.TOO_MANY_ARGUMENTS_MESSAGE);
+            return;
+        }
+
+        printSimpleResponse(command);
+    }
+
     private void logOut() {
-        UserSession.logOut();
+        Command command = new Command(CommandName.LOG_OUT, new String[] {});
+        command.setToken(UserSession.getToken());
+
+        try {
+            httpClient.sendRequest(command, Response.class); //ends the session and its subscription on the server
+        } finally {
+            UserSession.logOut(); //the session expires on the server anyway
+            subscribed = false;
+        }
+
         ui.write("Logged out");
     }
 
     private void printSimpleResponse(Command command) {
-        command.addUsernameInFront(UserSession.getLoggedInUser());
+        command.setToken(UserSession.getToken());
 
-        Response response = gson.fromJson(httpClient.sendRequest(command), Response.class);
+        Response response = httpClient.sendRequest(command, Response.class);
 
         if (response.isOk()) {
             ui.write(response.getResponse());
@@ -206,7 +380,23 @@ public class CommandExecutor {
         }
     }
 
+    private void printPushedNotification(NotificationResponse response) {
+        ui.write(response.getResponse());
+        for (Notification n : response.getFriendsNotifications()) {
+            ui.write(n.getText());
+        }
+
+        for (GroupNotification gn : response.getGroupNotifications()) {
+            ui.write(gn.getGroup() + ": " + gn.getText());
+        }
+    }
+
     private void printNotifications(NotificationResponse response) {
+        if (response.getFriendsNotifications().isEmpty() && response.getGroupNotifications().isEmpty()) {
+            ui.write(NO_NOTIFICATIONS_MESSAGE);
+            return;
+        }
+
         List<Notification> friendsNotifications = response.getFriendsNotifications();
 
         ui.write("Notifications:");
@@ -234,5 +424,10 @@ public class CommandExecutor {
                 }
             }
         }
+
+        if (response.getRemaining() > 0) {
+            ui.write(MORE_NOTIFICATIONS_MESSAGE.formatted(response.getRemaining(),
+                CommandName.NOTIFICATIONS.userCommand));
+        }
     }
 }
\ No newline at end of file
@@ -5,13 +5,19 @@ public enum CommandLength {
     SIGN_UP(4),
     ADD_FRIEND(1),
     CREATE_GROUP(2),
+    CREATE_LEDGER_GROUP(2),
     SPLIT(3),
     SPLIT_GROUP(3),
     GET_STATUS(0),
+    SETTLE_UP(1),
     RECEIVE(2),
     RECEIVE_GROUP(3),
-    PAYMENTS(0),
-    LOG_OUT(0);
+    PAYMENTS(4),
+    NOTIFICATIONS(0),
+    SUBSCRIBE(0),
+    UNSUBSCRIBE(0),
+    LOG_OUT(0),
+    BATCH(1);
 
     public final int length;
 
@@ -1,18 +1,29 @@
 package bg.sofia.uni.fmi.mjt.splitwise.client.command;
 
+/**
+ * The commands sent to the server come first, in the order of the CommandName of the server,
+ * because the binary protocol sends their ordinals
+ */
 public enum CommandName {
     LOGIN("login"),
     SIGN_UP("sign-up"),
     ADD_FRIEND("add-friend"),
     CREATE_GROUP("create-group"),
+    CREATE_LEDGER_GROUP("create-ledger-group"),
     SPLIT("split"),
     SPLIT_GROUP("split-group"),
     GET_STATUS("get-status"),
+    SETTLE_UP("settle-up"),
     RECEIVE("receive"),
     RECEIVE_GROUP("receive-group"),
     PAYMENTS("payments"),
-    HELP("help"),
+    NOTIFICATIONS("notifications"),
+    SUBSCRIBE("subscribe"),
+    UNSUBSCRIBE("unsubscribe"),
     LOG_OUT("log-out"),
+    BATCH("import"),
+    COMPRESS(null), //sent by the Client when it connects, it cannot be typed
+    HELP("help"),
     QUIT("quit");
 
     public final String userCommand;
@@ -30,12 +30,17 @@ public class CommandValidator {
         argumentsCount.put(CommandName.ADD_FRIEND, CommandLength.ADD_FRIEND.length);
         argumentsCount.put(CommandName.SPLIT, CommandLength.SPLIT.length);
         argumentsCount.put(CommandName.CREATE_GROUP, CommandLength.CREATE_GROUP.length);
+        argumentsCount.put(CommandName.CREATE_LEDGER_GROUP, CommandLength.CREATE_LEDGER_GROUP.length);
         argumentsCount.put(CommandName.SPLIT_GROUP, CommandLength.SPLIT_GROUP.length);
         argumentsCount.put(CommandName.GET_STATUS, CommandLength.GET_STATUS.length);
         argumentsCount.put(CommandName.RECEIVE, CommandLength.RECEIVE.length);
         argumentsCount.put(CommandName.RECEIVE_GROUP, CommandLength.RECEIVE_GROUP.length);
         argumentsCount.put(CommandName.PAYMENTS, CommandLength.PAYMENTS.length);
+        argumentsCount.put(CommandName.NOTIFICATIONS, CommandLength.NOTIFICATIONS.length);
+        argumentsCount.put(CommandName.SUBSCRIBE, CommandLength.SUBSCRIBE.length);
+        argumentsCount.put(CommandName.UNSUBSCRIBE, CommandLength.UNSUBSCRIBE.length);
         argumentsCount.put(CommandName.LOG_OUT, CommandLength.LOG_OUT.length);
+        argumentsCount.put(CommandName.BATCH, CommandLength.BATCH.length);
     }
 
     public boolean validateSignUp(Command command) {
@@ -1,24 +1,37 @@
 package bg.sofia.uni.fmi.mjt.splitwise.client.dto;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Set;
 
 public class Payment {
+    private static final int CENTS_IN_UNIT = 100;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
     private String issuer;
-    private double amount;
+    private long amount; //in cents
     private String reason;
     private Set<String> splitWith;
+    private long time; //in milliseconds since the epoch; 0 for the payments saved without a time
 
-    public Payment(String issuer, double amount, String reason, Set<String> splitWith) {
+    public Payment(String issuer, long amount, String reason, Set<String> splitWith, long time) {
         this.issuer = issuer;
         this.amount = amount;
         this.reason = reason;
         this.splitWith = splitWith;
+        this.time = time;
     }
 
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder("[" + reason + "] payed " + amount + " and have split with [");
+        StringBuilder result = new StringBuilder();
+        if (time != 0) {
+            result.append(TIME_FORMAT.format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()))).append(" ");
+        }
+
+        result.append("[" + reason + "] payed " +
+            "%d.%02d".formatted(amount / CENTS_IN_UNIT, amount % CENTS_IN_UNIT) + " and have split with [");
 
         for (String user : splitWith) {
             result.append(user).append(", ");
@@ -0,0 +1,26 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.dto.response;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.ResponseFields;
+
+import java.util.List;
+
+public class BatchResponse extends Response {
+    private final List<ResponseFields> responses;
+
+    public BatchResponse(boolean ok, String response, List<ResponseFields> responses) {
+        super(ok, response);
+        this.responses = responses;
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * @param index of the command in the batch
+     * @param type  the type of the response to that command
+     */
+    public <T extends Response> T getResponse(int index, Class<T> type) {
+        return responses.get(index).build(type);
+    }
+}
@@ -0,0 +1,20 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.dto.response;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+
+import java.util.List;
+
+public class LoginResponse extends NotificationResponse {
+    private final String token;
+
+    public LoginResponse(boolean ok, String response, List<Notification> friendsNotifications,
+                         List<GroupNotification> groupNotifications, int remaining, String token) {
+        super(ok, response, friendsNotifications, groupNotifications, remaining);
+        this.token = token;
+    }
+
+    public String getToken() { //of the session which the server started
+        return token;
+    }
+}
@@ -8,12 +8,14 @@ import java.util.List;
 public class NotificationResponse extends Response {
     private List<Notification> friendsNotifications;
     private List<GroupNotification> groupNotifications;
+    private int remaining;
 
     public NotificationResponse(boolean ok, String response, List<Notification> friendsNotifications,
-                                List<GroupNotification> groupNotifications) {
+                                List<GroupNotification> groupNotifications, int remaining) {
         super(ok, response);
         this.friendsNotifications = friendsNotifications;
         this.groupNotifications = groupNotifications;
+        this.remaining = remaining;
     }
 
     public List<Notification> getFriendsNotifications() {
@@ -23,4 +25,8 @@ public class NotificationResponse extends Response {
     public List<GroupNotification> getGroupNotifications() {
         return groupNotifications;
     }
+
+    public int getRemaining() { //how many unread notifications are left for the next pages
+        return remaining;
+    }
 }
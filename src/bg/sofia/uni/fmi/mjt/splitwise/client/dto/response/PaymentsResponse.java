@@ -4,14 +4,22 @@ import java.util.List;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
 
 public class PaymentsResponse extends Response {
+    public static final long NO_MORE = -1;
+
     private List<Payment> payments;
+    private long nextCursor;
 
-    public PaymentsResponse(boolean ok, String response, List<Payment> payments) {
+    public PaymentsResponse(boolean ok, String response, List<Payment> payments, long nextCursor) {
         super(ok, response);
         this.payments = payments;
+        this.nextCursor = nextCursor;
     }
 
     public List<Payment> getPayments() {
         return payments;
     }
+
+    public long getNextCursor() { //the value of before= for the older payments, NO_MORE if there are none
+        return nextCursor;
+    }
 }
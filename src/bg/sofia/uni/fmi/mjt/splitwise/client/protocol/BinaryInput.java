@@ -0,0 +1,91 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what BinaryOutput wrote. A payload which is shorter than its content or has invalid lengths is refused
+ * with IllegalArgumentException, so a malformed frame cannot make the client allocate much.
+ */
+public class BinaryInput {
+    private static final int MAX_VARINT_SHIFT = 63;
+
+    private final byte[] bytes;
+    private int position;
+
+    public BinaryInput(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public byte readByte() {
+        if (position >= bytes.length) {
+            throw new IllegalArgumentException("The payload ended too early");
+        }
+
+        return bytes[position++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        long value = readUnsigned();
+        if (value < 0 || value > Integer.MAX_VALUE) { //a ten byte varint sets the sign bit
+            throw new IllegalArgumentException("The number is out of range: " + value);
+        }
+
+        return (int) value;
+    }
+
+    public long readVarLong() {
+        long value = readUnsigned();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > bytes.length - position) {
+            throw new IllegalArgumentException("The payload ended too early");
+        }
+
+        String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+
+        return value;
+    }
+
+    /**
+     * @param count the number of elements which is about to be read; at least one byte each
+     */
+    public int checkCount(int count) {
+        if (count < 0 || count > bytes.length - position) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+
+        return count;
+    }
+
+    public void checkFinished() {
+        if (position != bytes.length) {
+            throw new IllegalArgumentException("Unexpected bytes at the end of the payload");
+        }
+    }
+
+    private long readUnsigned() {
+        long value = 0;
+        for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("The varint is too long");
+    }
+}
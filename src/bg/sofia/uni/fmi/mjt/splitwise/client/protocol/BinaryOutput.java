@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte array. The numbers are written as varints (zigzag for the signed ones), so small values
+ * take one byte, and a string as its UTF-8 length plus one (zero for null) followed by its bytes.
+ */
+public class BinaryOutput {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] bytes;
+    private int size;
+
+    public BinaryOutput() {
+        bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte) value;
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * @param value must not be negative
+     */
+    public void writeVarInt(int value) {
+        writeUnsigned(value);
+    }
+
+    public void writeVarLong(long value) {
+        writeUnsigned((value << 1) ^ (value >> (Long.SIZE - 1))); //zigzag, so -1 takes one byte too
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length + 1);
+        ensureCapacity(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void writeUnsigned(long value) {
+        ensureCapacity(Long.BYTES + 2);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int more) {
+        if (size + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+        }
+    }
+}
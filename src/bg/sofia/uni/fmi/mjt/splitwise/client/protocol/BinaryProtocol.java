@@ -0,0 +1,169 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The compact alternative to JSON; the same as the BinaryProtocol of the server. Every payload starts with the version.
+ * A command is the version, the ordinal of its CommandName, its id, the token and the arguments;
+ * a BATCH is followed by the count of its commands and each of them without a version.
+ * A response is the version, its type, the id of its command and then its fields, those of the superclass first;
+ * the responses in a batch response are each its type and its fields.
+ */
+public class BinaryProtocol {
+    public static final byte VERSION = 2;
+
+    private static final byte RESPONSE = 0;
+    private static final byte NOTIFICATION_RESPONSE = 1;
+    private static final byte LOGIN_RESPONSE = 2;
+    private static final byte PUSHED_NOTIFICATION_RESPONSE = 3;
+    private static final byte PAYMENTS_RESPONSE = 4;
+    private static final byte BATCH_RESPONSE = 5;
+
+    public static byte[] encodeCommand(Command command) {
+        BinaryOutput out = new BinaryOutput();
+        out.writeByte(VERSION);
+        writeCommand(out, command);
+
+        if (command.commands() != null) {
+            out.writeVarInt(command.commands().size());
+            for (Command inner : command.commands()) {
+                writeCommand(out, inner);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void writeCommand(BinaryOutput out, Command command) {
+        out.writeVarInt(command.commandName().ordinal()); //the same as on the server for the commands sent to it
+        out.writeVarLong(command.id());
+        out.writeString(command.token());
+
+        String[] arguments = command.arguments();
+        out.writeVarInt(arguments.length);
+        for (String argument : arguments) {
+            out.writeString(argument);
+        }
+    }
+
+    /**
+     * Fills the fields of the requested type which the response does not have with defaults,
+     * so an error response can be read as any type
+     *
+     * @throws IllegalArgumentException if the payload is not a response of this version
+     */
+    public static <T extends Response> T decodeResponse(byte[] payload, Class<T> type) {
+        return decodeFields(payload).build(type);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload is not a response of this version
+     */
+    public static ResponseFields decodeFields(byte[] payload) {
+        BinaryInput in = new BinaryInput(payload);
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version: " + version);
+        }
+
+        byte wireType = in.readByte();
+        long id = in.readVarLong();
+
+        ResponseFields fields = readFields(in, wireType);
+        fields.id = id;
+        in.checkFinished();
+
+        return fields;
+    }
+
+    private static ResponseFields readFields(BinaryInput in, byte wireType) {
+        if (wireType < RESPONSE || wireType > BATCH_RESPONSE) {
+            throw new IllegalArgumentException("Unknown response type: " + wireType);
+        }
+
+        ResponseFields fields = new ResponseFields();
+        fields.pushed = wireType == PUSHED_NOTIFICATION_RESPONSE;
+        fields.ok = in.readBoolean();
+        fields.message = in.readString();
+
+        if (wireType == NOTIFICATION_RESPONSE || wireType == LOGIN_RESPONSE
+            || wireType == PUSHED_NOTIFICATION_RESPONSE) {
+            fields.friendsNotifications = readNotifications(in);
+            fields.groupNotifications = readGroupNotifications(in);
+            fields.remaining = in.readVarInt();
+        }
+
+        if (wireType == LOGIN_RESPONSE) {
+            fields.token = in.readString();
+        }
+
+        if (wireType == PAYMENTS_RESPONSE) {
+            fields.payments = readPayments(in);
+            fields.nextCursor = in.readVarLong();
+        }
+
+        if (wireType == BATCH_RESPONSE) {
+            int count = in.checkCount(in.readVarInt());
+            fields.responses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte innerType = in.readByte();
+                if (innerType == BATCH_RESPONSE) {
+                    throw new IllegalArgumentException("A batch response cannot contain a batch response");
+                }
+                fields.responses.add(readFields(in, innerType));
+            }
+        }
+
+        return fields;
+    }
+
+    private static List<Notification> readNotifications(BinaryInput in) {
+        int count = in.checkCount(in.readVarInt());
+        List<Notification> notifications = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            notifications.add(new Notification(in.readString()));
+        }
+
+        return notifications;
+    }
+
+    private static List<GroupNotification> readGroupNotifications(BinaryInput in) {
+        int count = in.checkCount(in.readVarInt());
+        List<GroupNotification> notifications = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String group = in.readString();
+            notifications.add(new GroupNotification(in.readString(), group));
+        }
+
+        return notifications;
+    }
+
+    private static List<Payment> readPayments(BinaryInput in) {
+        int count = in.checkCount(in.readVarInt());
+        List<Payment> payments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String issuer = in.readString();
+            long amount = in.readVarLong();
+            String reason = in.readString();
+
+            int splitWithCount = in.checkCount(in.readVarInt());
+            Set<String> splitWith = new LinkedHashSet<>();
+            for (int j = 0; j < splitWithCount; j++) {
+                splitWith.add(in.readString());
+            }
+
+            payments.add(new Payment(issuer, amount, reason, splitWith, in.readVarLong()));
+        }
+
+        return payments;
+    }
+}
@@ -0,0 +1,52 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a command as reflective Gson did. The client never reads a command.
+ */
+public class CommandAdapter extends TypeAdapter<Command> {
+    @Override
+    public void write(JsonWriter out, Command command) throws IOException {
+        if (command == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("commandName").value(command.commandName() == null ? null : command.commandName().name());
+        out.name("arguments");
+        if (command.arguments() == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (String argument : command.arguments()) {
+                out.value(argument);
+            }
+            out.endArray();
+        }
+        out.name("token").value(command.token());
+        if (command.id() != 0) { //so the JSON stays the same for the servers from before the ids
+            out.name("id").value(command.id());
+        }
+        if (command.commands() != null) {
+            out.name("commands");
+            out.beginArray();
+            for (Command inner : command.commands()) {
+                write(out, inner);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Command read(JsonReader in) {
+        throw new UnsupportedOperationException("The client does not read commands");
+    }
+}
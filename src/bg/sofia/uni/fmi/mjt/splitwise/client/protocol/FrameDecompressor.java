@@ -0,0 +1,66 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates the compressed response frames of a connection. The server deflates them into one raw stream, which it
+ * flushes after every frame, so all of them must be inflated in the order they arrive.
+ * Not thread-safe; the reader thread of the Client uses it.
+ */
+public class FrameDecompressor {
+    public static final String DEFLATE = "deflate";
+    public static final int COMPRESSED = 1 << 30; //the bit of the length header which marks a compressed frame
+
+    private static final int MIN_CAPACITY = 256;
+
+    private final Inflater inflater;
+    private final int maxSize;
+
+    /**
+     * @param maxSize the biggest payload which is inflated
+     */
+    public FrameDecompressor(int maxSize) {
+        this.maxSize = maxSize;
+
+        inflater = new Inflater(true);
+    }
+
+    /**
+     * @throws DataFormatException if the payload is not the next part of the stream or inflates to more than the
+     *                             maximum size
+     */
+    public byte[] decompress(byte[] compressed) throws DataFormatException {
+        inflater.setInput(compressed);
+
+        byte[] payload = new byte[Math.max(MIN_CAPACITY, compressed.length * 4)];
+        int size = 0;
+        while (true) {
+            if (size == payload.length) {
+                if (payload.length >= maxSize) {
+                    throw new DataFormatException("The compressed frame is too big");
+                }
+                payload = Arrays.copyOf(payload, Math.min(payload.length * 2, maxSize));
+            }
+
+            int inflated = inflater.inflate(payload, size, payload.length - size);
+            size += inflated;
+
+            if (inflater.needsInput() && size < payload.length) { //the whole frame, the flush included
+                return Arrays.copyOf(payload, size);
+            }
+
+            if (inflated == 0 && !inflater.needsInput()) {
+                throw new DataFormatException("The compressed frame is not part of the stream");
+            }
+        }
+    }
+
+    /**
+     * Frees the memory of the inflater; it cannot be used after it
+     */
+    public void close() {
+        inflater.end();
+    }
+}
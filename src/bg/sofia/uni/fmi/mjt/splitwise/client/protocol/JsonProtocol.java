@@ -0,0 +1,35 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * The JSON of the servers from before the binary protocol, written and read by hand-written streaming adapters.
+ * The commands are written straight into bytes and the responses are read straight from them.
+ */
+public class JsonProtocol {
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(Command.class, new CommandAdapter())
+        .registerTypeAdapter(ResponseFields.class, new ResponseFieldsAdapter())
+        .create();
+
+    public static byte[] encodeCommand(Command command) {
+        Utf8Writer writer = new Utf8Writer();
+        GSON.toJson(command, Command.class, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws JsonParseException if the payload is not a JSON response
+     */
+    public static ResponseFields decodeFields(byte[] payload) {
+        ResponseFields fields = GSON.fromJson(new Utf8Reader(payload), ResponseFields.class);
+        if (fields == null) {
+            throw new JsonParseException("The response is empty");
+        }
+
+        return fields;
+    }
+}
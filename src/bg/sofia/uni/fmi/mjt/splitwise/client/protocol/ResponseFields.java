@@ -0,0 +1,56 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.LoginResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.NotificationResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.PaymentsResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+
+import java.util.List;
+
+/**
+ * The fields of any response, read once from a frame in either format. The client decides from them whether the
+ * frame is a push and builds the type which the request expects. The fields a response does not have keep defaults,
+ * so an error response can be built as any type.
+ */
+public class ResponseFields {
+    boolean ok;
+    String message;
+    List<Notification> friendsNotifications = List.of();
+    List<GroupNotification> groupNotifications = List.of();
+    int remaining;
+    String token;
+    List<Payment> payments = List.of();
+    long nextCursor = PaymentsResponse.NO_MORE;
+    boolean pushed;
+    long id; //of the command which the response answers; 0 for a push or an old server
+    List<ResponseFields> responses = List.of(); //of a batch
+
+    public boolean isPushed() {
+        return pushed;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public <T extends Response> T build(Class<T> type) {
+        Response response;
+        if (type == LoginResponse.class) {
+            response = new LoginResponse(ok, message, friendsNotifications, groupNotifications, remaining, token);
+        } else if (type == NotificationResponse.class) {
+            response = new NotificationResponse(ok, message, friendsNotifications, groupNotifications, remaining);
+        } else if (type == PaymentsResponse.class) {
+            response = new PaymentsResponse(ok, message, payments, nextCursor);
+        } else if (type == BatchResponse.class) {
+            response = new BatchResponse(ok, message, responses);
+        } else {
+            response = new Response(ok, message);
+        }
+
+        return type.cast(response);
+    }
+}
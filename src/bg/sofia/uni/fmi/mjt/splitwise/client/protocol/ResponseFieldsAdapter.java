@@ -0,0 +1,176 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the JSON of any response in one pass: the fields in any order, the unknown ones skipped.
+ * The client never writes a response.
+ */
+public class ResponseFieldsAdapter extends TypeAdapter<ResponseFields> {
+    @Override
+    public void write(JsonWriter out, ResponseFields fields) {
+        throw new UnsupportedOperationException("The client does not write responses");
+    }
+
+    @Override
+    public ResponseFields read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        ResponseFields fields = new ResponseFields();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "ok" -> fields.ok = in.nextBoolean();
+                case "response" -> fields.message = in.nextString();
+                case "friendsNotifications" -> fields.friendsNotifications = readNotifications(in);
+                case "groupNotifications" -> fields.groupNotifications = readGroupNotifications(in);
+                case "remaining" -> fields.remaining = in.nextInt();
+                case "token" -> fields.token = in.nextString();
+                case "payments" -> fields.payments = readPayments(in);
+                case "nextCursor" -> fields.nextCursor = in.nextLong();
+                case "pushed" -> fields.pushed = in.nextBoolean();
+                case "id" -> fields.id = in.nextLong();
+                case "responses" -> fields.responses = readResponses(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return fields;
+    }
+
+    private List<ResponseFields> readResponses(JsonReader in) throws IOException {
+        List<ResponseFields> responses = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            ResponseFields response = read(in);
+            if (response == null || !response.responses.isEmpty()) {
+                throw new JsonParseException("The responses of a batch must be simple responses");
+            }
+            responses.add(response);
+        }
+        in.endArray();
+
+        return responses;
+    }
+
+    private static List<Notification> readNotifications(JsonReader in) throws IOException {
+        List<Notification> notifications = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            notifications.add(new Notification(readObject(in, "text", null)[0]));
+        }
+        in.endArray();
+
+        return notifications;
+    }
+
+    private static List<GroupNotification> readGroupNotifications(JsonReader in) throws IOException {
+        List<GroupNotification> notifications = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            String[] values = readObject(in, "text", "group");
+            notifications.add(new GroupNotification(values[0], values[1]));
+        }
+        in.endArray();
+
+        return notifications;
+    }
+
+    /**
+     * @return the string values of the two fields of an object, null for the missing ones
+     */
+    private static String[] readObject(JsonReader in, String first, String second) throws IOException {
+        String[] values = new String[2];
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals(first)) {
+                values[0] = in.nextString();
+            } else if (name.equals(second)) {
+                values[1] = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return values;
+    }
+
+    private static List<Payment> readPayments(JsonReader in) throws IOException {
+        List<Payment> payments = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            payments.add(readPayment(in));
+        }
+        in.endArray();
+
+        return payments;
+    }
+
+    private static Payment readPayment(JsonReader in) throws IOException {
+        String issuer = null;
+        long amount = 0;
+        String reason = null;
+        Set<String> splitWith = new LinkedHashSet<>();
+        long time = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "issuer" -> issuer = in.nextString();
+                case "amount" -> amount = in.nextLong();
+                case "reason" -> reason = in.nextString();
+                case "splitWith" -> {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        splitWith.add(in.nextString());
+                    }
+                    in.endArray();
+                }
+                case "time" -> time = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Payment(issuer, amount, reason, splitWith, time);
+    }
+}
@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import java.io.Reader;
+
+/**
+ * Decodes UTF-8 straight from the bytes of a frame, so a JSON payload is parsed without a String in between.
+ * A malformed sequence is read as U+FFFD, like new String() does.
+ */
+public class Utf8Reader extends Reader {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final byte[] bytes;
+    private int position;
+    private char lowSurrogate; //the second half of a pair which did not fit in the last read; 0 if none
+
+    public Utf8Reader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        if (lowSurrogate != 0) {
+            chars[offset + count++] = lowSurrogate;
+            lowSurrogate = 0;
+        }
+
+        while (count < length && position < bytes.length) {
+            int b = bytes[position];
+            if (b >= 0) { //ASCII, the most of every payload
+                chars[offset + count++] = (char) b;
+                position++;
+                continue;
+            }
+
+            int codePoint = decodeMultiByte();
+            if (Character.isBmpCodePoint(codePoint)) {
+                chars[offset + count++] = (char) codePoint;
+                continue;
+            }
+
+            chars[offset + count++] = Character.highSurrogate(codePoint);
+            if (count < length) {
+                chars[offset + count++] = Character.lowSurrogate(codePoint);
+            } else {
+                lowSurrogate = Character.lowSurrogate(codePoint);
+            }
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private int decodeMultiByte() {
+        int first = bytes[position++] & 0xFF;
+
+        int continuation;
+        int codePoint;
+        int min;
+        if (first >= 0xC2 && first <= 0xDF) {
+            continuation = 1;
+            codePoint = first & 0x1F;
+            min = 0x80;
+        } else if (first >= 0xE0 && first <= 0xEF) {
+            continuation = 2;
+            codePoint = first & 0x0F;
+            min = 0x800;
+        } else if (first >= 0xF0 && first <= 0xF4) {
+            continuation = 3;
+            codePoint = first & 0x07;
+            min = 0x10000;
+        } else {
+            return REPLACEMENT;
+        }
+
+        for (int i = 0; i < continuation; i++) {
+            if (position >= bytes.length || (bytes[position] & 0xC0) != 0x80) {
+                return REPLACEMENT; //the byte which is not a continuation is decoded on its own
+            }
+            codePoint = (codePoint << 6) | (bytes[position++] & 0x3F);
+        }
+
+        boolean surrogate = codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE;
+        return codePoint < min || codePoint > Character.MAX_CODE_POINT || surrogate ? REPLACEMENT : codePoint;
+    }
+}
@@ -0,0 +1,98 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Encodes the written characters as UTF-8 straight into a growable byte array, so a JSON payload is built
+ * without a String in between. An unpaired surrogate is written as '?', like String.getBytes() does.
+ */
+public class Utf8Writer extends Writer {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private byte[] bytes;
+    private int size;
+    private char highSurrogate; //0 if the last character was not the first half of a pair
+
+    public Utf8Writer() {
+        bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(MAX_BYTES_PER_CHAR);
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        ensureCapacity(length * 3 + 1);
+        for (int i = offset; i < offset + length; i++) {
+            encode(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+        ensureCapacity(length * 3 + 1);
+        for (int i = offset; i < offset + length; i++) {
+            encode(string.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public byte[] toByteArray() {
+        if (highSurrogate != 0) {
+            bytes[size++] = '?';
+            highSurrogate = 0;
+        }
+
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                highSurrogate = 0;
+                bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+
+            bytes[size++] = '?';
+            highSurrogate = 0;
+        }
+
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[size++] = '?';
+        } else {
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void ensureCapacity(int more) {
+        if (size + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package bg.sofia.uni.fmi.mjt.splitwise.client.protocol;
+
+/**
+ * How the payload of a frame is encoded. The server answers in the format of the first command of the connection.
+ */
+public enum WireFormat {
+    JSON, //understood by the servers from before the binary protocol
+    BINARY
+}
@@ -2,6 +2,7 @@ package bg.sofia.uni.fmi.mjt.splitwise.client.session;
 
 public class UserSession {
     private static String loggedInUser;
+    private static String token;
 
     public static boolean isLoggedIn() {
         return loggedInUser != null;
@@ -11,12 +12,20 @@ public class UserSession {
         return loggedInUser;
     }
 
-    public static void logIn(String username) {
+    public static String getToken() {
+        return token;
+    }
+
+    /**
+     * @param sessionToken the token of the session which the server started for the user
+     */
+    public static void logIn(String username, String sessionToken) {
         if (isLoggedIn()) {
             throw new IllegalStateException("There is already logged in user. Log out first!");
         }
 
         loggedInUser = username;
+        token = sessionToken;
     }
 
     public static void logOut() {
@@ -25,5 +34,6 @@ public class UserSession {
         }
 
         loggedInUser = null;
+        token = null;
     }
 }
@@ -1,25 +1,202 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server;
 
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.Server;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.ServerAPI;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.VirtualThreadServer;
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.Database;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.FileDatabase;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.LazyDatabase;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.LogDatabase;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.Durability;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordVerifier;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.Pbkdf2PasswordHasher;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise.SplitWise;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise.SplitWiseAPI;
+import bg.sofia.uni.fmi.mjt.splitwise.server.metrics.MetricsReporter;
 
+/**
+ * Options (all optional):
+ * --server=nio|virtual      selector-based NIO server or a virtual thread per connection (default nio)
+ * --executor=fixed|virtual  how the nio server executes the commands (default fixed)
+ * --workers=N               the size of the fixed pool (default the number of cores)
+ * --queue=N                 how many commands may wait for a fixed pool worker (default 1024)
+ * --reactor=single|multi    one selector thread or an acceptor with several selector threads (default single)
+ * --reactors=N              the number of selector threads in multi-reactor mode (default the number of cores)
+ * --metrics=SECONDS         print the server metrics periodically
+ * --database=log|file       one write-ahead log or the old file per user and list (default log)
+ * --durability=request|batch|async  when the log is fsynced (default batch)
+ * --commit-window=MICROS    how long the log flusher waits for more operations to join a batch (default 0)
+ * --snapshot-every=SECONDS  how often the log is compacted into a snapshot (default 600)
+ * --resident-users=N        keep only the N most recently used users in memory and load the rest on demand;
+ *                           needs --database=file (default every user is in memory)
+ * --password-iterations=N   the PBKDF2 iterations of a password hash (default 600000); the stored hashes with other
+ *                           iterations are hashed again on the next login
+ * --hashers=N               how many passwords are hashed at the same time (default the number of cores)
+ */
 public class RunServer {
     private static final int SERVER_PORT = 7777;
     private static final String MAIN_DATABASE_FILE = "database";
 
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final String SINGLE_REACTOR = "single";
+    private static final String MULTI_REACTOR = "multi";
+
+    private static final String NIO_SERVER = "nio";
+    private static final String VIRTUAL_THREAD_SERVER = "virtual";
+
+    private static final String LOG_DATABASE = "log";
+    private static final String FILE_DATABASE = "file";
+    private static final int DEFAULT_SNAPSHOT_PERIOD = 600;
+
     protected static final String SPLIT = "You owe %s %.2f BGN [%s]";
 
     public static void main(String[] args) {
-        Database database = new FileDatabase(MAIN_DATABASE_FILE);
+        MetricsReporter metrics = new MetricsReporter();
+        Database database = createDatabase(args, metrics);
+
+        SplitWise splitWise = createSplitWise(args, database);
+        metrics.register("status", splitWise::getStatusCacheMetrics);
+        metrics.register("users", splitWise::getUserCacheMetrics);
 
-        SplitWiseAPI splitWise = new SplitWise(database);
+        splitWise.setPasswordVerifier(createPasswordVerifier(args));
+        metrics.register("passwords", splitWise::getPasswordMetrics);
 
         CommandExecutor commandExecutor = new CommandExecutor(splitWise);
-        Server server = new Server(SERVER_PORT, commandExecutor);
+
+        ServerAPI server = createServer(args, commandExecutor, metrics);
+        metrics.register("connections", server::getConnectionsCount);
+
+        if (server instanceof Server nioServer) { //only the selector-based server pushes notifications
+            splitWise.setNotificationPusher(nioServer.getSubscriptions());
+            metrics.register("subscribed", nioServer.getSubscriptions()::getSubscribedUsersCount);
+        }
+
+        int metricsPeriod = intOption(args, "metrics", 0);
+        if (metricsPeriod > 0) {
+            metrics.start(metricsPeriod);
+        }
+
         server.start();
+        metrics.stop();
+    }
+
+    private static Database createDatabase(String[] args, MetricsReporter metrics) {
+        String type = option(args, "database", LOG_DATABASE);
+
+        if (type.equals(FILE_DATABASE)) {
+            return new FileDatabase(MAIN_DATABASE_FILE);
+        } else if (!type.equals(LOG_DATABASE)) {
+            throw new IllegalArgumentException("Unknown database type: " + type);
+        }
+
+        LogDatabase database = new LogDatabase(MAIN_DATABASE_FILE, getDurability(args),
+            intOption(args, "commit-window", 0));
+
+        database.startCompaction(intOption(args, "snapshot-every", DEFAULT_SNAPSHOT_PERIOD));
+        Runtime.getRuntime().addShutdownHook(new Thread(database::close)); //writes what async mode has not yet
+        metrics.register("database", database::getMetrics);
+
+        return database;
+    }
+
+    private static SplitWise createSplitWise(String[] args, Database database) {
+        int residentUsers = intOption(args, "resident-users", 0);
+        if (residentUsers <= 0) {
+            return new SplitWise(database);
+        }
+
+        if (!(database instanceof LazyDatabase lazyDatabase)) {
+            throw new IllegalArgumentException("Only the file database can load the users on demand");
+        }
+
+        return new SplitWise(lazyDatabase, residentUsers);
+    }
+
+    private static Durability getDurability(String[] args) {
+        String durability = option(args, "durability", Durability.BATCH.name());
+
+        try {
+            return Durability.valueOf(durability.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown durability: " + durability, e);
+        }
+    }
+
+    private static ServerAPI createServer(String[] args, CommandExecutor commandExecutor, MetricsReporter metrics) {
+        String type = option(args, "server", NIO_SERVER);
+
+        if (type.equals(VIRTUAL_THREAD_SERVER)) {
+            commandExecutor.setBatchWorkers(WorkerPool.virtual());
+            return new VirtualThreadServer(SERVER_PORT, commandExecutor);
+        } else if (!type.equals(NIO_SERVER)) {
+            throw new IllegalArgumentException("Unknown server type: " + type);
+        }
+
+        WorkerPool workerPool = createWorkerPool(args);
+        commandExecutor.setBatchWorkers(workerPool);
+
+        Server server = new Server(SERVER_PORT, commandExecutor, workerPool, getReactorsCount(args));
+        metrics.register("workers", server.getWorkerPool()::getMetrics);
+        metrics.register("reactors", () -> server.getReactors().stream()
+            .map(r -> r.getName() + "(connections=" + r.getConnectionsCount() + ", buffers=" +
+                r.getBufferPool().getAllocatedCount() + ", in use=" + r.getBufferPool().getOutstandingCount() + ")")
+            .toList());
+
+        return server;
+    }
+
+    private static PasswordVerifier createPasswordVerifier(String[] args) {
+        int iterations = intOption(args, "password-iterations", Pbkdf2PasswordHasher.DEFAULT_ITERATIONS);
+        int hashers = intOption(args, "hashers", Runtime.getRuntime().availableProcessors());
+
+        return new PasswordVerifier(new Pbkdf2PasswordHasher(iterations), hashers,
+            PasswordVerifier.DEFAULT_QUEUE_CAPACITY, PasswordVerifier.DEFAULT_CACHE_CAPACITY);
+    }
+
+    private static WorkerPool createWorkerPool(String[] args) {
+        String executor = option(args, "executor", WorkerPool.FIXED);
+
+        return switch (executor) {
+            case WorkerPool.FIXED -> WorkerPool.fixed(intOption(args, "workers",
+                Runtime.getRuntime().availableProcessors()), intOption(args, "queue", DEFAULT_QUEUE_CAPACITY));
+            case WorkerPool.VIRTUAL -> WorkerPool.virtual();
+            default -> throw new IllegalArgumentException("Unknown executor type: " + executor);
+        };
+    }
+
+    private static int getReactorsCount(String[] args) {
+        String reactor = option(args, "reactor", SINGLE_REACTOR);
+
+        return switch (reactor) {
+            case SINGLE_REACTOR -> 1;
+            case MULTI_REACTOR -> intOption(args, "reactors", Runtime.getRuntime().availableProcessors());
+            default -> throw new IllegalArgumentException("Unknown reactor mode: " + reactor);
+        };
+    }
+
+    static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+
+        return defaultValue;
+    }
+
+    static int intOption(String[] args, String name, int defaultValue) {
+        String value = option(args, name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The option --" + name + " must be a number", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe. Direct buffers in a few size classes, so the socket reads and writes need no copy into a temporary
+ * direct buffer of the JDK. A reactor thread reads into them and the workers encode the responses into them;
+ * idle connections give their read buffer back, so thousands of idle clients do not keep thousands of buffers.
+ * A request bigger than the biggest class gets a buffer of its own, which is left to the garbage collector.
+ * With leak tracking every buffer handed out is remembered until it is released, and releasing a buffer twice or
+ * one which is not from this pool is refused with IllegalStateException; the tests use it.
+ */
+public class BufferPool {
+    public static final int BUFFER_SIZE = 1024;
+
+    private static final int[] SIZE_CLASSES = {BUFFER_SIZE, 4 * 1024, 16 * 1024, 64 * 1024};
+
+    private final int[] maxPooled; //per size class
+    private final Deque<ByteBuffer>[] free; //each guarded by itself
+
+    private final Set<ByteBuffer> outstanding; //only with leak tracking
+    private final AtomicLong allocated;
+    private final AtomicLong acquired;
+    private final AtomicLong released;
+
+    /**
+     * @param maxPooled how many free buffers of the smallest class are kept; the bigger classes keep as many bytes
+     */
+    public BufferPool(int maxPooled) {
+        this(maxPooled, false);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) //an array of a generic type can only be made raw
+    public BufferPool(int maxPooled, boolean trackLeaks) {
+        this.maxPooled = new int[SIZE_CLASSES.length];
+        free = new Deque[SIZE_CLASSES.length];
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            this.maxPooled[i] = Math.max(1, maxPooled / (SIZE_CLASSES[i] / BUFFER_SIZE));
+            free[i] = new ArrayDeque<>();
+        }
+
+        outstanding = trackLeaks ? Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()))
+            : null;
+        allocated = new AtomicLong();
+        acquired = new AtomicLong();
+        released = new AtomicLong();
+    }
+
+    public ByteBuffer acquire() {
+        return acquire(BUFFER_SIZE);
+    }
+
+    /**
+     * @return a cleared buffer with a capacity of at least minCapacity
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClassOf(minCapacity);
+
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            synchronized (free[sizeClass]) {
+                buffer = free[sizeClass].pollFirst();
+            }
+        }
+
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(sizeClass >= 0 ? SIZE_CLASSES[sizeClass] : minCapacity);
+        }
+
+        acquired.incrementAndGet();
+        if (outstanding != null) {
+            outstanding.add(buffer);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * @param buffer acquired from this pool and not used after this call
+     */
+    public void release(ByteBuffer buffer) {
+        if (outstanding != null && !outstanding.remove(buffer)) {
+            throw new IllegalStateException("The buffer was released twice or is not from this pool");
+        }
+        released.incrementAndGet();
+
+        int sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass < 0 || SIZE_CLASSES[sizeClass] != buffer.capacity()) {
+            return; //the buffers over the biggest class are left to the garbage collector
+        }
+
+        buffer.clear();
+        synchronized (free[sizeClass]) {
+            if (free[sizeClass].size() < maxPooled[sizeClass]) {
+                free[sizeClass].addFirst(buffer);
+            }
+        }
+    }
+
+    public int getFreeCount() {
+        int count = 0;
+        for (Deque<ByteBuffer> buffers : free) {
+            synchronized (buffers) {
+                count += buffers.size();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return how many buffers have ever been allocated, that is acquired without a free one to reuse
+     */
+    public long getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * @return how many buffers are acquired and not yet released
+     */
+    public long getOutstandingCount() {
+        return acquired.get() - released.get();
+    }
+
+    /**
+     * @return the smallest class which fits the capacity or -1 if none does
+     */
+    private static int sizeClassOf(int capacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (capacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
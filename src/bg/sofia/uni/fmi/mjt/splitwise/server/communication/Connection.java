@@ -0,0 +1,319 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.FrameCompressor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireFormat;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The state of one client connection. It is attached to the SelectionKey of the channel.
+ * Every message (in both directions) is a frame: 4 bytes length (big-endian) followed by that many bytes of payload,
+ * either UTF-8 JSON or the binary protocol. The responses use the format of the first command of the connection.
+ * Only the reactor thread uses a connection, except for reservePush(), which the workers call, and compress(), which
+ * the worker of its current command calls.
+ */
+public class Connection {
+    public static final int HEADER_SIZE = Integer.BYTES;
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    public static final int MAX_PENDING_COMMANDS = 64;
+    public static final int MAX_PENDING_PUSHES = 64;
+
+    private static final int MAX_GATHERED_BUFFERS = 64;
+
+    //a direct buffer from the pool, in writing mode between calls; null while the connection is idle
+    private ByteBuffer readBuffer;
+    private int frameStart; //of the first frame in the read buffer which nextFrame() has not returned yet
+    private final Deque<ByteBuffer> writeQueue; //the buffers of the queued frames, in order
+    private final ByteBuffer[] gathered; //reused by every gathering write
+
+    //the commands of one connection are executed one after another, so the responses keep the order of the requests
+    private final Deque<Command> pendingCommands;
+    private boolean executing;
+
+    private volatile WireFormat format; //null until the first frame; read by the workers which encode the output
+    private volatile FrameCompressor compressor; //null unless the client has asked for compression
+    private Session session; //started on this connection; null before a successful login
+    private boolean subscribed;
+
+    //pushes are taken only while the earlier output has been written, so a slow client cannot fill the memory
+    private final AtomicInteger pendingPushes; //reserved, but not yet queued for writing
+    private volatile boolean congested;
+
+    public Connection() {
+        writeQueue = new ArrayDeque<>();
+        gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+        pendingCommands = new ArrayDeque<>();
+        pendingPushes = new AtomicInteger();
+    }
+
+    /**
+     * @return the number of bytes read or -1 if the client has closed the connection
+     */
+    public int readFrom(ReadableByteChannel channel, BufferPool pool) throws IOException {
+        if (readBuffer == null) {
+            readBuffer = pool.acquire();
+        } else if (!readBuffer.hasRemaining()) {
+            readBuffer = grow(readBuffer, readBuffer.capacity() * 2, pool);
+        }
+
+        return channel.read(readBuffer);
+    }
+
+    /**
+     * Returns the payloads of the frames read so far one by one. When there is no whole frame left, the bytes of the
+     * next one are moved to the start of the read buffer, which is grown from the pool if the frame does not fit.
+     *
+     * @return the payload of the next complete frame, a view of the read buffer which is valid only until the next
+     *         call, or null if a whole frame has not arrived yet
+     * @throws IOException if the client announced a frame bigger than the allowed maximum
+     */
+    public ByteBuffer nextFrame(BufferPool pool) throws IOException {
+        if (readBuffer == null) {
+            return null;
+        }
+
+        int available = readBuffer.position() - frameStart;
+        int frameSize = HEADER_SIZE;
+        if (available >= HEADER_SIZE) {
+            int length = readBuffer.getInt(frameStart);
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+
+            frameSize += length;
+            if (available >= frameSize) {
+                ByteBuffer payload = readBuffer.slice(frameStart + HEADER_SIZE, length);
+                frameStart += frameSize;
+
+                if (format == null) {
+                    format = WireFormat.of(payload);
+                }
+
+                return payload;
+            }
+        }
+
+        if (frameStart > 0) { //the frames before have been decoded; keeps the bytes of the next (pipelined) one
+            readBuffer.flip().position(frameStart);
+            readBuffer.compact();
+            frameStart = 0;
+        }
+
+        if (readBuffer.capacity() < frameSize) {
+            readBuffer = grow(readBuffer, frameSize, pool);
+        }
+
+        return null;
+    }
+
+    /**
+     * Gives the read buffer back to the pool if it holds no partial frame
+     */
+    public void releaseReadBuffer(BufferPool pool) {
+        if (readBuffer != null && readBuffer.position() == 0) {
+            pool.release(readBuffer);
+            readBuffer = null;
+        }
+    }
+
+    /**
+     * Gives back every buffer of the connection, the output which has not been written included; call it when the
+     * connection is closed, and once more when the command which was executing then has completed
+     */
+    public void releaseBuffers(BufferPool pool) {
+        if (compressor != null && !executing) { //else a worker may still be compressing
+            compressor.close();
+            compressor = null;
+        }
+
+        if (readBuffer != null) {
+            pool.release(readBuffer);
+            readBuffer = null;
+        }
+
+        ByteBuffer buffer;
+        while ((buffer = writeQueue.pollFirst()) != null) {
+            release(buffer, pool);
+        }
+    }
+
+    /**
+     * @param frame the buffers of a frame from the pool, which are given back to it once they have been written
+     */
+    public void enqueue(ByteBuffer[] frame) {
+        for (ByteBuffer buffer : frame) {
+            writeQueue.addLast(buffer);
+        }
+    }
+
+    /**
+     * Compresses a response frame if the client has asked for it. The frames of the responses are compressed one
+     * after another, like the commands are executed, so they are compressed in the order they are written.
+     *
+     * @param frame the buffers of a frame from the pool
+     * @return the frame to enqueue
+     */
+    public ByteBuffer[] compress(ByteBuffer[] frame, BufferPool pool) {
+        FrameCompressor frameCompressor = compressor;
+
+        return frameCompressor == null ? frame : frameCompressor.compress(frame, pool::acquire, pool::release);
+    }
+
+    public boolean isCompressed() {
+        return compressor != null;
+    }
+
+    public void setCompressor(FrameCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * @return the whole frame of the payload, header included
+     */
+    public static byte[] frame(byte[] payload) {
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    /**
+     * @return false if the client does not keep up with its pushes; then the push must not be sent
+     */
+    public boolean reservePush() {
+        while (!congested) {
+            int pending = pendingPushes.get();
+            if (pending >= MAX_PENDING_PUSHES) {
+                return false;
+            }
+
+            if (pendingPushes.compareAndSet(pending, pending + 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Queues a push reserved with reservePush()
+     *
+     * @param frame shared by every connection it is pushed to, so it must not be changed
+     */
+    public void enqueuePush(byte[] frame) {
+        writeQueue.addLast(ByteBuffer.wrap(frame));
+        pendingPushes.decrementAndGet();
+    }
+
+    /**
+     * Writes as much of the queued frames as the socket accepts without blocking. Several frames and the chunks of a
+     * large one are written with one gathering write; the written buffers are given back to the pool.
+     *
+     * @return true if everything was written, false if there is still pending output
+     */
+    public boolean writeTo(GatheringByteChannel channel, BufferPool pool) throws IOException {
+        while (!writeQueue.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : writeQueue) {
+                gathered[count++] = buffer;
+                if (count == gathered.length) {
+                    break;
+                }
+            }
+
+            channel.write(gathered, 0, count);
+            boolean socketFull = gathered[count - 1].hasRemaining();
+            Arrays.fill(gathered, 0, count, null);
+
+            while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+                release(writeQueue.pollFirst(), pool);
+            }
+
+            if (socketFull) {
+                congested = true;
+                return false; //the socket send buffer is full
+            }
+        }
+
+        congested = false;
+        return true;
+    }
+
+    public void addCommand(Command command) {
+        pendingCommands.addLast(command);
+    }
+
+    /**
+     * @return the next command to execute or null if there is none or the previous one is still executing
+     */
+    public Command startNextCommand() {
+        if (executing || pendingCommands.isEmpty()) {
+            return null;
+        }
+
+        executing = true;
+        return pendingCommands.pollFirst();
+    }
+
+    public void finishCommand() {
+        executing = false;
+    }
+
+    public boolean isOverloaded() {
+        return pendingCommands.size() >= MAX_PENDING_COMMANDS;
+    }
+
+    /**
+     * @return the format of the first frame; JSON if none has arrived yet
+     */
+    public WireFormat getFormat() {
+        WireFormat negotiated = format;
+
+        return negotiated == null ? WireFormat.JSON : negotiated;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public void setSession(Session session) {
+        this.session = session;
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    public void setSubscribed(boolean subscribed) {
+        this.subscribed = subscribed;
+    }
+
+    public boolean hasPendingOutput() {
+        return !writeQueue.isEmpty();
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity, BufferPool pool) {
+        ByteBuffer bigger = pool.acquire(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        pool.release(buffer);
+
+        return bigger;
+    }
+
+    /**
+     * The pushes are shared heap buffers, the rest are direct buffers from the pool
+     */
+    private static void release(ByteBuffer buffer, BufferPool pool) {
+        if (buffer.isDirect()) {
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.FrameCompressor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireCodec;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One selector loop with its own pool of direct buffers. The reactor thread only reads, decodes and writes frames;
+ * a command is decoded in the buffer it was read into. The commands are executed by the worker pool, which also
+ * encodes their responses in the format of the connection straight into buffers of the pool.
+ * The responses come back through the completed queue, from which the reactor thread writes them.
+ * New client channels are handed over through the registration queue.
+ * A session started on a connection is kept with it, so its commands are executed without looking up their token.
+ * Such a connection can subscribe to the notifications of its user. They are pushed through the push queue,
+ * one batch per notification.
+ * A client may pipeline its commands. They are executed one after another and every response carries the id of its
+ * command, so the client can match them; a BATCH is one command, whose independent commands run in parallel.
+ * A connection which sends COMPRESS gets its bigger responses deflated by the worker which encodes them.
+ */
+public class Reactor implements Runnable {
+    private static final String OVERLOADED_MESSAGE = "The server is overloaded. Try again later";
+    private static final String SUBSCRIBED_MESSAGE = "New notifications will be shown right away";
+    private static final String UNSUBSCRIBED_MESSAGE = "New notifications will be shown with the notifications command";
+    private static final String NOT_LOGGED_IN_MESSAGE = "Log in before subscribing to notifications";
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    //stands for a payload which is not a valid command, so its error response keeps its place among the responses
+    private static final Command INVALID_COMMAND = new Command(null, new String[0], null);
+
+    private final String name;
+    private final CommandExecutor commandExecutor;
+    private final WorkerPool workerPool;
+    private final WireCodec codec;
+    private final Subscriptions subscriptions;
+
+    private final Selector selector;
+    private final BufferPool bufferPool;
+    private final Queue<Completion> completed;
+    private final Queue<SocketChannel> registrations;
+    private final Queue<PushBatch> pushes;
+    private final AtomicInteger connections;
+
+    private volatile boolean isWorking;
+
+    /**
+     * @param session the session of the connection after the command
+     */
+    private record Completion(SelectionKey key, ByteBuffer[] frame, Session session) {
+    }
+
+    private record PushBatch(List<SelectionKey> keys, byte[] frame) {
+    }
+
+    public Reactor(String name, CommandExecutor commandExecutor, WorkerPool workerPool, WireCodec codec,
+                   Subscriptions subscriptions) {
+        this.name = name;
+        this.commandExecutor = commandExecutor;
+        this.workerPool = workerPool;
+        this.codec = codec;
+        this.subscriptions = subscriptions;
+
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open a selector", e);
+        }
+
+        bufferPool = new BufferPool(MAX_POOLED_BUFFERS);
+        completed = new ConcurrentLinkedQueue<>();
+        registrations = new ConcurrentLinkedQueue<>();
+        pushes = new ConcurrentLinkedQueue<>();
+        connections = new AtomicInteger();
+        isWorking = true;
+    }
+
+    /**
+     * Makes this reactor accept the clients of the server channel by itself (single-reactor mode)
+     */
+    public void listen(ServerSocketChannel serverChannel) throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Hands an accepted channel to this reactor. It can be called from any thread.
+     */
+    public void register(SocketChannel channel) {
+        registrations.add(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Writes a frame to connections of this reactor which have reserved a push. It can be called from any thread.
+     */
+    public void push(List<SelectionKey> keys, byte[] frame) {
+        pushes.add(new PushBatch(keys, frame));
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (isWorking) {
+            try {
+                selector.select();
+                registerNewChannels();
+                writeCompletedResponses();
+                writePushes();
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept(key);
+                        continue;
+                    }
+
+                    handleClientKey(key);
+                }
+            } catch (IOException e) {
+                System.out.println("Error occurred while processing client request: " + e.getMessage());
+            }
+        }
+
+        closeSelector();
+    }
+
+    public void stop() {
+        isWorking = false;
+        selector.wakeup();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConnectionsCount() {
+        return connections.get();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    private void registerNewChannels() {
+        SocketChannel channel;
+        while ((channel = registrations.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, new Connection());
+                connections.incrementAndGet();
+            } catch (IOException e) {
+                System.out.println("Could not register client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
+        SocketChannel accept = sockChannel.accept();
+        if (accept == null) {
+            return;
+        }
+
+        accept.configureBlocking(false);
+        accept.register(selector, SelectionKey.OP_READ, new Connection());
+        connections.incrementAndGet();
+    }
+
+    private void handleClientKey(SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                read(key);
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                write(key);
+            }
+        } catch (IOException e) {
+            System.out.println("Closing client connection: " + e.getMessage());
+            close(key);
+        } catch (RuntimeException e) { //a bug or a payload nothing refused; only this client must pay for it
+            System.out.println("Closing client connection after an unexpected error: " + e);
+            close(key);
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel clientChannel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        if (connection.readFrom(clientChannel, bufferPool) < 0) {
+            close(key);
+            return;
+        }
+
+        ByteBuffer payload;
+        while ((payload = connection.nextFrame(bufferPool)) != null) {
+            Command command = codec.decodeCommand(payload); //in place, before the next frame reuses the buffer
+            connection.addCommand(command == null ? INVALID_COMMAND : command); //answered with an error
+        }
+        connection.releaseReadBuffer(bufferPool);
+
+        dispatchNextCommand(key);
+        write(key);
+    }
+
+    private void dispatchNextCommand(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+
+        Command command = connection.startNextCommand();
+        while (command != null && isConnectionCommand(command)) { //needs only the connection, so no worker
+            connection.enqueue(codec.encodeFrame(executeOnConnection(key, command), connection.getFormat(),
+                command.id(), bufferPool::acquire));
+            connection.finishCommand();
+
+            command = connection.startNextCommand();
+        }
+
+        if (command == null) {
+            return;
+        }
+
+        Command toExecute = command;
+        Session session = connection.getSession(); //no other command of the connection can change it meanwhile
+        boolean accepted = workerPool.submit(() -> {
+            Response response = commandExecutor.execute(toExecute, session);
+            ByteBuffer[] frame =
+                codec.encodeFrame(response, connection.getFormat(), toExecute.id(), bufferPool::acquire);
+            completed.add(new Completion(key, connection.compress(frame, bufferPool),
+                CommandExecutor.sessionAfter(toExecute, response, session)));
+            selector.wakeup();
+        });
+
+        if (!accepted) {
+            completed.add(new Completion(key, codec.encodeFrame(new Response(false, OVERLOADED_MESSAGE),
+                connection.getFormat(), command.id(), bufferPool::acquire), session));
+            selector.wakeup();
+        }
+    }
+
+    private static boolean isConnectionCommand(Command command) {
+        return command.commandName() == CommandName.SUBSCRIBE || command.commandName() == CommandName.UNSUBSCRIBE
+            || command.commandName() == CommandName.COMPRESS;
+    }
+
+    private Response executeOnConnection(SelectionKey key, Command command) {
+        if (command.commandName() != CommandName.COMPRESS) {
+            return changeSubscription(key, command.commandName());
+        }
+
+        Connection connection = (Connection) key.attachment();
+        if (!connection.isCompressed()) { //the client keeps inflating the stream it has started
+            connection.setCompressor(FrameCompressor.negotiate(command));
+        }
+
+        return FrameCompressor.negotiated(connection.isCompressed());
+    }
+
+    private Response changeSubscription(SelectionKey key, CommandName commandName) {
+        Connection connection = (Connection) key.attachment();
+        if (connection.getSession() == null) {
+            return new Response(false, NOT_LOGGED_IN_MESSAGE);
+        }
+
+        if (commandName == CommandName.UNSUBSCRIBE) {
+            unsubscribe(key);
+            return new Response(true, UNSUBSCRIBED_MESSAGE);
+        }
+
+        if (!connection.isSubscribed()) {
+            subscriptions.subscribe(connection.getSession().getUsername(), this, key);
+            connection.setSubscribed(true);
+        }
+
+        return new Response(true, SUBSCRIBED_MESSAGE);
+    }
+
+    private void unsubscribe(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        if (connection.isSubscribed()) {
+            subscriptions.unsubscribe(connection.getSession().getUsername(), this, key);
+            connection.setSubscribed(false);
+        }
+    }
+
+    private void writeCompletedResponses() {
+        Completion completion;
+        while ((completion = completed.poll()) != null) {
+            SelectionKey key = completion.key();
+            if (!key.isValid()) { //the client has disconnected in the meantime
+                for (ByteBuffer buffer : completion.frame()) {
+                    bufferPool.release(buffer);
+                }
+                Connection connection = (Connection) key.attachment();
+                connection.finishCommand();
+                connection.releaseBuffers(bufferPool); //the compressor, which the command may have been using
+                continue;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            if (completion.session() != connection.getSession()) {
+                unsubscribe(key); //from the notifications of the session which has ended
+                connection.setSession(completion.session());
+            }
+
+            connection.enqueue(completion.frame());
+            connection.finishCommand();
+            dispatchNextCommand(key);
+
+            writeOrClose(key);
+        }
+    }
+
+    private void writePushes() {
+        PushBatch batch;
+        while ((batch = pushes.poll()) != null) {
+            for (SelectionKey key : batch.keys()) {
+                if (key.isValid()) {
+                    ((Connection) key.attachment()).enqueuePush(batch.frame());
+                    writeOrClose(key);
+                }
+            }
+        }
+    }
+
+    private void writeOrClose(SelectionKey key) {
+        try {
+            write(key);
+        } catch (IOException e) {
+            System.out.println("Closing client connection: " + e.getMessage());
+            close(key);
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+
+        //stop reading from clients that send commands faster than they are executed
+        int readInterest = connection.isOverloaded() ? 0 : SelectionKey.OP_READ;
+
+        if (connection.writeTo((SocketChannel) key.channel(), bufferPool)) {
+            key.interestOps(readInterest);
+        } else {
+            key.interestOps(readInterest | SelectionKey.OP_WRITE); //continue when the socket is writable
+        }
+    }
+
+    private void close(SelectionKey key) {
+        if (key.isValid()) {
+            connections.decrementAndGet();
+        }
+
+        unsubscribe(key);
+        ((Connection) key.attachment()).releaseBuffers(bufferPool);
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            System.out.println("Error occurred while closing client connection: " + e.getMessage());
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            if (!(key.channel() instanceof ServerSocketChannel)) {
+                close(key);
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.out.println("Error occurred while closing the selector: " + e.getMessage());
+        }
+    }
+}
@@ -1,132 +1,147 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
 
 
-import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
-import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
-import com.google.gson.Gson;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.JsonProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireCodec;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
-
-public class Server {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * With one reactor the reactor accepts the clients itself (single-reactor mode). With more reactors the thread that
+ * calls start() becomes an acceptor which spreads the accepted channels round-robin across the reactors, each of
+ * them running on its own thread with its own selector and buffer pool (multi-reactor mode).
+ */
+public class Server implements ServerAPI {
     private static final String HOST = "localhost";
-    private static final int BUFFER_SIZE = 1024;
 
     private final CommandExecutor commandExecutor;
+    private final WorkerPool workerPool;
+    private final int reactorsCount;
 
     private final int port;
-    private boolean isServerWorking;
+    private volatile boolean isServerWorking;
 
-    private ByteBuffer buffer;
-    private Selector selector;
+    private final List<Reactor> reactors;
+    private final Subscriptions subscriptions;
+    private ServerSocketChannel serverSocketChannel;
 
     public Server(int port, CommandExecutor commandExecutor) {
+        this(port, commandExecutor, WorkerPool.fixed(Runtime.getRuntime().availableProcessors(), 1024));
+    }
+
+    public Server(int port, CommandExecutor commandExecutor, WorkerPool workerPool) {
+        this(port, commandExecutor, workerPool, 1);
+    }
+
+    public Server(int port, CommandExecutor commandExecutor, WorkerPool workerPool, int reactorsCount) {
+        if (reactorsCount <= 0) {
+            throw new IllegalArgumentException("The number of reactors must be positive");
+        }
+
         this.port = port;
         this.commandExecutor = commandExecutor;
+        this.workerPool = workerPool;
+        this.reactorsCount = reactorsCount;
+
+        WireCodec codec = new WireCodec(JsonProtocol.createGson());
+        subscriptions = new Subscriptions(codec);
+        reactors = new ArrayList<>();
+        for (int i = 0; i < reactorsCount; i++) {
+            reactors.add(new Reactor("splitwise-reactor-" + i, commandExecutor, workerPool, codec, subscriptions));
+        }
     }
 
+    @Override
     public void start() {
-        Gson gson = new Gson();
-
-        try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
-            selector = Selector.open();
-            configureServerSocketChannel(serverSocketChannel, selector);
-            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverSocketChannel = serverChannel;
+            serverChannel.bind(new InetSocketAddress(HOST, this.port));
             isServerWorking = true;
 
             System.out.println("The server is working");
 
-            while (isServerWorking) {
-                try {
-                    int readyChannels = selector.select();
-                    if (readyChannels == 0) {
-                        continue;
-                    }
-
-                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
-                    while (keyIterator.hasNext()) {
-                        SelectionKey key = keyIterator.next();
-
-                        if (key.isReadable()) {
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            String clientInput = getClientInput(clientChannel);
-                            System.out.println(clientInput);
-
-                            if (clientInput == null) {
-                                continue;
-                            }
-
-                            Response response = commandExecutor.execute(gson.fromJson(clientInput, Command.class));
-
-                            writeClientOutput(clientChannel, gson.toJson(response));
-                        } else if (key.isAcceptable()) {
-                            accept(selector, key);
-                        }
-
-                        keyIterator.remove();
-                    }
-                } catch (IOException e) {
-                    System.out.println("Error occurred while processing client request: " + e.getMessage());
-                }
+            if (reactorsCount == 1) {
+                Reactor reactor = reactors.get(0);
+                reactor.listen(serverChannel);
+                reactor.run();
+            } else {
+                startReactorThreads();
+                acceptClients(serverChannel);
             }
         } catch (IOException e) {
             throw new UncheckedIOException("failed to start server", e);
+        } finally {
+            reactors.forEach(Reactor::stop);
+            workerPool.shutdown();
         }
     }
 
+    @Override
     public void stop() {
         this.isServerWorking = false;
         System.out.println("The server is stopped");
-        if (selector.isOpen()) {
-            selector.wakeup();
+
+        reactors.forEach(Reactor::stop);
+        if (serverSocketChannel != null && reactorsCount > 1) {
+            try {
+                serverSocketChannel.close(); //unblocks the acceptor
+            } catch (IOException e) {
+                System.out.println("Error occurred while closing the server channel: " + e.getMessage());
+            }
         }
     }
 
-    private void configureServerSocketChannel(ServerSocketChannel channel, Selector selector) throws IOException {
-        channel.bind(new InetSocketAddress(HOST, this.port));
-        channel.configureBlocking(false);
-        channel.register(selector, SelectionKey.OP_ACCEPT);
+    @Override
+    public int getConnectionsCount() {
+        return reactors.stream().mapToInt(Reactor::getConnectionsCount).sum();
     }
 
-    private String getClientInput(SocketChannel clientChannel) throws IOException {
-        buffer.clear();
-
-        int readBytes = clientChannel.read(buffer);
-        if (readBytes < 0) {
-            clientChannel.close();
-            return null;
-        }
-
-        buffer.flip();
-
-        byte[] clientInputBytes = new byte[buffer.remaining()];
-        buffer.get(clientInputBytes);
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
 
-        return new String(clientInputBytes, StandardCharsets.UTF_8);
+    /**
+     * Pushes the notifications to the connections subscribed to them
+     */
+    public Subscriptions getSubscriptions() {
+        return subscriptions;
     }
 
-    private void writeClientOutput(SocketChannel clientChannel, String output) throws IOException {
-        buffer.clear();
-        buffer.put(output.getBytes());
-        buffer.flip();
+    public List<Reactor> getReactors() {
+        return Collections.unmodifiableList(reactors);
+    }
 
-        clientChannel.write(buffer);
+    private void startReactorThreads() {
+        for (Reactor reactor : reactors) {
+            Thread thread = new Thread(reactor, reactor.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
-    private void accept(Selector selector, SelectionKey key) throws IOException {
-        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
-        SocketChannel accept = sockChannel.accept();
+    private void acceptClients(ServerSocketChannel serverChannel) throws IOException {
+        int next = 0;
 
-        accept.configureBlocking(false);
-        accept.register(selector, SelectionKey.OP_READ);
+        while (isServerWorking) {
+            SocketChannel client;
+            try {
+                client = serverChannel.accept(); //blocking, the acceptor thread does nothing else
+            } catch (ClosedChannelException e) {
+                return; //the server was stopped
+            }
+
+            reactors.get(next).register(client);
+            next = (next + 1) % reactors.size();
+        }
     }
 }
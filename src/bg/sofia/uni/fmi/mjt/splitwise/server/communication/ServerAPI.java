@@ -0,0 +1,18 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+public interface ServerAPI {
+    /**
+     * Binds the server port and serves the clients until stop() is called. It blocks the calling thread.
+     */
+    void start();
+
+    /**
+     * Stops accepting clients, closes the open connections and makes start() return
+     */
+    void stop();
+
+    /**
+     * @return the number of currently open client connections
+     */
+    int getConnectionsCount();
+}
@@ -0,0 +1,88 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireCodec;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireFormat;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PushedNotificationResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPusher;
+
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connections to which the notifications of every user are pushed; a user may be subscribed on several.
+ * A notification is encoded once per wire format and handed to every reactor in one batch per format, so a split in
+ * a big group wakes each reactor once or twice and not once per member. A connection whose client does not read its
+ * pushes is skipped and its user gets the notification in the inbox instead, so a slow client cannot make the server
+ * buffer without limit.
+ * A pushed notification is lost if its connection closes before it is written.
+ */
+public class Subscriptions implements NotificationPusher {
+    private final Map<String, Set<Subscriber>> subscribers;
+    private final WireCodec codec;
+
+    private record Subscriber(Reactor reactor, SelectionKey key) {
+    }
+
+    public Subscriptions(WireCodec codec) {
+        this.codec = codec;
+        subscribers = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Called by the reactor thread of the connection
+     */
+    public void subscribe(String username, Reactor reactor, SelectionKey key) {
+        subscribers.computeIfAbsent(username, user -> ConcurrentHashMap.newKeySet()).add(new Subscriber(reactor, key));
+    }
+
+    /**
+     * Called by the reactor thread of the connection
+     */
+    public void unsubscribe(String username, Reactor reactor, SelectionKey key) {
+        subscribers.computeIfPresent(username, (user, keys) -> {
+            keys.remove(new Subscriber(reactor, key));
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    @Override
+    public Set<String> push(Collection<String> recipients, Notification notification) {
+        Map<WireFormat, Map<Reactor, List<SelectionKey>>> batches = new EnumMap<>(WireFormat.class);
+        Set<String> pushed = new HashSet<>();
+
+        for (String recipient : recipients) {
+            for (Subscriber subscriber : subscribers.getOrDefault(recipient, Set.of())) {
+                Connection connection = (Connection) subscriber.key().attachment();
+
+                if (subscriber.key().isValid() && connection.reservePush()) {
+                    batches.computeIfAbsent(connection.getFormat(), format -> new HashMap<>())
+                        .computeIfAbsent(subscriber.reactor(), reactor -> new ArrayList<>()).add(subscriber.key());
+                    pushed.add(recipient);
+                }
+            }
+        }
+
+        if (!batches.isEmpty()) {
+            PushedNotificationResponse response = new PushedNotificationResponse(notification);
+            batches.forEach((format, formatBatches) -> {
+                byte[] frame = Connection.frame(codec.encode(response, format));
+                formatBatches.forEach((reactor, keys) -> reactor.push(keys, frame));
+            });
+        }
+
+        return pushed;
+    }
+
+    public int getSubscribedUsersCount() {
+        return subscribers.size();
+    }
+}
@@ -0,0 +1,205 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.FrameCompressor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.JsonProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireCodec;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireFormat;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Blocking I/O with one virtual thread per connection. The thread of a connection reads a frame, executes the command
+ * and writes the response, so a command that blocks on the database only parks its own virtual thread.
+ * It uses the same framing, wire formats and pooled direct buffers as the selector-based Server.
+ */
+public class VirtualThreadServer implements ServerAPI {
+    private static final String HOST = "localhost";
+    private static final int MAX_POOLED_BUFFERS = 1024;
+
+    private final CommandExecutor commandExecutor;
+    private final WireCodec codec;
+    private final BufferPool bufferPool; //shared by the threads of all connections
+
+    private final int port;
+    private volatile boolean isServerWorking;
+
+    private ServerSocketChannel serverSocketChannel;
+    private final Set<SocketChannel> clients;
+
+    public VirtualThreadServer(int port, CommandExecutor commandExecutor) {
+        this.port = port;
+        this.commandExecutor = commandExecutor;
+
+        codec = new WireCodec(JsonProtocol.createGson());
+        bufferPool = new BufferPool(MAX_POOLED_BUFFERS);
+        clients = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public void start() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverSocketChannel = serverChannel;
+            serverChannel.bind(new InetSocketAddress(HOST, this.port));
+            isServerWorking = true;
+
+            System.out.println("The server is working");
+
+            while (isServerWorking) {
+                SocketChannel client;
+                try {
+                    client = serverChannel.accept();
+                } catch (ClosedChannelException e) {
+                    break; //the server was stopped
+                }
+
+                clients.add(client);
+                Thread.ofVirtual().name("splitwise-client-", client.hashCode()).start(() -> serve(client));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to start server", e);
+        } finally {
+            clients.forEach(this::close);
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.isServerWorking = false;
+        System.out.println("The server is stopped");
+
+        if (serverSocketChannel != null) {
+            try {
+                serverSocketChannel.close(); //unblocks the accepting thread
+            } catch (IOException e) {
+                System.out.println("Error occurred while closing the server channel: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int getConnectionsCount() {
+        return clients.size();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    private void serve(SocketChannel client) {
+        ByteBuffer header = ByteBuffer.allocate(Connection.HEADER_SIZE);
+        Session session = null; //started on this connection
+        WireFormat format = null; //of the first command
+        FrameCompressor compressor = null; //if the client has asked for compression
+
+        try {
+            while (isServerWorking) {
+                ByteBuffer payload = readFrame(client, header);
+                Command command;
+                try {
+                    if (format == null) {
+                        format = WireFormat.of(payload);
+                    }
+
+                    command = codec.decodeCommand(payload); //null for invalid commands, answered with an error
+                } finally {
+                    bufferPool.release(payload);
+                }
+
+                Response response;
+                if (command != null && command.commandName() == CommandName.COMPRESS) {
+                    if (compressor == null) {
+                        compressor = FrameCompressor.negotiate(command);
+                    }
+                    response = FrameCompressor.negotiated(compressor != null);
+                } else {
+                    response = commandExecutor.execute(command, session);
+                    session = CommandExecutor.sessionAfter(command, response, session);
+                }
+
+                ByteBuffer[] frame =
+                    codec.encodeFrame(response, format, command == null ? 0 : command.id(), bufferPool::acquire);
+                writeFrame(client, compressor == null ? frame
+                    : compressor.compress(frame, bufferPool::acquire, bufferPool::release));
+            }
+        } catch (EOFException | ClosedChannelException e) {
+            //the client has disconnected
+        } catch (IOException e) {
+            System.out.println("Closing client connection: " + e.getMessage());
+        } finally {
+            if (compressor != null) {
+                compressor.close();
+            }
+            close(client);
+        }
+    }
+
+    /**
+     * @return the payload in a buffer of the pool, which the caller releases
+     */
+    private ByteBuffer readFrame(SocketChannel client, ByteBuffer header) throws IOException {
+        header.clear();
+        readFully(client, header);
+
+        int length = header.getInt(0);
+        if (length < 0 || length > Connection.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+
+        ByteBuffer payload = bufferPool.acquire(length);
+        try {
+            payload.limit(length);
+            readFully(client, payload);
+        } catch (IOException e) {
+            bufferPool.release(payload);
+            throw e;
+        }
+
+        return payload.flip();
+    }
+
+    /**
+     * @param frame the buffers of the frame from the pool, which are given back to it
+     */
+    private void writeFrame(SocketChannel client, ByteBuffer[] frame) throws IOException {
+        try {
+            while (frame[frame.length - 1].hasRemaining()) {
+                client.write(frame);
+            }
+        } finally {
+            for (ByteBuffer buffer : frame) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+
+    private void readFully(SocketChannel client, ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (client.read(target) < 0) {
+                throw new EOFException("The client closed the connection");
+            }
+        }
+    }
+
+    private void close(SocketChannel client) {
+        clients.remove(client);
+        try {
+            client.close();
+        } catch (IOException e) {
+            System.out.println("Error occurred while closing client connection: " + e.getMessage());
+        }
+    }
+}
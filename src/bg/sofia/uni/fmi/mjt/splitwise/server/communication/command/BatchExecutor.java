@@ -0,0 +1,163 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.command;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe. Executes the commands of a BATCH as the user of its session and answers with their responses in order.
+ * A batch is cut into stages: a run of consecutive splits or of consecutive read-only commands is one stage and any
+ * other command is a stage of its own. The commands of a stage do not depend on each other (a split only adds to
+ * balances under the locks of its users), so they are executed in parallel, and the stages one after another.
+ * The thread of the batch takes part in every stage and only asks the worker pool for helpers. Each of them takes the
+ * next command nobody has taken, so a batch finishes even if no worker is free.
+ */
+public class BatchExecutor {
+    public static final int MAX_COMMANDS = 1024;
+    //more than the cores, because a split mostly waits for the log to reach the disk, and parallel ones share that
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final String EXECUTED_MESSAGE = "Executed %d commands";
+    private static final String TOO_BIG_MESSAGE = "A batch can have at most %d commands";
+    private static final String EMPTY_MESSAGE = "The batch has no commands";
+    private static final String NOT_BATCHABLE_MESSAGE = "%s cannot be executed in a batch";
+
+    private final CommandExecutor commandExecutor;
+    private final WorkerPool workers;
+    private final int parallelism;
+
+    private enum Stage {
+        SPLITS,
+        READS,
+        ALONE
+    }
+
+    /**
+     * @param workers     where the helpers run; null to execute the commands of a batch one after another
+     * @param parallelism how many threads at most execute the commands of one stage
+     */
+    public BatchExecutor(CommandExecutor commandExecutor, WorkerPool workers, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+
+        this.commandExecutor = commandExecutor;
+        this.workers = workers;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param session the session of the batch, which its commands without a token use
+     */
+    public Response execute(Command[] commands, Session session) {
+        if (commands == null || commands.length == 0) {
+            return new Response(false, EMPTY_MESSAGE);
+        }
+
+        if (commands.length > MAX_COMMANDS) {
+            return new Response(false, TOO_BIG_MESSAGE.formatted(MAX_COMMANDS));
+        }
+
+        Response[] responses = new Response[commands.length];
+        int start = 0;
+        while (start < commands.length) {
+            int end = stageEnd(commands, start);
+            executeStage(commands, start, end, session, responses);
+            start = end;
+        }
+
+        return new BatchResponse(EXECUTED_MESSAGE.formatted(commands.length), Arrays.asList(responses));
+    }
+
+    private static int stageEnd(Command[] commands, int start) {
+        Stage stage = stageOf(commands[start]);
+        if (stage == Stage.ALONE) {
+            return start + 1;
+        }
+
+        int end = start + 1;
+        while (end < commands.length && stageOf(commands[end]) == stage) {
+            end++;
+        }
+
+        return end;
+    }
+
+    private static Stage stageOf(Command command) {
+        if (command.commandName() == null) {
+            return Stage.ALONE;
+        }
+
+        return switch (command.commandName()) {
+            case SPLIT, SPLIT_GROUP -> Stage.SPLITS;
+            case GET_STATUS, PAYMENTS -> Stage.READS; //NOTIFICATIONS marks its page as read, so it is not one
+            default -> Stage.ALONE;
+        };
+    }
+
+    private void executeStage(Command[] commands, int start, int end, Session session, Response[] responses) {
+        int size = end - start;
+        if (size == 1 || workers == null || parallelism == 1) {
+            for (int i = start; i < end; i++) {
+                responses[i] = executeOne(commands[i], session);
+            }
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger(start);
+        CountDownLatch done = new CountDownLatch(size);
+        Runnable helper = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < end) {
+                try {
+                    responses[i] = executeOne(commands[i], session);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        for (int helpers = 1; helpers < Math.min(size, parallelism); helpers++) {
+            if (!workers.submit(helper)) {
+                break; //the pool is busy, so this thread does more of the work itself
+            }
+        }
+        helper.run();
+
+        awaitUninterruptibly(done); //only for the commands which the helpers have already taken
+    }
+
+    private Response executeOne(Command command, Session session) {
+        if (command.commandName() == null) {
+            return commandExecutor.execute(command, session); //answers that the command is invalid
+        }
+
+        return switch (command.commandName()) {
+            //they change the session or the connection, which the batch does not know about
+            case LOGIN, LOG_OUT, SUBSCRIBE, UNSUBSCRIBE, BATCH, COMPRESS ->
+                new Response(false, NOT_BATCHABLE_MESSAGE.formatted(command.commandName()));
+            default -> commandExecutor.execute(command, session);
+        };
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
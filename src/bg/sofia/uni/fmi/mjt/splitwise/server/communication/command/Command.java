@@ -1,4 +1,14 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication.command;
 
-public record Command(CommandName commandName, String[] arguments) {
+/**
+ * @param token    the session token; null for the commands which start a session and for the commands sent on the
+ *                 connection on which the session was started
+ * @param id       chosen by the client and sent back with the response, so pipelined responses can be matched to
+ *                 their requests; 0 if the client does not match them
+ * @param commands the commands of a BATCH; null for any other command
+ */
+public record Command(CommandName commandName, String[] arguments, String token, long id, Command[] commands) {
+    public Command(CommandName commandName, String[] arguments, String token) {
+        this(commandName, arguments, token, 0, null);
+    }
 }
@@ -1,8 +1,14 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication.command;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.LoginResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.NotificationResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PaymentsResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.SessionTable;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement.Transfer;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.FriendException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
@@ -15,27 +21,67 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.logger.ErrorLogger;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.logger.WarningLogger;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise.SplitWiseAPI;
 
 import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator.DOUBLE_INVALID;
-import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator.getDouble;
+import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator.CENTS_INVALID;
+import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator.getCents;
 
-public class CommandExecutor {
+/**
+ * Every command but login and sign-up is executed as the user of its session, so the client does not send
+ * its username. The handlers get the username in front of the arguments, where the clients used to send it.
+ * The commands of a BATCH are executed by a BatchExecutor as the user of the session of the batch.
+ */
+public final class CommandExecutor {
     private static final int SECOND_ARGUMENT = 2;
     private static final int THIRD_ARGUMENT = 3;
+    private static final int DEFAULT_PAYMENTS_PAGE_SIZE = 20;
+    private static final int NOTIFICATIONS_PAGE_SIZE = 20;
+    private static final String NO_PUSH_MESSAGE = "This server does not push notifications";
+    private static final String CONNECTION_ONLY_MESSAGE = "The compression is negotiated by the connection";
+    private static final String NO_SESSION_MESSAGE = "Your session has expired. Log in again";
 
     private final SplitWiseAPI splitWiseAPI;
+    private final SessionTable sessions;
+    private volatile BatchExecutor batches;
 
     public CommandExecutor(SplitWiseAPI splitWiseAPI) {
+        this(splitWiseAPI, new SessionTable(SessionTable.DEFAULT_TIME_TO_LIVE));
+    }
+
+    public CommandExecutor(SplitWiseAPI splitWiseAPI, SessionTable sessions) {
         this.splitWiseAPI = splitWiseAPI;
+        this.sessions = sessions;
+        this.batches = new BatchExecutor(this, null, 1);
+    }
+
+    /**
+     * Makes the independent commands of a batch run in parallel on these workers; without them they run one by one
+     */
+    public void setBatchWorkers(WorkerPool workers) {
+        batches = new BatchExecutor(this, workers, BatchExecutor.DEFAULT_PARALLELISM);
     }
 
     public Response execute(Command command) {
+        return execute(command, null);
+    }
+
+    /**
+     * @param connectionSession the session started on the connection of the command or null. A command without a
+     *                          token or with the token of this session uses it without looking the token up.
+     */
+    public Response execute(Command command, Session connectionSession) {
 
         Response response;
         try {
@@ -46,14 +92,11 @@ public class CommandExecutor {
             response = switch (command.commandName()) {
                 case LOGIN -> login(command.arguments());
                 case SIGN_UP -> signUp(command.arguments());
-                case ADD_FRIEND -> addFriend(command.arguments());
-                case CREATE_GROUP -> createGroup(command.arguments());
-                case SPLIT -> split(command.arguments());
-                case SPLIT_GROUP -> splitInGroup(command.arguments());
-                case GET_STATUS -> getStatus(command.arguments());
-                case RECEIVE -> receive(command.arguments());
-                case RECEIVE_GROUP -> receiveGroup(command.arguments());
-                case PAYMENTS -> getPayments(command.arguments());
+                //a subscription belongs to a connection, so the selector-based server handles it before this
+                case SUBSCRIBE, UNSUBSCRIBE -> new Response(false, NO_PUSH_MESSAGE);
+                case COMPRESS -> new Response(false, CONNECTION_ONLY_MESSAGE); //the servers handle it before this
+                case BATCH -> batches.execute(command.commands(), authenticate(command, connectionSession));
+                default -> executeAs(authenticate(command, connectionSession), command);
             };
         } catch (AuthenticationException | IllegalArgumentException e) {
             WarningLogger.log(e.getMessage() + "; stack trace: " + Arrays.toString(e.getStackTrace()));
@@ -76,27 +119,100 @@ public class CommandExecutor {
         return response;
     }
 
+    /**
+     * @return the session of the connection after the command: a login starts one and a log-out ends it
+     */
+    public static Session sessionAfter(Command command, Response response, Session connectionSession) {
+        if (response instanceof LoginResponse loginResponse) {
+            return loginResponse.getSession();
+        }
+
+        boolean loggedOut = command != null && command.commandName() == CommandName.LOG_OUT && response.isOk();
+        return loggedOut ? null : connectionSession;
+    }
+
+    private Session authenticate(Command command, Session connectionSession) {
+        boolean sameSession = connectionSession != null &&
+            (command.token() == null || command.token().equals(connectionSession.getToken()));
+
+        Session session = sameSession ? connectionSession : sessions.find(command.token());
+        if (session == null || (sameSession && !sessions.use(session))) {
+            throw new AuthenticationException(NO_SESSION_MESSAGE);
+        }
+
+        return session;
+    }
+
+    private Response executeAs(Session session, Command command) {
+        String[] args = new String[command.arguments().length + 1];
+        args[0] = session.getUsername();
+        System.arraycopy(command.arguments(), 0, args, 1, command.arguments().length);
+
+        return switch (command.commandName()) {
+            case ADD_FRIEND -> addFriend(args);
+            case CREATE_GROUP -> createGroup(args);
+            case CREATE_LEDGER_GROUP -> createLedgerGroup(args);
+            case SPLIT -> split(args);
+            case SPLIT_GROUP -> splitInGroup(args);
+            case GET_STATUS -> getStatus(args);
+            case SETTLE_UP -> settleUp(args);
+            case RECEIVE -> receive(args);
+            case RECEIVE_GROUP -> receiveGroup(args);
+            case PAYMENTS -> getPayments(args);
+            case NOTIFICATIONS -> getNotifications(args);
+            case LOG_OUT -> logOut(session);
+            default -> throw new IllegalArgumentException("The command is invalid!");
+        };
+    }
+
     private Response login(String... args) {
         String username = args[0];
         String password = args[1];
 
-        List<Notification> friendsNotifications;
-        List<GroupNotification> groupNotifications;
-        try {
-            //copy because the notifications will be cleared
-            friendsNotifications = List.copyOf(splitWiseAPI.getFriendsNotifications(username));
-            groupNotifications = List.copyOf(splitWiseAPI.getGroupNotifications(username));
-        } catch (UserNotFoundException e) {
-            return new Response(false, e.getMessage());
-        }
-
         if (!splitWiseAPI.login(username, password)) {
             return new Response(false, "Invalid username or password");
         }
-        NotificationResponse response =
-            new NotificationResponse(true, "Login successful", friendsNotifications, groupNotifications);
 
-        return response;
+        //only the first page, so the response stays small however long the user was away
+        NotificationPage page = splitWiseAPI.readNotifications(username, NOTIFICATIONS_PAGE_SIZE);
+        return new LoginResponse("Login successful", friendsNotifications(page), groupNotifications(page),
+            page.remaining(), sessions.create(username));
+    }
+
+    private Response logOut(Session session) {
+        sessions.end(session);
+
+        return new Response(true, "Logged out");
+    }
+
+    private Response getNotifications(String... args) {
+        String username = args[0];
+
+        NotificationPage page = splitWiseAPI.readNotifications(username, NOTIFICATIONS_PAGE_SIZE);
+        return new NotificationResponse(true, "Notifications:", friendsNotifications(page), groupNotifications(page),
+            page.remaining());
+    }
+
+    private static List<Notification> friendsNotifications(NotificationPage page) {
+        List<Notification> result = new ArrayList<>();
+        for (Notification notification : page.notifications()) {
+            if (!(notification instanceof GroupNotification)) {
+                result.add(notification);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<GroupNotification> groupNotifications(NotificationPage page) {
+        List<GroupNotification> result = new ArrayList<>();
+        for (Notification notification : page.notifications()) {
+            if (notification instanceof GroupNotification groupNotification) {
+                result.add(groupNotification);
+            }
+        }
+
+        return result;
     }
 
     private Response signUp(String... args) {
@@ -111,7 +227,7 @@ public class CommandExecutor {
             return new Response(false, e.getMessage());
         }
 
-        return new Response(true, "Successfully signed up");
+        return new LoginResponse("Successfully signed up", List.of(), List.of(), 0, sessions.create(username));
     }
 
     private Response addFriend(String... args) {
@@ -143,12 +259,28 @@ public class CommandExecutor {
         return new Response(true, "Group created successfully");
     }
 
+    private Response createLedgerGroup(String... args) {
+        String creator = args[0];
+        String groupName = args[1];
+
+        String[] participants = new String[args.length - 2];
+        System.arraycopy(args, 2, participants, 0, args.length - 2);
+
+        try {
+            splitWiseAPI.createLedgerGroup(creator, groupName, participants);
+        } catch (UserNotFoundException | GroupException e) {
+            return new Response(false, e.getMessage());
+        }
+
+        return new Response(true, "Group created successfully");
+    }
+
     private Response split(String... args) {
         String payer = args[0];
 
-        double amount = getDouble(args[1]);
-        if (amount == DOUBLE_INVALID) {
-            return new Response(false, "The amount of money to split is not a floating number");
+        long amount = getCents(args[1]);
+        if (amount == CENTS_INVALID) {
+            return new Response(false, "The amount of money to split is not a valid amount of BGN");
         }
 
         String friend = args[SECOND_ARGUMENT];
@@ -160,15 +292,15 @@ public class CommandExecutor {
             return new Response(false, e.getMessage());
         }
 
-        return new Response(true, "Splitted " + amount + " BGN between you and " + friend);
+        return new Response(true, "Splitted " + Money.format(amount) + " BGN between you and " + friend);
     }
 
     private Response splitInGroup(String... args) {
         String payer = args[0];
 
-        double amount = getDouble(args[1]);
-        if (amount == DOUBLE_INVALID) {
-            return new Response(false, "The amount of money to split is not a floating number");
+        long amount = getCents(args[1]);
+        if (amount == CENTS_INVALID) {
+            return new Response(false, "The amount of money to split is not a valid amount of BGN");
         }
 
         String groupName = args[SECOND_ARGUMENT];
@@ -180,7 +312,8 @@ public class CommandExecutor {
             return new Response(false, e.getMessage());
         }
 
-        return new Response(true, "Splitted " + amount + " BGN between you and the members of " + groupName);
+        return new Response(true,
+            "Splitted " + Money.format(amount) + " BGN between you and the members of " + groupName);
     }
 
     private Response getStatus(String... args) {
@@ -196,12 +329,42 @@ public class CommandExecutor {
         return new Response(true, status);
     }
 
+    private Response settleUp(String... args) {
+        String username = args[0];
+
+        List<Transfer> transfers;
+        if (args.length > 1) {
+            try {
+                transfers = splitWiseAPI.settleUpInGroup(username, args[1]);
+            } catch (GroupException e) {
+                return new Response(false, e.getMessage());
+            }
+        } else {
+            transfers = splitWiseAPI.settleUp(username);
+        }
+
+        if (transfers.isEmpty()) {
+            return new Response(true, "Everything is settled-up.");
+        }
+
+        StringBuilder sb = new StringBuilder("To settle up:");
+        for (Transfer transfer : transfers) {
+            String from = transfer.from().equals(username) ? "You pay " : transfer.from() + " pays ";
+            String to = transfer.to().equals(username) ? "you " : transfer.to() + " ";
+
+            sb.append(System.lineSeparator());
+            sb.append(from).append(to).append(Money.format(transfer.amount())).append(" BGN");
+        }
+
+        return new Response(true, sb.toString());
+    }
+
     private Response receive(String... args) {
         String receiver = args[0];
 
-        double amount = getDouble(args[1]);
-        if (amount == DOUBLE_INVALID) {
-            return new Response(false, "The amount of money to receive is not a floating number");
+        long amount = getCents(args[1]);
+        if (amount == CENTS_INVALID) {
+            return new Response(false, "The amount of money to receive is not a valid amount of BGN");
         }
 
         String sender = args[SECOND_ARGUMENT];
@@ -212,15 +375,15 @@ public class CommandExecutor {
             return new Response(false, e.getMessage());
         }
 
-        return new Response(true, "Marked " + amount + " BGN as received from " + sender);
+        return new Response(true, "Marked " + Money.format(amount) + " BGN as received from " + sender);
     }
 
     private Response receiveGroup(String... args) {
         String receiver = args[0];
 
-        double amount = getDouble(args[1]);
-        if (amount == DOUBLE_INVALID) {
-            return new Response(false, "The amount of money to receive is not a floating number");
+        long amount = getCents(args[1]);
+        if (amount == CENTS_INVALID) {
+            return new Response(false, "The amount of money to receive is not a valid amount of BGN");
         }
 
         String groupName = args[SECOND_ARGUMENT];
@@ -232,12 +395,53 @@ public class CommandExecutor {
             return new Response(false, e.getMessage());
         }
 
-        return new Response(true, groupName + ": Marked " + amount + " BGN as received from " + sender);
+        return new Response(true,
+            groupName + ": Marked " + Money.format(amount) + " BGN as received from " + sender);
     }
 
+    /**
+     * The options after the username are limit=N, before=CURSOR, from=yyyy-MM-dd and to=yyyy-MM-dd (inclusive)
+     */
     private Response getPayments(String... args) {
         String user = args[0];
 
-        return new PaymentsResponse(true, "Payments from " + user + ":", splitWiseAPI.getPaymentsOf(user));
+        PaymentQuery query;
+        try {
+            query = getPaymentQuery(Arrays.copyOfRange(args, 1, args.length));
+        } catch (DateTimeParseException e) {
+            return new Response(false, "The dates must be in the format yyyy-MM-dd");
+        }
+
+        PaymentPage page = splitWiseAPI.getPaymentsOf(user, query);
+
+        return new PaymentsResponse(true, "Payments from " + user + ":", page.payments(), page.nextCursor());
+    }
+
+    private static PaymentQuery getPaymentQuery(String... options) {
+        long before = PaymentQuery.NEWEST;
+        int limit = DEFAULT_PAYMENTS_PAGE_SIZE;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+
+        for (String option : options) {
+            String[] keyValue = option.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("The option " + option + " must be in the format name=value");
+            }
+
+            switch (keyValue[0]) {
+                case "limit" -> limit = Integer.parseInt(keyValue[1]);
+                case "before" -> before = Long.parseLong(keyValue[1]);
+                case "from" -> from = startOfDay(LocalDate.parse(keyValue[1]));
+                case "to" -> to = startOfDay(LocalDate.parse(keyValue[1]).plusDays(1));
+                default -> throw new IllegalArgumentException("Unknown option " + keyValue[0]);
+            }
+        }
+
+        return new PaymentQuery(before, limit, from, to);
+    }
+
+    private static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
@@ -5,10 +5,18 @@ public enum CommandName {
     SIGN_UP,
     ADD_FRIEND,
     CREATE_GROUP,
+    CREATE_LEDGER_GROUP,
     SPLIT,
     SPLIT_GROUP,
     GET_STATUS,
+    SETTLE_UP,
     RECEIVE,
     RECEIVE_GROUP,
-    PAYMENTS;
+    PAYMENTS,
+    NOTIFICATIONS,
+    SUBSCRIBE,
+    UNSUBSCRIBE,
+    LOG_OUT,
+    BATCH,
+    COMPRESS;
 }
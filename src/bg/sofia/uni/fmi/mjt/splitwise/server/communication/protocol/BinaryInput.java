@@ -0,0 +1,102 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads what BinaryOutput wrote, from the position of the buffer up to its limit, so a frame is decoded where it was
+ * read. A payload which is shorter than its content or has invalid lengths is refused with IllegalArgumentException,
+ * so a malformed frame cannot make the server allocate much.
+ */
+public class BinaryInput {
+    private static final int MAX_VARINT_SHIFT = 63;
+
+    private final ByteBuffer buffer;
+
+    public BinaryInput(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public BinaryInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public byte readByte() {
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The payload ended too early");
+        }
+
+        return buffer.get();
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        long value = readUnsigned();
+        if (value < 0 || value > Integer.MAX_VALUE) { //a ten byte varint sets the sign bit
+            throw new IllegalArgumentException("The number is out of range: " + value);
+        }
+
+        return (int) value;
+    }
+
+    public long readVarLong() {
+        long value = readUnsigned();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() {
+        int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("The payload ended too early");
+        }
+
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        byte[] utf8 = new byte[length]; //a String cannot be made from a direct buffer without a copy
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param count the number of elements which is about to be read; at least one byte each
+     */
+    public int checkCount(int count) {
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+
+        return count;
+    }
+
+    public void checkFinished() {
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected bytes at the end of the payload");
+        }
+    }
+
+    private long readUnsigned() {
+        long value = 0;
+        for (int shift = 0; shift <= MAX_VARINT_SHIFT; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("The varint is too long");
+    }
+}
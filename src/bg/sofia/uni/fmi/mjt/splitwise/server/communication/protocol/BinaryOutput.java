@@ -0,0 +1,65 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes into the buffers of a ChunkedOutput. The numbers are written as varints (zigzag for the signed ones), so
+ * small values take one byte, and a string as its UTF-8 length plus one (zero for null) followed by its bytes.
+ */
+public class BinaryOutput {
+    private static final int MAX_VARINT_BYTES = Long.BYTES + 2;
+
+    private final ChunkedOutput out;
+
+    public BinaryOutput() {
+        this(new ChunkedOutput());
+    }
+
+    public BinaryOutput(ChunkedOutput out) {
+        this.out = out;
+    }
+
+    public void writeByte(int value) {
+        out.reserve(1).put((byte) value);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * @param value must not be negative
+     */
+    public void writeVarInt(int value) {
+        writeUnsigned(value);
+    }
+
+    public void writeVarLong(long value) {
+        writeUnsigned((value << 1) ^ (value >> (Long.SIZE - 1))); //zigzag, so -1 takes one byte too
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length + 1);
+        out.put(utf8);
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeUnsigned(long value) {
+        ByteBuffer buffer = out.reserve(MAX_VARINT_BYTES);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,135 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The compact alternative to JSON. Every payload starts with the version of the protocol.
+ * A command is the version, the ordinal of its CommandName, its id, the token and the arguments;
+ * a BATCH is followed by the count of its commands and each of them without a version. A batch inside a batch is
+ * refused, so a payload cannot nest deeper than that.
+ * A response is the version, its type, the id of its command and then its fields, those of the superclass first.
+ */
+public class BinaryProtocol {
+    public static final byte VERSION = 2; //never '{', the first byte of a JSON payload; 2 added the ids and BATCH
+
+    public static final byte RESPONSE = 0;
+    public static final byte NOTIFICATION_RESPONSE = 1;
+    public static final byte LOGIN_RESPONSE = 2;
+    public static final byte PUSHED_NOTIFICATION_RESPONSE = 3;
+    public static final byte PAYMENTS_RESPONSE = 4;
+    public static final byte BATCH_RESPONSE = 5;
+
+    private static final CommandName[] COMMAND_NAMES = CommandName.values();
+
+    public static byte[] encodeCommand(Command command) {
+        BinaryOutput out = new BinaryOutput();
+        out.writeByte(VERSION);
+        writeCommand(out, command);
+
+        if (command.commandName() == CommandName.BATCH) {
+            out.writeVarInt(command.commands().length);
+            for (Command inner : command.commands()) {
+                writeCommand(out, inner);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the payload is not a command of this version
+     */
+    public static Command decodeCommand(byte[] payload) {
+        return decodeCommand(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Reads the command from the position of the payload up to its limit
+     *
+     * @throws IllegalArgumentException if the payload is not a command of this version
+     */
+    public static Command decodeCommand(ByteBuffer payload) {
+        BinaryInput in = new BinaryInput(payload);
+        checkVersion(in);
+
+        Command command = readCommand(in);
+        if (command.commandName() == CommandName.BATCH) {
+            Command[] commands = new Command[in.checkCount(in.readVarInt())];
+            for (int i = 0; i < commands.length; i++) {
+                commands[i] = readCommand(in);
+                if (commands[i].commandName() == CommandName.BATCH) {
+                    throw new IllegalArgumentException("A batch cannot contain a batch");
+                }
+            }
+
+            command = new Command(command.commandName(), command.arguments(), command.token(), command.id(),
+                commands);
+        }
+        in.checkFinished();
+
+        return command;
+    }
+
+    /**
+     * @param id of the command which the response answers; 0 for a push
+     */
+    public static byte[] encodeResponse(Response response, long id) {
+        BinaryOutput out = new BinaryOutput();
+        writeResponse(out, response, id);
+
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeResponse(Response response) {
+        return encodeResponse(response, 0);
+    }
+
+    /**
+     * @param id of the command which the response answers; 0 for a push
+     */
+    public static void writeResponse(BinaryOutput out, Response response, long id) {
+        out.writeByte(VERSION);
+        out.writeByte(response.type());
+        out.writeVarLong(id);
+        response.writeFields(out);
+    }
+
+    private static void writeCommand(BinaryOutput out, Command command) {
+        out.writeVarInt(command.commandName().ordinal());
+        out.writeVarLong(command.id());
+        out.writeString(command.token());
+
+        String[] arguments = command.arguments();
+        out.writeVarInt(arguments.length);
+        for (String argument : arguments) {
+            out.writeString(argument);
+        }
+    }
+
+    private static Command readCommand(BinaryInput in) {
+        int ordinal = in.readVarInt();
+        if (ordinal < 0 || ordinal >= COMMAND_NAMES.length) {
+            throw new IllegalArgumentException("Unknown command: " + ordinal);
+        }
+
+        long id = in.readVarLong();
+        String token = in.readString();
+        String[] arguments = new String[in.checkCount(in.readVarInt())];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = in.readString();
+        }
+
+        return new Command(COMMAND_NAMES[ordinal], arguments, token, id, null);
+    }
+
+    private static void checkVersion(BinaryInput in) {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version: " + version);
+        }
+    }
+}
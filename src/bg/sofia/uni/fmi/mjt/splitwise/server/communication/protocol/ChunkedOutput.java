@@ -0,0 +1,103 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Bytes written into a chain of buffers taken from an allocator. A full buffer is never copied into a bigger one;
+ * the next buffer is taken instead, twice as big as the last one up to MAX_CHUNK_SIZE, so a large payload is a few
+ * buffers which can be written to a socket with one gathering write.
+ */
+public class ChunkedOutput {
+    public static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final IntFunction<ByteBuffer> allocator;
+    private final List<ByteBuffer> chunks;
+    private ByteBuffer current;
+
+    /**
+     * Writes into heap buffers, for a payload which is wanted as a byte array
+     */
+    public ChunkedOutput() {
+        this(ByteBuffer::allocate);
+    }
+
+    /**
+     * @param allocator gives a cleared buffer with at least the requested capacity
+     */
+    public ChunkedOutput(IntFunction<ByteBuffer> allocator) {
+        this.allocator = allocator;
+
+        chunks = new ArrayList<>();
+        current = allocator.apply(INITIAL_CAPACITY);
+        chunks.add(current);
+    }
+
+    /**
+     * @return the buffer to write to next, with at least that many bytes remaining
+     */
+    public ByteBuffer reserve(int bytes) {
+        if (current.remaining() < bytes) {
+            current = allocator.apply(Math.max(bytes, Math.min(current.capacity() * 2, MAX_CHUNK_SIZE)));
+            chunks.add(current);
+        }
+
+        return current;
+    }
+
+    public void put(byte[] bytes) {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ByteBuffer buffer = reserve(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * @return the number of bytes written so far
+     */
+    public int size() {
+        int size = 0;
+        for (ByteBuffer chunk : chunks) {
+            size += chunk.position();
+        }
+
+        return size;
+    }
+
+    /**
+     * Switches the buffers to reading mode; nothing can be written after it
+     *
+     * @return the buffers in order, the last one possibly empty
+     */
+    public ByteBuffer[] toBuffers() {
+        ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[0]);
+        for (ByteBuffer buffer : buffers) {
+            buffer.flip();
+        }
+
+        return buffers;
+    }
+
+    /**
+     * Copies the bytes out; nothing can be written after it
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size()];
+
+        int offset = 0;
+        for (ByteBuffer buffer : toBuffers()) {
+            int length = buffer.remaining();
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+
+        return bytes;
+    }
+}
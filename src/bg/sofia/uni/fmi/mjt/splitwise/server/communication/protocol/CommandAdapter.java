@@ -0,0 +1,144 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a command the way reflective Gson did: the fields in any order, the unknown ones skipped, the missing ones
+ * null and an unknown command name null too. The commands of a batch cannot be batches themselves.
+ */
+public class CommandAdapter extends TypeAdapter<Command> {
+    private static final String COMMAND_NAME = "commandName";
+    private static final String ARGUMENTS = "arguments";
+    private static final String TOKEN = "token";
+    private static final String ID = "id";
+    private static final String COMMANDS = "commands";
+
+    @Override
+    public void write(JsonWriter out, Command command) throws IOException {
+        if (command == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name(COMMAND_NAME).value(command.commandName() == null ? null : command.commandName().name());
+        out.name(ARGUMENTS);
+        if (command.arguments() == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (String argument : command.arguments()) {
+                out.value(argument);
+            }
+            out.endArray();
+        }
+        out.name(TOKEN).value(command.token());
+        if (command.id() != 0) {
+            out.name(ID).value(command.id());
+        }
+        if (command.commands() != null) {
+            out.name(COMMANDS);
+            out.beginArray();
+            for (Command inner : command.commands()) {
+                write(out, inner);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Command read(JsonReader in) throws IOException {
+        return read(in, false);
+    }
+
+    private Command read(JsonReader in, boolean inBatch) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        CommandName commandName = null;
+        String[] arguments = null;
+        String token = null;
+        long id = 0;
+        Command[] commands = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case COMMAND_NAME -> commandName = commandName(in.nextString());
+                case ARGUMENTS -> arguments = readStrings(in);
+                case TOKEN -> token = in.nextString();
+                case ID -> id = in.nextLong();
+                case COMMANDS -> {
+                    if (inBatch) {
+                        throw new JsonParseException("A batch cannot contain a batch");
+                    }
+                    commands = readCommands(in);
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Command(commandName, arguments, token, id, commands);
+    }
+
+    private Command[] readCommands(JsonReader in) throws IOException {
+        List<Command> commands = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            Command command = read(in, true);
+            if (command == null) {
+                throw new JsonParseException("A command of a batch is null");
+            }
+            commands.add(command);
+        }
+        in.endArray();
+
+        return commands.toArray(new Command[0]);
+    }
+
+    private static CommandName commandName(String name) {
+        try {
+            return CommandName.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null; //the executor answers that the command is unknown
+        }
+    }
+
+    private static String[] readStrings(JsonReader in) throws IOException {
+        List<String> strings = new ArrayList<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                strings.add(null);
+            } else {
+                strings.add(in.nextString());
+            }
+        }
+        in.endArray();
+
+        return strings.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.Deflater;
+
+/**
+ * The response compression of one connection, which its client asks for with a COMPRESS command.
+ * The payloads of the frames of at least THRESHOLD bytes are deflated into one stream, which is flushed after every
+ * frame, so the window of the stream is a dictionary of the recent responses of the connection: the usernames,
+ * reasons and field names which a response repeats from the ones before cost a few bytes each. The smaller frames
+ * and the pushes are sent as they are and do not take part in the stream.
+ * A compressed frame has the COMPRESSED bit set in its length header.
+ * Not thread-safe; the frames must be compressed in the order they are written.
+ */
+public class FrameCompressor {
+    public static final String DEFLATE = "deflate";
+    public static final int COMPRESSED = 1 << 30; //above the biggest frame length
+    public static final int THRESHOLD = 512;
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    private static final String UNSUPPORTED_MESSAGE = "The server supports only the " + DEFLATE + " compression";
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int MIN_OUTPUT = 64;
+    private static final byte[] NO_INPUT = new byte[0];
+
+    private final Deflater deflater;
+    private final int threshold;
+
+    public FrameCompressor() {
+        this(DEFAULT_LEVEL, THRESHOLD);
+    }
+
+    /**
+     * @param level     of the Deflater, from 1 (the fastest) to 9 (the smallest)
+     * @param threshold the smallest payload which is compressed
+     */
+    public FrameCompressor(int level, int threshold) {
+        this.threshold = threshold;
+
+        deflater = new Deflater(level, true); //raw, the stream is framed by the frames
+    }
+
+    /**
+     * @return a compressor if the COMPRESS command asks for a supported algorithm, otherwise null
+     */
+    public static FrameCompressor negotiate(Command command) {
+        return Arrays.asList(command.arguments()).contains(DEFLATE) ? new FrameCompressor() : null;
+    }
+
+    /**
+     * @param compressed whether the connection compresses its responses after the negotiation
+     * @return the response to the COMPRESS command
+     */
+    public static Response negotiated(boolean compressed) {
+        return compressed ? new Response(true, DEFLATE) : new Response(false, UNSUPPORTED_MESSAGE);
+    }
+
+    /**
+     * @param frame   a whole frame in reading mode, the length header included
+     * @param release takes the buffers of the frame if it is compressed
+     * @return the frame itself if it is too small, otherwise the compressed frame in buffers of the allocator
+     */
+    public ByteBuffer[] compress(ByteBuffer[] frame, IntFunction<ByteBuffer> allocator,
+                                 Consumer<ByteBuffer> release) {
+        if (frame[0].getInt(0) < threshold) {
+            return frame;
+        }
+
+        ChunkedOutput out = new ChunkedOutput(allocator);
+        out.reserve(HEADER_SIZE).putInt(0); //filled in when the length is known
+
+        frame[0].position(HEADER_SIZE);
+        for (ByteBuffer buffer : frame) {
+            deflater.setInput(buffer);
+            while (!deflater.needsInput()) {
+                deflater.deflate(out.reserve(MIN_OUTPUT), Deflater.NO_FLUSH);
+            }
+        }
+
+        ByteBuffer output;
+        do { //a full output buffer may mean there is more to flush
+            output = out.reserve(MIN_OUTPUT);
+            deflater.deflate(output, Deflater.SYNC_FLUSH);
+        } while (!output.hasRemaining());
+        deflater.setInput(NO_INPUT); //so the deflater does not keep the buffers, which go back to their pool
+
+        for (ByteBuffer buffer : frame) {
+            release.accept(buffer);
+        }
+
+        int length = out.size() - HEADER_SIZE;
+        ByteBuffer[] compressed = out.toBuffers();
+        compressed[0].putInt(0, length | COMPRESSED);
+
+        return compressed;
+    }
+
+    /**
+     * Frees the memory of the deflater; the compressor cannot be used after it
+     */
+    public void close() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The JSON of the old clients, written and read by hand-written streaming adapters instead of reflection.
+ * The adapters produce the same JSON as reflective Gson, the fields in the same order.
+ */
+public class JsonProtocol {
+    public static Gson createGson() {
+        return new GsonBuilder()
+            .registerTypeAdapter(Command.class, new CommandAdapter())
+            .registerTypeHierarchyAdapter(Response.class, ResponseAdapter.INSTANCE)
+            .registerTypeHierarchyAdapter(Notification.class, NotificationAdapter.INSTANCE)
+            .registerTypeAdapter(Payment.class, PaymentAdapter.INSTANCE)
+            .create();
+    }
+}
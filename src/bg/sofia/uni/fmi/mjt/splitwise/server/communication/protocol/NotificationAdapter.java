@@ -0,0 +1,63 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a notification as reflective Gson did, the group of a group notification first; reads either kind
+ */
+public class NotificationAdapter extends TypeAdapter<Notification> {
+    public static final NotificationAdapter INSTANCE = new NotificationAdapter();
+
+    private static final String GROUP = "group";
+    private static final String TEXT = "text";
+
+    @Override
+    public void write(JsonWriter out, Notification notification) throws IOException {
+        if (notification == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (notification instanceof GroupNotification groupNotification) {
+            out.name(GROUP).value(groupNotification.getGroup());
+        }
+        out.name(TEXT).value(notification.getText());
+        out.endObject();
+    }
+
+    @Override
+    public Notification read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String group = null;
+        String text = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (name.equals(GROUP)) {
+                group = in.nextString();
+            } else if (name.equals(TEXT)) {
+                text = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return group == null ? Notification.ofText(text) : GroupNotification.ofText(group, text);
+    }
+}
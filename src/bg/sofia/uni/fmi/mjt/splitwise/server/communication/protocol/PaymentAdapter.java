@@ -0,0 +1,96 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Writes a payment as reflective Gson did, its components in their order
+ */
+public class PaymentAdapter extends TypeAdapter<Payment> {
+    public static final PaymentAdapter INSTANCE = new PaymentAdapter();
+
+    private static final String ISSUER = "issuer";
+    private static final String AMOUNT = "amount";
+    private static final String REASON = "reason";
+    private static final String SPLIT_WITH = "splitWith";
+    private static final String TIME = "time";
+
+    @Override
+    public void write(JsonWriter out, Payment payment) throws IOException {
+        if (payment == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name(ISSUER).value(payment.issuer());
+        out.name(AMOUNT).value(payment.amount());
+        out.name(REASON).value(payment.reason());
+        out.name(SPLIT_WITH);
+        if (payment.splitWith() == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (String user : payment.splitWith()) {
+                out.value(user);
+            }
+            out.endArray();
+        }
+        out.name(TIME).value(payment.time());
+        out.endObject();
+    }
+
+    @Override
+    public Payment read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String issuer = null;
+        long amount = 0;
+        String reason = null;
+        Set<String> splitWith = null;
+        long time = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case ISSUER -> issuer = in.nextString();
+                case AMOUNT -> amount = in.nextLong();
+                case REASON -> reason = in.nextString();
+                case SPLIT_WITH -> splitWith = readUsers(in);
+                case TIME -> time = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Payment(issuer, amount, reason, splitWith, time);
+    }
+
+    private static Set<String> readUsers(JsonReader in) throws IOException {
+        Set<String> users = new LinkedHashSet<>();
+
+        in.beginArray();
+        while (in.hasNext()) {
+            users.add(in.nextString());
+        }
+        in.endArray();
+
+        return users;
+    }
+}
@@ -0,0 +1,33 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes every kind of response with its own fields, the same JSON as reflective Gson wrote.
+ * The server never reads a response.
+ */
+public class ResponseAdapter extends TypeAdapter<Response> {
+    public static final ResponseAdapter INSTANCE = new ResponseAdapter();
+
+    @Override
+    public void write(JsonWriter out, Response response) throws IOException {
+        if (response == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        response.writeJsonFields(out);
+        out.endObject();
+    }
+
+    @Override
+    public Response read(JsonReader in) {
+        throw new UnsupportedOperationException("The server does not read responses");
+    }
+}
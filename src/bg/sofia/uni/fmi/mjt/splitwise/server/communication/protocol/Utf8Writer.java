@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the written characters as UTF-8 straight into the buffers of a ChunkedOutput, so a JSON payload is built
+ * without a String in between. An unpaired surrogate is written as '?', like String.getBytes() does.
+ */
+public class Utf8Writer extends Writer {
+    private static final int MAX_BYTES_PER_CHAR = 4;
+    private static final int MAX_BYTES_PER_BMP_CHAR = 3;
+
+    private final ChunkedOutput out;
+    private char highSurrogate; //0 if the last character was not the first half of a pair
+
+    public Utf8Writer() {
+        this(new ChunkedOutput());
+    }
+
+    public Utf8Writer(ChunkedOutput out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) {
+        encode(out.reserve(MAX_BYTES_PER_CHAR), (char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            //3 bytes per char at most, plus the '?' of a surrogate left unpaired by the previous write
+            ByteBuffer buffer = out.reserve(MAX_BYTES_PER_CHAR);
+            int last = Math.min(end, i + (buffer.remaining() - 1) / MAX_BYTES_PER_BMP_CHAR);
+            for (; i < last; i++) {
+                encode(buffer, chars[i]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            ByteBuffer buffer = out.reserve(MAX_BYTES_PER_CHAR);
+            int last = Math.min(end, i + (buffer.remaining() - 1) / MAX_BYTES_PER_BMP_CHAR);
+            for (; i < last; i++) {
+                encode(buffer, string.charAt(i));
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Writes the '?' of a surrogate which has been left unpaired; nothing can be written after it
+     */
+    public void finish() {
+        if (highSurrogate != 0) {
+            out.reserve(1).put((byte) '?');
+            highSurrogate = 0;
+        }
+    }
+
+    public byte[] toByteArray() {
+        finish();
+
+        return out.toByteArray();
+    }
+
+    private void encode(ByteBuffer buffer, char c) {
+        if (highSurrogate != 0) {
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(highSurrogate, c);
+                highSurrogate = 0;
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+                return;
+            }
+
+            buffer.put((byte) '?');
+            highSurrogate = 0;
+        }
+
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xC0 | (c >> 6)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xE0 | (c >> 12)));
+            buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+}
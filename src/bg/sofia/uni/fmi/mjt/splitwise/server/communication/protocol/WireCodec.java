@@ -0,0 +1,112 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntFunction;
+
+/**
+ * Thread-safe. Decodes the commands and encodes the responses in either wire format.
+ * JSON is read straight from the frame bytes and written straight into bytes, with no String in between;
+ * give it the Gson of JsonProtocol so that no reflection is involved either.
+ * A command is decoded in the buffer it was read into and a response can be encoded into pooled buffers as a whole
+ * frame, so neither is copied on its way between the socket and the objects.
+ */
+public class WireCodec {
+    private static final String ID = "id";
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private final Gson gson;
+
+    public WireCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * @return the command or null if the payload is not a valid command; the executor answers with an error for it
+     */
+    public Command decodeCommand(byte[] payload) {
+        return decodeCommand(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Reads the command from the position of the payload up to its limit
+     *
+     * @return the command or null if the payload is not a valid command; the executor answers with an error for it
+     */
+    public Command decodeCommand(ByteBuffer payload) {
+        try {
+            if (WireFormat.of(payload) == WireFormat.BINARY) {
+                return BinaryProtocol.decodeCommand(payload);
+            }
+
+            return gson.fromJson(new Utf8Reader(payload), Command.class);
+        } catch (JsonParseException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public byte[] encode(Response response, WireFormat format) {
+        return encode(response, format, 0);
+    }
+
+    /**
+     * @param id of the command which the response answers; 0 for a push or a command without an id
+     */
+    public byte[] encode(Response response, WireFormat format, long id) {
+        ChunkedOutput out = new ChunkedOutput();
+        write(out, response, format, id);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the response as a whole frame, the length header included, into buffers of the allocator
+     *
+     * @param id of the command which the response answers; 0 for a push or a command without an id
+     * @return the buffers of the frame in reading mode, to be written with one gathering write
+     */
+    public ByteBuffer[] encodeFrame(Response response, WireFormat format, long id,
+                                    IntFunction<ByteBuffer> allocator) {
+        ChunkedOutput out = new ChunkedOutput(allocator);
+        out.reserve(HEADER_SIZE).putInt(0); //filled in when the length is known
+        write(out, response, format, id);
+
+        int length = out.size() - HEADER_SIZE;
+        ByteBuffer[] frame = out.toBuffers();
+        frame[0].putInt(0, length);
+
+        return frame;
+    }
+
+    private void write(ChunkedOutput out, Response response, WireFormat format, long id) {
+        switch (format) {
+            case BINARY -> BinaryProtocol.writeResponse(new BinaryOutput(out), response, id);
+            case JSON -> writeJson(out, response, id);
+        }
+    }
+
+    private void writeJson(ChunkedOutput out, Response response, long id) {
+        Utf8Writer writer = new Utf8Writer(out);
+        try {
+            JsonWriter json = gson.newJsonWriter(writer);
+            json.beginObject();
+            if (id != 0) { //so the JSON of the old clients does not change
+                json.name(ID).value(id);
+            }
+            response.writeJsonFields(json);
+            json.endObject();
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode the response", e); //a Utf8Writer does not throw
+        }
+
+        writer.finish();
+    }
+}
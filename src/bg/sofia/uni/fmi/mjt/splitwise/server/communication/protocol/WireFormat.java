@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * How the payload of a frame is encoded. A connection uses the format of its first command.
+ */
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    /**
+     * @return BINARY if the payload starts with the version of the binary protocol; a JSON payload starts with '{'
+     */
+    public static WireFormat of(byte[] payload) {
+        return of(ByteBuffer.wrap(payload));
+    }
+
+    public static WireFormat of(ByteBuffer payload) {
+        return payload.hasRemaining() && payload.get(payload.position()) == BinaryProtocol.VERSION ? BINARY : JSON;
+    }
+}
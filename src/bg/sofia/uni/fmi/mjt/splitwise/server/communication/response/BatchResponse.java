@@ -0,0 +1,53 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryOutput;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.ResponseAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The responses to the commands of a batch, in the order of the commands
+ */
+public class BatchResponse extends Response {
+    private final List<Response> responses;
+
+    public BatchResponse(String response, List<Response> responses) {
+        super(true, response);
+        this.responses = responses;
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    @Override
+    public byte type() {
+        return BinaryProtocol.BATCH_RESPONSE;
+    }
+
+    @Override
+    public void writeFields(BinaryOutput out) {
+        super.writeFields(out);
+
+        out.writeVarInt(responses.size());
+        for (Response response : responses) {
+            out.writeByte(response.type());
+            response.writeFields(out);
+        }
+    }
+
+    @Override
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("responses");
+        out.beginArray();
+        for (Response response : responses) {
+            ResponseAdapter.INSTANCE.write(out, response);
+        }
+        out.endArray();
+
+        super.writeJsonFields(out);
+    }
+}
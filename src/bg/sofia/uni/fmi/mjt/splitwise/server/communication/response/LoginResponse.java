@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryOutput;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The first page of notifications and the token of the new session
+ */
+public class LoginResponse extends NotificationResponse {
+    private final String token;
+    private final transient Session session; //for the server, which binds it to the connection
+
+    public LoginResponse(String response, List<Notification> friendsNotifications,
+                         List<GroupNotification> groupNotifications, int remaining, Session session) {
+        super(true, response, friendsNotifications, groupNotifications, remaining);
+        this.token = session.getToken();
+        this.session = session;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    @Override
+    public byte type() {
+        return BinaryProtocol.LOGIN_RESPONSE;
+    }
+
+    @Override
+    public void writeFields(BinaryOutput out) {
+        super.writeFields(out);
+        out.writeString(token);
+    }
+
+    @Override
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("token").value(token);
+        super.writeJsonFields(out);
+    }
+}
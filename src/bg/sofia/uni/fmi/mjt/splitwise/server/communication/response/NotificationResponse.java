@@ -1,18 +1,73 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryOutput;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.NotificationAdapter;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.List;
 
 public class NotificationResponse extends Response {
     private List<Notification> friendsNotifications;
     private List<GroupNotification> groupNotifications;
+    private int remaining;
 
     public NotificationResponse(boolean ok, String response, List<Notification> friendsNotifications,
-                                List<GroupNotification> groupNotifications) {
+                                List<GroupNotification> groupNotifications, int remaining) {
         super(ok, response);
         this.friendsNotifications = friendsNotifications;
         this.groupNotifications = groupNotifications;
+        this.remaining = remaining;
+    }
+
+    @Override
+    public byte type() {
+        return BinaryProtocol.NOTIFICATION_RESPONSE;
+    }
+
+    @Override
+    public void writeFields(BinaryOutput out) {
+        super.writeFields(out);
+
+        out.writeVarInt(friendsNotifications.size());
+        for (Notification notification : friendsNotifications) {
+            out.writeString(notification.getText());
+        }
+
+        out.writeVarInt(groupNotifications.size());
+        for (GroupNotification notification : groupNotifications) {
+            out.writeString(notification.getGroup());
+            out.writeString(notification.getText());
+        }
+
+        out.writeVarInt(remaining);
+    }
+
+    @Override
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("friendsNotifications");
+        writeNotifications(out, friendsNotifications);
+        out.name("groupNotifications");
+        writeNotifications(out, groupNotifications);
+        out.name("remaining").value(remaining);
+
+        super.writeJsonFields(out);
+    }
+
+    private static void writeNotifications(JsonWriter out, List<? extends Notification> notifications)
+        throws IOException {
+        if (notifications == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginArray();
+        for (Notification notification : notifications) {
+            NotificationAdapter.INSTANCE.write(out, notification);
+        }
+        out.endArray();
     }
 }
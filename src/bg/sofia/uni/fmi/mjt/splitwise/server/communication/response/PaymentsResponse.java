@@ -1,14 +1,62 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryOutput;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.PaymentAdapter;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.util.List;
 
 public class PaymentsResponse extends Response {
     List<Payment> payments;
+    long nextCursor; //PaymentPage.NO_MORE if these are the oldest payments
 
-    public PaymentsResponse(boolean ok, String response, List<Payment> payments) {
+    public PaymentsResponse(boolean ok, String response, List<Payment> payments, long nextCursor) {
         super(ok, response);
         this.payments = payments;
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public byte type() {
+        return BinaryProtocol.PAYMENTS_RESPONSE;
+    }
+
+    @Override
+    public void writeFields(BinaryOutput out) {
+        super.writeFields(out);
+
+        out.writeVarInt(payments.size());
+        for (Payment payment : payments) {
+            out.writeString(payment.issuer());
+            out.writeVarLong(payment.amount());
+            out.writeString(payment.reason());
+            out.writeVarInt(payment.splitWith().size());
+            for (String user : payment.splitWith()) {
+                out.writeString(user);
+            }
+            out.writeVarLong(payment.time());
+        }
+
+        out.writeVarLong(nextCursor);
+    }
+
+    @Override
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("payments");
+        if (payments == null) {
+            out.nullValue();
+        } else {
+            out.beginArray();
+            for (Payment payment : payments) {
+                PaymentAdapter.INSTANCE.write(out, payment);
+            }
+            out.endArray();
+        }
+        out.name("nextCursor").value(nextCursor);
+
+        super.writeJsonFields(out);
     }
 }
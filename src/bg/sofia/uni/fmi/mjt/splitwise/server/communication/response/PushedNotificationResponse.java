@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A notification the server sends without a request. The client tells it from a response by the pushed flag.
+ */
+public class PushedNotificationResponse extends NotificationResponse {
+    private static final String PUSHED_MESSAGE = "New notification:";
+
+    private final boolean pushed;
+
+    public PushedNotificationResponse(Notification notification) {
+        super(true, PUSHED_MESSAGE,
+            notification instanceof GroupNotification ? List.of() : List.of(notification),
+            notification instanceof GroupNotification groupNotification ? List.of(groupNotification) : List.of(), 0);
+        pushed = true;
+    }
+
+    @Override
+    public byte type() { //the binary protocol tells a push by its type, so it has no pushed flag
+        return BinaryProtocol.PUSHED_NOTIFICATION_RESPONSE;
+    }
+
+    @Override
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("pushed").value(pushed);
+        super.writeJsonFields(out);
+    }
+}
@@ -1,5 +1,11 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.communication.response;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryOutput;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.BinaryProtocol;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 public class Response {
     private final boolean ok;
     private final String response;
@@ -8,4 +14,35 @@ public class Response {
         this.ok = ok;
         this.response = response;
     }
+
+    public boolean isOk() {
+        return ok;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the type of the response in the binary protocol
+     */
+    public byte type() {
+        return BinaryProtocol.RESPONSE;
+    }
+
+    /**
+     * Writes the fields for the binary protocol; a subclass writes these first and then its own
+     */
+    public void writeFields(BinaryOutput out) {
+        out.writeBoolean(ok);
+        out.writeString(response);
+    }
+
+    /**
+     * Writes the fields for JSON; a subclass writes its own first and then these, in the order of reflective Gson
+     */
+    public void writeJsonFields(JsonWriter out) throws IOException {
+        out.name("ok").value(ok);
+        out.name("response").value(response);
+    }
 }
@@ -0,0 +1,37 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.session;
+
+/**
+ * A logged-in user. It expires when it has not been used for the time to live of its table.
+ */
+public final class Session {
+    private final String token;
+    private final String username;
+    private volatile long expiresAt;
+    private volatile boolean ended;
+
+    Session(String token, String username, long expiresAt) {
+        this.token = token;
+        this.username = username;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    boolean isExpired(long now) {
+        return ended || now >= expiresAt;
+    }
+
+    void extend(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    void end() {
+        ended = true;
+    }
+}
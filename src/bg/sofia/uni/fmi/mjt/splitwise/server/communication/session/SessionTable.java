@@ -0,0 +1,99 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.session;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe. The sessions by their tokens. A token is 128 random bits, so it cannot be guessed, and a session
+ * expires after it has not been used for the time to live. The expired sessions are removed when they are looked up
+ * and by a sweep at most once per time to live, when a session is created.
+ */
+public class SessionTable {
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(30);
+    private static final int TOKEN_BYTES = 16;
+
+    private final Map<String, Session> sessions;
+    private final long timeToLive;
+    private final LongSupplier clock;
+
+    private final SecureRandom random;
+    private final Base64.Encoder encoder;
+    private volatile long nextSweep;
+
+    public SessionTable(Duration timeToLive) {
+        this(timeToLive, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the current time in milliseconds
+     */
+    public SessionTable(Duration timeToLive, LongSupplier clock) {
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("The time to live of a session must be positive");
+        }
+
+        this.timeToLive = timeToLive.toMillis();
+        this.clock = clock;
+
+        sessions = new ConcurrentHashMap<>();
+        random = new SecureRandom();
+        encoder = Base64.getUrlEncoder().withoutPadding();
+        nextSweep = clock.getAsLong() + this.timeToLive;
+    }
+
+    public Session create(String username) {
+        long now = clock.getAsLong();
+        if (now >= nextSweep) {
+            nextSweep = now + timeToLive;
+            sessions.values().removeIf(session -> session.isExpired(now));
+        }
+
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+
+        Session session = new Session(encoder.encodeToString(bytes), username, now + timeToLive);
+        sessions.put(session.getToken(), session);
+
+        return session;
+    }
+
+    /**
+     * Extends the session if it has not expired
+     *
+     * @return the session or null if there is no such token or its session has expired
+     */
+    public Session find(String token) {
+        Session session = token == null ? null : sessions.get(token);
+
+        return session != null && use(session) ? session : null;
+    }
+
+    /**
+     * Extends a session which is already at hand, e.g. the session of a connection, without looking it up
+     *
+     * @return false if the session has expired or ended
+     */
+    public boolean use(Session session) {
+        long now = clock.getAsLong();
+        if (session.isExpired(now)) {
+            sessions.remove(session.getToken(), session);
+            return false;
+        }
+
+        session.extend(now + timeToLive);
+        return true;
+    }
+
+    public void end(Session session) {
+        sessions.remove(session.getToken(), session);
+        session.end(); //a connection which still holds it cannot use it anymore
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
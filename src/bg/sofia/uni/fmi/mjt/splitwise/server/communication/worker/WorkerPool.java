@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes the commands outside the selector thread, so blocking database calls do not stall the network I/O.
+ * The pool is either a fixed number of platform threads with a bounded queue or a virtual thread per task.
+ */
+public class WorkerPool {
+    public static final String FIXED = "fixed";
+    public static final String VIRTUAL = "virtual";
+
+    private static final double NANOS_IN_MICRO = 1000.0;
+
+    private final String type;
+    private final int poolSize;
+    private final ExecutorService executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private WorkerPool(String type, int poolSize, ExecutorService executor) {
+        this.type = type;
+        this.poolSize = poolSize;
+        this.executor = executor;
+    }
+
+    /**
+     * @param threads       the number of worker threads
+     * @param queueCapacity how many commands may wait for a free worker before new ones are rejected
+     */
+    public static WorkerPool fixed(int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("The number of threads and the queue capacity must be positive");
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "splitwise-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+        return new WorkerPool(FIXED, threads, executor);
+    }
+
+    public static WorkerPool virtual() {
+        return new WorkerPool(VIRTUAL, 0, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @return false if the task was rejected because the pool is overloaded or shut down
+     */
+    public boolean submit(Runnable task) {
+        long submittedAt = System.nanoTime();
+
+        try {
+            executor.execute(() -> run(task, submittedAt));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    public WorkerPoolMetrics getMetrics() {
+        long startedTasks = started.get();
+        long queueDepth = executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() :
+            Math.max(0, submitted.get() - startedTasks);
+        double averageWait = startedTasks == 0 ? 0 : totalQueueWaitNanos.get() / NANOS_IN_MICRO / startedTasks;
+
+        return new WorkerPoolMetrics(type, poolSize, activeWorkers.get(), queueDepth, submitted.get(),
+            completed.get(), rejected.get(), averageWait, maxQueueWaitNanos.get() / NANOS_IN_MICRO);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(Runnable task, long submittedAt) {
+        long waited = System.nanoTime() - submittedAt;
+        started.incrementAndGet();
+        totalQueueWaitNanos.addAndGet(waited);
+        maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+
+        activeWorkers.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            activeWorkers.decrementAndGet();
+            completed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker;
+
+public record WorkerPoolMetrics(String type, int poolSize, int activeWorkers, long queueDepth, long submitted,
+                                long completed, long rejected, double averageQueueWaitMicros,
+                                double maxQueueWaitMicros) {
+    @Override
+    public String toString() {
+        return ("workers[%s] size=%d active=%d queued=%d submitted=%d completed=%d rejected=%d " +
+            "queueWait(avg=%.1fus, max=%.1fus)").formatted(type, poolSize, activeWorkers, queueDepth, submitted,
+            completed, rejected, averageQueueWaitMicros, maxQueueWaitMicros);
+    }
+}
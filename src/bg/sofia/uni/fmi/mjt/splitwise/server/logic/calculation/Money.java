@@ -0,0 +1,26 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation;
+
+/**
+ * Money is kept as a primitive long number of cents (stotinki), so the arithmetic is exact and allocates nothing.
+ */
+public class Money {
+    public static final int CENTS_IN_UNIT = 100;
+
+    /**
+     * @return the amount as text with exactly 2 decimal places, e.g. 1250 -> "12.50"
+     */
+    public static String format(long cents) {
+        String sign = cents < 0 ? "-" : "";
+        long absolute = Math.abs(cents);
+        long remainder = absolute % CENTS_IN_UNIT;
+
+        return sign + absolute / CENTS_IN_UNIT + (remainder < 10 ? ".0" : ".") + remainder;
+    }
+
+    /**
+     * Only for data saved before the amounts were kept in cents
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * CENTS_IN_UNIT);
+    }
+}
@@ -0,0 +1,189 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Turns net balances into transfers which settle them. Up to EXACT_LIMIT members with a nonzero balance get
+ * the fewest transfers possible: every subset of members whose balances add up to zero is settled on its own,
+ * so the most such subsets mean the fewest transfers. More members are settled greedily in O(N log N):
+ * the debts and credits of equal size are paired first, then the biggest debtor pays the biggest creditor.
+ */
+public class Settlement {
+    public static final int EXACT_LIMIT = 15;
+
+    /**
+     * @param amount in cents
+     */
+    public record Transfer(String from, String to, long amount) {
+    }
+
+    /**
+     * @param balances in cents, the net balance of every member: positive if the member is owed money,
+     *                 negative if the member owes money; they must add up to zero
+     */
+    public static List<Transfer> settle(Map<String, Long> balances) {
+        String[] members = new String[balances.size()];
+        long[] amounts = new long[balances.size()];
+
+        int i = 0;
+        for (Map.Entry<String, Long> balance : balances.entrySet()) {
+            members[i] = balance.getKey();
+            amounts[i++] = balance.getValue();
+        }
+
+        return settle(members, amounts);
+    }
+
+    /**
+     * @param balances in cents, in the order of the members; they must add up to zero
+     */
+    public static List<Transfer> settle(String[] members, long[] balances) {
+        if (members.length != balances.length) {
+            throw new IllegalArgumentException("Every member must have a balance");
+        }
+
+        int count = 0;
+        long total = 0;
+        int[] nonzero = new int[balances.length];
+        for (int i = 0; i < balances.length; i++) {
+            total += balances[i];
+            if (balances[i] != 0) {
+                nonzero[count++] = i;
+            }
+        }
+
+        if (total != 0) {
+            throw new IllegalArgumentException("The balances do not add up to zero");
+        }
+
+        nonzero = Arrays.copyOf(nonzero, count);
+        List<Transfer> transfers = new ArrayList<>();
+        if (count <= EXACT_LIMIT) {
+            settleExactly(members, balances, nonzero, transfers);
+        } else {
+            settleGreedily(members, balances.clone(), nonzero, transfers);
+        }
+
+        return transfers;
+    }
+
+    /**
+     * Settles every group in parallel
+     *
+     * @param balances the balances of every group, by the name of the group
+     */
+    public static Map<String, List<Transfer>> settleAll(Map<String, Map<String, Long>> balances) {
+        return balances.entrySet().parallelStream()
+            .collect(Collectors.toConcurrentMap(Map.Entry::getKey, group -> settle(group.getValue())));
+    }
+
+    /**
+     * zeroSubsets[mask] is the most subsets adding up to zero that the members in the mask can be split into.
+     * Every such subset of k members needs k - 1 transfers, so the fewest transfers are count - zeroSubsets[all].
+     */
+    private static void settleExactly(String[] members, long[] balances, int[] nonzero, List<Transfer> transfers) {
+        int all = (1 << nonzero.length) - 1;
+        long[] sums = new long[all + 1];
+        int[] zeroSubsets = new int[all + 1];
+
+        for (int mask = 1; mask <= all; mask++) {
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            sums[mask] = sums[mask & (mask - 1)] + balances[nonzero[lowest]];
+
+            int best = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                best = Math.max(best, zeroSubsets[mask & ~Integer.lowestOneBit(rest)]);
+            }
+            zeroSubsets[mask] = best + (sums[mask] == 0 ? 1 : 0);
+        }
+
+        //remove members one by one along the best choices; between two zero sums there is a subset to settle
+        int mask = all;
+        int subset = 0;
+        while (mask != 0) {
+            int removed = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = Integer.lowestOneBit(rest);
+                if (zeroSubsets[mask & ~bit] + (sums[mask] == 0 ? 1 : 0) == zeroSubsets[mask]) {
+                    removed = bit;
+                    break;
+                }
+            }
+
+            subset |= removed;
+            mask &= ~removed;
+            if (sums[mask] == 0) {
+                settleGreedily(members, balances.clone(), membersOf(subset, nonzero), transfers);
+                subset = 0;
+            }
+        }
+    }
+
+    private static int[] membersOf(int mask, int[] nonzero) {
+        int[] result = new int[Integer.bitCount(mask)];
+
+        int count = 0;
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            result[count++] = nonzero[Integer.numberOfTrailingZeros(rest)];
+        }
+
+        return result;
+    }
+
+    private static void settleGreedily(String[] members, long[] remaining, int[] nonzero,
+                                       List<Transfer> transfers) {
+        //a debt and a credit of the same size are settled with one transfer
+        Map<Long, Deque<Integer>> creditors = new HashMap<>();
+        for (int i : nonzero) {
+            if (remaining[i] > 0) {
+                creditors.computeIfAbsent(remaining[i], amount -> new ArrayDeque<>()).add(i);
+            }
+        }
+
+        for (int i : nonzero) {
+            Deque<Integer> equal = remaining[i] < 0 ? creditors.get(-remaining[i]) : null;
+            if (equal != null && !equal.isEmpty()) {
+                int creditor = equal.poll();
+                transfers.add(new Transfer(members[i], members[creditor], remaining[creditor]));
+                remaining[creditor] = 0;
+                remaining[i] = 0;
+            }
+        }
+
+        PriorityQueue<Integer> debtors = new PriorityQueue<>((a, b) -> Long.compare(remaining[a], remaining[b]));
+        PriorityQueue<Integer> biggestCreditors =
+            new PriorityQueue<>((a, b) -> Long.compare(remaining[b], remaining[a]));
+        for (int i : nonzero) {
+            if (remaining[i] < 0) {
+                debtors.add(i);
+            } else if (remaining[i] > 0) {
+                biggestCreditors.add(i);
+            }
+        }
+
+        while (!debtors.isEmpty()) {
+            int debtor = debtors.poll();
+            int creditor = biggestCreditors.poll();
+            long amount = Math.min(-remaining[debtor], remaining[creditor]);
+
+            transfers.add(new Transfer(members[debtor], members[creditor], amount));
+            remaining[debtor] += amount;
+            remaining[creditor] -= amount;
+
+            if (remaining[debtor] < 0) {
+                debtors.add(debtor);
+            }
+            if (remaining[creditor] > 0) {
+                biggestCreditors.add(creditor);
+            }
+        }
+    }
+}
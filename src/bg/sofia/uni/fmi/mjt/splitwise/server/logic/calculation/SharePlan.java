@@ -0,0 +1,89 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.SplitException;
+
+/**
+ * An equal split of an amount in cents: every part gets the base share and the first extra parts get one cent
+ * more, so the shares add up to the amount exactly. Computed in O(1) without allocating anything but the plan.
+ *
+ * @param base  the share of every part, in cents
+ * @param extra how many parts (the first ones) get base + 1
+ * @param parts how many parts the amount is split into
+ */
+public record SharePlan(long base, int extra, int parts) {
+    private static final long MINIMUM_SHARE = 1;
+
+    public static SharePlan of(long amount, int parts) throws SplitException {
+        validate(amount, parts);
+
+        return new SharePlan(amount / parts, (int) (amount % parts), parts);
+    }
+
+    /**
+     * Splits the amount in proportion to the weights, e.g. 2:1:1 for a couple and two single people.
+     * With weights equal to exact amounts that add up to the amount, every part gets exactly its amount.
+     * The cents left after rounding down go one each to the first parts, as in the equal split.
+     *
+     * @return the share of every part, in cents, in the order of the weights
+     */
+    public static long[] weighted(long amount, int... weights) throws SplitException {
+        validate(amount, weights.length);
+
+        long totalWeight = 0;
+        for (int weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("The weights must be positive");
+            }
+
+            totalWeight += weight;
+        }
+
+        long[] shares = new long[weights.length];
+        long left = amount;
+        try {
+            for (int i = 0; i < weights.length; i++) {
+                shares[i] = Math.multiplyExact(amount, weights[i]) / totalWeight;
+                left -= shares[i];
+            }
+        } catch (ArithmeticException e) {
+            throw new SplitException("The amount is too big to split by these weights. Use smaller weights", e);
+        }
+
+        for (int i = 0; left > 0; i++, left--) { //less than one cent per part is left
+            shares[i]++;
+        }
+
+        for (long share : shares) {
+            if (share < MINIMUM_SHARE) {
+                throw new SplitException("The amount is not enough to split by these weights. " +
+                    "If we split it, there will be people with zero share.");
+            }
+        }
+
+        return shares;
+    }
+
+    /**
+     * @param part from 0 to parts - 1
+     * @return the share of this part, in cents
+     */
+    public long shareOf(int part) {
+        if (part < 0 || part >= parts) {
+            throw new IllegalArgumentException("There is no part " + part + " in a split into " + parts);
+        }
+
+        return part < extra ? base + 1 : base;
+    }
+
+    private static void validate(long amount, int parts) throws SplitException {
+        if (amount <= 0 || parts <= 0) {
+            throw new IllegalArgumentException("The arguments must be positive");
+        }
+
+        if (amount / parts < MINIMUM_SHARE) {
+            throw new SplitException(
+                "The amount is not enough to split between the people. " +
+                    "If we split it, there will be people with zero share.");
+        }
+    }
+}
@@ -4,7 +4,10 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
 
 import java.util.Map;
 
@@ -15,15 +18,21 @@ public interface Database {
 
     void addPayment(String username, Payment payment);
 
+    PaymentPage loadPayments(String username, PaymentQuery query);
+
     void addFriendNotification(String username, Notification notification);
 
     void addGroupNotification(String username, GroupNotification groupNotification);
 
-    void clearNotifications(String username); //when logged-in
+    void updatePassword(UserPersonal personal); //the password of the user was hashed again
+
+    void markNotificationsRead(String username, long cursor); //the notifications before the cursor were delivered
 
     void updateFriendsList(User user);
 
     void updateGroup(Group group);
 
+    void commit(); //at the end of every operation - makes its changes durable
+
     Map<String, Group> loadGroups();
 }
@@ -2,9 +2,13 @@ package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database;
 
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.FriendsList;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.lock.StripedLocks;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Inbox;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
 
@@ -18,15 +22,25 @@ import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-public class FileDatabase implements Database {
+/**
+ * Every user has a directory with their files. The notifications file starts with the sequence number of its first
+ * notification and is only appended to; a read of the inbox writes just the cursor. The read notifications are
+ * cut off when the user is loaded, so the file is rewritten once per load and not on every read.
+ */
+public class FileDatabase implements LazyDatabase {
     private static final String BIN_ENDING = ".bin";
 
     private static final String PAYMENTS_FILE = "payments.bin";
+    private static final String NOTIFICATIONS_FILE = "notifications.bin";
+    private static final String NOTIFICATIONS_CURSOR_FILE = "notifications_cursor.bin";
+    //before the inbox the notifications were in two files; they are moved into the notifications file on load
     private static final String FRIENDS_NOTIFICATIONS_FILE = "friends_notifications.bin";
     private static final String GROUP_NOTIFICATIONS_FILE = "group_notifications.bin";
     private static final String FRIENDS_LIST_FILE = "friends_list.bin";
@@ -35,11 +49,16 @@ public class FileDatabase implements Database {
     private static final String GROUPS_DIRECTORY_NAME = "groups";
     private static final String USERS_FILE_NAME = "users.bin";
 
+    private static final int FILE_LOCK_STRIPES = 64;
+
     private final Path mainDir;
     private final Path usersDir;
     private final Path groupsDir;
     private final Path usersFile;
 
+    //the same file may be written by several threads (e.g. notifications for one user from different groups)
+    private final StripedLocks fileLocks = new StripedLocks(FILE_LOCK_STRIPES);
+
     public FileDatabase(String mainDir) {
         this.mainDir = Path.of(mainDir);
         usersDir = Path.of(this.mainDir.toString(), USERS_DIRECTORY_NAME);
@@ -61,24 +80,27 @@ public class FileDatabase implements Database {
 
     @Override
     public Map<String, User> loadUsers() {
+        Map<String, User> result = new HashMap<>();
+        for (UserPersonal personal : loadPersonals().values()) {
+            result.put(personal.getUsername(), loadUser(personal));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<String, UserPersonal> loadPersonals() {
         if (!Files.exists(usersFile)) {
             return new HashMap<>();
         }
 
-        Map<String, User> result = new HashMap<>();
+        Map<String, UserPersonal> result = new HashMap<>();
         try (var objectInputStream = new ObjectInputStream(new FileInputStream(usersFile.toFile()))) {
             Object userPersonalObject;
 
             while ((userPersonalObject = objectInputStream.readObject()) != null) {
                 UserPersonal userPersonal = (UserPersonal) userPersonalObject;
-
-                List<Notification> notifications = loadFriendsNotifications(userPersonal.getUsername());
-                List<GroupNotification> groupNotifications = loadGroupNotifications(userPersonal.getUsername());
-                List<Payment> payments = loadPayments(userPersonal.getUsername());
-                FriendsList friendsList = loadFriendsList(userPersonal.getUsername());
-
-                result.put(userPersonal.getUsername(),
-                    new User(userPersonal, notifications, groupNotifications, friendsList, payments));
+                result.put(userPersonal.getUsername(), userPersonal);
             }
         } catch (EOFException e) {
             //EMPTY BODY
@@ -91,6 +113,13 @@ public class FileDatabase implements Database {
         return result;
     }
 
+    @Override
+    public User loadUser(UserPersonal personal) {
+        String username = personal.getUsername();
+
+        return new User(personal, loadInbox(username), loadFriendsList(username));
+    }
+
     @Override
     public void addUser(User user) {
         writeOrAppendObjectToFile(usersFile, user.getPersonal());
@@ -111,30 +140,22 @@ public class FileDatabase implements Database {
         writeOrAppendObjectToFile(paymentsFile, payment);
     }
 
+    /**
+     * Reads the whole payments file of the user and pages it in memory
+     */
     @Override
-    public void addFriendNotification(String username, Notification notification) {
-        Path userDirectory = Path.of(usersDir.toString(), username);
-        if (!Files.exists(userDirectory)) {
-            throw new IllegalArgumentException(
-                "The user with username [%s] is not in the database".formatted(username));
-        }
-
-        Path notificationsFile = Path.of(userDirectory.toString(), FRIENDS_NOTIFICATIONS_FILE);
+    public PaymentPage loadPayments(String username, PaymentQuery query) {
+        return PaymentPage.of(new ArrayList<>(loadPayments(username)), query);
+    }
 
-        writeOrAppendObjectToFile(notificationsFile, notification);
+    @Override
+    public void addFriendNotification(String username, Notification notification) {
+        addNotification(username, notification);
     }
 
     @Override
     public void addGroupNotification(String username, GroupNotification groupNotification) {
-        Path userDirectory = Path.of(usersDir.toString(), username);
-        if (!Files.exists(userDirectory)) {
-            throw new IllegalArgumentException(
-                "The user with username [%s] is not in the database".formatted(username));
-        }
-
-        Path gNotificationsFile = Path.of(userDirectory.toString(), GROUP_NOTIFICATIONS_FILE);
-
-        writeOrAppendObjectToFile(gNotificationsFile, groupNotification);
+        addNotification(username, groupNotification);
     }
 
     @Override
@@ -147,29 +168,30 @@ public class FileDatabase implements Database {
 
         Path friendsListsFile = Path.of(userDirectory.toString(), FRIENDS_LIST_FILE);
 
+        user.getFriendsList().takeChangedFriendships(); //the whole list is written
         writeObjectToFile(friendsListsFile, user.getFriendsList());
     }
 
+    /**
+     * Appends the personal info again, the last one of a user is the one which is loaded
+     */
     @Override
-    public void clearNotifications(String username) {
+    public void updatePassword(UserPersonal personal) {
+        writeOrAppendObjectToFile(usersFile, personal);
+    }
+
+    @Override
+    @SuppressWarnings("try") //the lock handle is only closed
+    public void markNotificationsRead(String username, long cursor) {
         Path userDirectory = Path.of(usersDir.toString(), username);
         if (!Files.exists(userDirectory)) {
             throw new IllegalArgumentException(
                 "The user with username [%s] is not in the database".formatted(username));
         }
 
-        Path notificationsFile = Path.of(userDirectory.toString(), FRIENDS_NOTIFICATIONS_FILE);
-        try {
-            Files.deleteIfExists(notificationsFile);
-        } catch (IOException e) {
-            throw new UncheckedIOException("Unable to delete file", e);
-        }
-
-        Path groupNotificationsFile = Path.of(userDirectory.toString(), GROUP_NOTIFICATIONS_FILE);
-        try {
-            Files.deleteIfExists(groupNotificationsFile);
-        } catch (IOException e) {
-            throw new UncheckedIOException("Unable to delete file", e);
+        //all the notification files of a user are locked with the key of the notifications file
+        try (var locked = fileLocks.lock(userDirectory.resolve(NOTIFICATIONS_FILE).toString())) {
+            overwriteFile(userDirectory.resolve(NOTIFICATIONS_CURSOR_FILE), cursor);
         }
     }
 
@@ -180,6 +202,11 @@ public class FileDatabase implements Database {
         writeObjectToFile(groupFile, group);
     }
 
+    @Override
+    public void commit() {
+        //EMPTY BODY - every change is written to its file immediately
+    }
+
     @Override
     public Map<String, Group> loadGroups() {
         File[] groupFiles = new File(groupsDir.toString()).listFiles();
@@ -211,44 +238,103 @@ public class FileDatabase implements Database {
         return result;
     }
 
-    private List<Notification> loadFriendsNotifications(String username) {
-        Path pathOfFile = Path.of(usersDir.toString(), username, FRIENDS_NOTIFICATIONS_FILE);
-        if (!Files.exists(pathOfFile)) {
-            return new LinkedList<>();
+    @SuppressWarnings("try") //the lock handle is only closed
+    private void addNotification(String username, Notification notification) {
+        Path userDirectory = Path.of(usersDir.toString(), username);
+        if (!Files.exists(userDirectory)) {
+            throw new IllegalArgumentException(
+                "The user with username [%s] is not in the database".formatted(username));
         }
 
-        List<Notification> result = new LinkedList<>();
-        try (var objectInputStream = new ObjectInputStream(new FileInputStream(pathOfFile.toFile()))) {
-            Object notificationObject;
+        Path notificationsFile = userDirectory.resolve(NOTIFICATIONS_FILE);
+        try (var locked = fileLocks.lock(notificationsFile.toString())) {
+            if (!Files.exists(notificationsFile)) {
+                //the sequence number of the first notification
+                overwriteFile(notificationsFile, readNotificationsCursor(userDirectory));
+            }
+
+            appendObjectToFile(notificationsFile, notification);
+        }
+    }
 
-            while ((notificationObject = objectInputStream.readObject()) != null) {
-                Notification notification = (Notification) notificationObject;
-                result.add(notification);
+    /**
+     * Moves the notifications of the old files into the notifications file and cuts off the read ones
+     */
+    @SuppressWarnings("try") //the lock handle is only closed
+    private Inbox loadInbox(String username) {
+        Path userDirectory = Path.of(usersDir.toString(), username);
+        Path notificationsFile = userDirectory.resolve(NOTIFICATIONS_FILE);
+
+        try (var locked = fileLocks.lock(notificationsFile.toString())) {
+            long cursor = readNotificationsCursor(userDirectory);
+
+            List<Object> objects;
+            if (Files.exists(notificationsFile)) {
+                objects = readObjects(notificationsFile);
+            } else {
+                objects = new ArrayList<>();
+                objects.add(0L);
+                objects.addAll(readObjects(userDirectory.resolve(FRIENDS_NOTIFICATIONS_FILE)));
+                objects.addAll(readObjects(userDirectory.resolve(GROUP_NOTIFICATIONS_FILE)));
             }
-        } catch (EOFException e) {
-            //EMPTY BODY
+
+            long first = (Long) objects.get(0);
+            int read = (int) Math.min(objects.size() - 1, Math.max(0, cursor - first));
+            List<Object> unread = objects.subList(1 + read, objects.size());
+            long unreadFirst = Math.max(cursor, first + read);
+
+            if (read > 0 || !Files.exists(notificationsFile) && !unread.isEmpty()) {
+                rewriteNotifications(notificationsFile, unreadFirst, unread);
+            }
+            Files.deleteIfExists(userDirectory.resolve(FRIENDS_NOTIFICATIONS_FILE));
+            Files.deleteIfExists(userDirectory.resolve(GROUP_NOTIFICATIONS_FILE));
+
+            Inbox inbox = new Inbox(Inbox.DEFAULT_CAPACITY, unreadFirst);
+            for (Object notification : unread) {
+                inbox.add((Notification) notification);
+            }
+
+            return inbox;
         } catch (IOException e) {
-            throw new UncheckedIOException("A problem occurred while reading from a file", e);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("The class was not found ", e);
+            throw new UncheckedIOException("A problem occurred while loading the notifications", e);
         }
+    }
 
-        return result;
+    /**
+     * Writes a temporary file and renames it, so a crash leaves either the old or the new notifications
+     */
+    private void rewriteNotifications(Path notificationsFile, long first, List<Object> notifications)
+        throws IOException {
+        Path temporary = notificationsFile.resolveSibling(notificationsFile.getFileName() + ".tmp");
+
+        try (var objectOutputStream = new ObjectOutputStream(Files.newOutputStream(temporary))) {
+            objectOutputStream.writeObject(first);
+            for (Object notification : notifications) {
+                objectOutputStream.writeObject(notification);
+            }
+        }
+
+        Files.move(temporary, notificationsFile, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
     }
 
-    private List<GroupNotification> loadGroupNotifications(String username) {
-        Path pathOfFile = Path.of(usersDir.toString(), username, GROUP_NOTIFICATIONS_FILE);
-        if (!Files.exists(pathOfFile)) {
-            return new LinkedList<>();
+    private long readNotificationsCursor(Path userDirectory) {
+        Path cursorFile = userDirectory.resolve(NOTIFICATIONS_CURSOR_FILE);
+
+        return Files.exists(cursorFile) ? (Long) readObjects(cursorFile).get(0) : 0;
+    }
+
+    private List<Object> readObjects(Path file) {
+        List<Object> result = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return result;
         }
 
-        List<GroupNotification> result = new LinkedList<>();
-        try (var objectInputStream = new ObjectInputStream(new FileInputStream(pathOfFile.toFile()))) {
-            Object gNotificationObject;
+        try (var objectInputStream = new ObjectInputStream(new FileInputStream(file.toFile()))) {
+            Object object;
 
-            while ((gNotificationObject = objectInputStream.readObject()) != null) {
-                GroupNotification groupNotification = (GroupNotification) gNotificationObject;
-                result.add(groupNotification);
+            while ((object = objectInputStream.readObject()) != null) {
+                result.add(object);
             }
         } catch (EOFException e) {
             //EMPTY BODY
@@ -287,14 +373,14 @@ public class FileDatabase implements Database {
         return result;
     }
 
-    private List<Payment> loadPayments(String username) {
+    List<Payment> loadPayments(String username) {
         Path pathOfFile = Path.of(usersDir.toString(), username, PAYMENTS_FILE);
         if (!Files.exists(pathOfFile)) {
             return new LinkedList<>();
         }
 
         List<Payment> result = new LinkedList<>();
-        try (var objectInputStream = new ObjectInputStream(new FileInputStream(pathOfFile.toFile()))) {
+        try (var objectInputStream = new LegacyObjectInputStream(new FileInputStream(pathOfFile.toFile()))) {
             Object paymentObject;
 
             while ((paymentObject = objectInputStream.readObject()) != null) {
@@ -326,7 +412,14 @@ public class FileDatabase implements Database {
         }
     }
 
+    @SuppressWarnings("try") //the lock handle is only closed
     private void writeOrAppendObjectToFile(Path filePath, Object obj) {
+        try (var locked = fileLocks.lock(filePath.toString())) {
+            appendObjectToFile(filePath, obj);
+        }
+    }
+
+    private void appendObjectToFile(Path filePath, Object obj) {
         if (!Files.exists(filePath)) {
             try {
                 Files.createFile(filePath);
@@ -334,7 +427,7 @@ public class FileDatabase implements Database {
                 throw new UncheckedIOException("Something went wrong while creating a file", e);
             }
 
-            writeObjectToFile(filePath, obj);
+            overwriteFile(filePath, obj);
         } else { //this is not the first payment
             //We need MyObjectOutputStream because ObjectOutputStream sets headers every time you open the file
             try (var objectOutputStream = new MyObjectOutputStream(new FileOutputStream(filePath.toFile(), true))) {
@@ -346,7 +439,14 @@ public class FileDatabase implements Database {
         }
     }
 
+    @SuppressWarnings("try") //the lock handle is only closed
     private void writeObjectToFile(Path filePath, Object obj) {
+        try (var locked = fileLocks.lock(filePath.toString())) {
+            overwriteFile(filePath, obj);
+        }
+    }
+
+    private void overwriteFile(Path filePath, Object obj) {
         try (var objectOutputStream = new ObjectOutputStream(Files.newOutputStream(filePath))) {
             objectOutputStream.writeObject(obj);
             objectOutputStream.flush();
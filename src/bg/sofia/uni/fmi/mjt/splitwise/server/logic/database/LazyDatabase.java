@@ -0,0 +1,16 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+
+import java.util.Map;
+
+/**
+ * A database which loads the users one at a time, so they do not all have to be in memory.
+ * Every change must be written immediately, so a user loaded again has all of its changes.
+ */
+public interface LazyDatabase extends Database {
+    Map<String, UserPersonal> loadPersonals();
+
+    User loadUser(UserPersonal personal); //with the friends list and the notifications
+}
@@ -0,0 +1,48 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Set;
+
+/**
+ * Reads the files saved before the amounts were kept in cents. A record cannot convert its own old fields,
+ * so an old Payment is read as a LegacyPayment, which is replaced by a Payment in cents.
+ */
+public class LegacyObjectInputStream extends ObjectInputStream {
+    private static final String AMOUNT = "amount";
+
+    public LegacyObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass descriptor = super.readClassDescriptor();
+
+        if (descriptor.getName().equals(Payment.class.getName())) {
+            ObjectStreamField amount = descriptor.getField(AMOUNT);
+            if (amount != null && amount.getType() == double.class) {
+                return ObjectStreamClass.lookup(LegacyPayment.class);
+            }
+        }
+
+        return descriptor;
+    }
+
+    private record LegacyPayment(String issuer, double amount, String reason, Set<String> splitWith)
+        implements Serializable {
+
+        @Serial
+        private Object readResolve() {
+            return new Payment(issuer, Money.toCents(amount), reason, splitWith, 0);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.DatabaseState;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.Durability;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendNotificationAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendshipAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendshipChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupCreated;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupFriendshipChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupNotificationAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.LedgerBalancesChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.LedgerGroupCreated;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.NotificationsRead;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.PasswordChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.PaymentRecorded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.UserAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.Snapshot;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.WriteAheadLog;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.WriteAheadLogMetrics;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.payment.PaymentHistory;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every change as a small binary event in a write-ahead log instead of a file per user and list.
+ * The friendships and the groups are saved as balance changes, so an update does not depend on the size of the
+ * friends list or the group.
+ * The log is split into numbered segments. snapshot-N holds the whole state before segment N, so loading is one
+ * sequential read of the newest snapshot followed by the segments after it. compact() starts a new segment and
+ * folds the previous snapshot and the finished segments into a new snapshot in the background.
+ * The data of the old per-user files (FileDatabase) in the same directory is read once, into the first snapshot.
+ * The payments are appended to a PaymentHistory in the payments directory, so a page of them is read from disk
+ * and they are not loaded with the users. The log records every payment as well, to restore it after a crash.
+ */
+public class LogDatabase implements Database, AutoCloseable {
+    private static final String SEGMENT_FILE_FORMAT = "splitwise-%d.log";
+    private static final String SNAPSHOT_FILE_FORMAT = "snapshot-%d.bin";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("splitwise-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final String UNSEGMENTED_LOG_FILE_NAME = "splitwise.log"; //before the log had segments
+    private static final String LEGACY_USERS_DIRECTORY_NAME = "users";
+    private static final String PAYMENTS_DIRECTORY_NAME = "payments";
+
+    private final Path mainDir;
+    private final Durability durability;
+    private final long commitWindowMicros;
+    private final PaymentHistory payments;
+
+    //the operations append under the read lock, a new segment is started under the write lock
+    private final ReadWriteLock segmentLock;
+    private WriteAheadLog log;
+    private long segment;
+    private WriteAheadLogMetrics closedSegmentsMetrics;
+
+    private final Object compactionLock; //one compaction or load at a time
+    private long snapshot;
+
+    private ScheduledExecutorService compactionScheduler;
+
+    //loadUsers() and loadGroups() are called one after the other, so the state is read once for both
+    private DatabaseState loaded;
+    private long loadedAtRecord;
+
+    public LogDatabase(String mainDir) {
+        this(mainDir, Durability.BATCH, 0);
+    }
+
+    public LogDatabase(String mainDir, Durability durability, long commitWindowMicros) {
+        this.mainDir = Path.of(mainDir);
+        this.durability = durability;
+        this.commitWindowMicros = commitWindowMicros;
+
+        segmentLock = new ReentrantReadWriteLock();
+        compactionLock = new Object();
+        closedSegmentsMetrics = new WriteAheadLogMetrics(durability, 0, 0, 0, 0);
+
+        try {
+            Files.createDirectories(this.mainDir);
+            payments = new PaymentHistory(this.mainDir.resolve(PAYMENTS_DIRECTORY_NAME));
+            migrate();
+
+            snapshot = newestFileNumber(SNAPSHOT_FILE);
+            segment = Math.max(snapshot, newestFileNumber(SEGMENT_FILE));
+            deleteFilesBefore(snapshot); //left by a compaction which did not finish
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the database in " + mainDir, e);
+        }
+
+        log = new WriteAheadLog(segmentFile(segment), durability, commitWindowMicros);
+    }
+
+    @Override
+    public synchronized Map<String, User> loadUsers() {
+        loaded = load();
+        loadedAtRecord = getMetrics().records();
+
+        return loaded.users();
+    }
+
+    @Override
+    public synchronized Map<String, Group> loadGroups() {
+        DatabaseState state = loaded != null && loadedAtRecord == getMetrics().records() ? loaded : load();
+        loaded = null;
+
+        return state.groups();
+    }
+
+    @Override
+    public void addUser(User user) {
+        UserPersonal personal = user.getPersonal();
+
+        append(new UserAdded(personal.getUsername(), personal.getFirstName(), personal.getLastName(),
+            personal.getPassword()));
+    }
+
+    @Override
+    public void addPayment(String username, Payment payment) {
+        payments.append(username, payment, sequence -> append(new PaymentRecorded(username, sequence,
+            payment.issuer(), payment.amount(), payment.reason(), payment.splitWith().toArray(String[]::new),
+            payment.time())));
+    }
+
+    @Override
+    public PaymentPage loadPayments(String username, PaymentQuery query) {
+        return payments.read(username, query);
+    }
+
+    @Override
+    public void addFriendNotification(String username, Notification notification) {
+        append(new FriendNotificationAdded(username, notification.getText()));
+    }
+
+    @Override
+    public void addGroupNotification(String username, GroupNotification groupNotification) {
+        append(new GroupNotificationAdded(username, groupNotification.getGroup(), groupNotification.getText()));
+    }
+
+    @Override
+    public void updatePassword(UserPersonal personal) {
+        append(new PasswordChanged(personal.getUsername(), personal.getPassword()));
+    }
+
+    @Override
+    public void markNotificationsRead(String username, long cursor) {
+        append(new NotificationsRead(username, cursor));
+    }
+
+    @Override
+    public void updateFriendsList(User user) {
+        //only the friendships changed since the last save, whatever the size of the friends list
+        for (Friendship friendship : user.getFriendsList().takeChangedFriendships()) {
+            if (friendship.takeUnsavedCreation()) {
+                append(new FriendshipAdded(friendship.getLeft(), friendship.getRight()));
+            }
+
+            long change = friendship.takeUnsavedChange();
+            if (change != 0) {
+                append(new FriendshipChanged(friendship.getLeft(), friendship.getRight(), change));
+            }
+        }
+    }
+
+    @Override
+    public void updateGroup(Group group) {
+        if (group.takeUnsavedCreation()) {
+            String[] members = group.getMembers().toArray(String[]::new);
+            append(group.isLedger() ? new LedgerGroupCreated(group.getName(), members)
+                : new GroupCreated(group.getName(), members));
+        }
+
+        Group.BalanceChanges changes = group.takeChangedBalances();
+        if (changes.members().length > 0) {
+            append(new LedgerBalancesChanged(group.getName(), changes.members(), changes.changes()));
+        }
+
+        //only the balances changed since the last save, whatever the size of the group
+        for (Friendship friendship : group.takeChangedFriendships()) {
+            long change = friendship.takeUnsavedChange();
+            if (change != 0) {
+                append(new GroupFriendshipChanged(group.getName(), friendship.getLeft(), friendship.getRight(),
+                    change));
+            }
+        }
+    }
+
+    @Override
+    public void commit() {
+        segmentLock.readLock().lock();
+        try {
+            log.commit();
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment and replaces the snapshot and the finished segments with one new snapshot.
+     * The operations continue in the new segment meanwhile.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            long finished = startNewSegment();
+
+            long start = System.nanoTime();
+            DatabaseState state = readFiles(finished);
+            Path file = snapshotFile(finished + 1);
+            try {
+                payments.sync(); //the snapshot replaces the log which can restore them
+                Snapshot.write(file, state);
+                snapshot = finished + 1;
+                deleteFilesBefore(snapshot);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the snapshot " + file, e);
+            }
+
+            System.out.printf("Snapshot of %d users and %d groups written in %d ms%n", state.users().size(),
+                state.groups().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    public void startCompaction(long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("The period must be positive");
+        }
+
+        compactionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "splitwise-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                System.out.println("The database could not be compacted: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public WriteAheadLogMetrics getMetrics() {
+        segmentLock.readLock().lock();
+        try {
+            return closedSegmentsMetrics.plus(log.getMetrics());
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactionScheduler != null) {
+            compactionScheduler.shutdownNow();
+        }
+
+        segmentLock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    private void append(LogEvent event) {
+        byte[] record = event.encode();
+
+        segmentLock.readLock().lock();
+        try {
+            log.append(record);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    private DatabaseState load() {
+        synchronized (compactionLock) {
+            DatabaseState state = readFiles(segment - 1);
+
+            segmentLock.readLock().lock();
+            try {
+                log.replay(record -> state.apply(LogEvent.decode(record)));
+            } finally {
+                segmentLock.readLock().unlock();
+            }
+
+            return state;
+        }
+    }
+
+    /**
+     * @return the state from the newest snapshot and the finished segments up to the given one
+     */
+    private DatabaseState readFiles(long lastSegment) {
+        DatabaseState state;
+        try {
+            state = Snapshot.read(snapshotFile(snapshot), payments);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the snapshot " + snapshotFile(snapshot), e);
+        }
+
+        for (long i = snapshot; i <= lastSegment; i++) {
+            if (Files.exists(segmentFile(i))) {
+                WriteAheadLog.read(segmentFile(i), record -> state.apply(LogEvent.decode(record)));
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * @return the number of the segment which was finished
+     */
+    private long startNewSegment() {
+        segmentLock.writeLock().lock();
+        try {
+            log.close();
+            closedSegmentsMetrics = closedSegmentsMetrics.plus(log.getMetrics());
+
+            log = new WriteAheadLog(segmentFile(segment + 1), durability, commitWindowMicros);
+            return segment++;
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates the first snapshot from the old per-user files (if any) and gives the log of the version without
+     * segments the number of the first segment
+     */
+    private void migrate() throws IOException {
+        if (newestFileNumber(SNAPSHOT_FILE) < 0) {
+            DatabaseState legacy = loadLegacyFiles();
+            payments.sync();
+            Snapshot.write(snapshotFile(0), legacy);
+        }
+
+        Path unsegmented = mainDir.resolve(UNSEGMENTED_LOG_FILE_NAME);
+        if (Files.exists(unsegmented) && !Files.exists(segmentFile(0))) {
+            Files.move(unsegmented, segmentFile(0));
+        }
+    }
+
+    private DatabaseState loadLegacyFiles() {
+        if (!Files.isDirectory(mainDir.resolve(LEGACY_USERS_DIRECTORY_NAME))) {
+            return new DatabaseState(payments);
+        }
+
+        FileDatabase legacy = new FileDatabase(mainDir.toString());
+        Map<String, User> users = legacy.loadUsers();
+        relinkFriendships(users);
+
+        DatabaseState state = new DatabaseState(users, legacy.loadGroups(), payments);
+        for (String username : users.keySet()) {
+            for (Payment payment : legacy.loadPayments(username)) {
+                state.addUnnumberedPayment(username, payment);
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * Every friends list is in a separate file, so the two users of a friendship are loaded with two different
+     * copies of it. The copy in the list of the left user is kept for both.
+     */
+    private static void relinkFriendships(Map<String, User> users) {
+        for (User user : users.values()) {
+            for (Friendship friendship : user.getFriendsList().getFriendships().values()) {
+                User right = users.get(friendship.getRight());
+                if (friendship.getLeft().equals(user.getUsername()) && right != null) {
+                    right.getFriendsList().addFriendship(friendship);
+                }
+            }
+        }
+    }
+
+    private void deleteFilesBefore(long number) throws IOException {
+        try (Stream<Path> files = Files.list(mainDir)) {
+            for (Path file : files.toList()) {
+                long fileNumber = Math.max(fileNumber(file, SEGMENT_FILE), fileNumber(file, SNAPSHOT_FILE));
+                if (fileNumber >= 0 && fileNumber < number) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private long newestFileNumber(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(mainDir)) {
+            return files.mapToLong(file -> fileNumber(file, pattern)).max().orElse(-1);
+        }
+    }
+
+    private static long fileNumber(Path file, Pattern pattern) {
+        Matcher matcher = pattern.matcher(file.getFileName().toString());
+
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private Path segmentFile(long number) {
+        return mainDir.resolve(SEGMENT_FILE_FORMAT.formatted(number));
+    }
+
+    private Path snapshotFile(long number) {
+        return mainDir.resolve(SNAPSHOT_FILE_FORMAT.formatted(number));
+    }
+}
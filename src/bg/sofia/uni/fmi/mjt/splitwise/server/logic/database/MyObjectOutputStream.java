@@ -14,8 +14,10 @@ public class MyObjectOutputStream extends ObjectOutputStream {
         super(o);
     }
 
-    // does nothing
+    // no header in the middle of a file; a reset instead, so the reader forgets the classes and objects
+    // of the earlier appends and objects of different classes can be appended to one file
     @Override
     protected void writeStreamHeader() throws IOException {
+        reset();
     }
 }
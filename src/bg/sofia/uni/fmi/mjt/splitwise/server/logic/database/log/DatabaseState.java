@@ -0,0 +1,200 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendNotificationAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendshipAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.FriendshipChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupCreated;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupFriendshipChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.GroupNotificationAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.LedgerBalancesChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.LedgerGroupCreated;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.NotificationsCleared;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.NotificationsRead;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.PasswordChanged;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.PaymentAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.PaymentRecorded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log.LogEvent.UserAdded;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.payment.PaymentHistory;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The users and the groups rebuilt from a snapshot and the log events after it.
+ * Everything built here counts as saved, so the database does not write it again.
+ * The payments are not kept here but restored into the payment history, which skips the ones it already has.
+ */
+public class DatabaseState {
+    private final Map<String, User> users;
+    private final Map<String, Group> groups;
+    private final PaymentHistory payments;
+
+    //the payments from before the history have no sequence number, so they are numbered in the order they are read
+    private final Map<String, Long> unnumberedPayments;
+
+    public DatabaseState(PaymentHistory payments) {
+        this(new HashMap<>(), new HashMap<>(), payments);
+    }
+
+    public DatabaseState(Map<String, User> users, Map<String, Group> groups, PaymentHistory payments) {
+        this.users = users;
+        this.groups = groups;
+        this.payments = payments;
+
+        unnumberedPayments = new HashMap<>();
+    }
+
+    public Map<String, User> users() {
+        return users;
+    }
+
+    public Map<String, Group> groups() {
+        return groups;
+    }
+
+    public void apply(LogEvent event) {
+        switch (event) {
+            case UserAdded e ->
+                users.put(e.username(), new User(new UserPersonal(e.username(), e.firstName(), e.lastName(),
+                    e.password())));
+            case PaymentAdded e -> {
+                if (users.containsKey(e.username())) {
+                    addUnnumberedPayment(e.username(),
+                        new Payment(e.issuer(), e.cents(), e.reason(), Set.of(e.splitWith()), 0));
+                }
+            }
+            case PaymentRecorded e -> payments.restore(e.username(), e.sequence(),
+                new Payment(e.issuer(), e.cents(), e.reason(), Set.of(e.splitWith()), e.time()));
+            case FriendNotificationAdded e -> {
+                User user = users.get(e.username());
+                if (user != null) {
+                    user.addNotification(Notification.ofText(e.text()));
+                }
+            }
+            case GroupNotificationAdded e -> {
+                User user = users.get(e.username());
+                if (user != null) {
+                    user.addNotification(GroupNotification.ofText(e.group(), e.text()));
+                }
+            }
+            case NotificationsCleared e -> {
+                User user = users.get(e.username());
+                if (user != null) {
+                    user.readNotifications(Integer.MAX_VALUE);
+                }
+            }
+            case NotificationsRead e -> {
+                User user = users.get(e.username());
+                if (user != null) {
+                    user.markNotificationsRead(e.cursor());
+                }
+            }
+            case PasswordChanged e -> {
+                User user = users.get(e.username());
+                if (user != null) {
+                    user.getPersonal().changePassword(e.password());
+                }
+            }
+            case FriendshipAdded e -> addFriendship(e.left(), e.right(), 0);
+            case FriendshipChanged e -> {
+                User left = users.get(e.left());
+                if (left != null) {
+                    change(left.getFriendsList().getFriendships().get(e.right()), e.left(), e.leftOwesCents());
+                }
+            }
+            case GroupCreated e -> addGroup(e.name(), e.members());
+            case GroupFriendshipChanged e -> changeInGroup(e.group(), e.left(), e.right(), e.leftOwesCents());
+            case LedgerGroupCreated e -> addLedgerGroup(e.name(), e.members());
+            case LedgerBalancesChanged e -> changeInLedger(e.group(), e.members(), e.changes());
+        }
+    }
+
+    /**
+     * Restores a payment saved before the payment history
+     */
+    public void addUnnumberedPayment(String username, Payment payment) {
+        long sequence = unnumberedPayments.merge(username, 1L, Long::sum) - 1;
+
+        payments.restore(username, sequence, payment);
+    }
+
+    public void addFriendship(String left, String right, long leftOwesCents) {
+        User leftUser = users.get(left);
+        User rightUser = users.get(right);
+        if (leftUser == null || rightUser == null) {
+            return;
+        }
+
+        Friendship friendship = new Friendship(left, right);
+        friendship.takeUnsavedCreation();
+        change(friendship, left, leftOwesCents);
+
+        leftUser.getFriendsList().addFriendship(friendship);
+        rightUser.getFriendsList().addFriendship(friendship);
+    }
+
+    public void addGroup(String name, String... members) {
+        Group group;
+        try {
+            group = new Group(name, members);
+        } catch (GroupException e) {
+            throw new IllegalStateException("The saved group [" + name + "] is invalid", e);
+        }
+
+        group.takeUnsavedCreation();
+
+        groups.put(name, group);
+    }
+
+    public void addLedgerGroup(String name, String... members) {
+        Group group;
+        try {
+            group = Group.ofLedger(name, members);
+        } catch (GroupException e) {
+            throw new IllegalStateException("The saved group [" + name + "] is invalid", e);
+        }
+
+        group.takeUnsavedCreation();
+
+        groups.put(name, group);
+    }
+
+    public void changeInLedger(String groupName, String[] members, long[] changes) {
+        Group group = groups.get(groupName);
+        if (group != null && group.isLedger()) {
+            group.applyBalanceChanges(members, changes);
+        }
+    }
+
+    public void changeInGroup(String groupName, String left, String right, long leftOwesCents) {
+        Group group = groups.get(groupName);
+        if (group != null && !group.isLedger() && group.hasMember(left)) {
+            change(group.getFriendsLists().get(left).getFriendships().get(right), left, leftOwesCents);
+        }
+    }
+
+    private static void change(Friendship friendship, String left, long leftOwesCents) {
+        if (friendship == null || leftOwesCents == 0) {
+            return;
+        }
+
+        //the change keeps the orientation of the friendship it was written from
+        long change = friendship.getLeft().equals(left) ? leftOwesCents : -leftOwesCents;
+        if (change > 0) {
+            friendship.lend(friendship.getRight(), change);
+        } else {
+            friendship.lend(friendship.getLeft(), -change);
+        }
+
+        friendship.takeUnsavedChange();
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+/**
+ * When the records of an operation reach the disk
+ */
+public enum Durability {
+    /**
+     * Every commit writes and fsyncs the log by itself before it returns
+     */
+    REQUEST,
+
+    /**
+     * Every commit waits for the flusher thread, which writes and fsyncs the records of all concurrent
+     * commits at once (group commit)
+     */
+    BATCH,
+
+    /**
+     * Commits do not wait. The flusher thread writes and fsyncs in the background, so the last commit window
+     * may be lost on a crash
+     */
+    ASYNC
+}
@@ -0,0 +1,328 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One change of the database, stored as one record of the write-ahead log.
+ * The encoding is a type byte followed by the fields; the money is stored in cents.
+ */
+public sealed interface LogEvent {
+    byte USER_ADDED = 1;
+    byte PAYMENT_ADDED = 2;
+    byte FRIEND_NOTIFICATION_ADDED = 3;
+    byte GROUP_NOTIFICATION_ADDED = 4;
+    byte NOTIFICATIONS_CLEARED = 5;
+    byte FRIENDSHIP_ADDED = 6;
+    byte FRIENDSHIP_CHANGED = 7;
+    byte GROUP_CREATED = 8;
+    byte GROUP_FRIENDSHIP_CHANGED = 9;
+    byte LEDGER_GROUP_CREATED = 10;
+    byte LEDGER_BALANCES_CHANGED = 11;
+    byte PAYMENT_RECORDED = 12;
+    byte NOTIFICATIONS_READ = 13;
+    byte PASSWORD_CHANGED = 14;
+
+    void writeFields(DataOutputStream out) throws IOException;
+
+    byte type();
+
+    default byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type());
+            writeFields(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a log event", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static LogEvent decode(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte type = in.readByte();
+
+            return switch (type) {
+                case USER_ADDED -> new UserAdded(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                case PAYMENT_ADDED ->
+                    new PaymentAdded(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF(), readStrings(in));
+                case FRIEND_NOTIFICATION_ADDED -> new FriendNotificationAdded(in.readUTF(), in.readUTF());
+                case GROUP_NOTIFICATION_ADDED ->
+                    new GroupNotificationAdded(in.readUTF(), in.readUTF(), in.readUTF());
+                case NOTIFICATIONS_CLEARED -> new NotificationsCleared(in.readUTF());
+                case FRIENDSHIP_ADDED -> new FriendshipAdded(in.readUTF(), in.readUTF());
+                case FRIENDSHIP_CHANGED -> new FriendshipChanged(in.readUTF(), in.readUTF(), in.readLong());
+                case GROUP_CREATED -> new GroupCreated(in.readUTF(), readStrings(in));
+                case GROUP_FRIENDSHIP_CHANGED ->
+                    new GroupFriendshipChanged(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+                case LEDGER_GROUP_CREATED -> new LedgerGroupCreated(in.readUTF(), readStrings(in));
+                case LEDGER_BALANCES_CHANGED ->
+                    new LedgerBalancesChanged(in.readUTF(), readStrings(in), readLongs(in));
+                case PAYMENT_RECORDED -> new PaymentRecorded(in.readUTF(), in.readLong(), in.readUTF(),
+                    in.readLong(), in.readUTF(), readStrings(in), in.readLong());
+                case NOTIFICATIONS_READ -> new NotificationsRead(in.readUTF(), in.readLong());
+                case PASSWORD_CHANGED -> new PasswordChanged(in.readUTF(), in.readUTF());
+                default -> throw new IllegalStateException("Unknown log event type: " + type);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode a log event", e);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] result = new String[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readUTF();
+        }
+
+        return result;
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] result = new long[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readLong();
+        }
+
+        return result;
+    }
+
+    private static void writeLongs(DataOutputStream out, long... longs) throws IOException {
+        out.writeInt(longs.length);
+        for (long value : longs) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String... strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    record UserAdded(String username, String firstName, String lastName, String password) implements LogEvent {
+        @Override
+        public byte type() {
+            return USER_ADDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeUTF(firstName);
+            out.writeUTF(lastName);
+            out.writeUTF(password);
+        }
+    }
+
+    /**
+     * A payment from before the payment history; only decoded from old logs
+     */
+    record PaymentAdded(String username, String issuer, long cents, String reason, String[] splitWith)
+        implements LogEvent {
+        @Override
+        public byte type() {
+            return PAYMENT_ADDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeUTF(issuer);
+            out.writeLong(cents);
+            out.writeUTF(reason);
+            writeStrings(out, splitWith);
+        }
+    }
+
+    record FriendNotificationAdded(String username, String text) implements LogEvent {
+        @Override
+        public byte type() {
+            return FRIEND_NOTIFICATION_ADDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeUTF(text);
+        }
+    }
+
+    record GroupNotificationAdded(String username, String group, String text) implements LogEvent {
+        @Override
+        public byte type() {
+            return GROUP_NOTIFICATION_ADDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeUTF(group);
+            out.writeUTF(text);
+        }
+    }
+
+    /**
+     * Every notification was read at login before the inbox; only decoded from old logs
+     */
+    record NotificationsCleared(String username) implements LogEvent {
+        @Override
+        public byte type() {
+            return NOTIFICATIONS_CLEARED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+        }
+    }
+
+    record FriendshipAdded(String left, String right) implements LogEvent {
+        @Override
+        public byte type() {
+            return FRIENDSHIP_ADDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(left);
+            out.writeUTF(right);
+        }
+    }
+
+    /**
+     * @param leftOwesCents the change of what left owes to right
+     */
+    record FriendshipChanged(String left, String right, long leftOwesCents) implements LogEvent {
+        @Override
+        public byte type() {
+            return FRIENDSHIP_CHANGED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(left);
+            out.writeUTF(right);
+            out.writeLong(leftOwesCents);
+        }
+    }
+
+    record GroupCreated(String name, String[] members) implements LogEvent {
+        @Override
+        public byte type() {
+            return GROUP_CREATED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            writeStrings(out, members);
+        }
+    }
+
+    /**
+     * @param leftOwesCents the change of what left owes to right inside the group
+     */
+    record GroupFriendshipChanged(String group, String left, String right, long leftOwesCents) implements LogEvent {
+        @Override
+        public byte type() {
+            return GROUP_FRIENDSHIP_CHANGED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(group);
+            out.writeUTF(left);
+            out.writeUTF(right);
+            out.writeLong(leftOwesCents);
+        }
+    }
+
+    record LedgerGroupCreated(String name, String[] members) implements LogEvent {
+        @Override
+        public byte type() {
+            return LEDGER_GROUP_CREATED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            writeStrings(out, members);
+        }
+    }
+
+    /**
+     * @param changes in cents, the change of the net balance of every member, in the same order
+     */
+    record LedgerBalancesChanged(String group, String[] members, long[] changes) implements LogEvent {
+        @Override
+        public byte type() {
+            return LEDGER_BALANCES_CHANGED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(group);
+            writeStrings(out, members);
+            writeLongs(out, changes);
+        }
+    }
+
+    /**
+     * @param sequence the place of the payment in the history of the user
+     * @param time     in milliseconds since the epoch
+     */
+    record PaymentRecorded(String username, long sequence, String issuer, long cents, String reason,
+                           String[] splitWith, long time) implements LogEvent {
+        @Override
+        public byte type() {
+            return PAYMENT_RECORDED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeLong(sequence);
+            out.writeUTF(issuer);
+            out.writeLong(cents);
+            out.writeUTF(reason);
+            writeStrings(out, splitWith);
+            out.writeLong(time);
+        }
+    }
+
+    /**
+     * @param cursor the sequence number of the first unread notification
+     */
+    record NotificationsRead(String username, long cursor) implements LogEvent {
+        @Override
+        public byte type() {
+            return NOTIFICATIONS_READ;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeLong(cursor);
+        }
+    }
+
+    record PasswordChanged(String username, String password) implements LogEvent {
+        @Override
+        public byte type() {
+            return PASSWORD_CHANGED;
+        }
+
+        @Override
+        public void writeFields(DataOutputStream out) throws IOException {
+            out.writeUTF(username);
+            out.writeUTF(password);
+        }
+    }
+}
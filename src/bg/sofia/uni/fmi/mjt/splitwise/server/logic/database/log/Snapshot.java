@@ -0,0 +1,313 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.payment.PaymentHistory;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.FriendsList;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Inbox;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The whole database in one file, read and written sequentially.
+ * A snapshot is written to a temporary file and renamed atomically, so there is always one whole snapshot.
+ * Only the nonzero balances are stored; a friendship is stored once, from the side of its left user.
+ * A ledger group stores the net balance of every member. Version 1 has no ledger groups.
+ * The payments are in the payment history since version 3; the payments of older snapshots are moved into it.
+ * Since version 4 a user has an inbox: its sequence numbers, the collapsed counts and the unread notifications.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x53575350;
+    private static final int VERSION = 4;
+    private static final int VERSION_WITHOUT_INBOX = 3;
+    private static final int VERSION_WITH_PAYMENTS = 2;
+    private static final int VERSION_WITHOUT_LEDGERS = 1;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    public static void write(Path file, DatabaseState state) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeUsers(out, state);
+            writeFriendships(out, state);
+            writeGroups(out, state);
+            out.writeInt(MAGIC); //a snapshot without it was cut
+            out.flush();
+
+            channel.force(true);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    public static DatabaseState read(Path file, PaymentHistory payments) throws IOException {
+        DatabaseState state = new DatabaseState(payments);
+
+        try (DataInputStream in =
+                 new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("This file is not a SplitWise snapshot: " + file);
+            }
+
+            int version = in.readInt();
+            if (version < VERSION_WITHOUT_LEDGERS || version > VERSION) {
+                throw new IOException("Unknown version " + version + " of the snapshot: " + file);
+            }
+
+            readUsers(in, state, version);
+            readFriendships(in, state);
+            readGroups(in, state, version);
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("The snapshot is incomplete: " + file);
+            }
+        }
+
+        return state;
+    }
+
+    private static void writeUsers(DataOutputStream out, DatabaseState state) throws IOException {
+        out.writeInt(state.users().size());
+
+        for (User user : state.users().values()) {
+            UserPersonal personal = user.getPersonal();
+            out.writeUTF(personal.getUsername());
+            out.writeUTF(personal.getFirstName());
+            out.writeUTF(personal.getLastName());
+            out.writeUTF(personal.getPassword());
+
+            writeInbox(out, user.withInbox(SavedInbox::of));
+        }
+    }
+
+    private static void writeInbox(DataOutputStream out, SavedInbox inbox) throws IOException {
+        out.writeLong(inbox.next());
+
+        out.writeInt(inbox.collapsedFromFriends());
+        out.writeInt(inbox.collapsedFromGroups().size());
+        for (Map.Entry<String, Integer> group : inbox.collapsedFromGroups().entrySet()) {
+            out.writeUTF(group.getKey());
+            out.writeInt(group.getValue());
+        }
+
+        out.writeInt(inbox.unread().size());
+        for (Notification notification : inbox.unread()) {
+            if (notification instanceof GroupNotification groupNotification) {
+                out.writeBoolean(true);
+                out.writeUTF(groupNotification.getGroup());
+            } else {
+                out.writeBoolean(false);
+            }
+            out.writeUTF(notification.getText());
+        }
+    }
+
+    private static Inbox readInbox(DataInputStream in) throws IOException {
+        long next = in.readLong();
+
+        int collapsedFromFriends = in.readInt();
+        Map<String, Integer> collapsedFromGroups = new LinkedHashMap<>();
+        int groups = in.readInt();
+        for (int i = 0; i < groups; i++) {
+            collapsedFromGroups.put(in.readUTF(), in.readInt());
+        }
+
+        int unread = in.readInt();
+        Inbox inbox = new Inbox(Inbox.DEFAULT_CAPACITY, next - unread);
+        inbox.addCollapsed(null, collapsedFromFriends);
+        collapsedFromGroups.forEach(inbox::addCollapsed);
+
+        for (int i = 0; i < unread; i++) {
+            inbox.add(in.readBoolean() ? GroupNotification.ofText(in.readUTF(), in.readUTF()) :
+                Notification.ofText(in.readUTF()));
+        }
+
+        return inbox;
+    }
+
+    private static void readUsers(DataInputStream in, DatabaseState state, int version) throws IOException {
+        int users = in.readInt();
+
+        for (int i = 0; i < users; i++) {
+            String username = in.readUTF();
+            UserPersonal personal = new UserPersonal(username, in.readUTF(), in.readUTF(), in.readUTF());
+
+            if (version > VERSION_WITHOUT_INBOX) {
+                state.users().put(username, new User(personal, readInbox(in), new FriendsList(username)));
+                continue;
+            }
+
+            User user = new User(personal);
+            int payments = version == VERSION_WITHOUT_INBOX ? 0 : in.readInt();
+            for (int j = 0; j < payments; j++) {
+                state.addUnnumberedPayment(username, new Payment(in.readUTF(), in.readLong(), in.readUTF(),
+                    Set.copyOf(readStrings(in)), 0));
+            }
+
+            int notifications = in.readInt();
+            for (int j = 0; j < notifications; j++) {
+                user.addNotification(Notification.ofText(in.readUTF()));
+            }
+
+            int groupNotifications = in.readInt();
+            for (int j = 0; j < groupNotifications; j++) {
+                user.addNotification(GroupNotification.ofText(in.readUTF(), in.readUTF()));
+            }
+
+            state.users().put(username, user);
+        }
+    }
+
+    private static void writeFriendships(DataOutputStream out, DatabaseState state) throws IOException {
+        List<Friendship> friendships = new ArrayList<>();
+        for (User user : state.users().values()) {
+            for (Friendship friendship : user.getFriendsList().getFriendships().values()) {
+                if (friendship.getLeft().equals(user.getUsername())) {
+                    friendships.add(friendship);
+                }
+            }
+        }
+
+        out.writeInt(friendships.size());
+        for (Friendship friendship : friendships) {
+            out.writeUTF(friendship.getLeft());
+            out.writeUTF(friendship.getRight());
+            out.writeLong(friendship.getUserOwes(friendship.getLeft()));
+        }
+    }
+
+    private static void readFriendships(DataInputStream in, DatabaseState state) throws IOException {
+        int friendships = in.readInt();
+
+        for (int i = 0; i < friendships; i++) {
+            state.addFriendship(in.readUTF(), in.readUTF(), in.readLong());
+        }
+    }
+
+    private static void writeGroups(DataOutputStream out, DatabaseState state) throws IOException {
+        out.writeInt(state.groups().size());
+
+        for (Group group : state.groups().values()) {
+            out.writeUTF(group.getName());
+            out.writeBoolean(group.isLedger());
+            writeStrings(out, group.getMembers());
+
+            if (group.isLedger()) {
+                for (String member : group.getMembers()) {
+                    out.writeLong(group.getBalance(member));
+                }
+                continue;
+            }
+
+            List<Friendship> owing = new ArrayList<>();
+            for (FriendsList friendsList : group.getFriendsLists().values()) {
+                for (Friendship friendship : friendsList.getFriendships().values()) {
+                    boolean once = friendship.getLeft().equals(friendsList.getOwner());
+                    if (once && friendship.getUserOwes(friendship.getLeft()) != 0) {
+                        owing.add(friendship);
+                    }
+                }
+            }
+
+            out.writeInt(owing.size());
+            for (Friendship friendship : owing) {
+                out.writeUTF(friendship.getLeft());
+                out.writeUTF(friendship.getRight());
+                out.writeLong(friendship.getUserOwes(friendship.getLeft()));
+            }
+        }
+    }
+
+    private static void readGroups(DataInputStream in, DatabaseState state, int version) throws IOException {
+        int groups = in.readInt();
+
+        for (int i = 0; i < groups; i++) {
+            String name = in.readUTF();
+            boolean ledger = version != VERSION_WITHOUT_LEDGERS && in.readBoolean();
+            String[] members = readStrings(in).toArray(String[]::new);
+
+            if (ledger) {
+                long[] balances = new long[members.length];
+                for (int j = 0; j < balances.length; j++) {
+                    balances[j] = in.readLong();
+                }
+
+                state.addLedgerGroup(name, members);
+                state.changeInLedger(name, members, balances);
+                continue;
+            }
+
+            state.addGroup(name, members);
+
+            int owing = in.readInt();
+            for (int j = 0; j < owing; j++) {
+                state.changeInGroup(name, in.readUTF(), in.readUTF(), in.readLong());
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(in.readUTF());
+        }
+
+        return result;
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //EMPTY BODY - not every file system can sync a directory; the rename is atomic anyway
+        }
+    }
+
+    /**
+     * A copy of an inbox taken while no notification is added to it
+     */
+    private record SavedInbox(long next, int collapsedFromFriends, Map<String, Integer> collapsedFromGroups,
+                              List<Notification> unread) {
+        private static SavedInbox of(Inbox inbox) {
+            return new SavedInbox(inbox.getNext(), inbox.getCollapsedFromFriends(),
+                new LinkedHashMap<>(inbox.getCollapsedFromGroups()), inbox.getUnread());
+        }
+    }
+}
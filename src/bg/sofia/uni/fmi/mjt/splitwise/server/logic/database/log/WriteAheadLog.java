@@ -0,0 +1,417 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only file of records. Every record is framed as 4 bytes length, 4 bytes CRC32C and the payload,
+ * so a record torn by a crash is detected and cut off when the log is opened.
+ * append() only copies the record to a buffer in memory. The buffer reaches the disk on commit() according to
+ * the durability: with BATCH and ASYNC one flusher thread writes and fsyncs everything appended by the concurrent
+ * operations at once (group commit), waiting up to the commit window for more records to join the batch.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final int MAGIC = 0x53574C47;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long commitWindowNanos;
+
+    private final ReentrantLock lock;
+    private final Condition appended;
+    private final Condition synced;
+
+    //all guarded by the lock
+    private ByteBuffer pending; //records appended but not written yet
+    private ByteBuffer spare; //swapped with pending while the flusher writes
+    private long appendedRecords;
+    private long syncedRecords;
+    private long size; //the end of the file after everything appended so far
+    private long syncs;
+    private long bytes;
+    private long maxRecordsPerSync;
+    private IOException failure;
+    private boolean closed;
+
+    private final Thread flusher;
+
+    public WriteAheadLog(Path file, Durability durability, long commitWindowMicros) {
+        this.file = file;
+        this.durability = durability;
+        this.commitWindowNanos = TimeUnit.MICROSECONDS.toNanos(commitWindowMicros);
+
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            size = recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the log " + file, e);
+        }
+
+        lock = new ReentrantLock();
+        appended = lock.newCondition();
+        synced = lock.newCondition();
+        pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        if (durability == Durability.REQUEST) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::runFlusher, "splitwise-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    public void append(byte[] record) {
+        if (record.length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("The record is too big: " + record.length);
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+
+        lock.lock();
+        try {
+            checkOpen();
+
+            pending = ensureCapacity(pending, RECORD_HEADER_SIZE + record.length);
+            pending.putInt(record.length);
+            pending.putInt((int) crc.getValue());
+            pending.put(record);
+
+            appendedRecords++;
+            size += RECORD_HEADER_SIZE + record.length;
+
+            if (durability == Durability.ASYNC) {
+                appended.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes everything appended so far durable: writes and fsyncs it (REQUEST), waits for the flusher to do it
+     * (BATCH) or only wakes the flusher up (ASYNC)
+     */
+    public void commit() {
+        if (durability == Durability.ASYNC) {
+            lock.lock();
+            try {
+                checkOpen();
+                appended.signal();
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+
+        flush();
+    }
+
+    /**
+     * Writes and fsyncs everything appended so far, whatever the durability
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            checkOpen();
+
+            if (flusher == null) {
+                writeAndSync();
+                return;
+            }
+
+            long target = appendedRecords;
+            appended.signal();
+            while (syncedRecords < target && failure == null) {
+                synced.awaitUninterruptibly();
+            }
+
+            if (syncedRecords < target) {
+                checkOpen(); //throws the failure
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes every record in the log, in order, to the consumer
+     */
+    public void replay(Consumer<byte[]> consumer) {
+        flush();
+
+        long end;
+        lock.lock();
+        try {
+            end = size;
+        } finally {
+            lock.unlock();
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            readRecords(in, end, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the log " + file, e);
+        }
+    }
+
+    /**
+     * Passes every whole record of a log which is not open for appending, in order, to the consumer
+     */
+    public static void read(Path file, Consumer<byte[]> consumer) {
+        try (InputStream in = Files.newInputStream(file)) {
+            readRecords(in, Files.size(file), consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the log " + file, e);
+        }
+    }
+
+    public WriteAheadLogMetrics getMetrics() {
+        lock.lock();
+        try {
+            return new WriteAheadLogMetrics(durability, appendedRecords, syncs, bytes, maxRecordsPerSync);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        lock.lock();
+        try {
+            if (failure == null) {
+                writeAndSync(); //the flusher has stopped, so it is written here
+            }
+        } finally {
+            lock.unlock();
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Error occurred while closing the log: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runFlusher() {
+        lock.lock();
+        try {
+            while (true) {
+                while (!closed && pending.position() == 0) {
+                    appended.awaitUninterruptibly();
+                }
+
+                if (closed) {
+                    return;
+                }
+
+                waitForMoreRecords();
+                try {
+                    writeAndSync();
+                } catch (UncheckedIOException e) {
+                    System.out.println("The log could not be written: " + e.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void waitForMoreRecords() {
+        long remaining = commitWindowNanos;
+        while (remaining > 0 && !closed) {
+            try {
+                remaining = appended.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock. The flusher releases the lock during the I/O,
+     * so the operations keep appending to the other buffer.
+     */
+    private void writeAndSync() {
+        if (pending.position() == 0) {
+            return;
+        }
+
+        ByteBuffer batch = pending;
+        pending = spare;
+        long target = appendedRecords;
+        long batchRecords = target - syncedRecords;
+
+        boolean unlock = flusher != null;
+        if (unlock) {
+            lock.unlock();
+        }
+
+        IOException error = null;
+        int written = batch.position();
+        try {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            batch.clear();
+            if (unlock) {
+                lock.lock();
+            }
+        }
+
+        spare = batch;
+        if (error != null) {
+            failure = error;
+            synced.signalAll();
+            throw new UncheckedIOException("Could not write the log " + file, error);
+        }
+
+        syncedRecords = target;
+        syncs++;
+        bytes += written;
+        maxRecordsPerSync = Math.max(maxRecordsPerSync, batchRecords);
+        synced.signalAll();
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("The log " + file + " has failed", failure);
+        }
+
+        if (closed) {
+            throw new IllegalStateException("The log " + file + " is closed");
+        }
+    }
+
+    /**
+     * Checks the header, finds the end of the last whole record and cuts off whatever follows it
+     *
+     * @return the end of the last whole record
+     */
+    private long recover() throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        long end;
+        try (InputStream in = Files.newInputStream(file)) {
+            end = readRecords(in, channel.size(), record -> { });
+        }
+
+        if (end < channel.size()) {
+            System.out.println("Cutting off a torn record at the end of the log " + file);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        channel.position(end);
+
+        return end;
+    }
+
+    /**
+     * @return the end of the last whole record before the limit
+     */
+    private static long readRecords(InputStream input, long limit, Consumer<byte[]> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("This file is not a SplitWise log");
+        }
+
+        long position = FILE_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        while (position + RECORD_HEADER_SIZE <= limit) {
+            int length;
+            int checksum;
+            byte[] record;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_SIZE || position + RECORD_HEADER_SIZE + length > limit) {
+                    break;
+                }
+
+                record = new byte[length];
+                in.readFully(record);
+            } catch (EOFException e) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            consumer.accept(record);
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        return position;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        bigger.put(buffer);
+
+        return bigger;
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+public record WriteAheadLogMetrics(Durability durability, long records, long syncs, long bytes,
+                                   long maxRecordsPerSync) {
+
+    /**
+     * @return the totals of two logs, e.g. of the closed segments and the current one
+     */
+    public WriteAheadLogMetrics plus(WriteAheadLogMetrics other) {
+        return new WriteAheadLogMetrics(durability, records + other.records, syncs + other.syncs,
+            bytes + other.bytes, Math.max(maxRecordsPerSync, other.maxRecordsPerSync));
+    }
+
+    public double averageRecordsPerSync() {
+        return syncs == 0 ? 0 : (double) records / syncs;
+    }
+
+    @Override
+    public String toString() {
+        return "durability=%s, records=%d, syncs=%d, bytes=%d, records/sync=%.1f (max %d)".formatted(durability,
+            records, syncs, bytes, averageRecordsPerSync(), maxRecordsPerSync);
+    }
+}
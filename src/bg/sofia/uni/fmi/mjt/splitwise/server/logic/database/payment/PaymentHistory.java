@@ -0,0 +1,354 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.payment;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+/**
+ * The payments of every user in two files: the payments one after the other and an index with the position and
+ * the time of every payment, 16 bytes each. The sequence number of a payment is its place in the index, so a page
+ * is found with a binary search by time in the index and read with one read of the payments file. Nothing but the
+ * sizes of the files is kept in memory.
+ * The files are not synced on append: the log of LogDatabase has every payment with its sequence number and
+ * restore() appends whatever a crash cut off when the log is replayed. sync() must be called before compacting it.
+ */
+public class PaymentHistory {
+    private static final String PAYMENTS_FILE_FORMAT = "%s.payments";
+    private static final String INDEX_FILE_FORMAT = "%s.index";
+    private static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES;
+
+    private final Path directory;
+    private final Map<String, UserHistory> histories;
+    private final Set<String> unsynced;
+
+    public PaymentHistory(Path directory) {
+        this.directory = directory;
+
+        histories = new ConcurrentHashMap<>();
+        unsynced = ConcurrentHashMap.newKeySet();
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the payments directory " + directory, e);
+        }
+    }
+
+    /**
+     * @param recorded gets the sequence number of the payment before any other payment of the user is appended
+     */
+    public void append(String username, Payment payment, LongConsumer recorded) {
+        UserHistory history = history(username);
+
+        synchronized (history) {
+            long sequence = history.count;
+            write(username, history, payment);
+            recorded.accept(sequence);
+        }
+    }
+
+    /**
+     * Appends a payment replayed from the log unless the history already has it
+     */
+    public void restore(String username, long sequence, Payment payment) {
+        UserHistory history = history(username);
+
+        synchronized (history) {
+            if (sequence < history.count) {
+                return;
+            }
+
+            if (sequence > history.count) {
+                System.out.printf("Payments %d to %d of %s are missing%n", history.count, sequence - 1, username);
+            }
+
+            write(username, history, payment);
+        }
+    }
+
+    public long count(String username) {
+        UserHistory history = history(username);
+
+        synchronized (history) {
+            return history.count;
+        }
+    }
+
+    public PaymentPage read(String username, PaymentQuery query) {
+        UserHistory history = history(username);
+
+        long count;
+        long paymentsSize;
+        synchronized (history) { //appends only add after these, so the rest is read without the lock
+            count = history.count;
+            paymentsSize = history.paymentsSize;
+        }
+
+        if (count == 0) { //a user without payments has no files to open
+            return PaymentPage.empty();
+        }
+
+        try (FileChannel index = openForReading(indexFile(username))) {
+            long first = firstAtOrAfter(index, count, query.from());
+            long end = Math.min(query.before(), firstAtOrAfter(index, count, query.to()));
+            if (end <= first) {
+                return PaymentPage.empty();
+            }
+
+            long start = Math.max(first, end - query.limit());
+            long[] offsets = readOffsets(index, start, end, count, paymentsSize);
+
+            List<Payment> payments = readPayments(username, offsets);
+            return new PaymentPage(payments, start > first ? start : PaymentPage.NO_MORE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the payments of " + username, e);
+        }
+    }
+
+    /**
+     * Makes every payment appended so far durable
+     */
+    public void sync() {
+        for (String username : new ArrayList<>(unsynced)) {
+            unsynced.remove(username); //an append after this adds the user again
+
+            try (FileChannel payments = FileChannel.open(paymentsFile(username), StandardOpenOption.WRITE);
+                 FileChannel index = FileChannel.open(indexFile(username), StandardOpenOption.WRITE)) {
+                payments.force(false);
+                index.force(false);
+            } catch (IOException e) {
+                unsynced.add(username);
+                throw new UncheckedIOException("Could not sync the payments of " + username, e);
+            }
+        }
+    }
+
+    private UserHistory history(String username) {
+        return histories.computeIfAbsent(username, user -> {
+            try {
+                return UserHistory.load(paymentsFile(user), indexFile(user));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the payments of " + user, e);
+            }
+        });
+    }
+
+    /**
+     * Must be called while holding the lock of the history. The payment is written before its index entry,
+     * so the index never points after the end of the payments file.
+     */
+    private void write(String username, UserHistory history, Payment payment) {
+        byte[] record = encode(payment);
+        long time = Math.max(payment.time(), history.lastTime); //the index must be sorted by time
+
+        try (FileChannel payments = FileChannel.open(paymentsFile(username), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+             FileChannel index = FileChannel.open(indexFile(username), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE)) {
+
+            writeFully(payments, ByteBuffer.allocate(Integer.BYTES + record.length).putInt(record.length)
+                .put(record).flip(), history.paymentsSize);
+            writeFully(index, ByteBuffer.allocate(INDEX_ENTRY_SIZE).putLong(history.paymentsSize).putLong(time)
+                .flip(), history.count * INDEX_ENTRY_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write a payment of " + username, e);
+        }
+
+        history.paymentsSize += Integer.BYTES + record.length;
+        history.count++;
+        history.lastTime = time;
+        unsynced.add(username);
+    }
+
+    /**
+     * @return the sequence number of the first payment made at or after the time, or the count if there is none
+     */
+    private static long firstAtOrAfter(FileChannel index, long count, long time) throws IOException {
+        ByteBuffer entryTime = ByteBuffer.allocate(Long.BYTES);
+
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            readFully(index, entryTime.clear(), middle * INDEX_ENTRY_SIZE + Long.BYTES);
+
+            if (entryTime.getLong(0) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return the offsets of the payments from start to end and the offset after the last one
+     */
+    private static long[] readOffsets(FileChannel index, long start, long end, long count, long paymentsSize)
+        throws IOException {
+        int entries = (int) (end - start);
+        ByteBuffer buffer = ByteBuffer.allocate((end < count ? entries + 1 : entries) * INDEX_ENTRY_SIZE);
+        readFully(index, buffer, start * INDEX_ENTRY_SIZE);
+
+        long[] offsets = new long[entries + 1];
+        for (int i = 0; i < entries; i++) {
+            offsets[i] = buffer.getLong(i * INDEX_ENTRY_SIZE);
+        }
+        offsets[entries] = end < count ? buffer.getLong(entries * INDEX_ENTRY_SIZE) : paymentsSize;
+
+        return offsets;
+    }
+
+    private List<Payment> readPayments(String username, long[] offsets) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[offsets.length - 1] - offsets[0]));
+        try (FileChannel payments = openForReading(paymentsFile(username))) {
+            readFully(payments, buffer, offsets[0]);
+        }
+
+        List<Payment> result = new ArrayList<>(offsets.length - 1);
+        for (int i = 0; i < offsets.length - 1; i++) {
+            int position = (int) (offsets[i] - offsets[0]);
+            byte[] record = new byte[buffer.getInt(position)];
+            buffer.get(position + Integer.BYTES, record);
+
+            result.add(decode(record));
+        }
+
+        return result;
+    }
+
+    private static byte[] encode(Payment payment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(payment.issuer());
+            out.writeLong(payment.amount());
+            out.writeUTF(payment.reason());
+            out.writeInt(payment.splitWith().size());
+            for (String user : payment.splitWith()) {
+                out.writeUTF(user);
+            }
+            out.writeLong(payment.time());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode a payment", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static Payment decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            String issuer = in.readUTF();
+            long amount = in.readLong();
+            String reason = in.readUTF();
+
+            int users = in.readInt();
+            Set<String> splitWith = new HashSet<>();
+            for (int i = 0; i < users; i++) {
+                splitWith.add(in.readUTF());
+            }
+
+            return new Payment(issuer, amount, reason, Set.copyOf(splitWith), in.readLong());
+        }
+    }
+
+    private static FileChannel openForReading(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the payments file");
+            }
+            position += read;
+        }
+    }
+
+    private Path paymentsFile(String username) {
+        return directory.resolve(PAYMENTS_FILE_FORMAT.formatted(username));
+    }
+
+    private Path indexFile(String username) {
+        return directory.resolve(INDEX_FILE_FORMAT.formatted(username));
+    }
+
+    /**
+     * The sizes of the files of a user; guarded by its own monitor
+     */
+    private static final class UserHistory {
+        private long count;
+        private long paymentsSize;
+        private long lastTime;
+
+        /**
+         * Cuts off the payment which a crash left half-written, if any
+         */
+        private static UserHistory load(Path paymentsFile, Path indexFile) throws IOException {
+            UserHistory history = new UserHistory();
+            if (!Files.exists(indexFile) || !Files.exists(paymentsFile)) {
+                Files.deleteIfExists(indexFile);
+                Files.deleteIfExists(paymentsFile);
+                return history;
+            }
+
+            try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileChannel payments = FileChannel.open(paymentsFile, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE)) {
+                long count = index.size() / INDEX_ENTRY_SIZE;
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+                ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+
+                while (count > 0) {
+                    readFully(index, entry.clear(), (count - 1) * INDEX_ENTRY_SIZE);
+                    long offset = entry.getLong(0);
+
+                    if (offset + Integer.BYTES <= payments.size()) {
+                        readFully(payments, length.clear(), offset);
+                        long end = offset + Integer.BYTES + length.getInt(0);
+
+                        if (end <= payments.size()) {
+                            history.paymentsSize = end;
+                            history.lastTime = entry.getLong(Long.BYTES);
+                            break;
+                        }
+                    }
+
+                    count--;
+                }
+
+                history.count = count;
+                index.truncate(count * INDEX_ENTRY_SIZE);
+                payments.truncate(history.paymentsSize);
+            }
+
+            return history;
+        }
+    }
+}
@@ -2,21 +2,40 @@ package bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend;
 
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The friendships are changed under the locks of their users, but a user loaded lazily reads the friendships of
+ * the friends in memory without their locks, so the map is concurrent.
+ * The friendships added with addNewFriendship() or changed through the list are remembered until the database
+ * takes them, so saving a change does not depend on the size of the list. Those added with addFriendship() are
+ * already saved, e.g. loaded, or saved by their group.
+ */
 public class FriendsList implements Serializable {
     @Serial
     private static final long serialVersionUID = 2844610587003953092L;
     private String owner;
     private Map<String, Friendship> friendships;
 
+    private transient Set<Friendship> changedFriendships; //since the last save, guarded by the lock of the owner
+
     public FriendsList(String owner) {
         this.owner = owner;
-        friendships = new HashMap<>();
+        friendships = new ConcurrentHashMap<>();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        friendships = new ConcurrentHashMap<>(friendships); //the lists saved before were HashMaps
     }
 
     public void addFriendship(Friendship friendship) {
@@ -29,6 +48,28 @@ public class FriendsList implements Serializable {
         }
     }
 
+    /**
+     * Adds a friendship which is not saved yet
+     */
+    public void addNewFriendship(Friendship friendship) {
+        addFriendship(friendship);
+        markChanged(friendship);
+    }
+
+    /**
+     * @return the friendships added with addNewFriendship(), lent or received on since the last call
+     */
+    public Set<Friendship> takeChangedFriendships() {
+        if (changedFriendships == null) {
+            return Set.of();
+        }
+
+        Set<Friendship> result = changedFriendships;
+        changedFriendships = null;
+
+        return result;
+    }
+
     public String getOwner() {
         return owner;
     }
@@ -41,20 +82,24 @@ public class FriendsList implements Serializable {
         return friendships.containsKey(friend);
     }
 
-    public void lendTo(String friend, double amount) {
+    public void lendTo(String friend, long amount) {
         if (!friendships.containsKey(friend)) {
             throw new IllegalArgumentException("There is no such friend in this friends list");
         }
 
-        friendships.get(friend).lend(owner, amount);
+        Friendship friendship = friendships.get(friend);
+        friendship.lend(owner, amount);
+        markChanged(friendship);
     }
 
-    public void receiveFrom(String friend, double amount) throws ReceiveException {
+    public void receiveFrom(String friend, long amount) throws ReceiveException {
         if (!friendships.containsKey(friend)) {
             throw new IllegalArgumentException("There is no such friend in this friends list");
         }
 
-        friendships.get(friend).receive(owner, amount);
+        Friendship friendship = friendships.get(friend);
+        friendship.receive(owner, amount);
+        markChanged(friendship);
     }
 
     public String getStatus() {
@@ -75,4 +120,12 @@ public class FriendsList implements Serializable {
 
         return sb.toString();
     }
+
+    private void markChanged(Friendship friendship) {
+        if (changedFriendships == null) {
+            changedFriendships = new HashSet<>();
+        }
+
+        changedFriendships.add(friendship);
+    }
 }
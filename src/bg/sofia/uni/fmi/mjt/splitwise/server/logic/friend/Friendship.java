@@ -1,23 +1,44 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 
 public class Friendship implements Serializable {
     @Serial
     private static final long serialVersionUID = -4890959945759726885L;
+    private static final String LEGACY_LEFT_OWES = "leftOwes"; //a double, in the files saved before the cents
+
+    //the saved fields, so the files with the old double field can still be read
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("left", String.class),
+        new ObjectStreamField("right", String.class),
+        new ObjectStreamField("leftOwesCents", long.class),
+        new ObjectStreamField(LEGACY_LEFT_OWES, double.class)
+    };
+
     private String left;
     private String right;
-    private double leftOwes; //if positive, left must give money to right; if negative -> left waits to receive money
+    //in cents; if positive, left must give money to right; if negative -> left waits to receive money
+    private long leftOwes;
+
+    //what the database has not saved yet; transient, so everything deserialized counts as saved
+    private transient boolean unsavedCreation;
+    private transient long unsavedChange;
 
     public Friendship(String left, String right) {
         this.left = left;
         this.right = right;
 
         leftOwes = 0;
+        unsavedCreation = true;
     }
 
     public String getLeft() {
@@ -28,19 +49,26 @@ public class Friendship implements Serializable {
         return right;
     }
 
-    public void lend(String lender, double amount) {
-        if (lender.equals(left)) {
-            leftOwes -= amount;
-        } else if (lender.equals(right)) {
-            leftOwes += amount;
-        } else {
-            throw new IllegalArgumentException("The lender is not part of this friendship");
-        }
+    /**
+     * @throws ArithmeticException if the debt would not fit in a long; nothing is changed then
+     */
+    public void lend(String lender, long amount) {
+        long change = lendChange(lender, amount);
+
+        leftOwes = Math.addExact(leftOwes, change);
+        unsavedChange += change;
+    }
+
+    /**
+     * @return whether lend() would keep the debt in a long
+     */
+    public boolean canLend(String lender, long amount) {
+        long change = lendChange(lender, amount);
 
-        DoubleValidator.round(leftOwes, 2);
+        return change >= 0 ? leftOwes <= Long.MAX_VALUE - change : leftOwes >= Long.MIN_VALUE - change;
     }
 
-    public void receive(String receiver, double amount) throws ReceiveException {
+    public void receive(String receiver, long amount) throws ReceiveException {
         if (Math.abs(leftOwes) < amount) {
             throw new ReceiveException(
                 "You want to mark that you received more money than you are owed. Operation canceled");
@@ -53,6 +81,7 @@ public class Friendship implements Serializable {
             }
 
             leftOwes += amount;
+            unsavedChange += amount;
         } else if (receiver.equals(right)) {
             if (leftOwes <= 0) {
                 throw new ReceiveException(
@@ -60,14 +89,36 @@ public class Friendship implements Serializable {
             }
 
             leftOwes -= amount;
+            unsavedChange -= amount;
         } else {
             throw new IllegalArgumentException("The lender is not part of this friendship");
         }
+    }
+
+    /**
+     * @return true only the first time it is called for a friendship created after loading
+     */
+    public boolean takeUnsavedCreation() {
+        boolean result = unsavedCreation;
+        unsavedCreation = false;
+
+        return result;
+    }
+
+    /**
+     * @return how much leftOwes has changed since the previous call (or since loading), in cents
+     */
+    public long takeUnsavedChange() {
+        long result = unsavedChange;
+        unsavedChange = 0;
 
-        DoubleValidator.round(leftOwes, 2);
+        return result;
     }
 
-    public double getUserOwes(String username) {
+    /**
+     * @return how much the user owes to the other one, in cents
+     */
+    public long getUserOwes(String username) {
         if (username.equals(left)) {
             return leftOwes;
         } else if (username.equals(right)) {
@@ -78,23 +129,22 @@ public class Friendship implements Serializable {
     }
 
     public String getStatus(String user) {
-        DoubleValidator.round(leftOwes, 2);
         if (leftOwes == 0) {
             return "";
         }
 
         if (user.equals(left)) {
             if (leftOwes > 0) {
-                return right + ": You owe " + leftOwes + " BGN";
+                return right + ": You owe " + Money.format(leftOwes) + " BGN";
             }
-            return right + ": Owes you " + (-leftOwes) + " BGN";
+            return right + ": Owes you " + Money.format(-leftOwes) + " BGN";
 
         } else if (user.equals(right)) {
             if (leftOwes > 0) {
-                return left + ": Owes you " + leftOwes + " BGN";
+                return left + ": Owes you " + Money.format(leftOwes) + " BGN";
             }
 
-            return left + ": You owe " + (-leftOwes) + " BGN";
+            return left + ": You owe " + Money.format(-leftOwes) + " BGN";
         } else {
             throw new IllegalArgumentException("The user is not part of this friendship");
         }
@@ -105,7 +155,7 @@ public class Friendship implements Serializable {
         if (this == o) return true;
         if (!(o instanceof Friendship that)) return false;
 
-        if (Double.compare(that.leftOwes, leftOwes) != 0) return false;
+        if (that.leftOwes != leftOwes) return false;
         if (getLeft() != null ? !getLeft().equals(that.getLeft()) : that.getLeft() != null) return false;
         return getRight() != null ? getRight().equals(that.getRight()) : that.getRight() == null;
     }
@@ -113,11 +163,44 @@ public class Friendship implements Serializable {
     @Override
     public int hashCode() {
         int result;
-        long temp;
         result = getLeft() != null ? getLeft().hashCode() : 0;
         result = 31 * result + (getRight() != null ? getRight().hashCode() : 0);
-        temp = Double.doubleToLongBits(leftOwes);
-        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + Long.hashCode(leftOwes);
         return result;
     }
+
+    /**
+     * @return the change of leftOwes when the lender lends the amount
+     */
+    private long lendChange(String lender, long amount) {
+        if (lender.equals(left)) {
+            return -amount;
+        } else if (lender.equals(right)) {
+            return amount;
+        }
+
+        throw new IllegalArgumentException("The lender is not part of this friendship");
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("left", left);
+        fields.put("right", right);
+        fields.put("leftOwesCents", leftOwes);
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        left = (String) fields.get("left", null);
+        right = (String) fields.get("right", null);
+
+        if (fields.defaulted("leftOwesCents")) { //saved before the cents
+            leftOwes = Money.toCents(fields.get(LEGACY_LEFT_OWES, 0.0));
+        } else {
+            leftOwes = fields.get("leftOwesCents", 0L);
+        }
+    }
 }
\ No newline at end of file
@@ -1,75 +1,398 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend;
 
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Splitter;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.SharePlan;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.SplitException;
 
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * A group keeps its debts either pairwise - a friendship for every two members, O(N²) - or as a ledger -
+ * one net balance per member, O(N). A ledger does not know who owes whom, so its pairwise view is computed
+ * on demand by matching the debtors with the creditors.
+ */
 public class Group implements Serializable {
     @Serial
     private static final long serialVersionUID = 4237572493374807466L;
+    private static final String BALANCE_TOO_BIG_MESSAGE =
+        "The expense would make a balance in this group too big. Settle up the old debts first";
     private String name;
-    Map<String, FriendsList> friendsLists; //everyone has a friends-list filled with everyone else
+    Map<String, FriendsList> friendsLists; //everyone has a friends-list filled with everyone else; null in a ledger
+
+    @SuppressWarnings("serial") //always a LinkedHashMap; the declared type is saved, so it stays Map
+    private Map<String, Integer> memberIndexes; //null in a pairwise group
+    private long[] balances; //in cents; positive - the member is owed money, negative - the member owes money
+
+    private transient boolean unsavedCreation; //transient, so a deserialized group counts as saved
+    private transient Set<Friendship> changedFriendships; //since the last save, so it costs O(changed) and not O(N²)
+    private transient long[] changedBalances;
+    //of a ledger; a view of older balances than balancesVersion is computed again on the next read
+    private transient volatile PairwiseView pairwiseView;
+    private transient volatile long balancesVersion;
 
     public Group(String name, String... members) throws GroupException {
         this.name = name;
 
         friendsLists = new HashMap<>();
         addMembersToFriendsLists(members);
+        unsavedCreation = true;
+    }
+
+    private Group(String name) {
+        this.name = name;
+        unsavedCreation = true;
+    }
+
+    /**
+     * @return a group which keeps one net balance per member instead of a friendship for every two members
+     */
+    public static Group ofLedger(String name, String... members) throws GroupException {
+        Group group = new Group(name);
+
+        group.memberIndexes = new LinkedHashMap<>();
+        for (String member : members) {
+            if (group.memberIndexes.putIfAbsent(member, group.memberIndexes.size()) != null) {
+                throw new GroupException("There are 2 identical usernames in list of group members");
+            }
+        }
+        group.balances = new long[members.length];
+
+        return group;
     }
 
     public String getName() {
         return name;
     }
 
+    public boolean isLedger() {
+        return balances != null;
+    }
+
+    /**
+     * @return the friends-lists of a pairwise group or the pairwise view of a ledger
+     */
     public Map<String, FriendsList> getFriendsLists() {
-        return Collections.unmodifiableMap(friendsLists);
+        return Collections.unmodifiableMap(isLedger() ? getPairwiseView() : friendsLists);
     }
 
-    public void split(String payer, double amount) throws SplitException {
-        if (!friendsLists.containsKey(payer)) {
+    /**
+     * @param amount the amount in cents
+     */
+    public void split(String payer, long amount) throws SplitException {
+        if (!hasMember(payer)) {
             throw new IllegalArgumentException("The payer of this expense is not in this group");
         }
 
-        Map<Double, Integer> shares = Splitter.split(amount, friendsLists.size());
+        if (isLedger()) {
+            SharePlan plan = SharePlan.of(amount, balances.length);
+            long[] shares = new long[balances.length];
+            for (int i = 0; i < shares.length; i++) {
+                shares[i] = plan.shareOf(i);
+            }
+            changeBalances(payer, amount, shares);
+            return;
+        }
+
+        SharePlan plan = SharePlan.of(amount, friendsLists.size());
+        Map<String, Friendship> friendships = friendsLists.get(payer).getFriendships();
+
+        int part = 0;
+        for (Friendship friendship : friendships.values()) {
+            checkCanLend(friendship, payer, plan.shareOf(part++));
+        }
+
+        part = 0;
+        for (Friendship friendship : friendships.values()) {
+            friendship.lend(payer, plan.shareOf(part++));
+            markChanged(friendship);
+        } //the last part is the share of the payer
+    }
+
+    /**
+     * Splits the amount in proportion to the weights of the members, e.g. 2 for a couple and 1 for the rest
+     *
+     * @param amount  the amount in cents
+     * @param weights the weight of every member, the payer included
+     */
+    public void split(String payer, long amount, Map<String, Integer> weights) throws SplitException {
+        if (!hasMember(payer)) {
+            throw new IllegalArgumentException("The payer of this expense is not in this group");
+        }
+
+        if (!weights.keySet().equals(getMembers())) {
+            throw new IllegalArgumentException("Every member of this group must have a weight");
+        }
+
+        String[] members = getMembers().toArray(String[]::new);
+        int[] memberWeights = new int[members.length];
+        for (int i = 0; i < members.length; i++) {
+            memberWeights[i] = weights.get(members[i]);
+        }
+
+        long[] shares = SharePlan.weighted(amount, memberWeights);
 
-        Collection<Friendship> friendships = friendsLists.get(payer).getFriendships().values();
-        Iterator<Friendship> iterator = friendships.iterator();
+        if (isLedger()) {
+            changeBalances(payer, amount, shares); //the members are in the order of their indexes
+            return;
+        }
 
-        for (Map.Entry<Double, Integer> share : shares.entrySet()) {
-            for (int i = 0; i < share.getValue(); i++) {
-                if (!iterator.hasNext()) { //the share values are one more than the friends (the payer also has a share)
-                    return;
-                }
+        Map<String, Friendship> friendships = friendsLists.get(payer).getFriendships();
+        for (int i = 0; i < members.length; i++) {
+            if (!members[i].equals(payer)) {
+                checkCanLend(friendships.get(members[i]), payer, shares[i]);
+            }
+        }
 
-                iterator.next().lend(payer, share.getKey());
+        for (int i = 0; i < members.length; i++) {
+            if (!members[i].equals(payer)) {
+                Friendship friendship = friendships.get(members[i]);
+                friendship.lend(payer, shares[i]);
+                markChanged(friendship);
             }
         }
     }
 
-    public void receive(String receiver, double amount, String sender) throws ReceiveException {
-        if (!friendsLists.containsKey(receiver) || !friendsLists.containsKey(sender)) {
+    public void receive(String receiver, long amount, String sender) throws ReceiveException {
+        if (!hasMember(receiver) || !hasMember(sender)) {
             throw new IllegalArgumentException("The receiver or sender are not in this group");
         }
 
-        friendsLists.get(receiver).receiveFrom(sender, amount);
+        if (isLedger()) {
+            int receiverIndex = memberIndexes.get(receiver);
+            int senderIndex = memberIndexes.get(sender);
+            if (balances[receiverIndex] < amount || -balances[senderIndex] < amount) {
+                throw new ReceiveException(
+                    "You want to mark that you received more money than you are owed. Operation canceled");
+            }
+
+            changeBalance(senderIndex, amount);
+            changeBalance(receiverIndex, -amount);
+            return;
+        }
+
+        Friendship friendship = friendsLists.get(receiver).getFriendships().get(sender);
+        friendship.receive(receiver, amount); //not through the list, the group remembers the change itself
+        markChanged(friendship);
+    }
+
+    /**
+     * @return true only the first time it is called for a group created after loading
+     */
+    public boolean takeUnsavedCreation() {
+        boolean result = unsavedCreation;
+        unsavedCreation = false;
+
+        return result;
+    }
+
+    /**
+     * @return the friendships changed by split() and receive() since the last call
+     */
+    public Set<Friendship> takeChangedFriendships() {
+        if (changedFriendships == null) {
+            return Set.of();
+        }
+
+        Set<Friendship> result = changedFriendships;
+        changedFriendships = null;
+
+        return result;
+    }
+
+    /**
+     * @return the balances changed by split() and receive() in a ledger since the last call
+     */
+    public BalanceChanges takeChangedBalances() {
+        if (changedBalances == null) {
+            return new BalanceChanges(new String[0], new long[0]);
+        }
+
+        String[] members = getMembers().toArray(String[]::new);
+        int count = 0;
+        for (int i = 0; i < changedBalances.length; i++) {
+            if (changedBalances[i] != 0) {
+                members[count] = members[i];
+                changedBalances[count++] = changedBalances[i];
+            }
+        }
+
+        BalanceChanges result =
+            new BalanceChanges(Arrays.copyOf(members, count), Arrays.copyOf(changedBalances, count));
+        changedBalances = null;
+
+        return result;
+    }
+
+    /**
+     * Applies saved changes to the balances of a ledger; they do not count as unsaved
+     */
+    public void applyBalanceChanges(String[] members, long[] changes) {
+        for (int i = 0; i < members.length; i++) {
+            Integer index = memberIndexes.get(members[i]);
+            if (index != null) {
+                balances[index] += changes[i];
+            }
+        }
+        balancesVersion++;
+    }
+
+    /**
+     * @return in cents; positive if the member is owed money, negative if the member owes money
+     */
+    public long getBalance(String member) {
+        if (isLedger()) {
+            return balances[memberIndexes.get(member)];
+        }
+
+        long balance = 0;
+        for (Friendship friendship : friendsLists.get(member).getFriendships().values()) {
+            balance -= friendship.getUserOwes(member);
+        }
+
+        return balance;
+    }
+
+    /**
+     * @return in cents, the net balance of every member in the order of getMembers()
+     */
+    public Map<String, Long> getBalances() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String member : getMembers()) {
+            result.put(member, getBalance(member));
+        }
+
+        return result;
     }
 
     public boolean hasMember(String username) {
-        return friendsLists.containsKey(username);
+        return isLedger() ? memberIndexes.containsKey(username) : friendsLists.containsKey(username);
     }
 
     public Set<String> getMembers() {
-        return friendsLists.keySet();
+        return isLedger() ? Collections.unmodifiableSet(memberIndexes.keySet()) : friendsLists.keySet();
+    }
+
+    private void changeBalance(int index, long change) {
+        if (changedBalances == null) {
+            changedBalances = new long[balances.length];
+        }
+
+        balances[index] = Math.addExact(balances[index], change);
+        changedBalances[index] += change;
+        balancesVersion++;
+    }
+
+    /**
+     * The payer pays the amount and every member owes its share; all or none of the balances are changed
+     */
+    private void changeBalances(String payer, long amount, long[] shares) throws SplitException {
+        long[] changes = new long[shares.length];
+        int payerIndex = memberIndexes.get(payer);
+        for (int i = 0; i < changes.length; i++) {
+            changes[i] = i == payerIndex ? amount - shares[i] : -shares[i];
+        }
+
+        long[] changed = new long[balances.length];
+        try {
+            for (int i = 0; i < changes.length; i++) {
+                changed[i] = Math.addExact(balances[i], changes[i]);
+            }
+        } catch (ArithmeticException e) {
+            throw new SplitException(BALANCE_TOO_BIG_MESSAGE, e);
+        }
+
+        if (changedBalances == null) {
+            changedBalances = new long[balances.length];
+        }
+
+        for (int i = 0; i < changes.length; i++) {
+            balances[i] = changed[i];
+            changedBalances[i] += changes[i];
+        }
+        balancesVersion++;
+    }
+
+    private static void checkCanLend(Friendship friendship, String lender, long amount) throws SplitException {
+        if (!friendship.canLend(lender, amount)) {
+            throw new SplitException(BALANCE_TOO_BIG_MESSAGE);
+        }
+    }
+
+    /**
+     * @return the pairwise view of the current balances, computed once per change of the balances, so the status of
+     * every member after a split costs one O(N log N) computation and not one each
+     */
+    private Map<String, FriendsList> getPairwiseView() {
+        long version = balancesVersion; //before reading the balances, so a concurrent change is not hidden
+        PairwiseView view = pairwiseView;
+        if (view == null || view.version() != version) {
+            view = new PairwiseView(version, pairwiseView());
+            pairwiseView = view;
+        }
+
+        return view.friendsLists();
+    }
+
+    /**
+     * Matches the biggest debtor with the biggest creditor until everything is settled,
+     * so there are at most N - 1 nonzero debts
+     */
+    private Map<String, FriendsList> pairwiseView() {
+        String[] members = getMembers().toArray(String[]::new);
+        long[] remaining = balances.clone();
+
+        Map<String, FriendsList> view = new HashMap<>();
+        for (String member : members) {
+            view.put(member, new FriendsList(member));
+        }
+
+        Integer[] order = new Integer[members.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> remaining[i]));
+
+        int debtor = 0;
+        int creditor = order.length - 1;
+        while (debtor < creditor && remaining[order[debtor]] < 0 && remaining[order[creditor]] > 0) {
+            int from = order[debtor];
+            int to = order[creditor];
+            long amount = Math.min(-remaining[from], remaining[to]);
+
+            Friendship friendship = new Friendship(members[from], members[to]);
+            friendship.lend(members[to], amount);
+            view.get(members[from]).addFriendship(friendship);
+            view.get(members[to]).addFriendship(friendship);
+
+            remaining[from] += amount;
+            remaining[to] -= amount;
+            if (remaining[from] == 0) {
+                debtor++;
+            }
+            if (remaining[to] == 0) {
+                creditor--;
+            }
+        }
+
+        return view;
+    }
+
+    private void markChanged(Friendship friendship) {
+        if (changedFriendships == null) {
+            changedFriendships = new LinkedHashSet<>();
+        }
+
+        changedFriendships.add(friendship);
     }
 
     private void addMembersToFriendsLists(String... members) throws GroupException {
@@ -91,18 +414,32 @@ public class Group implements Serializable {
     }
 
     public String getStatusFor(String user) throws GroupException {
-        if (!friendsLists.containsKey(user)) {
+        if (!hasMember(user)) {
             throw new GroupException("The user is not part of this group");
         }
 
-        return name + ":" + System.lineSeparator() + friendsLists.get(user).getStatus();
+        return name + ":" + System.lineSeparator() + getFriendsLists().get(user).getStatus();
     }
 
-    public double leftOwesToRight(String left, String right) throws GroupException {
+    /**
+     * @return in cents
+     */
+    public long leftOwesToRight(String left, String right) throws GroupException {
         if (!hasMember(left) || !hasMember(right)) {
             throw new GroupException("The users are not part of this group");
         }
 
-        return friendsLists.get(left).getFriendships().get(right).getUserOwes(left);
+        Friendship friendship = getFriendsLists().get(left).getFriendships().get(right);
+
+        return friendship == null ? 0 : friendship.getUserOwes(left);
+    }
+
+    private record PairwiseView(long version, Map<String, FriendsList> friendsLists) {
+    }
+
+    /**
+     * @param changes in cents, the change of the balance of every member, in the same order
+     */
+    public record BalanceChanges(String[] members, long[] changes) {
     }
 }
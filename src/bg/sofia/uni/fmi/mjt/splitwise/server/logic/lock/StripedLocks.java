@@ -0,0 +1,76 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.lock;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed number of locks shared by an unbounded number of keys (usernames, group names, file paths).
+ * All the locks that an operation needs must be taken with one call of lock(), which takes them in increasing
+ * stripe order. That way two operations can never wait for each other in a cycle.
+ */
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("The number of stripes must be positive");
+        }
+
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * @param keys the keys to lock; equal keys and keys on the same stripe are locked only once
+     * @return a handle which releases the locks when closed
+     */
+    public Locked lock(String... keys) {
+        int[] stripes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            stripes[i] = stripeOf(keys[i]);
+        }
+        Arrays.sort(stripes);
+
+        int unique = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (i == 0 || stripes[i] != stripes[i - 1]) {
+                stripes[unique++] = stripes[i];
+            }
+        }
+
+        int[] taken = Arrays.copyOf(stripes, unique);
+        for (int i = 0; i < taken.length; i++) {
+            locks[taken[i]].lock();
+        }
+
+        return new Locked(taken);
+    }
+
+    public int getStripesCount() {
+        return locks.length;
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); //spread the higher bits like HashMap does
+
+        return Math.floorMod(hash, locks.length);
+    }
+
+    public final class Locked implements AutoCloseable {
+        private final int[] stripes;
+
+        private Locked(int[] stripes) {
+            this.stripes = stripes;
+        }
+
+        @Override
+        public void close() {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+}
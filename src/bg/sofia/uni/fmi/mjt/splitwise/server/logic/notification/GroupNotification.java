@@ -1,14 +1,14 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Objects;
 
 public class GroupNotification extends Notification implements Serializable {
-    protected static final String GROUP_SPLIT = "%s has split %.2f for [%s] in group [%s]" ;
+    protected static final String GROUP_SPLIT = "%s has split %s for [%s] in group [%s]" ;
 
     @Serial
     private static final long serialVersionUID = 1851922253419700158L;
@@ -23,12 +23,20 @@ public class GroupNotification extends Notification implements Serializable {
         return new GroupNotification(group, creator + " added you to group [" + group + "]");
     }
 
-    public static GroupNotification ofSplitting(String group, User actor, double amount, String reason) {
-        return new GroupNotification(group, GROUP_SPLIT.formatted(actor, amount, reason, group));
+    public static GroupNotification ofSplitting(String group, User actor, long amount, String reason) {
+        return new GroupNotification(group, GROUP_SPLIT.formatted(actor, Money.format(amount), reason, group));
     }
 
-    public static GroupNotification ofReceiving(String group, User actor, double amount) {
-        return new GroupNotification(group, RECEIVE.formatted(actor, amount));
+    public static GroupNotification ofReceiving(String group, User actor, long amount) {
+        return new GroupNotification(group, RECEIVE.formatted(actor, Money.format(amount)));
+    }
+
+    public static GroupNotification ofText(String group, String text) {
+        return new GroupNotification(group, text);
+    }
+
+    public String getGroup() {
+        return group;
     }
 
     @Override
@@ -0,0 +1,193 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The unread notifications of a user in a ring buffer which grows up to a fixed capacity. Every notification gets
+ * the next sequence number and the cursor is the sequence number of the first unread one, so reading a page only
+ * moves the cursor. When the buffer is full of unread notifications the oldest one is collapsed into a count -
+ * one for the friends and one per group - and the counts are delivered as summaries in front of the next page.
+ * So a user who never logs in costs at most the capacity and a count per group.
+ * Not thread-safe; guarded by its User.
+ */
+public class Inbox {
+    public static final int DEFAULT_CAPACITY = 100;
+    private static final int INITIAL_SIZE = 4;
+
+    private static final String COLLAPSED_FRIENDS = "... and %d older notifications from your friends";
+    private static final String COLLAPSED_GROUP = "... and %d older notifications in group [%s]";
+
+    private final int capacity;
+    private Notification[] ring; //the notification with sequence number s is at s % ring.length; null if empty
+
+    private long next;
+    private long cursor;
+
+    private int collapsedFromFriends;
+    private final Map<String, Integer> collapsedFromGroups;
+
+    public Inbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Inbox(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param cursor the sequence number of the first notification which will be added
+     */
+    public Inbox(int capacity, long cursor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.next = cursor;
+        this.cursor = cursor;
+
+        collapsedFromGroups = new LinkedHashMap<>();
+    }
+
+    public void add(Notification notification) {
+        if (next < cursor) { //a page read before this notification was added already covers it
+            next++;
+            return;
+        }
+
+        if (ring == null) {
+            ring = new Notification[Math.min(INITIAL_SIZE, capacity)];
+        } else if (next - first() == ring.length) {
+            if (ring.length < capacity) {
+                grow();
+            } else {
+                collapse(ring[index(next)]); //the oldest one, which is overwritten now
+            }
+        }
+
+        ring[index(next)] = notification;
+        next++;
+    }
+
+    /**
+     * Moves the cursor after the returned notifications
+     */
+    public NotificationPage read(int limit) {
+        List<Notification> result = new ArrayList<>(summaries());
+        collapsedFromFriends = 0;
+        collapsedFromGroups.clear();
+
+        long end = Math.min(next, first() + limit);
+        for (long sequence = first(); sequence < end; sequence++) {
+            result.add(ring[index(sequence)]);
+            ring[index(sequence)] = null;
+        }
+        cursor = Math.max(cursor, end);
+
+        if (cursor >= next) {
+            ring = null; //nothing unread is left, so the memory is freed until the next notification
+        }
+
+        return new NotificationPage(result, cursor, unread());
+    }
+
+    /**
+     * Repeats a read of the notifications up to the cursor, e.g. when the database is loaded
+     */
+    public void markRead(long cursor) {
+        read((int) Math.max(0, Math.min(Integer.MAX_VALUE, cursor - first())));
+        this.cursor = Math.max(this.cursor, cursor);
+    }
+
+    /**
+     * @return the unread notifications in the buffer, without moving the cursor; the collapsed ones are only counted
+     */
+    public List<Notification> getUnread() {
+        List<Notification> result = new ArrayList<>();
+        for (long sequence = first(); sequence < next; sequence++) {
+            result.add(ring[index(sequence)]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return how many unread notifications are in the buffer, the collapsed ones not included
+     */
+    public int unread() {
+        return (int) Math.max(0, next - first());
+    }
+
+    public long getCursor() {
+        return cursor;
+    }
+
+    public long getNext() {
+        return next;
+    }
+
+    public int getCollapsedFromFriends() {
+        return collapsedFromFriends;
+    }
+
+    public Map<String, Integer> getCollapsedFromGroups() {
+        return Collections.unmodifiableMap(collapsedFromGroups);
+    }
+
+    /**
+     * Restores the counts of collapsed notifications, e.g. from a snapshot
+     */
+    public void addCollapsed(String group, int count) {
+        if (group == null) {
+            collapsedFromFriends += count;
+        } else {
+            collapsedFromGroups.merge(group, count, Integer::sum);
+        }
+    }
+
+    /**
+     * @return the sequence number of the oldest unread notification in the buffer
+     */
+    private long first() {
+        return ring == null ? Math.max(cursor, next) : Math.max(cursor, next - ring.length);
+    }
+
+    private void collapse(Notification notification) {
+        addCollapsed(notification instanceof GroupNotification groupNotification ?
+            groupNotification.getGroup() : null, 1);
+    }
+
+    private List<Notification> summaries() {
+        List<Notification> result = new ArrayList<>();
+        if (collapsedFromFriends > 0) {
+            result.add(Notification.ofText(COLLAPSED_FRIENDS.formatted(collapsedFromFriends)));
+        }
+
+        for (Map.Entry<String, Integer> group : collapsedFromGroups.entrySet()) {
+            result.add(GroupNotification.ofText(group.getKey(),
+                COLLAPSED_GROUP.formatted(group.getValue(), group.getKey())));
+        }
+
+        return result;
+    }
+
+    private void grow() {
+        Notification[] old = ring;
+        long first = first();
+
+        ring = new Notification[Math.min(capacity, old.length * 2)];
+        for (long sequence = first; sequence < next; sequence++) {
+            ring[index(sequence)] = old[(int) (sequence % old.length)];
+        }
+        Arrays.fill(old, null);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % ring.length);
+    }
+}
@@ -1,16 +1,16 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Objects;
 
 public class Notification implements Serializable {
-    protected static final String SPLIT = "%s has split %.2f BGN with you [%s]";
+    protected static final String SPLIT = "%s has split %s BGN with you [%s]";
     protected static final String ADD_FRIEND = "%s added you as a friend";
-    protected static final String RECEIVE = "%s approved the %.2f BGN you sent to them";
+    protected static final String RECEIVE = "%s approved the %s BGN you sent to them";
     @Serial
     private static final long serialVersionUID = -5280286477286837508L;
 
@@ -24,12 +24,20 @@ public class Notification implements Serializable {
         return new Notification(ADD_FRIEND.formatted(actor));
     }
 
-    public static Notification ofSplitting(User actor, double amount, String reason) {
-        return new Notification(SPLIT.formatted(actor, amount, reason));
+    public static Notification ofSplitting(User actor, long amount, String reason) {
+        return new Notification(SPLIT.formatted(actor, Money.format(amount), reason));
     }
 
-    public static Notification ofReceiving(User actor, double amount) {
-        return new Notification(RECEIVE.formatted(actor, amount));
+    public static Notification ofReceiving(User actor, long amount) {
+        return new Notification(RECEIVE.formatted(actor, Money.format(amount)));
+    }
+
+    public static Notification ofText(String text) {
+        return new Notification(text);
+    }
+
+    public String getText() {
+        return text;
     }
 
     @Override
@@ -0,0 +1,11 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
+
+import java.util.List;
+
+/**
+ * @param notifications the summaries of the collapsed notifications first, then the rest from the oldest
+ * @param cursor        the sequence number of the first notification after the page
+ * @param remaining     how many unread notifications are left for the next pages
+ */
+public record NotificationPage(List<Notification> notifications, long cursor, int remaining) {
+}
@@ -0,0 +1,21 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Delivers a notification right away to the recipients who are online
+ */
+public interface NotificationPusher {
+    /**
+     * Delivers nothing, so every notification goes to the inbox
+     */
+    NotificationPusher NONE = (recipients, notification) -> Set.of();
+
+    /**
+     * Must not block. A recipient who is not pushed to gets the notification in the inbox.
+     *
+     * @return the recipients to whom the notification was pushed
+     */
+    Set<String> push(Collection<String> recipients, Notification notification);
+}
@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+/**
+ * Turns passwords into the strings which are stored instead of them. Slow on purpose, so it must not run on
+ * the I/O threads; PasswordVerifier runs it on its own pool.
+ */
+public interface PasswordHasher {
+    /**
+     * @return the salted hash with everything needed to verify it later
+     */
+    String hash(String password);
+
+    /**
+     * @param stored a string returned by hash() or a plaintext password saved before the hashing
+     */
+    boolean verify(String password, String stored);
+
+    /**
+     * @return true for a plaintext password and for a hash made with other parameters than the current ones
+     */
+    boolean needsRehash(String stored);
+}
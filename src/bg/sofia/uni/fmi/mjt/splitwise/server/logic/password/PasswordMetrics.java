@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+/**
+ * @param hashed   how many passwords were hashed or verified with the slow hash
+ * @param cached   how many verifications were answered from the cache
+ * @param rejected how many were refused because the hashing pool was full
+ */
+public record PasswordMetrics(long hashed, long cached, long rejected) {
+    public double hitRate() {
+        long verifications = hashed + cached;
+
+        return verifications == 0 ? 0 : (double) cached / verifications;
+    }
+
+    @Override
+    public String toString() {
+        return "hashed=%d cached=%d hitRate=%.1f%% rejected=%d".formatted(hashed, cached, 100 * hitRate(), rejected);
+    }
+}
@@ -0,0 +1,159 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe. Runs the hasher on a fixed pool with a bounded queue, so a login storm takes at most that many cores
+ * and the logins over the queue capacity are refused at once instead of piling up.
+ * The users who have logged in recently are remembered in an LRU as an HMAC of their password and stored hash under
+ * a key which lives only in this process, so logging in again costs one HMAC and not the slow hash. A changed hash
+ * does not match its old entry, so a migrated user is verified with the slow hash once more.
+ */
+public class PasswordVerifier {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_CACHE_CAPACITY = 10_000;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_KEY_BYTES = 32;
+    private static final String BUSY_MESSAGE = "Too many users are logging in right now. Try again later";
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor pool;
+
+    private final Map<String, byte[]> verified;
+    private final SecretKeySpec macKey;
+
+    private final LongAdder hashed;
+    private final LongAdder cached;
+    private final LongAdder rejected;
+
+    /**
+     * @param threads       how many passwords are hashed at the same time
+     * @param queueCapacity how many passwords may wait for hashing before new ones are refused
+     * @param cacheCapacity how many recent logins are remembered
+     */
+    public PasswordVerifier(PasswordHasher hasher, int threads, int queueCapacity, int cacheCapacity) {
+        if (threads <= 0 || queueCapacity <= 0 || cacheCapacity <= 0) {
+            throw new IllegalArgumentException(
+                "The threads, the queue capacity and the cache capacity must be positive");
+        }
+
+        this.hasher = hasher;
+
+        AtomicInteger counter = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "splitwise-hasher-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+
+        verified = Collections.synchronizedMap(new LinkedHashMap<>(cacheCapacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheCapacity;
+            }
+        });
+
+        byte[] key = new byte[MAC_KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+
+        hashed = new LongAdder();
+        cached = new LongAdder();
+        rejected = new LongAdder();
+    }
+
+    public static PasswordVerifier withDefaults(PasswordHasher hasher) {
+        return new PasswordVerifier(hasher, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY,
+            DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @throws AuthenticationException if the hashing pool is full
+     */
+    public String hash(String password) {
+        return runOnPool(() -> hasher.hash(password));
+    }
+
+    /**
+     * @param stored the stored hash (or plaintext password) of the user
+     * @throws AuthenticationException if the password is not in the cache and the hashing pool is full
+     */
+    public boolean verify(String username, String password, String stored) {
+        byte[] mac = mac(password, stored);
+        byte[] remembered = verified.get(username);
+        if (remembered != null && MessageDigest.isEqual(remembered, mac)) {
+            cached.increment();
+            return true;
+        }
+
+        boolean ok = runOnPool(() -> hasher.verify(password, stored));
+        if (ok) {
+            verified.put(username, mac);
+        }
+
+        return ok;
+    }
+
+    public boolean needsRehash(String stored) {
+        return hasher.needsRehash(stored);
+    }
+
+    public PasswordMetrics getMetrics() {
+        return new PasswordMetrics(hashed.sum(), cached.sum(), rejected.sum());
+    }
+
+    private <T> T runOnPool(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthenticationException(BUSY_MESSAGE, e);
+        }
+
+        try {
+            T value = result.get();
+            hashed.increment();
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new AuthenticationException("Interrupted while checking the password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not hash the password", e.getCause());
+        }
+    }
+
+    private byte[] mac(String password, String stored) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(macKey);
+            mac.update(stored.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0); //so the boundary between the two is unambiguous
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
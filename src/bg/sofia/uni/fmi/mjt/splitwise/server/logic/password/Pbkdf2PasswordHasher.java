@@ -0,0 +1,88 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 with HMAC-SHA256 from the JDK. A hash is stored as pbkdf2-sha256$iterations$salt$hash (Base64).
+ * Anything else is taken for a plaintext password from before the hashing; a password is at most 30 characters,
+ * so it cannot be mistaken for a hash.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 600_000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final String SEPARATOR = "$";
+    private static final int PARTS = 4;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random;
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("The number of iterations must be positive");
+        }
+
+        this.iterations = iterations;
+        random = new SecureRandom();
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+
+        Base64.Encoder encoder = Base64.getEncoder();
+        return String.join(SEPARATOR, PREFIX, Integer.toString(iterations), encoder.encodeToString(salt),
+            encoder.encodeToString(derive(password, salt, iterations)));
+    }
+
+    @Override
+    public boolean verify(String password, String stored) {
+        String[] parts = parse(stored);
+        if (parts == null) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                stored.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[3]);
+
+        return MessageDigest.isEqual(expected, derive(password, decoder.decode(parts[2]), Integer.parseInt(parts[1])));
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        String[] parts = parse(stored);
+
+        return parts == null || Integer.parseInt(parts[1]) != iterations;
+    }
+
+    /**
+     * @return the parts of a hash or null for a plaintext password
+     */
+    private static String[] parse(String stored) {
+        String[] parts = stored.split("\\" + SEPARATOR);
+
+        return parts.length == PARTS && parts[0].equals(PREFIX) ? parts : null;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
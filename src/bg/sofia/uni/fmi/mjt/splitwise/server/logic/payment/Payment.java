@@ -1,8 +1,16 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment;
 
 import java.io.Serializable;
-import java.time.LocalDateTime;
 import java.util.Set;
 
-public record Payment(String issuer, double amount, String reason, Set<String> splitWith)  implements Serializable {
+/**
+ * @param amount in cents
+ * @param time   when the payment was made, in milliseconds since the epoch; 0 if it was saved without a time
+ */
+public record Payment(String issuer, long amount, String reason, Set<String> splitWith, long time)
+    implements Serializable {
+
+    public Payment(String issuer, long amount, String reason, Set<String> splitWith) {
+        this(issuer, amount, reason, splitWith, System.currentTimeMillis());
+    }
 }
@@ -0,0 +1,39 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @param payments   from the oldest to the newest
+ * @param nextCursor the cursor of the page with the older payments or NO_MORE
+ */
+public record PaymentPage(List<Payment> payments, long nextCursor) {
+    public static final long NO_MORE = -1;
+
+    public static PaymentPage empty() {
+        return new PaymentPage(List.of(), NO_MORE);
+    }
+
+    /**
+     * Pages a history which is in memory; the sequence number of a payment is its index
+     */
+    public static PaymentPage of(List<Payment> history, PaymentQuery query) {
+        List<Payment> result = new ArrayList<>();
+
+        int start = (int) Math.min(query.before(), history.size());
+        int next = start;
+        while (next > 0 && result.size() < query.limit()) {
+            Payment payment = history.get(--next);
+            if (query.includesTime(payment.time())) {
+                result.add(0, payment);
+            }
+        }
+
+        boolean more = false;
+        for (int i = next - 1; i >= 0 && !more; i--) {
+            more = query.includesTime(history.get(i).time());
+        }
+
+        return new PaymentPage(result, more ? next : NO_MORE);
+    }
+}
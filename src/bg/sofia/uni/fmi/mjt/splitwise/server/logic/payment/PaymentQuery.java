@@ -0,0 +1,37 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment;
+
+/**
+ * One page of the payments of a user. The pages go from the newest payments to the oldest ones;
+ * the payments in a page are from the oldest to the newest.
+ *
+ * @param before the cursor: only payments with a smaller sequence number, NEWEST for the newest payments
+ * @param limit  the most payments in the page
+ * @param from   only payments made at or after this time, in milliseconds since the epoch
+ * @param to     only payments made before this time, in milliseconds since the epoch
+ */
+public record PaymentQuery(long before, int limit, long from, long to) {
+    public static final long NEWEST = Long.MAX_VALUE;
+    public static final int MAX_LIMIT = 100;
+
+    public PaymentQuery {
+        if (before < 0) {
+            throw new IllegalArgumentException("The cursor must not be negative");
+        }
+
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("The page size must be between 1 and " + MAX_LIMIT);
+        }
+
+        if (from > to) {
+            throw new IllegalArgumentException("The start of the time range must not be after its end");
+        }
+    }
+
+    public static PaymentQuery newest(int limit) {
+        return new PaymentQuery(NEWEST, limit, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public boolean includesTime(long time) {
+        return time >= from && time < to;
+    }
+}
@@ -1,7 +1,10 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
 
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Splitter;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement.Transfer;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.SharePlan;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.Database;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.LazyDatabase;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.FriendException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
@@ -13,33 +16,87 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.UserNotFoundExcept
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.FriendsList;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.lock.StripedLocks;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPusher;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordMetrics;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordVerifier;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.Pbkdf2PasswordHasher;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.DoubleValidator;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.StringValidator;
 import com.google.gson.Gson;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe. Every operation which changes balances or friends lists locks the stripes of the users or the group
+ * it touches with a single StripedLocks.lock() call (which takes them in a fixed order), so operations of
+ * unrelated users run in parallel. A friendship is changed only while both of its users are locked
+ * and a group only while the group is locked. The inbox of a user is guarded by its User.
+ * A notification pushed to an online user is not written to the inbox at all.
+ * Passwords are stored hashed; the password of a user signed up before that is hashed on the next login.
+ */
+@SuppressWarnings("try") //the StripedLocks handles only unlock at the end of their try blocks, nothing reads them
 public class SplitWise implements SplitWiseAPI {
+    private static final int LOCK_STRIPES = 256;
+    private static final String GROUP_KEY_PREFIX = "#"; //cannot be part of a username, so groups and users differ
+
     Gson gson;
 
-    private Map<String, User> users;
+    private UserCache users;
     private Map<String, Group> groups;
+    private Map<String, Set<String>> groupsOfUsers; //the group names of every user, so no query scans all groups
 
     private Database database;
+    private final StripedLocks locks;
+    private final StatusCache statusCache;
+    private volatile NotificationPusher pusher;
+    private volatile PasswordVerifier passwords;
 
     public SplitWise(Database database) {
+        this(database, new UserCache(database.loadUsers()));
+    }
+
+    /**
+     * Keeps in memory only the personal info of every user and the most recently used users,
+     * the rest are loaded from the database when needed
+     *
+     * @param residentUsers how many users to keep in memory
+     */
+    public SplitWise(LazyDatabase database, int residentUsers) {
+        this(database, new UserCache(database.loadPersonals(), database::loadUser, residentUsers));
+    }
+
+    private SplitWise(Database database, UserCache users) {
         this.database = database;
+        this.users = users;
 
-        users = database.loadUsers();
-        groups = database.loadGroups();
+        groups = new ConcurrentHashMap<>(database.loadGroups());
+        locks = new StripedLocks(LOCK_STRIPES);
+        statusCache = new StatusCache();
+        pusher = NotificationPusher.NONE;
+        passwords = PasswordVerifier.withDefaults(new Pbkdf2PasswordHasher(Pbkdf2PasswordHasher.DEFAULT_ITERATIONS));
+
+        groupsOfUsers = new ConcurrentHashMap<>();
+        for (Group group : groups.values()) {
+            addToGroupsOfUsers(group);
+        }
 
         gson = new Gson();
     }
@@ -48,15 +105,34 @@ public class SplitWise implements SplitWiseAPI {
     public boolean login(String username, String password) {
         StringValidator.validateStrings(username, password);
 
-        if (!users.containsKey(username)) {
+        UserPersonal personal = users.getPersonal(username); //the rest of the user is not needed to log in
+        if (personal == null) {
+            return false;
+        }
+
+        String stored = personal.getPassword();
+        if (!passwords.verify(username, password, stored)) {
             return false;
         }
 
-        if (users.get(username).login(username, password)) {
-            database.clearNotifications(username);
-            return true;
+        if (passwords.needsRehash(stored)) {
+            rehash(personal, stored, passwords.hash(password));
+        }
+
+        return true; //the notifications are read with their own call
+    }
+
+    private void rehash(UserPersonal personal, String stored, String hash) {
+        try (var locked = locks.lock(personal.getUsername())) {
+            if (!stored.equals(personal.getPassword())) {
+                return; //a concurrent login has already rehashed it
+            }
+
+            personal.changePassword(hash);
+            database.updatePassword(personal);
         }
-        return false;
+
+        database.commit();
     }
 
     @Override
@@ -67,14 +143,21 @@ public class SplitWise implements SplitWiseAPI {
 
         checkForInvalidData(username, password, firstName, lastName);
 
-        if (users.containsKey(username)) {
+        if (users.contains(username)) { //so a taken username is refused without hashing
             throw new UserAlreadyExists("This username is taken");
         }
 
-        User newUser = new User(new UserPersonal(username, firstName, lastName, password));
+        User newUser = new User(new UserPersonal(username, firstName, lastName, passwords.hash(password)));
+
+        try (var locked = locks.lock(username)) {
+            if (!users.add(newUser)) {
+                throw new UserAlreadyExists("This username is taken");
+            }
+
+            database.addUser(newUser);
+        }
 
-        users.put(username, newUser);
-        database.addUser(newUser);
+        database.commit();
     }
 
     private void checkForInvalidData(String username, String password, String firstName, String lastName)
@@ -122,27 +205,41 @@ public class SplitWise implements SplitWiseAPI {
         }
 
         User friendUser = findUser(friend);
+        User adder = users.get(user); //held until the end, so a lazily loaded user is not loaded twice meanwhile
 
-        FriendsList friendsList = users.get(user).getFriendsList();
-        if (friendsList.hasFriend(friend)) {
-            throw new UserAlreadyExists("Nothing added! This user is already in your friends list");
-        }
+        try (var locked = locks.lock(user, friend)) {
+            FriendsList friendsList = adder.getFriendsList();
+            if (friendsList.hasFriend(friend)) {
+                throw new UserAlreadyExists("Nothing added! This user is already in your friends list");
+            }
 
-        Friendship friendship = new Friendship(user, friend);
-        friendsList.addFriendship(friendship);
-        users.get(friend).getFriendsList().addFriendship(friendship);
+            Friendship friendship = new Friendship(user, friend);
+            friendsList.addNewFriendship(friendship);
+            friendUser.getFriendsList().addNewFriendship(friendship);
+            statusCache.invalidate(List.of(user, friend));
 
-        Notification addingFriend = Notification.ofAddingFriend(users.get(user));
-        friendUser.addNotification(addingFriend);
+            database.updateFriendsList(friendUser);
+            database.updateFriendsList(adder);
+            notifyUsers(List.of(friend), Notification.ofAddingFriend(adder));
+        }
 
-        database.updateFriendsList(friendUser);
-        database.updateFriendsList(users.get(user));
-        database.addFriendNotification(friend, addingFriend);
+        database.commit();
     }
 
     @Override
     public void createGroup(String creator, String groupName, String... participants)
         throws UserNotFoundException, GroupException {
+        addGroup(creator, groupName, false, participants);
+    }
+
+    @Override
+    public void createLedgerGroup(String creator, String groupName, String... participants)
+        throws UserNotFoundException, GroupException {
+        addGroup(creator, groupName, true, participants);
+    }
+
+    private void addGroup(String creator, String groupName, boolean ledger, String... participants)
+        throws UserNotFoundException, GroupException {
 
         StringValidator.validateStrings(creator, groupName);
         StringValidator.validateStrings(participants);
@@ -159,64 +256,71 @@ public class SplitWise implements SplitWiseAPI {
             checkUserExists(participant);
         }
 
-        if (groups.containsKey(groupName)) {
-            throw new GroupException("There is already a group with this name");
-        }
-
         String[] toAdd = new String[participants.length + 1];
         System.arraycopy(participants, 0, toAdd, 0, participants.length);
         toAdd[participants.length] = creator;
-        Group newGroup = new Group(groupName, toAdd);
+        Group newGroup = ledger ? Group.ofLedger(groupName, toAdd) : new Group(groupName, toAdd);
+
+        try (var locked = locks.lock(groupKey(groupName))) {
+            if (groups.putIfAbsent(groupName, newGroup) != null) {
+                throw new GroupException("There is already a group with this name");
+            }
 
-        groups.put(groupName, newGroup);
-        database.updateGroup(newGroup);
+            addToGroupsOfUsers(newGroup);
+            statusCache.invalidate(newGroup.getMembers());
 
-        GroupNotification notification = GroupNotification.ofCreatingGroup(groupName, users.get(creator));
-        for (String participant : participants) {
-            users.get(participant).addNotification(notification);
-            database.addGroupNotification(participant, notification);
+            database.updateGroup(newGroup);
         }
+
+        notifyUsers(List.of(participants), GroupNotification.ofCreatingGroup(groupName, users.get(creator)));
+
+        database.commit();
     }
 
     @Override
-    public void split(String payer, double amount, String friend, String reasonForPayment)
+    public void split(String payer, long amount, String friend, String reasonForPayment)
         throws UserNotFoundException, SplitException, FriendException {
 
         StringValidator.validateStrings(payer, reasonForPayment);
         authenticate(payer);
-        DoubleValidator.validateDouble(amount);
+        MoneyValidator.validateCents(amount);
 
         User friendUser = findUser(friend);
         User payerUser = findUser(payer);
 
-        if (!payerUser.getFriendsList().hasFriend(friend)) {
-            throw new FriendException(
-                "The user " + friendUser + " is not your friend. You can split expenses only with your friends");
-        }
+        long share = SharePlan.of(amount, 2).shareOf(0); //of the friend; the payer keeps the other one
 
-        Map<Double, Integer> shares = Splitter.split(amount, 2);
-        double share = shares.keySet().iterator().next();
+        try (var locked = locks.lock(payer, friend)) {
+            if (!payerUser.getFriendsList().hasFriend(friend)) {
+                throw new FriendException(
+                    "The user " + friendUser + " is not your friend. You can split expenses only with your friends");
+            }
 
-        payerUser.getFriendsList().lendTo(friend, share);
-        database.updateFriendsList(payerUser);
-        database.updateFriendsList(friendUser);
+            try {
+                payerUser.getFriendsList().lendTo(friend, share);
+            } catch (ArithmeticException e) { //nothing was changed
+                throw new SplitException("The expense would make your debt too big. Settle up the old one first", e);
+            }
+            statusCache.invalidate(List.of(payer, friend));
+            database.updateFriendsList(payerUser);
+            database.updateFriendsList(friendUser);
+        }
 
         Payment payment = new Payment(payer, amount, reasonForPayment, Set.of(friend));
-        payerUser.addPayment(payment);
         database.addPayment(payer, payment);
 
-        Notification notification = Notification.ofSplitting(users.get(payer), amount, reasonForPayment);
-        friendUser.addNotification(notification);
-        database.addFriendNotification(friend, notification);
+        notifyUsers(List.of(friend), Notification.ofSplitting(payerUser, amount, reasonForPayment));
+
+        database.commit();
     }
 
     @Override
-    public void splitInGroup(String payer, double amount, String groupName, String reasonForPayment)
+    public void splitInGroup(String payer, long amount, String groupName, String reasonForPayment)
         throws GroupException, SplitException {
 
         StringValidator.validateStrings(payer, reasonForPayment, groupName);
         authenticate(payer);
-        DoubleValidator.validateDouble(amount);
+        MoneyValidator.validateCents(amount);
 
         Group group = findGroup(groupName);
         if (!group.hasMember(payer)) {
@@ -224,22 +328,20 @@ public class SplitWise implements SplitWiseAPI {
                 "You are not member of this group. Cannot split expenses in groups you are not part of");
         }
 
-        group.split(payer, amount);
-        database.updateGroup(group);
+        try (var locked = locks.lock(groupKey(groupName))) {
+            group.split(payer, amount);
+            statusCache.invalidate(group.getMembers());
+            database.updateGroup(group);
+        }
 
         Set<String> splitWith = new java.util.HashSet<>(Set.copyOf(group.getMembers()));
         splitWith.remove(payer);
         Payment payment = new Payment(payer, amount, reasonForPayment, splitWith);
-        users.get(payer).addPayment(payment);
         database.addPayment(payer, payment);
 
-        GroupNotification n = GroupNotification.ofSplitting(groupName, users.get(payer), amount, reasonForPayment);
-        for (String member : group.getMembers()) {
-            if (!member.equals(payer)) {
-                users.get(member).addNotification(n);
-                database.addGroupNotification(member, n);
-            }
-        }
+        notifyUsers(splitWith, GroupNotification.ofSplitting(groupName, users.get(payer), amount, reasonForPayment));
+
+        database.commit();
     }
 
     @Override
@@ -247,56 +349,162 @@ public class SplitWise implements SplitWiseAPI {
         StringValidator.validateStrings(username);
         authenticate(username);
 
+        String cached = statusCache.get(username);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = statusCache.version(username);
         StringBuilder sb = new StringBuilder();
 
         sb.append("Friends:");
         sb.append(System.lineSeparator());
-        sb.append(users.get(username).getStatus());
+        try (var locked = locks.lock(username)) {
+            sb.append(users.get(username).getStatus());
+        }
 
         sb.append("Groups:");
         sb.append(System.lineSeparator());
+        for (String groupName : groupsOf(username)) {
+            //one lock at a time: taking a second stripe while holding one could deadlock
+            try (var locked = locks.lock(groupKey(groupName))) {
+                sb.append(groups.get(groupName).getStatusFor(username));
+            }
+        }
+
+        String status = sb.toString();
+        statusCache.put(username, version, status);
+
+        return status;
+    }
+
+    public StatusCacheMetrics getStatusCacheMetrics() {
+        return statusCache.getMetrics();
+    }
+
+    public UserCacheMetrics getUserCacheMetrics() {
+        return users.getMetrics();
+    }
+
+    public PasswordMetrics getPasswordMetrics() {
+        return passwords.getMetrics();
+    }
+
+    @Override
+    public List<Transfer> settleUp(String username) {
+        StringValidator.validateStrings(username);
+        authenticate(username);
+
+        List<Transfer> result = new ArrayList<>();
+        for (Transfer transfer : Settlement.settle(friendshipBalances(username))) {
+            if (transfer.from().equals(username) || transfer.to().equals(username)) {
+                result.add(transfer);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Transfer> settleUpInGroup(String username, String groupName) throws GroupException {
+        StringValidator.validateStrings(username, groupName);
+        authenticate(username);
+        checkGroupExists(groupName);
+
+        Group group = groups.get(groupName);
+        Map<String, Long> balances;
+        try (var locked = locks.lock(groupKey(groupName))) {
+            if (!group.hasMember(username)) {
+                throw new GroupException("You are not part of this group");
+            }
+
+            balances = group.getBalances();
+        }
+
+        return Settlement.settle(balances);
+    }
+
+    @Override
+    public Map<String, List<Transfer>> settleUpAllGroups() {
+        Map<String, Map<String, Long>> balances = new HashMap<>();
         for (Group group : groups.values()) {
-            if (group.hasMember(username)) {
-                sb.append(group.getStatusFor(username));
+            try (var locked = locks.lock(groupKey(group.getName()))) {
+                balances.put(group.getName(), group.getBalances());
+            }
+        }
+
+        return Settlement.settleAll(balances);
+    }
+
+    /**
+     * @return the net balances of everybody connected to the user by friendships; every friendship is read once,
+     * under the lock of its left user, so the balances add up to zero whatever changes meanwhile
+     */
+    private Map<String, Long> friendshipBalances(String username) {
+        Map<String, Long> balances = new HashMap<>();
+        balances.put(username, 0L);
+
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(username);
+        while (!toVisit.isEmpty()) {
+            String current = toVisit.poll();
+
+            try (var locked = locks.lock(current)) {
+                for (Friendship friendship : users.get(current).getFriendsList().getFriendships().values()) {
+                    String friend = friendship.getLeft().equals(current) ? friendship.getRight() : friendship.getLeft();
+                    if (balances.putIfAbsent(friend, 0L) == null) {
+                        toVisit.add(friend);
+                    }
+
+                    if (friendship.getLeft().equals(current)) {
+                        long leftOwes = friendship.getUserOwes(current);
+                        balances.merge(current, -leftOwes, Long::sum);
+                        balances.merge(friend, leftOwes, Long::sum);
+                    }
+                }
             }
         }
 
-        return sb.toString();
+        return balances;
     }
 
     @Override
-    public void receive(String receiver, double amount, String sender)
+    public void receive(String receiver, long amount, String sender)
         throws UserNotFoundException, FriendException, ReceiveException {
 
         StringValidator.validateStrings(receiver, sender);
         authenticate(receiver);
-        DoubleValidator.validateDouble(amount);
+        MoneyValidator.validateCents(amount);
 
         User senderUser = findUser(sender);
         User receiverUser = findUser(receiver);
 
-        if (!receiverUser.getFriendsList().hasFriend(sender) || !senderUser.getFriendsList().hasFriend(receiver)) {
-            throw new FriendException("You are not friends with this user. Operation canceled");
+        try (var locked = locks.lock(receiver, sender)) {
+            if (!receiverUser.getFriendsList().hasFriend(sender) ||
+                !senderUser.getFriendsList().hasFriend(receiver)) {
+                throw new FriendException("You are not friends with this user. Operation canceled");
+            }
+
+            receiverUser.getFriendsList().receiveFrom(sender, amount);
+            statusCache.invalidate(List.of(receiver, sender));
+            database.updateFriendsList(receiverUser);
+            database.updateFriendsList(senderUser);
         }
 
-        receiverUser.getFriendsList().receiveFrom(sender, amount);
-        database.updateFriendsList(receiverUser);
-        database.updateFriendsList(senderUser);
+        notifyUsers(List.of(sender), Notification.ofReceiving(receiverUser, amount));
 
-        Notification notification = Notification.ofReceiving(users.get(receiver), amount);
-        senderUser.addNotification(notification);
-        database.addFriendNotification(sender, notification);
+        database.commit();
     }
 
     @Override
-    public void receiveInGroup(String receiver, double amount, String groupName, String sender)
+    public void receiveInGroup(String receiver, long amount, String groupName, String sender)
         throws GroupException, UserNotFoundException, ReceiveException {
 
         StringValidator.validateStrings(receiver, sender, groupName);
         authenticate(receiver);
-        DoubleValidator.validateDouble(amount);
+        MoneyValidator.validateCents(amount);
 
-        User senderUser = findUser(sender);
+        checkUserExists(sender);
 
         Group group = findGroup(groupName);
 
@@ -308,20 +516,46 @@ public class SplitWise implements SplitWiseAPI {
             throw new GroupException("The user [" + sender + "] is not in the group [" + groupName + "]");
         }
 
-        group.receive(receiver, amount, sender);
-        database.updateGroup(group);
+        try (var locked = locks.lock(groupKey(groupName))) {
+            group.receive(receiver, amount, sender);
+            //the pairwise view of a ledger may change for everybody
+            statusCache.invalidate(group.isLedger() ? group.getMembers() : List.of(receiver, sender));
+            database.updateGroup(group);
+        }
+
+        notifyUsers(List.of(sender), GroupNotification.ofReceiving(groupName, users.get(receiver), amount));
 
-        GroupNotification groupNotification = GroupNotification.ofReceiving(groupName, users.get(receiver), amount);
-        senderUser.addNotification(groupNotification);
-        database.addGroupNotification(sender, groupNotification);
+        database.commit();
     }
 
     @Override
-    public List<Payment> getPaymentsOf(String username) {
+    public PaymentPage getPaymentsOf(String username, PaymentQuery query) {
         StringValidator.validateStrings(username);
         authenticate(username);
 
-        return users.get(username).getPayments();
+        return database.loadPayments(username, query);
+    }
+
+    @Override
+    public NotificationPage readNotifications(String username, int limit) {
+        StringValidator.validateStrings(username);
+        authenticate(username);
+
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The page size must be positive");
+        }
+
+        NotificationPage page;
+        try (var locked = locks.lock(username)) { //so the cursors of the pages reach the database in order
+            page = users.get(username).readNotifications(limit);
+
+            if (!page.notifications().isEmpty()) {
+                database.markNotificationsRead(username, page.cursor());
+            }
+        }
+
+        database.commit();
+        return page;
     }
 
     @Override
@@ -340,9 +574,23 @@ public class SplitWise implements SplitWiseAPI {
         return foundUser.getGroupNotifications();
     }
 
+    /**
+     * The notifications are pushed to the users it delivers them to instead of written to their inboxes
+     */
+    public void setNotificationPusher(NotificationPusher pusher) {
+        this.pusher = pusher;
+    }
+
+    /**
+     * The passwords are hashed with it from now on and the stored ones with other settings are hashed again
+     */
+    public void setPasswordVerifier(PasswordVerifier passwords) {
+        this.passwords = passwords;
+    }
+
     @Override
     public Map<String, User> getUsers() {
-        return Collections.unmodifiableMap(users);
+        return users.getAll();
     }
 
     @Override
@@ -356,18 +604,52 @@ public class SplitWise implements SplitWiseAPI {
         return users.get(username);
     }
 
+    /**
+     * Pushes the notification to the online recipients and writes it to the inboxes of the rest
+     */
+    private void notifyUsers(Collection<String> recipients, Notification notification) {
+        Set<String> pushed = pusher.push(recipients, notification);
+
+        for (String recipient : recipients) {
+            if (pushed.contains(recipient)) {
+                continue;
+            }
+
+            users.get(recipient).addNotification(notification);
+            if (notification instanceof GroupNotification groupNotification) {
+                database.addGroupNotification(recipient, groupNotification);
+            } else {
+                database.addFriendNotification(recipient, notification);
+            }
+        }
+    }
+
+    private void addToGroupsOfUsers(Group group) {
+        for (String member : group.getMembers()) {
+            groupsOfUsers.computeIfAbsent(member, user -> ConcurrentHashMap.newKeySet()).add(group.getName());
+        }
+    }
+
+    private Set<String> groupsOf(String username) {
+        return groupsOfUsers.getOrDefault(username, Set.of());
+    }
+
     private void authenticate(String user) {
-        if (!users.containsKey(user)) {
+        if (!users.contains(user)) {
             throw new AuthenticationException("We could not find the logged in user [" + user + "]");
         }
     }
 
     private void checkUserExists(String username) throws UserNotFoundException {
-        if (!users.containsKey(username)) {
+        if (!users.contains(username)) {
             throw new UserNotFoundException("We could not find user with username [" + username + "]");
         }
     }
 
+    private static String groupKey(String groupName) {
+        return GROUP_KEY_PREFIX + groupName;
+    }
+
     public Group findGroup(String groupName) throws GroupException {
         checkGroupExists(groupName);
 
@@ -1,5 +1,6 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement.Transfer;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.FriendException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
@@ -11,7 +12,9 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.UserNotFoundExcept
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 
 import java.util.List;
@@ -61,61 +64,107 @@ public interface SplitWiseAPI {
     void createGroup(String creator, String groupName, String... participants)
         throws UserNotFoundException, GroupException;
 
+    /**
+     * Creates a group which keeps one net balance per member instead of a balance for every two members,
+     * so its expenses cost O(N); the status shows who owes whom after matching the debtors with the creditors
+     *
+     * @param creator      the creator of the group (logged-in user)
+     * @param groupName    the name of the group
+     * @param participants the participants except the creator
+     * @throws IllegalArgumentException if one of the parameters is null, empty or blank
+     * @throws AuthenticationException  if the creator is not in the dataset with registered users
+     * @throws UserNotFoundException    if any of the participants is not in the dataset with registered users
+     * @throws GroupException           - if the groupName is not a valid username or
+     *                                  - if there is already a group with this name or
+     *                                  - if 2 or more participants have the same name
+     */
+    void createLedgerGroup(String creator, String groupName, String... participants)
+        throws UserNotFoundException, GroupException;
+
     /**
      * @param payer            the payer who wants to split the bill
-     * @param amount           the amount that is paid
+     * @param amount           the amount that is paid, in cents
      * @param friend           the friend with whom the payer wants to split
      * @param reasonForPayment the description of the expense
      * @throws IllegalArgumentException - if one of the parameters is null, empty or blank or
-     *                                  - if the amount is not a valid double or with more than 2 decimal places
+     *                                  - if the amount is not positive
      * @throws AuthenticationException  if the creator is not in the dataset with registered users
      * @throws UserNotFoundException    if the friend is not in the dataset with registered users
-     * @throws SplitException           if the amount is less than 0.02
+     * @throws SplitException           if the amount is less than 2 cents
      * @throws FriendException          if the friend is not in the friends list of the payer
      */
-    void split(String payer, double amount, String friend, String reasonForPayment)
+    void split(String payer, long amount, String friend, String reasonForPayment)
         throws UserNotFoundException, SplitException, FriendException;
 
     /**
      * @param payer            the payer who wants to split the bill
-     * @param amount           the amount that is paid
+     * @param amount           the amount that is paid, in cents
      * @param groupName        the group in which the payer wants to split the amount
      * @param reasonForPayment the description of the expense
      * @throws IllegalArgumentException - if one of the parameters is null, empty or blank or
-     *                                  - if the amount is not a valid double or with more than 2 decimal places
+     *                                  - if the amount is not positive
      * @throws AuthenticationException  if the creator is not in the dataset with registered users
-     * @throws SplitException           if the amount is less than 0.01 * the number of the members,
-     *                                  because everybody must have a share of at least 0.01
+     * @throws SplitException           if the amount is less than 1 cent * the number of the members,
+     *                                  because everybody must have a share of at least 1 cent
      * @throws GroupException           - if a group with this name does not exist or
      *                                  - if the payer is not part of the group
      */
-    void splitInGroup(String payer, double amount, String groupName, String reasonForPayment)
+    void splitInGroup(String payer, long amount, String groupName, String reasonForPayment)
         throws GroupException, SplitException;
 
     String getStatus(String username) throws GroupException;
 
+    /**
+     * Settles the debts between the user, the friends and their friends with as few transfers as possible,
+     * so the user may pay a friend of a friend instead of two friends paying each other
+     *
+     * @param username the user who wants to settle up
+     * @return the transfers which the user makes or receives
+     * @throws IllegalArgumentException if the parameter is null, empty or blank
+     * @throws AuthenticationException  if the user is not in the dataset with registered users
+     */
+    List<Transfer> settleUp(String username);
+
+    /**
+     * @param username  the user who wants to settle up
+     * @param groupName the name of the group
+     * @return the fewest transfers which settle all debts in the group
+     * @throws IllegalArgumentException if one of the parameters is null, empty or blank
+     * @throws AuthenticationException  if the user is not in the dataset with registered users
+     * @throws GroupException           - if a group with this name does not exist or
+     *                                  - if the user is not part of the group
+     */
+    List<Transfer> settleUpInGroup(String username, String groupName) throws GroupException;
+
+    /**
+     * Recomputes the settlements of all groups in parallel
+     *
+     * @return the transfers which settle every group, by the name of the group
+     */
+    Map<String, List<Transfer>> settleUpAllGroups();
+
     /**
      * @param receiver the user who marks the money as received
-     * @param amount   the received amount
+     * @param amount   the received amount, in cents
      * @param sender   the user who owes money
      * @throws IllegalArgumentException - if one of the parameters is null, empty or blank or
-     *                                  - if the amount is not a valid double or with more than 2 decimal places
+     *                                  - if the amount is not positive
      * @throws AuthenticationException  if the receiver is not in the dataset with registered users
      * @throws UserNotFoundException    if the sender is not in the dataset with registered users
      * @throws FriendException          if the sender is not in the friends list of the receiver
      * @throws ReceiveException         - if the sender does not owe money to the receiver or
      *                                  - if the owed money are less than the amount
      */
-    void receive(String receiver, double amount, String sender)
+    void receive(String receiver, long amount, String sender)
         throws UserNotFoundException, FriendException, ReceiveException;
 
     /**
      * @param receiver  the user who marks the money as received in the specific group
-     * @param amount    the received amount
+     * @param amount    the received amount, in cents
      * @param groupName the name of the group
      * @param sender    the user who owes money
      * @throws IllegalArgumentException - if one of the parameters is null, empty or blank or
-     *                                  - if the amount is not a valid double or with more than 2 decimal places
+     *                                  - if the amount is not positive
      * @throws AuthenticationException  if the receiver is not in the dataset with registered users
      * @throws UserNotFoundException    if the sender is not in the dataset with registered users
      * @throws GroupException           - if a group with this name does not exist or
@@ -123,20 +172,30 @@ public interface SplitWiseAPI {
      * @throws ReceiveException         - if the sender does not owe money to the receiver or
      *                                  - if the owed money are less than the amount
      */
-    void receiveInGroup(String receiver, double amount, String groupName, String sender)
+    void receiveInGroup(String receiver, long amount, String groupName, String sender)
         throws GroupException, UserNotFoundException, ReceiveException;
 
     /**
      * @param username the username of the user
-     * @return a list with all payments from that user
-     * @throws IllegalArgumentException if the parameter is null, empty or blank
+     * @param query    which page of the payments and in what time range
+     * @return one page of the payments from that user, from the oldest to the newest
+     * @throws IllegalArgumentException if the username is null, empty or blank
+     * @throws AuthenticationException  if the username is not in the dataset with registered users
+     */
+    PaymentPage getPaymentsOf(String username, PaymentQuery query);
+
+    /**
+     * Delivers the next page of the unread notifications of the user; they count as read after that
+     *
+     * @param limit how many notifications at most, the summaries of the collapsed ones not included
+     * @throws IllegalArgumentException if the username is null, empty or blank or the limit is not positive
      * @throws AuthenticationException  if the username is not in the dataset with registered users
      */
-    List<Payment> getPaymentsOf(String username);
+    NotificationPage readNotifications(String username, int limit);
 
     /**
      * @param user the user
-     * @return list of all friends notifications for that user
+     * @return the unread friends notifications for that user, without marking them as read
      * @throws IllegalArgumentException if the parameter is null, empty or blank
      * @throws UserNotFoundException    if the user does not exist
      */
@@ -144,7 +203,7 @@ public interface SplitWiseAPI {
 
     /**
      * @param user the user
-     * @return list of all group notifications for that user
+     * @return the unread group notifications for that user, without marking them as read
      * @throws IllegalArgumentException if the parameter is null, empty or blank
      * @throws UserNotFoundException    if the user does not exist
      */
@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The rendered status of every user who asked for it since their balances last changed.
+ * Every change of a balance must invalidate its users after the change is made. A status rendered meanwhile
+ * is dropped by put(), because the version of the user it was rendered at is no longer current.
+ */
+public class StatusCache {
+    private final Map<String, String> statuses;
+    private final Map<String, Long> versions;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder invalidations;
+
+    public StatusCache() {
+        statuses = new ConcurrentHashMap<>();
+        versions = new ConcurrentHashMap<>();
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+        invalidations = new LongAdder();
+    }
+
+    /**
+     * @return the cached status or null if it has to be rendered
+     */
+    public String get(String username) {
+        String status = statuses.get(username);
+        if (status == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return status;
+    }
+
+    /**
+     * @return the version to pass to put() after rendering the status; must be taken before rendering
+     */
+    public long version(String username) {
+        return versions.getOrDefault(username, 0L);
+    }
+
+    public void put(String username, long version, String status) {
+        statuses.put(username, status);
+
+        if (version(username) != version) { //invalidated while rendering
+            statuses.remove(username, status);
+        }
+    }
+
+    public void invalidate(String username) {
+        versions.merge(username, 1L, Long::sum);
+
+        if (statuses.remove(username) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void invalidate(Iterable<String> usernames) {
+        for (String username : usernames) {
+            invalidate(username);
+        }
+    }
+
+    public StatusCacheMetrics getMetrics() {
+        return new StatusCacheMetrics(statuses.size(), hits.sum(), misses.sum(), invalidations.sum());
+    }
+}
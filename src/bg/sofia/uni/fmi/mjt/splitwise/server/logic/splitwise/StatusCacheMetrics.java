@@ -0,0 +1,18 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+/**
+ * @param invalidations how many cached statuses were dropped because a balance of their user changed
+ */
+public record StatusCacheMetrics(int cached, long hits, long misses, long invalidations) {
+    public double hitRate() {
+        long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "statuses cached=%d hits=%d misses=%d hitRate=%.1f%% invalidations=%d".formatted(cached, hits, misses,
+            100 * hitRate(), invalidations);
+    }
+}
@@ -0,0 +1,233 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The users in memory. The personal info of every user is always here, so checking that a user exists never
+ * reads the database. The rest of a user - the friends list and the notifications - is either always in memory
+ * or loaded when the user is first used and kept in an LRU of a fixed capacity.
+ * A user evicted from the LRU is only weakly reachable from here, so it is loaded again only after no operation
+ * holds it anymore: there is never more than one copy of a user and a reload cannot lose a change. A loaded user
+ * shares its friendships with the friends in memory, as if it had never been evicted. The database must be
+ * written through on every change, so a reload reads the latest state.
+ */
+public class UserCache {
+    //rough sizes on a 64-bit JVM with compressed references; within 1% of the heap of 100 000 loaded users
+    private static final long USER_BYTES = 400;
+    private static final long FRIENDSHIP_BYTES = 120;
+    private static final long NOTIFICATION_BYTES = 80;
+
+    private final Map<String, UserPersonal> personals;
+    private final Function<UserPersonal, User> loader;
+
+    private final Map<String, User> resident;
+    private final Map<String, UserReference> loaded; //every user in memory, the evicted ones too until collected
+    private final ReferenceQueue<User> collected;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * Keeps every user in memory
+     */
+    public UserCache(Map<String, User> users) {
+        personals = new ConcurrentHashMap<>();
+        for (User user : users.values()) {
+            personals.put(user.getUsername(), user.getPersonal());
+        }
+
+        loader = null;
+        resident = new ConcurrentHashMap<>(users);
+        loaded = new ConcurrentHashMap<>();
+        collected = new ReferenceQueue<>();
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * @param loader   loads a user which is not in memory
+     * @param capacity how many of the most recently used users are kept in memory
+     */
+    public UserCache(Map<String, UserPersonal> personals, Function<UserPersonal, User> loader, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+
+        this.personals = new ConcurrentHashMap<>(personals);
+        this.loader = loader;
+
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+
+        resident = Collections.synchronizedMap(new LinkedHashMap<>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, User> eldest) {
+                boolean evict = size() > capacity;
+                if (evict) {
+                    evictions.increment();
+                }
+
+                return evict;
+            }
+        });
+        loaded = new ConcurrentHashMap<>();
+        collected = new ReferenceQueue<>();
+    }
+
+    public boolean contains(String username) {
+        return personals.containsKey(username);
+    }
+
+    /**
+     * Never reads the database
+     *
+     * @return the personal info of the user or null if there is no user with this username
+     */
+    public UserPersonal getPersonal(String username) {
+        return personals.get(username);
+    }
+
+    /**
+     * @return the user or null if there is no user with this username
+     */
+    public User get(String username) {
+        User user = resident.get(username); //marks it as the most recently used
+        if (user != null) {
+            hits.increment();
+            return user;
+        }
+
+        UserPersonal personal = personals.get(username);
+        if (personal == null || loader == null) {
+            return null;
+        }
+
+        user = load(personal);
+        resident.put(username, user);
+
+        return user;
+    }
+
+    /**
+     * @return false if there is already a user with this username
+     */
+    public boolean add(User user) {
+        if (personals.putIfAbsent(user.getUsername(), user.getPersonal()) != null) {
+            return false;
+        }
+
+        if (loader != null) {
+            loaded.put(user.getUsername(), new UserReference(user, collected));
+        }
+        resident.put(user.getUsername(), user);
+
+        return true;
+    }
+
+    /**
+     * @return every user; loads the ones which are not in memory
+     */
+    public Map<String, User> getAll() {
+        Map<String, User> result = new HashMap<>();
+        for (String username : personals.keySet()) {
+            result.put(username, get(username));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    public UserCacheMetrics getMetrics() {
+        long bytes = 0;
+        int residentCount;
+        synchronized (resident) {
+            residentCount = resident.size();
+            for (User user : resident.values()) {
+                bytes += estimateSize(user);
+            }
+        }
+
+        return new UserCacheMetrics(personals.size(), residentCount, hits.sum(), misses.sum(), evictions.sum(),
+            bytes);
+    }
+
+    private User load(UserPersonal personal) {
+        for (Reference<? extends User> reference; (reference = collected.poll()) != null; ) {
+            UserReference userReference = (UserReference) reference;
+            loaded.remove(userReference.username, userReference);
+        }
+
+        User[] result = new User[1];
+        loaded.compute(personal.getUsername(), (username, reference) -> {
+            User user = reference == null ? null : reference.get();
+            if (user != null) { //evicted, but still in use
+                hits.increment();
+                result[0] = user;
+                return reference;
+            }
+
+            misses.increment();
+            result[0] = loader.apply(personal);
+            shareFriendships(result[0]);
+
+            return new UserReference(result[0], collected);
+        });
+
+        return result[0];
+    }
+
+    private void shareFriendships(User user) {
+        String username = user.getUsername();
+
+        for (Friendship friendship : List.copyOf(user.getFriendsList().getFriendships().values())) {
+            String friend = friendship.getLeft().equals(username) ? friendship.getRight() : friendship.getLeft();
+            UserReference reference = loaded.get(friend);
+            User friendUser = reference == null ? null : reference.get();
+
+            Friendship shared = friendUser == null ? null :
+                friendUser.getFriendsList().getFriendships().get(username);
+            if (shared != null) {
+                user.getFriendsList().addFriendship(shared);
+            }
+        }
+    }
+
+    private static long estimateSize(User user) {
+        long bytes = USER_BYTES + FRIENDSHIP_BYTES * user.getFriendsList().getFriendships().size();
+
+        List<Notification> notifications = user.getFriendsNotifications();
+        notifications.addAll(user.getGroupNotifications());
+        for (Notification notification : notifications) {
+            bytes += NOTIFICATION_BYTES + notification.getText().length();
+        }
+
+        return bytes;
+    }
+
+    private static final class UserReference extends WeakReference<User> {
+        private final String username;
+
+        private UserReference(User user, ReferenceQueue<User> queue) {
+            super(user, queue);
+            username = user.getUsername();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+/**
+ * @param users         how many users there are; the personal info of all of them is in memory
+ * @param resident      how many users are in memory with their friends lists and notifications
+ * @param misses        how many times a user was loaded from the database
+ * @param evictions     how many times a user was dropped to make room for another one
+ * @param residentBytes a rough estimate of the memory taken by the resident users
+ */
+public record UserCacheMetrics(int users, int resident, long hits, long misses, long evictions,
+                               long residentBytes) {
+    public double hitRate() {
+        long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "users=%d resident=%d (~%d KB) hits=%d misses=%d hitRate=%.1f%% evictions=%d".formatted(users,
+            resident, residentBytes / 1024, hits, misses, 100 * hitRate(), evictions);
+    }
+}
@@ -2,44 +2,66 @@ package bg.sofia.uni.fmi.mjt.splitwise.server.logic.user;
 
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.FriendsList;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Inbox;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
-import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
+/**
+ * The notifications of a user are added by the operations of other users too, so its inbox is guarded by the
+ * user's monitor and the getters return copies. The friends list is guarded by the caller.
+ * The payments are not kept in memory; they are read a page at a time from the database.
+ */
 public class User {
     private UserPersonal personal;
 
-    private List<Notification> friendsNotifications;
-    private List<GroupNotification> groupNotifications;
+    private Inbox inbox;
     private FriendsList friendsList;
-    private List<Payment> payments;
 
     public User(UserPersonal personal) {
-        this(personal, new LinkedList<>(), new LinkedList<>(), new FriendsList(personal.getUsername()),
-            new LinkedList<>());
+        this(personal, new Inbox(), new FriendsList(personal.getUsername()));
     }
 
+    /**
+     * The notifications are unread, the ones from friends first
+     */
     public User(UserPersonal personal, List<Notification> friendsNotifications,
                 List<GroupNotification> groupNotifications,
-                FriendsList friendsList, List<Payment> payments) {
+                FriendsList friendsList) {
+        this(personal, new Inbox(), friendsList);
+
+        friendsNotifications.forEach(inbox::add);
+        groupNotifications.forEach(inbox::add);
+    }
+
+    public User(UserPersonal personal, Inbox inbox, FriendsList friendsList) {
         this.personal = personal;
-        this.friendsNotifications = friendsNotifications;
-        this.groupNotifications = groupNotifications;
+        this.inbox = inbox;
         this.friendsList = friendsList;
-        this.payments = payments;
     }
 
-    public boolean login(String username, String password) {
-        if (!personal.login(username, password)) {
-            return false;
-        }
+    /**
+     * @return the next page of unread notifications; they count as read after that
+     */
+    public synchronized NotificationPage readNotifications(int limit) {
+        return inbox.read(limit);
+    }
 
-        friendsNotifications.clear();
-        groupNotifications.clear();
+    /**
+     * @param cursor the sequence number of the first unread notification
+     */
+    public synchronized void markNotificationsRead(long cursor) {
+        inbox.markRead(cursor);
+    }
 
-        return true;
+    /**
+     * Lets the caller see the inbox while no notification is added, e.g. to save it
+     */
+    public synchronized <T> T withInbox(Function<Inbox, T> action) {
+        return action.apply(inbox);
     }
 
     public UserPersonal getPersonal() {
@@ -54,39 +76,50 @@ public class User {
         return friendsList;
     }
 
-    public List<Payment> getPayments() {
-        return payments;
-    }
-
-    public void addNotification(Notification notification) {
-        if (notification instanceof GroupNotification gn) {
-            groupNotifications.add(gn);
-        } else {
-            friendsNotifications.add(notification);
-        }
-    }
-
-    public void addPayment(Payment payment) {
-        payments.add(payment);
+    public synchronized void addNotification(Notification notification) {
+        inbox.add(notification);
     }
 
     public String getStatus() {
         return friendsList.getStatus();
     }
 
-    public List<Notification> getFriendsNotifications() {
-        return friendsNotifications;
+    /**
+     * @return the unread notifications from friends, without marking them as read
+     */
+    public synchronized List<Notification> getFriendsNotifications() {
+        List<Notification> result = new ArrayList<>();
+        for (Notification notification : inbox.getUnread()) {
+            if (!(notification instanceof GroupNotification)) {
+                result.add(notification);
+            }
+        }
+
+        return result;
     }
 
-    public List<GroupNotification> getGroupNotifications() {
-        return groupNotifications;
+    /**
+     * @return the unread notifications from groups, without marking them as read
+     */
+    public synchronized List<GroupNotification> getGroupNotifications() {
+        List<GroupNotification> result = new ArrayList<>();
+        for (Notification notification : inbox.getUnread()) {
+            if (notification instanceof GroupNotification groupNotification) {
+                result.add(groupNotification);
+            }
+        }
+
+        return result;
     }
 
     public boolean hasFriend(String username) {
         return friendsList.hasFriend(username);
     }
 
-    public double owesToUser(String username) {
+    /**
+     * @return how much this user owes to the other one, in cents
+     */
+    public long owesToUser(String username) {
         if (!hasFriend(username)) {
             throw new IllegalArgumentException("The users are not friends");
         }
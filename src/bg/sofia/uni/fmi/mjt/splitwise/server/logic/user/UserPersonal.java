@@ -11,7 +11,7 @@ public class UserPersonal implements Serializable {
     private String username;
     private String firstName;
     private String lastName;
-    private String password;
+    private volatile String password; //a hash, or the plaintext of a user who has not logged in since hashing
 
     public String getUsername() {
         return username;
@@ -36,8 +36,11 @@ public class UserPersonal implements Serializable {
         this.password = password;
     }
 
-    public boolean login(String username, String password) {
-        return username.equals(this.username) && password.equals(this.password);
+    /**
+     * @param password the new hash of the password
+     */
+    public void changePassword(String password) {
+        this.password = password;
     }
 
     @Override
@@ -0,0 +1,78 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Money;
+
+public class MoneyValidator {
+    public static final long CENTS_INVALID = -1;
+
+    //10 billion BGN; a million of such amounts still fit in a balance
+    public static final long MAX_CENTS = 1_000_000_000_000L;
+
+    private static final int MAX_DECIMAL_PLACES = 2;
+    private static final long MAX_UNITS = MAX_CENTS / Money.CENTS_IN_UNIT;
+
+    public static void validateCents(long cents) {
+        if (cents <= 0) {
+            throw new IllegalArgumentException("The amount of money must be positive");
+        }
+
+        if (cents > MAX_CENTS) {
+            throw new IllegalArgumentException("The amount of money must be at most " + Money.format(MAX_CENTS));
+        }
+    }
+
+    /**
+     * Parses an amount like "12", "12.5" or "12.50" without going through double
+     *
+     * @return the amount in cents or CENTS_INVALID if the text is not a non-negative amount
+     * with up to 2 decimal places and at most MAX_CENTS
+     */
+    public static long getCents(String str) {
+        if (str == null || str.isEmpty()) {
+            return CENTS_INVALID;
+        }
+
+        long units = 0;
+        int i = 0;
+        for (; i < str.length() && str.charAt(i) != '.'; i++) {
+            int digit = digit(str.charAt(i));
+            if (digit < 0 || units > MAX_UNITS) { //checked before every digit, so it never overflows
+                return CENTS_INVALID;
+            }
+
+            units = units * 10 + digit;
+        }
+
+        if (i == 0) {
+            return CENTS_INVALID; //no digits before the point
+        }
+
+        boolean hasPoint = i < str.length();
+        long cents = 0;
+        int decimalPlaces = 0;
+        for (i++; i < str.length(); i++) {
+            int digit = digit(str.charAt(i));
+            if (digit < 0 || ++decimalPlaces > MAX_DECIMAL_PLACES) {
+                return CENTS_INVALID;
+            }
+
+            cents = cents * 10 + digit;
+        }
+
+        if (hasPoint && decimalPlaces == 0) {
+            return CENTS_INVALID; //a point without digits after it, e.g. "12."
+        }
+
+        if (decimalPlaces == 1) {
+            cents *= 10;
+        }
+
+        long amount = units * Money.CENTS_IN_UNIT + cents;
+
+        return amount > MAX_CENTS ? CENTS_INVALID : amount;
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+}
@@ -0,0 +1,55 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Collects named metric sources and prints their current values on the server console
+ */
+public class MetricsReporter {
+    private final Map<String, Supplier<?>> sources;
+    private ScheduledExecutorService scheduler;
+
+    public MetricsReporter() {
+        sources = new ConcurrentSkipListMap<>();
+    }
+
+    public void register(String name, Supplier<?> source) {
+        sources.put(name, source);
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Supplier<?>> source : sources.entrySet()) {
+            sb.append(source.getKey()).append(": ").append(source.getValue().get());
+            sb.append(System.lineSeparator());
+        }
+
+        return sb.toString();
+    }
+
+    public void start(long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("The period must be positive");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "splitwise-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> System.out.print(report()), periodSeconds, periodSeconds,
+            TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
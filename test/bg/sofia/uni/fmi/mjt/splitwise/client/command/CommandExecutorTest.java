@@ -4,22 +4,33 @@ import bg.sofia.uni.fmi.mjt.splitwise.client.Client;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.NotificationResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.PaymentsResponse;
 import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
 import bg.sofia.uni.fmi.mjt.splitwise.client.io.UserInterface;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol;
 import bg.sofia.uni.fmi.mjt.splitwise.client.session.UserSession;
 import com.google.gson.Gson;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
@@ -58,6 +69,11 @@ public class CommandExecutorTest {
         badResponseJson = gson.toJson(badResponse);
     }
 
+    private void respond(Command command, String responseJson) { //as the client decodes it for the requested type
+        Mockito.when(httpClient.sendRequest(Mockito.eq(command), Mockito.any()))
+            .thenAnswer(invocation -> gson.fromJson(responseJson, invocation.<Class<?>>getArgument(1)));
+    }
+
     @BeforeEach
     void setCommandExecutor() {
         commandExecutor = new CommandExecutor(ui, httpClient, validator);
@@ -66,7 +82,7 @@ public class CommandExecutorTest {
     @BeforeEach
     void logIn() {
         if (!UserSession.isLoggedIn()) {
-            UserSession.logIn("nikola123");
+            UserSession.logIn("nikola123", "token");
         }
     }
 
@@ -97,7 +113,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.ADD_FRIEND, arguments);
 
         Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
 
         commandExecutor.execute(command);
 
@@ -110,7 +126,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.ADD_FRIEND, arguments);
 
         Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
@@ -145,7 +161,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.SPLIT, arguments);
 
         Mockito.when(validator.validateSplit(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
 
         commandExecutor.execute(command);
 
@@ -153,12 +169,26 @@ public class CommandExecutorTest {
         Mockito.verify(ui).write(okResponseMessage);
     }
 
+    @Test
+    void testExecuteSplitSendsTheSessionTokenInsteadOfTheUsername() {
+        Command command = new Command(CommandName.SPLIT, new String[] {"4.50", "ivan", "beer"});
+
+        Mockito.when(validator.validateSplit(command)).thenReturn(true);
+        respond(command, okResponseJson);
+
+        commandExecutor.execute(command);
+
+        assertEquals("token", command.token(), "The command was expected to carry the session token");
+        assertIterableEquals(List.of("4.50", "ivan", "beer"), List.of(command.arguments()),
+            "The username was not expected in the arguments");
+    }
+
     @Test
     void testExecuteSplitBadResponse() {
         Command command = new Command(CommandName.SPLIT, arguments);
 
         Mockito.when(validator.validateSplit(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
@@ -193,7 +223,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.RECEIVE, arguments);
 
         Mockito.when(validator.validateReceive(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
 
         commandExecutor.execute(command);
 
@@ -206,7 +236,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.RECEIVE, arguments);
 
         Mockito.when(validator.validateReceive(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
@@ -241,7 +271,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.CREATE_GROUP, arguments);
 
         Mockito.when(validator.validateCreateGroup(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
 
         commandExecutor.execute(command);
 
@@ -254,7 +284,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.CREATE_GROUP, arguments);
 
         Mockito.when(validator.validateCreateGroup(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
@@ -274,7 +304,7 @@ public class CommandExecutorTest {
 
     @Test
     void testExecutePaymentsValidationFailed() {
-        Command command = new Command(CommandName.PAYMENTS, arguments);
+        Command command = new Command(CommandName.PAYMENTS, new String[] {"a", "b", "c", "d", "e"});
 
         commandExecutor.execute(command);
 
@@ -284,14 +314,15 @@ public class CommandExecutorTest {
 
     @Test
     void testExecutePaymentsOkResponse() {
-        Payment hotelPayment = new Payment("nikola", 165.54, "hotel", Set.of("friend1"));
-        Payment beerPayment = new Payment("ivan", 10.2, "beer", Set.of("nikola", "peter", "neighbor"));
+        Payment hotelPayment = new Payment("nikola", 16554, "hotel", Set.of("friend1"), 1700000000000L);
+        Payment beerPayment = new Payment("ivan", 1020, "beer", Set.of("nikola", "peter", "neighbor"), 0);
         List<Payment> payments = List.of(hotelPayment, beerPayment);
-        String paymentsResponseJson = gson.toJson(new PaymentsResponse(true, "Successfully loaded payments", payments));
+        String paymentsResponseJson = gson.toJson(
+            new PaymentsResponse(true, "Successfully loaded payments", payments, PaymentsResponse.NO_MORE));
 
         Command command = new Command(CommandName.PAYMENTS, new String[] {});
 
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(paymentsResponseJson);
+        respond(command, paymentsResponseJson);
         commandExecutor.execute(command);
 
         Mockito.verify(ui, never()).writeError(anyString());
@@ -299,12 +330,70 @@ public class CommandExecutorTest {
         Mockito.verify(ui).write(beerPayment.toString());
     }
 
+    @Test
+    void testExecutePaymentsShowsTheCursorOfTheOlderPayments() {
+        Payment payment = new Payment("nikola", 16554, "hotel", Set.of("friend1"), 1700000000000L);
+        String paymentsResponseJson = gson.toJson(new PaymentsResponse(true, "Success", List.of(payment), 42));
+
+        Command command = new Command(CommandName.PAYMENTS, new String[] {"limit=1", "before=43"});
+
+        respond(command, paymentsResponseJson);
+        commandExecutor.execute(command);
+
+        Mockito.verify(ui, never()).writeError(anyString());
+        Mockito.verify(ui).write(payment.toString());
+        Mockito.verify(ui).write("For older payments: payments limit=1 before=42");
+    }
+
+    @Test
+    void testExecuteNotificationsShowsHowManyAreLeft() {
+        Notification friend = new Notification("Nikola added you as a friend");
+        String notificationsJson =
+            gson.toJson(new NotificationResponse(true, "Notifications:", List.of(friend), List.of(), 25));
+
+        Command command = new Command(CommandName.NOTIFICATIONS, new String[] {});
+
+        Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
+        respond(command, notificationsJson);
+        commandExecutor.execute(command);
+
+        Mockito.verify(ui, never()).writeError(anyString());
+        Mockito.verify(ui).write(friend.getText());
+        Mockito.verify(ui).write(CommandExecutor.MORE_NOTIFICATIONS_MESSAGE.formatted(25,
+            CommandName.NOTIFICATIONS.userCommand));
+    }
+
+    @Test
+    void testExecuteSubscribeListensForPushes() {
+        Command command = new Command(CommandName.SUBSCRIBE, new String[] {});
+
+        Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
+        respond(command, okResponseJson);
+        commandExecutor.execute(command);
+
+        Mockito.verify(httpClient).listenForPushes(Mockito.any());
+        Mockito.verify(ui).write(okResponseMessage);
+    }
+
+    @Test
+    void testExecuteSubscribeRejected() {
+        Command command = new Command(CommandName.SUBSCRIBE, new String[] {});
+
+        Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
+        respond(command, badResponseJson);
+        commandExecutor.execute(command);
+
+        Mockito.verify(httpClient, never()).listenForPushes(Mockito.any());
+        Mockito.verify(ui).writeError(badResponseMessage);
+    }
+
     @Test
     void testExecutePaymentsOkResponseNoPayments() {
         Command command = new Command(CommandName.PAYMENTS, new String[] {});
 
-        PaymentsResponse paymentsResponse = new PaymentsResponse(true, "Success", new LinkedList<>());
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(gson.toJson(paymentsResponse));
+        PaymentsResponse paymentsResponse =
+            new PaymentsResponse(true, "Success", new LinkedList<>(), PaymentsResponse.NO_MORE);
+        respond(command, gson.toJson(paymentsResponse));
 
         commandExecutor.execute(command);
 
@@ -316,7 +405,7 @@ public class CommandExecutorTest {
     void testExecutePaymentsBadResponse() {
         Command command = new Command(CommandName.PAYMENTS, new String[] {});
 
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
         commandExecutor.execute(command);
 
         Mockito.verify(ui, never()).write(anyString());
@@ -347,7 +436,7 @@ public class CommandExecutorTest {
     void testExecuteGetStatusOkResponse() {
         Command command = new Command(CommandName.GET_STATUS, new String[] {});
 
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
         commandExecutor.execute(command);
 
         Mockito.verify(ui, never()).writeError(anyString());
@@ -358,13 +447,51 @@ public class CommandExecutorTest {
     void testExecuteGetStatusBadResponse() {
         Command command = new Command(CommandName.GET_STATUS, new String[] {});
 
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
         commandExecutor.execute(command);
 
         Mockito.verify(ui, never()).write(anyString());
         Mockito.verify(ui).writeError(badResponseMessage);
     }
 
+    @Test
+    void testExecuteImportSendsTheSplitsAsOneBatch(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("splits.txt"),
+            "# imported from the spreadsheet\nsplit 10 ivan coffee and cake\n\nsplit-group 30 trip hotel\n");
+        Command command = new Command(CommandName.BATCH, new String[] {file.toString()});
+
+        Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
+        Mockito.when(validator.validateSplit(Mockito.any())).thenReturn(true);
+        BatchResponse response = JsonProtocol.decodeFields(("{\"ok\":true,\"responses\":[{\"ok\":true},"
+            + "{\"ok\":false,\"response\":\"Not a member\"}]}").getBytes(StandardCharsets.UTF_8))
+            .build(BatchResponse.class);
+        Mockito.when(httpClient.sendAsync(Mockito.any(), Mockito.eq(BatchResponse.class)))
+            .thenReturn(CompletableFuture.completedFuture(response));
+
+        commandExecutor.execute(command);
+
+        ArgumentCaptor<Command> sent = ArgumentCaptor.forClass(Command.class);
+        Mockito.verify(httpClient).sendAsync(sent.capture(), Mockito.eq(BatchResponse.class));
+        assertEquals(2, sent.getValue().commands().size(), "The comments and the empty lines are not commands");
+        assertEquals("token", sent.getValue().token(), "The batch is executed as the logged-in user");
+        Mockito.verify(ui).writeError(CommandExecutor.LINE_ERROR_MESSAGE.formatted(4, "Not a member"));
+        Mockito.verify(ui).write(CommandExecutor.IMPORTED_MESSAGE.formatted(1, 2));
+    }
+
+    @Test
+    void testExecuteImportRefusesOtherCommands(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("commands.txt"), "split 10 ivan coffee\nlog-out\n");
+        Command command = new Command(CommandName.BATCH, new String[] {file.toString()});
+
+        Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
+        Mockito.when(validator.validateSplit(Mockito.any())).thenReturn(true);
+
+        commandExecutor.execute(command);
+
+        Mockito.verify(ui).writeError(CommandExecutor.NOT_IMPORTABLE_MESSAGE.formatted(2));
+        Mockito.verify(httpClient, never()).sendAsync(Mockito.any(), Mockito.any());
+    }
+
     @Test
     void testExecuteLogOutWhenNotLoggedIn() {
         UserSession.logOut();
@@ -387,6 +514,15 @@ public class CommandExecutorTest {
         Mockito.verify(ui, never()).writeError(anyString());
     }
 
+    @Test
+    void testExecuteLogOutEndsTheSessionOnTheServer() {
+        Command command = new Command(CommandName.LOG_OUT, new String[] {});
+        commandExecutor.execute(command);
+
+        Mockito.verify(httpClient).sendRequest(Mockito.argThat(sent ->
+            sent.commandName() == CommandName.LOG_OUT && "token".equals(sent.token())), Mockito.any());
+    }
+
     //commands when not logged-in:
     @Test
     void testExecuteLogInWhenLoggedIn() {
@@ -422,12 +558,12 @@ public class CommandExecutorTest {
         Notification friend = new Notification("Nikola added you as a friend");
 
         NotificationResponse nResponse =
-            new NotificationResponse(true, "Login successful", List.of(friend), List.of(roommatesGroup, vacation));
+            new NotificationResponse(true, "Login successful", List.of(friend), List.of(roommatesGroup, vacation), 0);
 
         Command command = new Command(CommandName.LOGIN, arguments);
 
         Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(gson.toJson(nResponse));
+        respond(command, gson.toJson(nResponse));
 
         commandExecutor.execute(command);
 
@@ -449,7 +585,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.LOGIN, arguments);
 
         Mockito.when(validator.validateArgumentsCount(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
@@ -488,7 +624,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.SIGN_UP, arguments);
 
         Mockito.when(validator.validateSignUp(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(okResponseJson);
+        respond(command, okResponseJson);
 
         commandExecutor.execute(command);
 
@@ -503,7 +639,7 @@ public class CommandExecutorTest {
         Command command = new Command(CommandName.SIGN_UP, arguments);
 
         Mockito.when(validator.validateSignUp(command)).thenReturn(true);
-        Mockito.when(httpClient.sendRequest(command)).thenReturn(badResponseJson);
+        respond(command, badResponseJson);
 
         commandExecutor.execute(command);
 
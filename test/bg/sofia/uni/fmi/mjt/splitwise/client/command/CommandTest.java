@@ -16,16 +16,6 @@ public class CommandTest {
             new Command(CommandName.SPLIT, new String[] {"4.50", "nikola", "reason", "for", "payment", "is", "beer"});
     }
 
-    @Test
-    void testAddUsernameInFront() {
-        String toAdd = "ivan1230;";
-        String[] expected = new String[] {toAdd, "4.50", "nikola", "reason", "for", "payment", "is", "beer"};
-
-        command.addUsernameInFront(toAdd);
-
-        assertIterableEquals(List.of(expected), List.of(command.arguments()), "The arguments are not equal");
-    }
-
     @Test
     void testMergeLastArgument() {
         String[] expected = new String[] {"4.50", "nikola", "reason for payment is beer"};
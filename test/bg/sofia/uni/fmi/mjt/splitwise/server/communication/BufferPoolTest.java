@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferPoolTest {
+    private final BufferPool pool = new BufferPool(16, true);
+
+    @Test
+    void testAcquireGivesDirectBufferOfTheSmallestFittingClass() {
+        ByteBuffer small = pool.acquire(100);
+        ByteBuffer medium = pool.acquire(5000);
+
+        assertTrue(small.isDirect(), "The pooled buffers must be direct");
+        assertEquals(BufferPool.BUFFER_SIZE, small.capacity(), "The smallest class was expected");
+        assertEquals(16 * 1024, medium.capacity(), "The smallest class which fits 5000 bytes was expected");
+        assertEquals(2, pool.getOutstandingCount(), "Both buffers are in use");
+    }
+
+    @Test
+    void testReleasedBufferIsReused() {
+        ByteBuffer buffer = pool.acquire();
+        buffer.putInt(42);
+        pool.release(buffer);
+
+        ByteBuffer again = pool.acquire();
+
+        assertSame(buffer, again, "The released buffer was expected to be reused");
+        assertEquals(0, again.position(), "A reused buffer must be cleared");
+        assertEquals(1, pool.getAllocatedCount(), "Only one buffer was expected to be allocated");
+    }
+
+    @Test
+    void testBufferOverTheBiggestClassIsNotPooled() {
+        ByteBuffer huge = pool.acquire(1024 * 1024);
+        pool.release(huge);
+
+        assertEquals(1024 * 1024, huge.capacity(), "A buffer of the requested size was expected");
+        assertEquals(0, pool.getFreeCount(), "A buffer over the biggest class must be left to the garbage collector");
+        assertEquals(0, pool.getOutstandingCount(), "The released buffer is not in use any more");
+    }
+
+    @Test
+    void testReleasingTwiceIsRefused() {
+        ByteBuffer buffer = pool.acquire();
+        pool.release(buffer);
+
+        assertThrows(IllegalStateException.class, () -> pool.release(buffer),
+            "A buffer released twice could be handed out to two connections");
+        assertThrows(IllegalStateException.class, () -> pool.release(ByteBuffer.allocateDirect(1024)),
+            "A buffer which is not from the pool cannot be released to it");
+    }
+}
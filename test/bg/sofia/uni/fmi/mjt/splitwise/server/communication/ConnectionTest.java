@@ -0,0 +1,245 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.JsonProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireCodec;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.WireFormat;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionTest {
+    private final BufferPool pool = new BufferPool(16, true);
+    private final Connection connection = new Connection();
+
+    private Pipe pipe;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        pipe.sink().configureBlocking(false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pipe.source().close();
+        pipe.sink().close();
+
+        assertEquals(0, pool.getOutstandingCount(), "Every buffer must be given back to the pool");
+    }
+
+    @Test
+    void testPipelinedFramesAreReadInPlace() throws IOException {
+        byte[] second = frame("{\"commandName\":\"LOG_OUT\"}");
+        ByteBuffer input = ByteBuffer.allocate(1000).put(frame("{\"commandName\":\"HELP\"}")).put(second, 0, 10);
+        send(input.flip());
+
+        connection.readFrom(pipe.source(), pool);
+
+        assertEquals("{\"commandName\":\"HELP\"}", text(connection.nextFrame(pool)), "The first frame was expected");
+        assertNull(connection.nextFrame(pool), "The second frame has not arrived whole yet");
+
+        connection.releaseReadBuffer(pool);
+        assertEquals(1, pool.getOutstandingCount(), "The partial frame must keep the read buffer");
+
+        send(ByteBuffer.wrap(second, 10, second.length - 10));
+        connection.readFrom(pipe.source(), pool);
+
+        assertEquals("{\"commandName\":\"LOG_OUT\"}", text(connection.nextFrame(pool)),
+            "The second frame was expected after the rest of it arrived");
+        assertNull(connection.nextFrame(pool), "There are no more frames");
+        connection.releaseReadBuffer(pool);
+    }
+
+    @Test
+    void testFrameBiggerThanTheReadBufferGrowsItFromThePool() throws IOException {
+        String payload = "x".repeat(3 * BufferPool.BUFFER_SIZE);
+        ByteBuffer input = ByteBuffer.wrap(frame(payload));
+
+        String read = null;
+        while (read == null) {
+            send(input);
+            connection.readFrom(pipe.source(), pool);
+            read = text(connection.nextFrame(pool));
+        }
+
+        assertEquals(payload, read, "The big frame was not read whole");
+        connection.releaseBuffers(pool);
+    }
+
+    @Test
+    void testInvalidFrameLengthIsRefused() throws IOException {
+        send(ByteBuffer.allocate(Integer.BYTES).putInt(-1).flip());
+        connection.readFrom(pipe.source(), pool);
+
+        assertThrows(IOException.class, () -> connection.nextFrame(pool), "A negative length must be refused");
+        connection.releaseBuffers(pool);
+    }
+
+    @Test
+    void testHeaderSplitAcrossReadsIsWaitedFor() throws IOException {
+        byte[] frame = frame("{\"commandName\":\"HELP\"}");
+
+        send(ByteBuffer.wrap(frame, 0, 2));
+        connection.readFrom(pipe.source(), pool);
+        assertNull(connection.nextFrame(pool), "Half a header is not a frame yet");
+
+        send(ByteBuffer.wrap(frame, 2, frame.length - 2));
+        connection.readFrom(pipe.source(), pool);
+        assertEquals("{\"commandName\":\"HELP\"}", text(connection.nextFrame(pool)),
+            "The frame was expected once the rest of the header and the payload arrived");
+        assertNull(connection.nextFrame(pool), "There are no more frames");
+        connection.releaseReadBuffer(pool);
+    }
+
+    @Test
+    void testTwoFramesInOneReadAreBothReturned() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(100).put(frame("first")).put(frame("second"));
+        send(input.flip());
+
+        connection.readFrom(pipe.source(), pool);
+
+        assertEquals("first", text(connection.nextFrame(pool)), "The first frame was expected");
+        assertEquals("second", text(connection.nextFrame(pool)), "The second frame of the same read was expected");
+        assertNull(connection.nextFrame(pool), "There are no more frames");
+        connection.releaseReadBuffer(pool);
+    }
+
+    @Test
+    void testFrameOverTheMaximumIsRefused() throws IOException {
+        send(ByteBuffer.allocate(Integer.BYTES).putInt(Connection.MAX_FRAME_SIZE + 1).flip());
+        connection.readFrom(pipe.source(), pool);
+
+        assertThrows(IOException.class, () -> connection.nextFrame(pool),
+            "A frame over the maximum must be refused before any buffer is grown for it");
+        connection.releaseBuffers(pool);
+    }
+
+    @Test
+    void testPartialWritesContinueWhereTheyStopped() throws IOException {
+        connection.enqueue(new ByteBuffer[] {ByteBuffer.wrap(frame("first"))});
+        connection.enqueue(new ByteBuffer[] {ByteBuffer.wrap(frame("second"))});
+        TrickleChannel channel = new TrickleChannel(3);
+
+        int writes = 1;
+        while (!connection.writeTo(channel, pool)) { //what the reactor does on every OP_WRITE
+            assertTrue(connection.hasPendingOutput(), "The rest of the frames must wait for the next write");
+            writes++;
+        }
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(frame("first"));
+        expected.write(frame("second"));
+        assertArrayEquals(expected.toByteArray(), channel.written.toByteArray(),
+            "The frames must be written whole and in order across the partial writes");
+        assertTrue(writes > 1, "The channel was expected to take the frames in several writes");
+    }
+
+    @Test
+    void testLargeResponseIsWrittenFromItsChunks() throws IOException {
+        WireCodec codec = new WireCodec(JsonProtocol.createGson());
+        Response response = new Response(true, "Кафе ".repeat(50_000));
+        ByteBuffer[] frame = codec.encodeFrame(response, WireFormat.JSON, 0, pool::acquire);
+        assertTrue(frame.length > 1, "A large response is expected in several buffers");
+
+        connection.enqueue(frame);
+
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        ByteBuffer received = ByteBuffer.allocate(BufferPool.BUFFER_SIZE * 8);
+        boolean done = false;
+        while (!done) {
+            done = connection.writeTo(pipe.sink(), pool);
+            while (pipe.source().read(received.clear()) > 0) {
+                written.write(received.array(), 0, received.position());
+            }
+        }
+
+        assertFalse(connection.hasPendingOutput(), "Everything was expected to be written");
+        assertArrayEquals(Connection.frame(codec.encode(response, WireFormat.JSON)), written.toByteArray(),
+            "The written frame differs from the response");
+    }
+
+    @Test
+    void testClosedConnectionGivesBackItsBuffers() throws IOException {
+        WireCodec codec = new WireCodec(JsonProtocol.createGson());
+        send(ByteBuffer.allocate(2).putShort((short) 1).flip());
+        connection.readFrom(pipe.source(), pool);
+        connection.enqueue(codec.encodeFrame(new Response(true, "Hi"), WireFormat.JSON, 0, pool::acquire));
+
+        connection.releaseBuffers(pool);
+        connection.releaseBuffers(pool);
+
+        assertFalse(connection.hasPendingOutput(), "The output of a closed connection is dropped");
+    }
+
+    private void send(ByteBuffer bytes) throws IOException {
+        pipe.sink().write(bytes);
+    }
+
+    private static byte[] frame(String payload) {
+        return Connection.frame(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer payload) {
+        return payload == null ? null : StandardCharsets.UTF_8.decode(payload).toString();
+    }
+
+    /**
+     * Takes at most a few bytes per write, like a socket with a full send buffer
+     */
+    private static class TrickleChannel implements GatheringByteChannel {
+        private final int bytesPerWrite;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        TrickleChannel(int bytesPerWrite) {
+            this.bytesPerWrite = bytesPerWrite;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            int budget = bytesPerWrite;
+            for (int i = offset; i < offset + length && budget > 0; i++) {
+                while (sources[i].hasRemaining() && budget > 0) {
+                    written.write(sources[i].get());
+                    budget--;
+                }
+            }
+
+            return bytesPerWrite - budget;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[] {source});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A blocking client of the servers under test, which writes and reads whole frames
+ */
+class FrameClient implements AutoCloseable {
+    private static final int CONNECT_ATTEMPTS = 100;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final SocketChannel channel;
+    private final DataInputStream in;
+
+    private FrameClient(SocketChannel channel) throws IOException {
+        this.channel = channel;
+
+        channel.socket().setSoTimeout(TIMEOUT_MILLIS); //a missing response fails the test instead of hanging it
+        in = new DataInputStream(channel.socket().getInputStream());
+    }
+
+    /**
+     * Retries until the server thread is listening
+     */
+    static FrameClient connect(int port) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new FrameClient(SocketChannel.open(new InetSocketAddress("localhost", port)));
+            } catch (IOException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(TIMEOUT_MILLIS / CONNECT_ATTEMPTS);
+            }
+        }
+    }
+
+    /**
+     * @param frame the bytes to send as they are, the length header included
+     */
+    void write(ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * @return the length header of the next frame, or -1 if the server closed the connection without one
+     */
+    int readHeader() throws IOException {
+        try {
+            return in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    byte[] readPayload(int length) throws IOException {
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Sends the command as JSON and reads its uncompressed response
+     */
+    Response call(Command command) throws IOException {
+        send(command);
+        return receive();
+    }
+
+    /**
+     * Sends the command as JSON without waiting for its response
+     */
+    void send(Command command) throws IOException {
+        write(ByteBuffer.wrap(Connection.frame(JsonProtocol.encodeCommand(command))));
+    }
+
+    /**
+     * Reads the next uncompressed JSON response
+     */
+    Response receive() throws IOException {
+        int length = readHeader();
+        if (length < 0) {
+            throw new EOFException("The server closed the connection instead of answering");
+        }
+
+        return JsonProtocol.decodeFields(readPayload(length)).build(Response.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
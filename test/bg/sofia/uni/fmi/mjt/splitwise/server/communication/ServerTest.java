@@ -0,0 +1,162 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise.SplitWiseAPI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ServerTest {
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final SplitWiseAPI splitWiseAPI = mock(SplitWiseAPI.class);
+
+    private Server server;
+    private Thread serverThread;
+    private int port;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop();
+        serverThread.join(TIMEOUT_MILLIS);
+    }
+
+    @Test
+    void testMalformedBinaryFrameDoesNotStopTheReactor() throws Exception {
+        start(1);
+        ByteBuffer malformed = ByteBuffer.allocate(18).putInt(14)
+            .put(new byte[] {2, 0, 0, 0}) //the version, the ordinal, the id and no token
+            .put(new byte[] {-1, -1, -1, -1, -1, -1, -1, -1, -1, 1}) //a count which decodes to a negative int
+            .flip();
+
+        try (FrameClient attacker = FrameClient.connect(port)) {
+            attacker.write(malformed);
+            attacker.readHeader();
+        }
+
+        try (FrameClient client = FrameClient.connect(port)) {
+            Response response = client.call(new Command(CommandName.HELP, new String[0]));
+
+            assertNotNull(response, "The next client must still be answered");
+        }
+    }
+
+    @Test
+    void testClientsSpreadAcrossReactorsAreAllServed() throws Exception {
+        int reactors = 3;
+        when(splitWiseAPI.login(anyString(), anyString())).thenReturn(true);
+        when(splitWiseAPI.readNotifications(anyString(), anyInt()))
+            .thenReturn(new NotificationPage(List.of(), 0, 0));
+        when(splitWiseAPI.getStatus(anyString())).thenAnswer(call -> "status of " + call.getArgument(0));
+        start(reactors);
+
+        List<FrameClient> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < reactors * 3; i++) {
+                FrameClient client = FrameClient.connect(port);
+                clients.add(client);
+                assertTrue(client.call(command(CommandName.LOGIN, "user" + i, "password1")).isOk(),
+                    "Client " + i + " was expected to log in");
+            }
+
+            for (int round = 0; round < 2; round++) { //the connections stay with their reactors
+                for (int i = 0; i < clients.size(); i++) {
+                    Response status = clients.get(i).call(command(CommandName.GET_STATUS));
+                    assertEquals("status of user" + i, status.getResponse(),
+                        "Client " + i + " must get the status of its own session");
+                }
+            }
+
+            for (Reactor reactor : server.getReactors()) {
+                assertEquals(3, reactor.getConnectionsCount(),
+                    "The acceptor must hand the connections round-robin to " + reactor.getName());
+            }
+        } finally {
+            for (FrameClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    void testCommandsOverTheWorkerQueueAreAnsweredOverloaded() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(splitWiseAPI.login(anyString(), anyString())).thenAnswer(call -> {
+            running.countDown();
+            return release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        });
+        when(splitWiseAPI.readNotifications(anyString(), anyInt()))
+            .thenReturn(new NotificationPage(List.of(), 0, 0));
+        start(1, WorkerPool.fixed(1, 1));
+
+        try (FrameClient busy = FrameClient.connect(port);
+             FrameClient queued = FrameClient.connect(port);
+             FrameClient refused = FrameClient.connect(port)) {
+            busy.send(command(CommandName.LOGIN, "busy", "password1"));
+            assertTrue(running.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "The only worker was expected to start");
+            queued.send(command(CommandName.LOGIN, "queued", "password1"));
+            awaitQueueDepth(1);
+
+            Response overloaded = refused.call(command(CommandName.LOGIN, "refused", "password1"));
+            assertFalse(overloaded.isOk(), "A command over the full queue must fail");
+            assertEquals("The server is overloaded. Try again later", overloaded.getResponse(),
+                "The client must be told the server is overloaded");
+            assertEquals(1, server.getWorkerPool().getMetrics().rejected(), "The refusal must be counted");
+
+            release.countDown();
+            assertTrue(busy.receive().isOk(), "The running command must still be answered");
+            assertTrue(queued.receive().isOk(), "The queued command must still be answered");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private void awaitQueueDepth(long depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.getWorkerPool().getMetrics().queueDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertEquals(depth, server.getWorkerPool().getMetrics().queueDepth(), "The queue was expected to fill");
+    }
+
+    private void start(int reactors) throws IOException {
+        start(reactors, WorkerPool.fixed(2, 16));
+    }
+
+    private void start(int reactors, WorkerPool workerPool) throws IOException {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+
+        server = new Server(port, new CommandExecutor(splitWiseAPI), workerPool, reactors);
+        serverThread = new Thread(server::start);
+        serverThread.start();
+    }
+
+    private static Command command(CommandName name, String... arguments) {
+        return new Command(name, arguments);
+    }
+}
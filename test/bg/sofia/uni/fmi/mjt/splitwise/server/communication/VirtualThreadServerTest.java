@@ -0,0 +1,156 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol.FrameCompressor;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise.SplitWiseAPI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VirtualThreadServerTest {
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final SplitWiseAPI splitWiseAPI = mock(SplitWiseAPI.class);
+
+    private VirtualThreadServer server;
+    private Thread serverThread;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+
+        when(splitWiseAPI.login("nikola", "password1")).thenReturn(true);
+        when(splitWiseAPI.readNotifications("nikola", 20)).thenReturn(new NotificationPage(List.of(), 0, 0));
+        when(splitWiseAPI.getStatus("nikola")).thenReturn("ivan owes you 12.50 BGN");
+
+        server = new VirtualThreadServer(port, new CommandExecutor(splitWiseAPI));
+        serverThread = new Thread(server::start);
+        serverThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop();
+        serverThread.join(TIMEOUT_MILLIS);
+
+        assertFalse(serverThread.isAlive(), "stop() must unblock the accepting thread");
+    }
+
+    @Test
+    void testCommandsUseTheSessionOfTheirConnection() throws Exception {
+        try (FrameClient client = FrameClient.connect(port)) {
+            Response login = client.call(command(CommandName.LOGIN, "nikola", "password1"));
+            Response status = client.call(command(CommandName.GET_STATUS)); //without a token
+
+            assertTrue(login.isOk(), "The login was expected to succeed");
+            assertTrue(status.isOk(), "The command after the login must use its session");
+            assertEquals("ivan owes you 12.50 BGN", status.getResponse(), "The status was not sent back");
+        }
+    }
+
+    @Test
+    void testMalformedFrameClosesOnlyItsConnection() throws Exception {
+        try (FrameClient client = FrameClient.connect(port)) {
+            client.write(ByteBuffer.allocate(Integer.BYTES).putInt(-1).flip());
+
+            assertEquals(-1, client.readHeader(), "A negative frame length must close the connection");
+        }
+
+        try (FrameClient client = FrameClient.connect(port)) {
+            client.write(ByteBuffer.allocate(Integer.BYTES + 3).putInt(100).put(new byte[3]).flip());
+        } //closed in the middle of the payload
+
+        try (FrameClient client = FrameClient.connect(port)) {
+            assertTrue(client.call(command(CommandName.LOGIN, "nikola", "password1")).isOk(),
+                "The next client must still be served");
+        }
+
+        awaitNoConnections();
+        assertEquals(0, server.getBufferPool().getOutstandingCount(),
+            "The buffer of a frame cut short must be given back to the pool");
+    }
+
+    @Test
+    void testBigResponsesAreCompressedAfterTheNegotiation() throws Exception {
+        String status = "ivan owes you 12.50 BGN for dinner\n".repeat(100);
+        when(splitWiseAPI.getStatus("nikola")).thenReturn(status);
+
+        try (FrameClient client = FrameClient.connect(port)) {
+            assertTrue(client.call(command(CommandName.COMPRESS, FrameCompressor.DEFLATE)).isOk(),
+                "Deflate was expected to be accepted");
+            assertTrue(client.call(command(CommandName.LOGIN, "nikola", "password1")).isOk(),
+                "The small login response is not compressed");
+
+            byte[] getStatus = JsonProtocol.encodeCommand(command(CommandName.GET_STATUS));
+            client.write(ByteBuffer.wrap(Connection.frame(getStatus)));
+            int header = client.readHeader();
+            assertNotEquals(0, header & FrameCompressor.COMPRESSED, "The big status must be compressed");
+
+            byte[] compressed = client.readPayload(header & ~FrameCompressor.COMPRESSED);
+            Response response = JsonProtocol.decodeFields(inflate(compressed)).build(Response.class);
+            assertEquals(status, response.getResponse(), "The compressed status must inflate to the status");
+            assertTrue(compressed.length < status.length() / 10, "The repetitive status was expected to shrink");
+        }
+    }
+
+    @Test
+    void testDisconnectedClientsAreForgotten() throws Exception {
+        FrameClient first = FrameClient.connect(port);
+        FrameClient second = FrameClient.connect(port);
+        first.call(command(CommandName.LOGIN, "nikola", "password1"));
+        second.call(command(CommandName.LOGIN, "nikola", "password1"));
+
+        assertEquals(2, server.getConnectionsCount(), "Both clients are connected");
+
+        first.close();
+        second.close();
+
+        awaitNoConnections();
+        assertEquals(0, server.getBufferPool().getOutstandingCount(), "Every buffer must be given back to the pool");
+    }
+
+    private void awaitNoConnections() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (server.getConnectionsCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10); //the threads of the connections notice the end of their stream on their own
+        }
+
+        assertEquals(0, server.getConnectionsCount(), "The closed connections must be forgotten");
+    }
+
+    private static Command command(CommandName name, String... arguments) {
+        return new Command(name, arguments);
+    }
+
+    private static byte[] inflate(byte[] compressed) throws Exception {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed);
+        byte[] buffer = new byte[64 * 1024];
+        int size = inflater.inflate(buffer);
+        inflater.end();
+
+        return Arrays.copyOf(buffer, size);
+    }
+}
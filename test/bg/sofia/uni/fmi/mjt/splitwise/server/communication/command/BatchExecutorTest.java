@@ -0,0 +1,122 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.command;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.SessionTable;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker.WorkerPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchExecutorTest {
+    private final CommandExecutor commandExecutor = Mockito.mock(CommandExecutor.class);
+    private final Session session = new SessionTable(Duration.ofMinutes(1)).create("nikola");
+    private final WorkerPool workers = WorkerPool.fixed(4, 16);
+
+    @AfterEach
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    private static Command command(CommandName name, String... arguments) {
+        return new Command(name, arguments, null);
+    }
+
+    @Test
+    void testResponsesKeepTheOrderOfTheCommands() {
+        when(commandExecutor.execute(any(), any())).thenAnswer(invocation ->
+            new Response(true, ((Command) invocation.getArgument(0)).arguments()[0]));
+        BatchExecutor batches = new BatchExecutor(commandExecutor, workers, 4);
+
+        Command[] commands = new Command[20];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = command(i % 5 == 4 ? CommandName.ADD_FRIEND : CommandName.SPLIT, String.valueOf(i));
+        }
+
+        BatchResponse response = assertInstanceOf(BatchResponse.class, batches.execute(commands, session));
+
+        assertTrue(response.isOk(), "The batch was expected to be executed");
+        for (int i = 0; i < commands.length; i++) {
+            assertEquals(String.valueOf(i), response.getResponses().get(i).getResponse(),
+                "The response " + i + " is not in the place of its command");
+        }
+    }
+
+    @Test
+    void testSplitsRunInParallel() {
+        CyclicBarrier allStarted = new CyclicBarrier(3);
+        when(commandExecutor.execute(any(), any())).thenAnswer(invocation -> {
+            allStarted.await(5, TimeUnit.SECONDS); //times out if the splits run one after another
+            return new Response(true, "split");
+        });
+        BatchExecutor batches = new BatchExecutor(commandExecutor, workers, 3);
+
+        Response response = batches.execute(new Command[] {command(CommandName.SPLIT, "1", "ivan", "a"),
+            command(CommandName.SPLIT, "2", "petar", "b"), command(CommandName.SPLIT_GROUP, "3", "trip", "c")},
+            session);
+
+        for (Response inner : ((BatchResponse) response).getResponses()) {
+            assertTrue(inner.isOk(), "The splits were expected to run at the same time");
+        }
+    }
+
+    @Test
+    void testOtherCommandsSeparateTheParallelStages() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        when(commandExecutor.execute(any(), any())).thenAnswer(invocation -> {
+            Command command = invocation.getArgument(0);
+            events.add(command.commandName() + " start");
+            Thread.sleep(command.commandName() == CommandName.SPLIT ? 20 : 0);
+            events.add(command.commandName() + " end");
+            return new Response(true, "ok");
+        });
+        BatchExecutor batches = new BatchExecutor(commandExecutor, workers, 4);
+
+        batches.execute(new Command[] {command(CommandName.SPLIT), command(CommandName.SPLIT),
+            command(CommandName.RECEIVE), command(CommandName.SPLIT)}, session);
+
+        int receiveStart = events.indexOf("RECEIVE start");
+        assertEquals(4, events.subList(0, receiveStart).stream().filter(e -> e.startsWith("SPLIT")).count(),
+            "The receive must wait for the splits before it: " + events);
+        assertEquals("RECEIVE end", events.get(receiveStart + 1), "The split after the receive must wait: " + events);
+    }
+
+    @Test
+    void testSessionCommandsAreRefused() {
+        BatchExecutor batches = new BatchExecutor(commandExecutor, null, 1);
+
+        BatchResponse response = (BatchResponse) batches.execute(new Command[] {command(CommandName.LOGIN, "a", "b"),
+            command(CommandName.LOG_OUT), command(CommandName.SUBSCRIBE), command(CommandName.BATCH)}, session);
+
+        for (Response inner : response.getResponses()) {
+            assertFalse(inner.isOk(), "A command which changes the session cannot be batched");
+        }
+        verify(commandExecutor, never()).execute(any(), any());
+    }
+
+    @Test
+    void testEmptyAndTooBigBatchesAreRefused() {
+        BatchExecutor batches = new BatchExecutor(commandExecutor, null, 1);
+
+        assertFalse(batches.execute(new Command[0], session).isOk(), "An empty batch is invalid");
+        assertFalse(batches.execute(null, session).isOk(), "A batch without commands is invalid");
+        assertFalse(batches.execute(new Command[BatchExecutor.MAX_COMMANDS + 1], session).isOk(),
+            "A batch over the limit is invalid");
+    }
+}
@@ -0,0 +1,234 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.LoginResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.PaymentsResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.ResponseFields;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.Connection;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PushedNotificationResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.Session;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.SessionTable;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryProtocolTest {
+    private static final bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName[] CLIENT_COMMANDS =
+        bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName.values();
+
+    private final WireCodec codec = new WireCodec(JsonProtocol.createGson());
+
+    @Test
+    void testClientCommandsHaveTheOrdinalsOfTheServer() {
+        for (CommandName serverCommand : CommandName.values()) {
+            assertEquals(serverCommand.name(), CLIENT_COMMANDS[serverCommand.ordinal()].name(),
+                "The client must send the ordinal of the server for " + serverCommand);
+        }
+    }
+
+    @Test
+    void testCommandOfTheClientIsDecodedByTheServer() {
+        var sent = new bg.sofia.uni.fmi.mjt.splitwise.client.command.Command(
+            bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName.SPLIT,
+            new String[] {"12.50", "ivan", "Кафе и закуска"});
+        sent.setToken("token");
+
+        byte[] payload = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.encodeCommand(sent);
+        Command received = codec.decodeCommand(payload);
+
+        assertEquals(WireFormat.BINARY, WireFormat.of(payload), "The payload was expected to be binary");
+        assertEquals(CommandName.SPLIT, received.commandName(), "The command name was not decoded");
+        assertArrayEquals(sent.arguments(), received.arguments(), "The arguments were not decoded");
+        assertEquals("token", received.token(), "The token was not decoded");
+    }
+
+    @Test
+    void testLoginResponseIsDecodedByTheClient() {
+        Session session = new SessionTable(Duration.ofMinutes(1)).create("nikola");
+        var response = new bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.LoginResponse("Welcome",
+            List.of(Notification.ofText("Ivan added you as a friend")),
+            List.of(GroupNotification.ofText("trip", "Ivan has split 10 BGN")), 3, session);
+
+        LoginResponse decoded = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeResponse(
+            BinaryProtocol.encodeResponse(response), LoginResponse.class);
+
+        assertTrue(decoded.isOk(), "The response was expected to be ok");
+        assertEquals("Welcome", decoded.getResponse(), "The message was not decoded");
+        assertEquals("Ivan added you as a friend", decoded.getFriendsNotifications().getFirst().getText(),
+            "The friend notification was not decoded");
+        assertEquals("trip", decoded.getGroupNotifications().getFirst().getGroup(), "The group was not decoded");
+        assertEquals(3, decoded.getRemaining(), "The remaining count was not decoded");
+        assertEquals(session.getToken(), decoded.getToken(), "The token was not decoded");
+    }
+
+    @Test
+    void testPaymentsResponseIsDecodedByTheClient() {
+        Payment payment = new Payment("nikola", 16554, "hotel", Set.of("ivan"), 1700000000000L);
+        var response = new bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PaymentsResponse(true,
+            "Payments:", List.of(payment), -1);
+
+        PaymentsResponse decoded = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeResponse(
+            BinaryProtocol.encodeResponse(response), PaymentsResponse.class);
+
+        assertEquals(new bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment("nikola", 16554, "hotel",
+            Set.of("ivan"), 1700000000000L).toString(), decoded.getPayments().getFirst().toString(),
+            "The payment was not decoded");
+        assertEquals(PaymentsResponse.NO_MORE, decoded.getNextCursor(), "The cursor was not decoded");
+    }
+
+    @Test
+    void testErrorResponseIsDecodedAsAnyType() {
+        byte[] payload = BinaryProtocol.encodeResponse(new Response(false, "Wrong password"));
+
+        LoginResponse decoded =
+            bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeResponse(payload, LoginResponse.class);
+
+        assertFalse(decoded.isOk(), "The error was expected");
+        assertEquals("Wrong password", decoded.getResponse(), "The message was not decoded");
+        assertNull(decoded.getToken(), "An error response has no token");
+    }
+
+    @Test
+    void testPushIsToldApartFromAResponse() {
+        byte[] pushed = BinaryProtocol.encodeResponse(new PushedNotificationResponse(Notification.ofText("Hi")));
+        byte[] response = BinaryProtocol.encodeResponse(new Response(true, "Hi"));
+
+        assertTrue(
+            bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeFields(pushed).isPushed(),
+            "The push was expected to be recognized");
+        assertFalse(
+            bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeFields(response).isPushed(),
+            "A response is not a push");
+    }
+
+    @Test
+    void testMalformedCommandsAreRefused() {
+        byte[] valid =
+            BinaryProtocol.encodeCommand(new Command(CommandName.LOGIN, new String[] {"nikola", "pass"}, null));
+
+        assertNull(codec.decodeCommand(Arrays.copyOf(valid, valid.length - 1)), "A truncated command is invalid");
+        assertNull(codec.decodeCommand(Arrays.copyOf(valid, valid.length + 1)), "Trailing bytes are invalid");
+        assertNull(codec.decodeCommand(new byte[] {BinaryProtocol.VERSION, 100}), "The command name is unknown");
+        assertNull(codec.decodeCommand(new byte[] {BinaryProtocol.VERSION, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, 0x7F}),
+            "A count bigger than the payload is invalid");
+        byte[] ten = {-1, -1, -1, -1, -1, -1, -1, -1, -1, 1}; //a varint which decodes to a negative int
+        assertNull(codec.decodeCommand(concat(new byte[] {BinaryProtocol.VERSION, 0, 0, 0}, ten)),
+            "A negative count is invalid");
+        assertNull(codec.decodeCommand(concat(new byte[] {BinaryProtocol.VERSION}, ten)),
+            "A negative command name is invalid");
+        assertThrows(IllegalArgumentException.class,
+            () -> BinaryProtocol.decodeCommand(new byte[] {BinaryProtocol.VERSION + 1, 0, 0, 0, 0}),
+            "Another version is not supported");
+    }
+
+    @Test
+    void testBatchOfTheClientIsDecodedByTheServer() {
+        var split = new bg.sofia.uni.fmi.mjt.splitwise.client.command.Command(
+            bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName.SPLIT, new String[] {"1", "ivan", "r"});
+        var batch = bg.sofia.uni.fmi.mjt.splitwise.client.command.Command.batch(List.of(split, split));
+        batch.setId(300);
+        batch.setToken("token");
+
+        Command received = codec.decodeCommand(
+            bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.encodeCommand(batch));
+
+        assertEquals(CommandName.BATCH, received.commandName(), "The command name was not decoded");
+        assertEquals(300, received.id(), "The id was not decoded");
+        assertEquals("token", received.token(), "The token was not decoded");
+        assertEquals(2, received.commands().length, "The commands of the batch were not decoded");
+        assertArrayEquals(split.arguments(), received.commands()[1].arguments(), "The inner command was not decoded");
+
+        Command nested = new Command(CommandName.BATCH, new String[0], null, 1,
+            new Command[] {new Command(CommandName.BATCH, new String[0], null)});
+        assertNull(codec.decodeCommand(BinaryProtocol.encodeCommand(nested)), "A batch cannot contain a batch");
+    }
+
+    @Test
+    void testBatchResponseIsDecodedByTheClient() {
+        byte[] payload = BinaryProtocol.encodeResponse(new BatchResponse("Executed 2 commands",
+            List.of(new Response(true, "Split"), new Response(false, "Not a friend"))), 300);
+
+        ResponseFields fields = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.BinaryProtocol.decodeFields(payload);
+        bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse batch =
+            fields.build(bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse.class);
+
+        assertEquals(300, fields.getId(), "The id of the command was not sent back");
+        assertEquals(2, batch.size(), "The responses of the batch were not decoded");
+        assertEquals("Not a friend", batch.getResponse(1,
+            bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response.class).getResponse(),
+            "The responses must keep the order of the commands");
+    }
+
+    @Test
+    void testJsonIsStillUnderstood() {
+        byte[] payload = "{\"commandName\":\"GET_STATUS\",\"arguments\":[]}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(WireFormat.JSON, WireFormat.of(payload), "The payload was expected to be JSON");
+        assertEquals(CommandName.GET_STATUS, codec.decodeCommand(payload).commandName(), "The JSON was not decoded");
+        assertEquals("{\"ok\":true,\"response\":\"Hi\"}",
+            new String(codec.encode(new Response(true, "Hi"), WireFormat.JSON), StandardCharsets.UTF_8),
+            "The JSON response must not change for the old clients");
+    }
+
+    @Test
+    void testFrameIsEncodedIntoBuffersOfTheAllocator() {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            payments.add(new Payment("nikola", 1250 + i, "Кафе " + i, Set.of("ivan"), 1_700_000_000_000L + i));
+        }
+        Response response = new bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PaymentsResponse(true,
+            "Payments", payments, 1);
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] payload = codec.encode(response, format, 7);
+            ByteBuffer[] frame = codec.encodeFrame(response, format, 7, ByteBuffer::allocateDirect);
+
+            ByteBuffer joined = ByteBuffer.allocate(payload.length + Integer.BYTES);
+            for (ByteBuffer buffer : frame) {
+                assertTrue(buffer.isDirect(), "The frame must be in buffers of the allocator");
+                joined.put(buffer);
+            }
+
+            assertTrue(frame.length > 1, "A large response is expected in several chunks");
+            assertArrayEquals(Connection.frame(payload), joined.array(), "The frame differs from the payload");
+        }
+    }
+
+    @Test
+    void testCommandIsDecodedInPlace() {
+        Command sent = new Command(CommandName.SPLIT, new String[] {"12.50", "ivan", "Кафе"}, "token", 3, null);
+        byte[] payload = BinaryProtocol.encodeCommand(sent);
+
+        ByteBuffer read = ByteBuffer.allocateDirect(64).put((byte) 1).put(payload).put((byte) 1);
+        Command received = codec.decodeCommand(read.slice(1, payload.length));
+
+        assertEquals(CommandName.SPLIT, received.commandName(), "The command name was not decoded");
+        assertArrayEquals(sent.arguments(), received.arguments(), "The arguments were not decoded");
+        assertEquals(3, received.id(), "The id was not decoded");
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.BufferPool;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCompressorTest {
+    private final WireCodec codec = new WireCodec(JsonProtocol.createGson());
+    private final BufferPool pool = new BufferPool(16, true);
+    private final FrameCompressor compressor = new FrameCompressor();
+
+    @AfterEach
+    void tearDown() {
+        compressor.close();
+
+        assertEquals(0, pool.getOutstandingCount(), "Every buffer must be given back to the pool");
+    }
+
+    @Test
+    void testSmallFrameIsNotCompressed() {
+        ByteBuffer[] frame = codec.encodeFrame(new Response(true, "Hi"), WireFormat.JSON, 0, pool::acquire);
+
+        ByteBuffer[] result = compressor.compress(frame, pool::acquire, pool::release);
+
+        assertSame(frame, result, "A frame below the threshold must be sent as it is");
+        assertEquals(0, result[0].getInt(0) & FrameCompressor.COMPRESSED, "The small frame must not be marked");
+        release(result);
+    }
+
+    @Test
+    void testCompressedFramesInflateInOrderFromOneStream() throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        for (int i = 0; i < 3; i++) {
+            Response response = new Response(true, ("Ivan owes you 12.50 LV for dinner " + i + "\n").repeat(200));
+            byte[] expected = codec.encode(response, WireFormat.JSON);
+
+            ByteBuffer[] frame = compressor.compress(
+                codec.encodeFrame(response, WireFormat.JSON, 0, pool::acquire), pool::acquire, pool::release);
+            byte[] compressed = payload(frame);
+
+            assertTrue(compressed.length < expected.length / 10, "The repetitive response was expected to shrink");
+            assertArrayEquals(expected, inflate(inflater, compressed), "The frame must inflate to the response");
+        }
+        inflater.end();
+    }
+
+    @Test
+    void testNegotiateAcceptsOnlyDeflate() {
+        FrameCompressor accepted = FrameCompressor.negotiate(
+            new Command(CommandName.COMPRESS, new String[] {"zstd", FrameCompressor.DEFLATE}, null));
+
+        assertNotNull(accepted, "Deflate is supported");
+        assertNull(FrameCompressor.negotiate(new Command(CommandName.COMPRESS, new String[] {"zstd"}, null)),
+            "Only deflate is supported");
+        assertTrue(FrameCompressor.negotiated(true).isOk(), "The accepted compression must be confirmed");
+        assertFalse(FrameCompressor.negotiated(false).isOk(), "The refused compression must be reported");
+        accepted.close();
+    }
+
+    private byte[] payload(ByteBuffer[] frame) {
+        int header = frame[0].getInt(0);
+        assertTrue((header & FrameCompressor.COMPRESSED) != 0, "The compressed frame must be marked");
+
+        ByteBuffer joined = ByteBuffer.allocate(Integer.BYTES + (header & ~FrameCompressor.COMPRESSED));
+        for (ByteBuffer buffer : frame) {
+            joined.put(buffer);
+        }
+        release(frame);
+        assertFalse(joined.hasRemaining(), "The length header must match the compressed payload");
+
+        byte[] payload = new byte[joined.capacity() - Integer.BYTES];
+        joined.get(Integer.BYTES, payload);
+        return payload;
+    }
+
+    private void release(ByteBuffer[] frame) {
+        for (ByteBuffer buffer : frame) {
+            pool.release(buffer);
+        }
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed) throws DataFormatException {
+        inflater.setInput(compressed);
+        byte[] buffer = new byte[64 * 1024];
+        int size = 0;
+        while (!inflater.needsInput()) {
+            size += inflater.inflate(buffer, size, buffer.length - size);
+        }
+
+        byte[] inflated = new byte[size];
+        System.arraycopy(buffer, 0, inflated, 0, size);
+        return inflated;
+    }
+}
@@ -0,0 +1,186 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.protocol;
+
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.NotificationResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.PaymentsResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.client.protocol.ResponseFields;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.Command;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.command.CommandName;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.BatchResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.LoginResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PushedNotificationResponse;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.Response;
+import bg.sofia.uni.fmi.mjt.splitwise.server.communication.session.SessionTable;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonProtocolTest {
+    private static final String TEXT = "Кафе и закуска 😀";
+
+    private final Gson reflective = new Gson();
+    private final WireCodec codec = new WireCodec(JsonProtocol.createGson());
+
+    @Test
+    void testResponsesAreTheSameAsWithReflection() {
+        List<Response> responses = List.of(
+            new Response(true, TEXT),
+            new Response(false, null),
+            new LoginResponse("Welcome", List.of(Notification.ofText(TEXT)),
+                List.of(GroupNotification.ofText("trip", "Ivan has split 10 BGN")), 3,
+                new SessionTable(Duration.ofMinutes(1)).create("nikola")),
+            new bg.sofia.uni.fmi.mjt.splitwise.server.communication.response.PaymentsResponse(true, "Payments:",
+                List.of(new Payment("nikola", 16554, TEXT, Set.of("ivan"), 1700000000000L)), 42),
+            new PushedNotificationResponse(GroupNotification.ofText("trip", TEXT)));
+
+        for (Response response : responses) {
+            assertEquals(reflective.toJson(response),
+                new String(codec.encode(response, WireFormat.JSON), StandardCharsets.UTF_8),
+                "The JSON of " + response.getClass().getSimpleName() + " must not change for the old clients");
+        }
+    }
+
+    @Test
+    void testCommandOfTheClientIsDecodedByTheServer() {
+        var sent = new bg.sofia.uni.fmi.mjt.splitwise.client.command.Command(
+            bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName.SPLIT, new String[] {"12.50", "ivan", TEXT});
+        sent.setToken("token");
+
+        byte[] payload = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol.encodeCommand(sent);
+        Command received = codec.decodeCommand(payload);
+
+        assertEquals("{\"commandName\":\"SPLIT\",\"arguments\":[\"12.50\",\"ivan\",\"" + TEXT
+                + "\"],\"token\":\"token\"}",
+            new String(payload, StandardCharsets.UTF_8), "The JSON of a command without an id must not change");
+        assertEquals(CommandName.SPLIT, received.commandName(), "The command name was not decoded");
+        assertArrayEquals(sent.arguments(), received.arguments(), "The arguments were not decoded");
+        assertEquals("token", received.token(), "The token was not decoded");
+    }
+
+    @Test
+    void testCommandIsReadLikeWithReflection() {
+        byte[] payload = "{\"token\":null,\"extra\":{\"a\":[1]},\"commandName\":\"NO_SUCH\",\"arguments\":[\"x\"]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+        Command command = codec.decodeCommand(payload);
+
+        assertNull(command.commandName(), "An unknown command name is read as null");
+        assertArrayEquals(new String[] {"x"}, command.arguments(), "The arguments were not decoded");
+        assertNull(codec.decodeCommand("{\"commandName\":".getBytes(StandardCharsets.UTF_8)),
+            "A truncated command is invalid");
+        assertNull(codec.decodeCommand("{} {}".getBytes(StandardCharsets.UTF_8)), "Trailing data is invalid");
+    }
+
+    @Test
+    void testResponsesAreDecodedByTheClient() {
+        byte[] pushed = codec.encode(new PushedNotificationResponse(Notification.ofText(TEXT)), WireFormat.JSON);
+        byte[] payments = codec.encode(new bg.sofia.uni.fmi.mjt.splitwise.server.communication.response
+            .PaymentsResponse(true, "Payments:", List.of(new Payment("nikola", 5, "r", Set.of("ivan"), 7)), -1),
+            WireFormat.JSON);
+
+        ResponseFields pushedFields = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol.decodeFields(pushed);
+        ResponseFields paymentsFields =
+            bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol.decodeFields(payments);
+
+        assertTrue(pushedFields.isPushed(), "The push was expected to be recognized");
+        assertEquals(TEXT, pushedFields.build(NotificationResponse.class).getFriendsNotifications().getFirst()
+            .getText(), "The notification was not decoded");
+        assertFalse(paymentsFields.isPushed(), "A response is not a push");
+        assertEquals(new bg.sofia.uni.fmi.mjt.splitwise.client.dto.Payment("nikola", 5, "r", Set.of("ivan"), 7)
+            .toString(), paymentsFields.build(PaymentsResponse.class).getPayments().getFirst().toString(),
+            "The payment was not decoded");
+    }
+
+    @Test
+    void testBatchOfTheClientIsDecodedByTheServer() {
+        var split = new bg.sofia.uni.fmi.mjt.splitwise.client.command.Command(
+            bg.sofia.uni.fmi.mjt.splitwise.client.command.CommandName.SPLIT, new String[] {"1", "ivan", "r"});
+        var batch = bg.sofia.uni.fmi.mjt.splitwise.client.command.Command.batch(List.of(split, split));
+        batch.setId(7);
+
+        Command received =
+            codec.decodeCommand(bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol.encodeCommand(batch));
+
+        assertEquals(CommandName.BATCH, received.commandName(), "The command name was not decoded");
+        assertEquals(7, received.id(), "The id was not decoded");
+        assertEquals(2, received.commands().length, "The commands of the batch were not decoded");
+        assertEquals(CommandName.SPLIT, received.commands()[1].commandName(), "The inner command was not decoded");
+        assertNull(codec.decodeCommand(("{\"commandName\":\"BATCH\",\"commands\":[{\"commandName\":\"BATCH\","
+            + "\"commands\":[]}]}").getBytes(StandardCharsets.UTF_8)), "A batch cannot contain a batch");
+    }
+
+    @Test
+    void testBatchResponseIsDecodedByTheClient() {
+        byte[] payload = codec.encode(new BatchResponse("Executed 2 commands", List.of(new Response(true, "Split"),
+            new Response(false, "Not a friend"))), WireFormat.JSON, 7);
+
+        ResponseFields fields = bg.sofia.uni.fmi.mjt.splitwise.client.protocol.JsonProtocol.decodeFields(payload);
+        bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse batch =
+            fields.build(bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.BatchResponse.class);
+
+        assertEquals(7, fields.getId(), "The id of the command was not sent back");
+        assertEquals(2, batch.size(), "The responses of the batch were not decoded");
+        assertEquals("Not a friend", batch.getResponse(1,
+            bg.sofia.uni.fmi.mjt.splitwise.client.dto.response.Response.class).getResponse(),
+            "The responses must keep the order of the commands");
+    }
+
+    @Test
+    void testUtf8IsTheSameAsTheJdk() throws IOException {
+        String text = TEXT + "\uD83D" + "x" + "\uDE00" + "é€";
+
+        Utf8Writer writer = new Utf8Writer();
+        writer.write(text);
+        byte[] encoded = writer.toByteArray();
+
+        char[] chars = new char[text.length()];
+        int read = 0;
+        try (Utf8Reader reader = new Utf8Reader(TEXT.getBytes(StandardCharsets.UTF_8))) {
+            int count;
+            while ((count = reader.read(chars, read, 1)) > 0) { //one char at a time splits the surrogate pair
+                read += count;
+            }
+        }
+
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encoded, "The encoding differs from the JDK");
+        assertEquals(TEXT, new String(chars, 0, read), "The decoding differs from the JDK");
+    }
+
+    @Test
+    void testUtf8AcrossDirectChunksIsTheSameAsTheJdk() throws IOException {
+        String text = (TEXT + "\uD83D\uDE00é€x").repeat(10_000); //a pair or a char of 3 bytes may not fit at the end
+
+        ChunkedOutput out = new ChunkedOutput(ByteBuffer::allocateDirect);
+        Utf8Writer writer = new Utf8Writer(out);
+        writer.write(text);
+        writer.finish();
+        byte[] encoded = out.toByteArray();
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+        StringBuilder decoded = new StringBuilder();
+        try (Utf8Reader reader = new Utf8Reader(direct)) {
+            char[] chars = new char[1000];
+            int count;
+            while ((count = reader.read(chars, 0, chars.length)) > 0) {
+                decoded.append(chars, 0, count);
+            }
+        }
+
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encoded, "The encoding differs from the JDK");
+        assertEquals(text, decoded.toString(), "The decoding differs from the JDK");
+    }
+}
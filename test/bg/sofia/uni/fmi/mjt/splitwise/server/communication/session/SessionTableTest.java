@@ -0,0 +1,78 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.session;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SessionTableTest {
+    private static final long TIME_TO_LIVE = 1000;
+
+    AtomicLong now;
+    SessionTable sessions;
+
+    @BeforeEach
+    void setSessions() {
+        now = new AtomicLong();
+        sessions = new SessionTable(Duration.ofMillis(TIME_TO_LIVE), now::get);
+    }
+
+    @Test
+    void testFindByToken() {
+        Session session = sessions.create("nikola");
+
+        assertSame(session, sessions.find(session.getToken()), "The session was expected to be found by its token");
+        assertEquals("nikola", session.getUsername(), "The session was expected to be of its user");
+        assertNotEquals(session.getToken(), sessions.create("nikola").getToken(),
+            "Every session was expected to have its own token");
+    }
+
+    @Test
+    void testUseExtendsTheSession() {
+        Session session = sessions.create("nikola");
+
+        now.set(TIME_TO_LIVE - 1);
+        sessions.find(session.getToken());
+        now.set(2 * TIME_TO_LIVE - 2);
+
+        assertSame(session, sessions.find(session.getToken()), "A used session was not expected to expire");
+    }
+
+    @Test
+    void testUnusedSessionExpires() {
+        Session session = sessions.create("nikola");
+
+        now.set(TIME_TO_LIVE);
+
+        assertNull(sessions.find(session.getToken()), "An unused session was expected to expire");
+        assertEquals(0, sessions.size(), "The expired session was expected to be removed");
+    }
+
+    @Test
+    void testEndedSessionCannotBeUsed() {
+        Session session = sessions.create("nikola");
+
+        sessions.end(session);
+
+        assertNull(sessions.find(session.getToken()), "An ended session was not expected to be found");
+        assertFalse(sessions.use(session), "An ended session was not expected to be usable");
+    }
+
+    @Test
+    void testCreateSweepsTheExpiredSessions() {
+        sessions.create("nikola");
+        sessions.create("ivan");
+
+        now.set(TIME_TO_LIVE);
+        sessions.create("peter");
+
+        assertEquals(1, sessions.size(), "The expired sessions were expected to be swept");
+    }
+}
@@ -0,0 +1,116 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.communication.worker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkerPoolTest {
+    private static final int TIMEOUT_SECONDS = 5;
+    private static final int BLOCKED_MILLIS = 50;
+
+    private WorkerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void testSaturatedFixedPoolRejectsAndReportsItsQueue() throws InterruptedException {
+        pool = WorkerPool.fixed(1, 2);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        assertTrue(pool.submit(() -> {
+            running.countDown();
+            await(release);
+            done.countDown();
+        }), "The first task takes the only worker");
+        assertTrue(running.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "The first task was expected to start");
+        assertTrue(pool.submit(done::countDown), "The second task fits in the queue");
+        assertTrue(pool.submit(done::countDown), "The third task fits in the queue");
+        assertFalse(pool.submit(done::countDown), "The fourth task must be rejected, the queue is full");
+
+        WorkerPoolMetrics saturated = pool.getMetrics();
+        assertEquals(WorkerPool.FIXED, saturated.type(), "A fixed pool was expected");
+        assertEquals(1, saturated.poolSize(), "The pool has one worker");
+        assertEquals(1, saturated.activeWorkers(), "The worker is busy");
+        assertEquals(2, saturated.queueDepth(), "Two tasks are waiting");
+        assertEquals(3, saturated.submitted(), "Only the accepted tasks count as submitted");
+        assertEquals(1, saturated.rejected(), "One task was rejected");
+
+        Thread.sleep(BLOCKED_MILLIS);
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "The accepted tasks were expected to run");
+
+        WorkerPoolMetrics drained = awaitCompleted(3);
+        assertEquals(0, drained.queueDepth(), "Nothing is waiting any more");
+        assertTrue(drained.maxQueueWaitMicros() >= BLOCKED_MILLIS * 1000,
+            "The queued tasks waited at least as long as the worker was blocked");
+        assertTrue(drained.averageQueueWaitMicros() <= drained.maxQueueWaitMicros(),
+            "The average wait cannot be above the maximum");
+    }
+
+    @Test
+    void testVirtualPoolRunsEveryTaskOnAVirtualThread() throws InterruptedException {
+        pool = WorkerPool.virtual();
+        AtomicBoolean virtual = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(pool.submit(() -> {
+            virtual.set(Thread.currentThread().isVirtual());
+            done.countDown();
+        }), "A virtual pool has no queue to fill");
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "The task was expected to run");
+
+        assertTrue(virtual.get(), "The task was expected to run on a virtual thread");
+        assertEquals(WorkerPool.VIRTUAL, pool.getMetrics().type(), "A virtual pool was expected");
+        assertEquals(0, pool.getMetrics().poolSize(), "A virtual pool has no fixed size");
+    }
+
+    @Test
+    void testShutDownPoolRejects() {
+        pool = WorkerPool.fixed(1, 1);
+        pool.shutdown();
+
+        assertFalse(pool.submit(() -> { }), "A shut down pool must reject new tasks");
+        assertEquals(1, pool.getMetrics().rejected(), "The rejection must be counted");
+    }
+
+    @Test
+    void testFixedPoolNeedsThreadsAndQueue() {
+        pool = WorkerPool.virtual();
+
+        assertThrows(IllegalArgumentException.class, () -> WorkerPool.fixed(0, 1), "A pool needs a thread");
+        assertThrows(IllegalArgumentException.class, () -> WorkerPool.fixed(1, 0), "A pool needs a queue");
+    }
+
+    private WorkerPoolMetrics awaitCompleted(long tasks) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        WorkerPoolMetrics metrics = pool.getMetrics();
+        while (metrics.completed() < tasks && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1); //a task counts as completed just after it returns
+            metrics = pool.getMetrics();
+        }
+
+        assertEquals(tasks, metrics.completed(), "Every accepted task was expected to complete");
+        return metrics;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement.Transfer;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SettlementTest {
+    @Test
+    void testSettleBalancesNotAddingUpToZero() {
+        assertThrows(IllegalArgumentException.class, () -> Settlement.settle(Map.of("a", 100L, "b", -99L)),
+            "Exception expected because the balances do not add up to zero");
+    }
+
+    @Test
+    void testSettleChainNeedsOneTransfer() {
+        //a owes 10 to b and b owes 10 to c, so a pays c
+        List<Transfer> transfers = Settlement.settle(Map.of("a", -1000L, "b", 0L, "c", 1000L));
+
+        assertEquals(List.of(new Transfer("a", "c", 1000)), transfers, "The debt through b must be skipped");
+    }
+
+    @Test
+    void testSettleExactlyFindsTheZeroSumSubsets() {
+        //the biggest debtor paying the biggest creditor would need 5 transfers instead of 4
+        Map<String, Long> balances = new LinkedHashMap<>();
+        balances.put("a", 300L);
+        balances.put("b", 400L);
+        balances.put("c", -700L);
+        balances.put("d", -700L);
+        balances.put("e", -500L);
+        balances.put("f", 1200L);
+
+        List<Transfer> transfers = Settlement.settle(balances);
+
+        assertEquals(4, transfers.size(), "Two subsets which add up to zero need 4 transfers");
+        assertSettles(balances, transfers);
+    }
+
+    @Test
+    void testSettleGreedilyManyMembers() {
+        Map<String, Long> balances = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            balances.put("member" + i, i % 2 == 0 ? 100L + i : -100L - i + 1);
+        }
+        balances.put("payer", -balances.values().stream().mapToLong(Long::longValue).sum());
+
+        List<Transfer> transfers = Settlement.settle(balances);
+
+        assertSettles(balances, transfers);
+    }
+
+    @Test
+    void testSettleAllSettlesEveryGroup() {
+        Map<String, Map<String, Long>> groups = Map.of(
+            "trip", Map.of("a", -200L, "b", 200L),
+            "home", Map.of("c", 0L, "d", 0L));
+
+        Map<String, List<Transfer>> transfers = Settlement.settleAll(groups);
+
+        assertEquals(List.of(new Transfer("a", "b", 200)), transfers.get("trip"), "The trip is not settled");
+        assertEquals(List.of(), transfers.get("home"), "Nothing must be paid in a settled-up group");
+    }
+
+    private static void assertSettles(Map<String, Long> balances, List<Transfer> transfers) {
+        Map<String, Long> remaining = new HashMap<>(balances);
+        for (Transfer transfer : transfers) {
+            remaining.merge(transfer.from(), transfer.amount(), Long::sum);
+            remaining.merge(transfer.to(), -transfer.amount(), Long::sum);
+        }
+
+        remaining.forEach((member, balance) -> assertEquals(0, balance, member + " is not settled-up"));
+        assertEquals(true, transfers.size() < balances.size(), "At most N - 1 transfers are needed");
+    }
+}
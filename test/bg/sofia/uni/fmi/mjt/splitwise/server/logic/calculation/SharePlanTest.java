@@ -0,0 +1,96 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.SplitException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SharePlanTest {
+    @Test
+    void testOfNegativeInput() {
+        assertThrows(IllegalArgumentException.class, () -> SharePlan.of(-1, 5),
+            "Exception expected because of negative input");
+    }
+
+    @Test
+    void testOfEvenSplit() throws SplitException {
+        SharePlan plan = SharePlan.of(900, 2);
+
+        assertEquals(450, plan.base(), "Simple splitting does not work");
+        assertEquals(0, plan.extra(), "Simple splitting does not work");
+    }
+
+    @Test
+    void testOfGivesTheExtraCentsToTheFirstParts() throws SplitException {
+        SharePlan plan = SharePlan.of(10000, 7);
+
+        assertEquals(1429, plan.shareOf(0), "The first parts must get the extra cents");
+        assertEquals(1429, plan.shareOf(3), "The first parts must get the extra cents");
+        assertEquals(1428, plan.shareOf(4), "The last parts must get the base share");
+        assertEquals(1428, plan.shareOf(6), "The last parts must get the base share");
+    }
+
+    @Test
+    void testOfSharesAddUpToTheAmount() throws SplitException {
+        SharePlan plan = SharePlan.of(45701, 30);
+
+        long sum = 0;
+        for (int i = 0; i < plan.parts(); i++) {
+            sum += plan.shareOf(i);
+        }
+
+        assertEquals(45701, sum, "The shares must add up to the amount");
+    }
+
+    @Test
+    void testOfThrowsSplitExceptionTooLittleAmount() {
+        assertThrows(SplitException.class, () -> SharePlan.of(2, 3),
+            "Expected exception because of too little amount");
+    }
+
+    @Test
+    void testShareOfInvalidPart() throws SplitException {
+        SharePlan plan = SharePlan.of(100, 3);
+
+        assertThrows(IllegalArgumentException.class, () -> plan.shareOf(3),
+            "Exception expected because there are only 3 parts");
+    }
+
+    @Test
+    void testWeighted() throws SplitException {
+        assertArrayEquals(new long[] {5000, 2500, 2500}, SharePlan.weighted(10000, 2, 1, 1),
+            "Weighted splitting does not work");
+    }
+
+    @Test
+    void testWeightedGivesTheLeftCentsToTheFirstParts() throws SplitException {
+        assertArrayEquals(new long[] {34, 33, 33}, SharePlan.weighted(100, 1, 1, 1),
+            "The cents left after rounding must go to the first parts");
+    }
+
+    @Test
+    void testWeightedByExactAmounts() throws SplitException {
+        assertArrayEquals(new long[] {1250, 749, 1}, SharePlan.weighted(2000, 1250, 749, 1),
+            "Weights equal to exact amounts must give exactly these amounts");
+    }
+
+    @Test
+    void testWeightedNotPositiveWeight() {
+        assertThrows(IllegalArgumentException.class, () -> SharePlan.weighted(100, 1, 0),
+            "Exception expected because of a zero weight");
+    }
+
+    @Test
+    void testWeightedThrowsSplitExceptionZeroShare() {
+        assertThrows(SplitException.class, () -> SharePlan.weighted(100, 1000, 1),
+            "Expected exception because the second share would be zero");
+    }
+
+    @Test
+    void testWeightedThrowsSplitExceptionTooBigAmountByWeight() {
+        assertThrows(SplitException.class, () -> SharePlan.weighted(1_000_000_000_000L, Integer.MAX_VALUE, 1),
+            "Expected exception because the amount times the weight does not fit in a long");
+    }
+}
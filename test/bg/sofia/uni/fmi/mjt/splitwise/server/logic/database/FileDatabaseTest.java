@@ -7,6 +7,7 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
 import org.junit.jupiter.api.AfterAll;
@@ -47,8 +48,8 @@ class FileDatabaseTest {
         group = new Group("groupName", nikola.getUsername(), ivan.getUsername());
         database.updateGroup(group);
 
-        notification = Notification.ofReceiving(nikola, 5.52);
-        groupNotification = GroupNotification.ofSplitting(group.getName(), nikola, 5.52, "Reason");
+        notification = Notification.ofReceiving(nikola, 552);
+        groupNotification = GroupNotification.ofSplitting(group.getName(), nikola, 552, "Reason");
     }
 
     @AfterAll
@@ -96,16 +97,24 @@ class FileDatabaseTest {
             "The personal info was not saved properly");
     }
 
+    @Test
+    void testUpdatePasswordReplacesTheOldOne() {
+        nikola.getPersonal().changePassword("pbkdf2-sha256$1000$c2FsdA==$aGFzaA==");
+        database.updatePassword(nikola.getPersonal());
+
+        assertEquals(nikola.getPersonal(), database.loadUsers().get(nikola.getUsername()).getPersonal(),
+            "The last saved password was expected");
+    }
+
     @Test
     void testAddPayments() {
-        Payment payment = new Payment(ivan.getUsername(), 5.52, "Reason for payment", Set.of("gosho", "pesho"));
-        Payment payment2 = new Payment(ivan.getUsername(), 5555.52, "Reason for payment2", Set.of("gosho"));
+        Payment payment = new Payment(ivan.getUsername(), 552, "Reason for payment", Set.of("gosho", "pesho"));
+        Payment payment2 = new Payment(ivan.getUsername(), 555552, "Reason for payment2", Set.of("gosho"));
 
         database.addPayment(ivan.getUsername(), payment);
         database.addPayment(ivan.getUsername(), payment2);
 
-        Map<String, User> allUsers = database.loadUsers();
-        List<Payment> actual = allUsers.get(ivan.getUsername()).getPayments();
+        List<Payment> actual = database.loadPayments(ivan.getUsername(), PaymentQuery.newest(10)).payments();
         List<Payment> expected = List.of(payment, payment2);
 
         assertIterableEquals(expected, actual, "The payments were not saved properly");
@@ -139,25 +148,51 @@ class FileDatabaseTest {
         assertIterableEquals(expected, actual, "The notifications were not saved properly");
     }
 
+    /**
+     * @return the cursor after every notification the user has so far; the tests share the database
+     */
+    private static long markEverythingRead(String username) {
+        long cursor = database.loadUsers().get(username).readNotifications(Integer.MAX_VALUE).cursor();
+        database.markNotificationsRead(username, cursor);
+
+        return cursor;
+    }
+
     @Test
-    void testClearNotifications() {
+    void testMarkNotificationsRead() {
+        long cursor = markEverythingRead(nikola.getUsername());
         database.addFriendNotification(nikola.getUsername(), notification);
         database.addGroupNotification(nikola.getUsername(), groupNotification);
 
-        database.clearNotifications(nikola.getUsername());
+        database.markNotificationsRead(nikola.getUsername(), cursor + 1);
 
-        Map<String, User> allUsers = database.loadUsers();
+        User loaded = database.loadUsers().get(nikola.getUsername());
+
+        assertEquals(0, loaded.getFriendsNotifications().size(), "The friend notification was read");
+        assertIterableEquals(List.of(groupNotification), loaded.getGroupNotifications(),
+            "The group notification was not read");
+    }
+
+    @Test
+    void testNotificationsAfterTheReadOnesAreCutOff() {
+        long cursor = markEverythingRead(nikola.getUsername());
+        database.addFriendNotification(nikola.getUsername(), notification);
+        database.markNotificationsRead(nikola.getUsername(), cursor + 1);
+        database.loadUsers(); //cuts off the read notifications
+
+        database.addGroupNotification(nikola.getUsername(), groupNotification);
+        User loaded = database.loadUsers().get(nikola.getUsername());
 
-        assertEquals(0, allUsers.get(nikola.getUsername()).getFriendsNotifications().size(),
-            "The friend notifications were not cleared");
-        assertEquals(0, allUsers.get(nikola.getUsername()).getGroupNotifications().size(),
-            "The group notifications were not cleared");
+        assertIterableEquals(List.of(groupNotification), loaded.getGroupNotifications(),
+            "The notification added after the cut was expected to be unread");
+        assertEquals(cursor + 2, loaded.readNotifications(10).cursor(),
+            "The sequence numbers were expected to go on after the cut");
     }
 
     @Test
     void testUpdateFriendsList() {
         Friendship friendship = new Friendship(nikola.getUsername(), ivan.getUsername());
-        friendship.lend(nikola.getUsername(), 10.02);
+        friendship.lend(nikola.getUsername(), 1002);
 
         nikola.getFriendsList().addFriendship(friendship);
         ivan.getFriendsList().addFriendship(friendship);
@@ -198,7 +233,7 @@ class FileDatabaseTest {
 
     @Test
     void testUpdateGroup() throws SplitException {
-        group.split(nikola.getUsername(), 5.55);
+        group.split(nikola.getUsername(), 555);
         Friendship expected =
             group.getFriendsLists().get(nikola.getUsername()).getFriendships().get(ivan.getUsername());
 
@@ -0,0 +1,328 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.SplitException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogDatabaseTest {
+    private static final String TEST_MAIN_DIR_NAME = "test_log_database";
+
+    LogDatabase database;
+
+    User nikola;
+    User ivan;
+
+    Group group;
+
+    @BeforeEach
+    void setDatabase() throws GroupException {
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+
+        nikola = new User(new UserPersonal("nikola", "Nikola", "Manolov", "qwerty"));
+        ivan = new User(new UserPersonal("ivan", "Ivan", "Petrov", "qwerty"));
+        database.addUser(nikola);
+        database.addUser(ivan);
+
+        group = new Group("groupName", nikola.getUsername(), ivan.getUsername());
+        database.updateGroup(group);
+        database.commit();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+
+        if (!deleteDirectory(new File(TEST_MAIN_DIR_NAME))) {
+            throw new RuntimeException("Could not delete directories");
+        }
+    }
+
+    private static boolean deleteDirectory(File toDelete) {
+        File[] allContents = toDelete.listFiles();
+
+        if (allContents != null) {
+            for (File file : allContents) {
+                deleteDirectory(file);
+            }
+        }
+
+        return toDelete.delete();
+    }
+
+    @Test
+    void testLoadUsersOnlyPersonalInfo() {
+        Map<String, User> allUsers = database.loadUsers();
+
+        assertEquals(ivan.getPersonal(), allUsers.get(ivan.getUsername()).getPersonal(),
+            "The personal info is not as expected");
+        assertEquals(nikola.getPersonal(), allUsers.get(nikola.getUsername()).getPersonal(),
+            "The personal info is not as expected");
+    }
+
+    @Test
+    void testUpdatePasswordSurvivesARestart() {
+        nikola.getPersonal().changePassword("pbkdf2-sha256$1000$c2FsdA==$aGFzaA==");
+        database.updatePassword(nikola.getPersonal());
+        database.commit();
+        database.close();
+
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+
+        assertEquals(nikola.getPersonal(), database.loadUsers().get(nikola.getUsername()).getPersonal(),
+            "The new password was expected after a restart");
+    }
+
+    @Test
+    void testAddPayments() {
+        Payment payment = new Payment(ivan.getUsername(), 552, "Reason for payment", Set.of("gosho", "pesho"));
+        Payment payment2 = new Payment(ivan.getUsername(), 555552, "Reason for payment2", Set.of("gosho"));
+
+        database.addPayment(ivan.getUsername(), payment);
+        database.addPayment(ivan.getUsername(), payment2);
+
+        List<Payment> actual = database.loadPayments(ivan.getUsername(), PaymentQuery.newest(10)).payments();
+
+        assertIterableEquals(List.of(payment, payment2), actual, "The payments were not saved properly");
+    }
+
+    @Test
+    void testLoadPaymentsReadsOnePageInTheTimeRange() {
+        for (int i = 0; i < 10; i++) {
+            database.addPayment(ivan.getUsername(), new Payment(ivan.getUsername(), 100 + i, "Payment " + i,
+                Set.of("nikola"), 1000 * i));
+        }
+
+        PaymentPage page = database.loadPayments(ivan.getUsername(), new PaymentQuery(8, 3, 2000, 9000));
+
+        assertEquals(List.of(105L, 106L, 107L), page.payments().stream().map(Payment::amount).toList(),
+            "The payments before the cursor were expected");
+        assertEquals(5, page.nextCursor(), "The cursor of the older payments is not as expected");
+
+        PaymentPage last = database.loadPayments(ivan.getUsername(), new PaymentQuery(5, 3, 2000, 9000));
+
+        assertEquals(List.of(102L, 103L, 104L), last.payments().stream().map(Payment::amount).toList(),
+            "The oldest payments in the time range were expected");
+        assertEquals(PaymentPage.NO_MORE, last.nextCursor(), "There were expected to be no older payments");
+    }
+
+    @Test
+    void testReopenRestoresThePaymentsMissingFromTheHistory() {
+        database.addPayment(nikola.getUsername(), new Payment(nikola.getUsername(), 1000, "Dinner", Set.of("ivan")));
+        database.commit();
+        database.close();
+
+        //as if the crash came before the history files were written to the disk
+        deleteDirectory(new File(TEST_MAIN_DIR_NAME, "payments"));
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+        database.loadUsers();
+
+        assertEquals(1, database.loadPayments(nikola.getUsername(), PaymentQuery.newest(10)).payments().size(),
+            "The payment was expected to be restored from the log");
+    }
+
+    @Test
+    void testAddNotifications() {
+        Notification notification = Notification.ofReceiving(nikola, 552);
+        GroupNotification groupNotification = GroupNotification.ofSplitting(group.getName(), nikola, 552, "Reason");
+
+        database.addFriendNotification(ivan.getUsername(), notification);
+        database.addGroupNotification(ivan.getUsername(), groupNotification);
+
+        User loaded = database.loadUsers().get(ivan.getUsername());
+
+        assertIterableEquals(List.of(notification), loaded.getFriendsNotifications(),
+            "The notifications were not saved properly");
+        assertIterableEquals(List.of(groupNotification), loaded.getGroupNotifications(),
+            "The notifications were not saved properly");
+    }
+
+    @Test
+    void testMarkNotificationsRead() {
+        GroupNotification groupNotification = GroupNotification.ofCreatingGroup(group.getName(), ivan);
+        database.addFriendNotification(nikola.getUsername(), Notification.ofAddingFriend(ivan));
+        database.addGroupNotification(nikola.getUsername(), groupNotification);
+
+        database.markNotificationsRead(nikola.getUsername(), 1);
+
+        User loaded = database.loadUsers().get(nikola.getUsername());
+
+        assertEquals(0, loaded.getFriendsNotifications().size(), "The friend notification was read");
+        assertIterableEquals(List.of(groupNotification), loaded.getGroupNotifications(),
+            "The group notification was not read");
+    }
+
+    @Test
+    void testUpdateFriendsListSavesOnlyTheChanges() {
+        Friendship friendship = new Friendship(nikola.getUsername(), ivan.getUsername());
+        nikola.getFriendsList().addNewFriendship(friendship);
+        ivan.getFriendsList().addNewFriendship(friendship);
+
+        nikola.getFriendsList().lendTo(ivan.getUsername(), 1002);
+        database.updateFriendsList(nikola);
+        database.updateFriendsList(ivan); //nothing left to save
+
+        ivan.getFriendsList().lendTo(nikola.getUsername(), 301);
+        database.updateFriendsList(ivan);
+
+        Map<String, User> allUsers = database.loadUsers();
+        Friendship ofNikola = allUsers.get(nikola.getUsername()).getFriendsList().getFriendships().get("ivan");
+        Friendship ofIvan = allUsers.get(ivan.getUsername()).getFriendsList().getFriendships().get("nikola");
+
+        assertSame(ofNikola, ofIvan, "Both friends must share one friendship");
+        assertEquals(-701, ofNikola.getUserOwes(nikola.getUsername()),
+            "The friendship changes were not saved properly");
+        //2 users and 1 group before the test, then the creation and the two changes
+        assertEquals(6, database.getMetrics().records(), "Only the changes were expected to be saved");
+    }
+
+    @Test
+    void testUpdateGroup() throws SplitException {
+        group.split(nikola.getUsername(), 556);
+        database.updateGroup(group);
+        group.split(ivan.getUsername(), 200);
+        database.updateGroup(group);
+
+        Group loaded = database.loadGroups().get(group.getName());
+
+        assertEquals(Set.of(nikola.getUsername(), ivan.getUsername()), loaded.getMembers(),
+            "The group does not have all members");
+        assertEquals(-178, loaded.getFriendsLists().get(nikola.getUsername()).getFriendships()
+            .get(ivan.getUsername()).getUserOwes(nikola.getUsername()), "The group was not updated properly");
+    }
+
+    @Test
+    void testUpdateGroupSavesOnlyTheChangedBalances() throws SplitException, GroupException, ReceiveException {
+        String[] members = new String[100];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = "member" + i;
+        }
+        Group big = new Group("big", members);
+        database.updateGroup(big);
+        long before = database.getMetrics().records();
+
+        big.split(members[0], 10000);
+        database.updateGroup(big);
+        big.receive(members[0], 100, members[1]);
+        database.updateGroup(big);
+
+        assertEquals(before + 99 + 1, database.getMetrics().records(),
+            "Only the balances of the payer and of the receiver were expected to be saved");
+        assertEquals(0, database.loadGroups().get("big").leftOwesToRight(members[1], members[0]),
+            "The group was not updated properly");
+    }
+
+    @Test
+    void testReopenReplaysTheLog() throws SplitException, GroupException {
+        group.split(nikola.getUsername(), 1000);
+        database.updateGroup(group);
+        database.addPayment(nikola.getUsername(), new Payment(nikola.getUsername(), 1000, "Dinner", Set.of("ivan")));
+        database.commit();
+        database.close();
+
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+
+        database.loadUsers();
+
+        assertEquals(1, database.loadPayments(nikola.getUsername(), PaymentQuery.newest(10)).payments().size(),
+            "The payment was not replayed");
+        assertEquals(500, database.loadGroups().get(group.getName()).leftOwesToRight(ivan.getUsername(),
+            nikola.getUsername()), "The group change was not replayed");
+    }
+
+    @Test
+    void testCompactReplacesTheLogWithASnapshot() throws SplitException, GroupException {
+        group.split(nikola.getUsername(), 1000);
+        database.updateGroup(group);
+        database.addPayment(nikola.getUsername(), new Payment(nikola.getUsername(), 1000, "Dinner", Set.of("ivan")));
+        database.commit();
+
+        database.compact();
+        database.addFriendNotification(ivan.getUsername(), Notification.ofAddingFriend(nikola));
+        database.commit();
+        database.close();
+
+        assertTrue(new File(TEST_MAIN_DIR_NAME, "snapshot-1.bin").exists(), "The snapshot was not written");
+        assertFalse(new File(TEST_MAIN_DIR_NAME, "splitwise-0.log").exists(),
+            "The segment in the snapshot was not deleted");
+
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+        Map<String, User> allUsers = database.loadUsers();
+
+        assertEquals(1, database.loadPayments(nikola.getUsername(), PaymentQuery.newest(10)).payments().size(),
+            "The payment was not kept after the compaction");
+        assertEquals(1, allUsers.get(ivan.getUsername()).getFriendsNotifications().size(),
+            "The event after the snapshot was not replayed");
+        assertEquals(500, database.loadGroups().get(group.getName()).leftOwesToRight(ivan.getUsername(),
+            nikola.getUsername()), "The group balance was not loaded from the snapshot");
+    }
+
+    @Test
+    void testLedgerGroupSurvivesReopenAndCompaction() throws SplitException, GroupException, ReceiveException {
+        Group ledger = Group.ofLedger("ledger", nikola.getUsername(), ivan.getUsername());
+        database.updateGroup(ledger);
+        ledger.split(nikola.getUsername(), 1000);
+        database.updateGroup(ledger);
+        database.commit();
+
+        database.compact();
+        ledger.receive(nikola.getUsername(), 200, ivan.getUsername());
+        database.updateGroup(ledger);
+        database.commit();
+        database.close();
+
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+        Group loaded = database.loadGroups().get(ledger.getName());
+
+        assertTrue(loaded.isLedger(), "The group was expected to stay a ledger");
+        assertEquals(300, loaded.getBalance(nikola.getUsername()), "The balances were not loaded properly");
+        assertEquals(300, loaded.leftOwesToRight(ivan.getUsername(), nikola.getUsername()),
+            "The pairwise view was not computed properly");
+    }
+
+    @Test
+    void testLoadsTheDataOfFileDatabase() throws GroupException {
+        database.close();
+        deleteDirectory(new File(TEST_MAIN_DIR_NAME));
+
+        FileDatabase legacy = new FileDatabase(TEST_MAIN_DIR_NAME);
+        legacy.addUser(nikola);
+        legacy.addUser(ivan);
+        Friendship friendship = new Friendship(nikola.getUsername(), ivan.getUsername());
+        friendship.lend(nikola.getUsername(), 400);
+        nikola.getFriendsList().addFriendship(friendship);
+        ivan.getFriendsList().addFriendship(friendship);
+        legacy.updateFriendsList(nikola);
+        legacy.updateFriendsList(ivan);
+
+        database = new LogDatabase(TEST_MAIN_DIR_NAME);
+        Map<String, User> allUsers = database.loadUsers();
+
+        assertTrue(allUsers.containsKey(ivan.getUsername()), "The users of the old files were not loaded");
+        assertSame(allUsers.get(nikola.getUsername()).getFriendsList().getFriendships().get(ivan.getUsername()),
+            allUsers.get(ivan.getUsername()).getFriendsList().getFriendships().get(nikola.getUsername()),
+            "The two copies of a friendship in the old files were expected to be linked");
+    }
+}
@@ -0,0 +1,114 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+    private static final Path LOG_FILE = Path.of("test_write_ahead.log");
+
+    WriteAheadLog log;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+
+        Files.deleteIfExists(LOG_FILE);
+    }
+
+    @Test
+    void testReplayReturnsTheRecordsInOrder() {
+        log = new WriteAheadLog(LOG_FILE, Durability.REQUEST, 0);
+        log.append(bytes("first"));
+        log.append(bytes("second"));
+        log.commit();
+
+        assertIterableEquals(List.of("first", "second"), replay(log), "The records were not replayed in order");
+    }
+
+    @Test
+    void testRecordsSurviveReopening() {
+        log = new WriteAheadLog(LOG_FILE, Durability.ASYNC, 0);
+        log.append(bytes("first"));
+        log.close();
+
+        log = new WriteAheadLog(LOG_FILE, Durability.BATCH, 0);
+        log.append(bytes("second"));
+        log.commit();
+
+        assertIterableEquals(List.of("first", "second"), replay(log), "The records were lost on reopening");
+    }
+
+    @Test
+    void testTornRecordIsCutOffOnOpening() throws IOException {
+        log = new WriteAheadLog(LOG_FILE, Durability.REQUEST, 0);
+        log.append(bytes("whole"));
+        log.commit();
+        log.close();
+
+        //the length and the checksum of a record whose payload never reached the disk
+        Files.write(LOG_FILE, new byte[] {0, 0, 0, 10, 1, 2, 3, 4, 'x'}, StandardOpenOption.APPEND);
+
+        log = new WriteAheadLog(LOG_FILE, Durability.REQUEST, 0);
+        log.append(bytes("after"));
+        log.commit();
+
+        assertIterableEquals(List.of("whole", "after"), replay(log), "The torn record was not cut off");
+    }
+
+    @Test
+    void testGroupCommitSharesSyncsBetweenConcurrentCommits() throws Exception {
+        final int threads = 8;
+        final int commitsPerThread = 200;
+
+        log = new WriteAheadLog(LOG_FILE, Durability.BATCH, 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < commitsPerThread; i++) {
+                    log.append(bytes("record"));
+                    log.commit();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        WriteAheadLogMetrics metrics = log.getMetrics();
+        assertEquals(threads * commitsPerThread, metrics.records(), "Not all records were appended");
+        assertTrue(metrics.syncs() < metrics.records(), "Concurrent commits were expected to share syncs");
+        assertEquals(threads * commitsPerThread, replay(log).size(), "Not all committed records were written");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(WriteAheadLog log) {
+        List<String> result = new ArrayList<>();
+        log.replay(record -> result.add(new String(record, StandardCharsets.UTF_8)));
+
+        return result;
+    }
+}
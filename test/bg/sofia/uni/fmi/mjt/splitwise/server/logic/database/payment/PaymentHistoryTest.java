@@ -0,0 +1,115 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.payment;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+
+class PaymentHistoryTest {
+    private static final String TEST_DIR_NAME = "test_payment_history";
+
+    PaymentHistory history;
+
+    @BeforeEach
+    void setHistory() {
+        history = new PaymentHistory(Path.of(TEST_DIR_NAME));
+    }
+
+    @AfterEach
+    void tearDown() {
+        File[] files = new File(TEST_DIR_NAME).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+
+        new File(TEST_DIR_NAME).delete();
+    }
+
+    private static Payment payment(int number) {
+        return new Payment("nikola", 100 + number, "Payment " + number, Set.of("ivan", "peter"), 1000L * number);
+    }
+
+    @Test
+    void testReadGoesThroughThePagesWithTheCursor() {
+        for (int i = 0; i < 7; i++) {
+            history.append("nikola", payment(i), sequence -> { });
+        }
+
+        List<Payment> read = new ArrayList<>();
+        long cursor = PaymentQuery.NEWEST;
+        while (cursor != PaymentPage.NO_MORE) {
+            PaymentPage page = history.read("nikola", new PaymentQuery(cursor, 3, Long.MIN_VALUE, Long.MAX_VALUE));
+            read.addAll(0, page.payments());
+            cursor = page.nextCursor();
+        }
+
+        assertIterableEquals(List.of(payment(0), payment(1), payment(2), payment(3), payment(4), payment(5),
+            payment(6)), read, "Every payment was expected to be read once, in order");
+    }
+
+    @Test
+    void testReadOfAUserWithoutPaymentsCreatesNoFiles() {
+        PaymentPage page = history.read("ivan", PaymentQuery.newest(10));
+
+        assertIterableEquals(List.of(), page.payments(), "A user without payments was expected to have none");
+        assertEquals(PaymentPage.NO_MORE, page.nextCursor(), "There was expected to be no next page");
+        assertFalse(Files.exists(Path.of(TEST_DIR_NAME, "ivan.payments")), "Reading must not create the payments");
+        assertFalse(Files.exists(Path.of(TEST_DIR_NAME, "ivan.index")), "Reading must not create the index");
+    }
+
+    @Test
+    void testAppendGivesTheSequenceNumbersInOrder() {
+        List<Long> sequences = new ArrayList<>();
+        history.append("nikola", payment(0), sequences::add);
+        history.append("nikola", payment(1), sequences::add);
+        history.append("ivan", payment(2), sequences::add);
+
+        assertEquals(List.of(0L, 1L, 0L), sequences, "Every user was expected to have its own sequence numbers");
+    }
+
+    @Test
+    void testRestoreSkipsThePaymentsInTheHistory() {
+        history.append("nikola", payment(0), sequence -> { });
+
+        history.restore("nikola", 0, payment(0));
+        history.restore("nikola", 1, payment(1));
+
+        assertEquals(2, history.count("nikola"), "Only the missing payment was expected to be appended");
+    }
+
+    @Test
+    void testReopenCutsOffAHalfWrittenPayment() throws IOException {
+        history.append("nikola", payment(0), sequence -> { });
+        history.append("nikola", payment(1), sequence -> { });
+
+        try (FileChannel payments = FileChannel.open(Path.of(TEST_DIR_NAME, "nikola.payments"),
+            StandardOpenOption.WRITE)) {
+            payments.truncate(payments.size() - 1);
+        }
+
+        history = new PaymentHistory(Path.of(TEST_DIR_NAME));
+
+        assertEquals(1, history.count("nikola"), "The half-written payment was expected to be cut off");
+        history.append("nikola", payment(2), sequence -> { });
+        assertIterableEquals(List.of(payment(0), payment(2)), history.read("nikola", PaymentQuery.newest(10))
+            .payments(), "The payment after the cut was expected to be readable");
+    }
+}
@@ -0,0 +1,146 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.GroupException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.SplitException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GroupTest {
+    Group group;
+
+    @BeforeEach
+    void setGroup() throws GroupException {
+        group = new Group("trip", "nikola", "ivan", "peter");
+    }
+
+    @Test
+    void testSplitSharesAddUpToTheAmount() throws SplitException, GroupException {
+        group.split("nikola", 100);
+
+        long owed = group.leftOwesToRight("ivan", "nikola") + group.leftOwesToRight("peter", "nikola");
+
+        assertEquals(100 - 33, owed, "The friends must owe everything except the share of the payer");
+    }
+
+    @Test
+    void testSplitByWeights() throws SplitException, GroupException {
+        group.split("nikola", 10000, Map.of("nikola", 1, "ivan", 2, "peter", 1));
+
+        assertEquals(5000, group.leftOwesToRight("ivan", "nikola"), "Ivan must owe 2 of 4 parts");
+        assertEquals(2500, group.leftOwesToRight("peter", "nikola"), "Peter must owe 1 of 4 parts");
+        assertEquals(0, group.leftOwesToRight("ivan", "peter"), "Ivan must not owe anything to peter");
+    }
+
+    @Test
+    void testSplitByWeightsMissingMember() {
+        assertThrows(IllegalArgumentException.class,
+            () -> group.split("nikola", 10000, Map.of("nikola", 1, "ivan", 2)),
+            "Exception expected because peter has no weight");
+    }
+
+    @Test
+    void testSplitWhichWouldOverflowADebtChangesNothing() throws SplitException, GroupException {
+        long amount = 6_000_000_000_000_000_000L; //2 * 10^18 per member
+        for (int i = 0; i < 4; i++) {
+            group.split("nikola", amount);
+        }
+        group.split("peter", amount); //so only the debt of ivan is about to overflow
+
+        assertThrows(SplitException.class, () -> group.split("nikola", amount),
+            "A debt over Long.MAX_VALUE must be refused");
+        assertEquals(8_000_000_000_000_000_000L, group.leftOwesToRight("ivan", "nikola"),
+            "The debt of ivan must not change");
+        assertEquals(6_000_000_000_000_000_000L, group.leftOwesToRight("peter", "nikola"),
+            "The debt of peter must not change either");
+    }
+
+    @Test
+    void testLedgerSplitChangesTheNetBalances() throws SplitException, GroupException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan", "peter");
+
+        ledger.split("nikola", 100);
+
+        assertEquals(100 - 34, ledger.getBalance("nikola"), "The payer must be owed everything except their share");
+        assertEquals(-33, ledger.getBalance("ivan"), "Ivan must owe his share");
+        assertEquals(-33, ledger.getBalance("peter"), "Peter must owe his share");
+    }
+
+    @Test
+    void testLedgerSplitWhichWouldOverflowABalanceChangesNothing() throws SplitException, GroupException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan", "peter");
+        long amount = 6_000_000_000_000_000_000L;
+        ledger.split("nikola", amount);
+        ledger.split("nikola", amount);
+
+        assertThrows(SplitException.class, () -> ledger.split("nikola", amount),
+            "A balance over Long.MAX_VALUE must be refused");
+        assertEquals(8_000_000_000_000_000_000L, ledger.getBalance("nikola"), "The payer must not change");
+        assertEquals(-4_000_000_000_000_000_000L, ledger.getBalance("ivan"), "The others must not change either");
+    }
+
+    @Test
+    void testLedgerPairwiseViewMatchesDebtorsWithCreditors() throws SplitException, GroupException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan", "peter");
+
+        ledger.split("nikola", 9000);
+        ledger.split("ivan", 3000);
+
+        assertEquals(4000, ledger.leftOwesToRight("peter", "nikola"), "Peter must owe both shares to nikola");
+        assertEquals(1000, ledger.leftOwesToRight("ivan", "nikola"), "Ivan must owe the difference to nikola");
+        assertEquals(0, ledger.leftOwesToRight("ivan", "peter"), "Ivan must not owe anything to peter");
+    }
+
+    @Test
+    void testLedgerPairwiseViewIsComputedOncePerChange() throws SplitException, GroupException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan", "peter");
+        ledger.split("nikola", 9000);
+
+        FriendsList ivan = ledger.getFriendsLists().get("ivan");
+        String status = ledger.getStatusFor("ivan");
+
+        assertEquals(status, ledger.getStatusFor("ivan"), "The status of an unchanged ledger must not change");
+        assertSame(ivan, ledger.getFriendsLists().get("ivan"), "An unchanged ledger must not rebuild its view");
+
+        ledger.split("ivan", 3000);
+
+        assertNotSame(ivan, ledger.getFriendsLists().get("ivan"), "A split must make the view be computed again");
+        assertEquals(1000, ledger.leftOwesToRight("ivan", "nikola"), "The new view must have the new balances");
+
+        ledger.applyBalanceChanges(new String[] {"ivan", "nikola"}, new long[] {-1000, 1000});
+        assertEquals(2000, ledger.leftOwesToRight("ivan", "nikola"), "Applied changes must be in the view too");
+    }
+
+    @Test
+    void testLedgerReceive() throws SplitException, GroupException, ReceiveException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan");
+        ledger.split("nikola", 1000);
+
+        ledger.receive("nikola", 500, "ivan");
+
+        assertEquals(0, ledger.getBalance("ivan"), "Everything must be settled-up");
+        assertThrows(ReceiveException.class, () -> ledger.receive("nikola", 1, "ivan"),
+            "Exception expected because ivan does not owe anything");
+    }
+
+    @Test
+    void testLedgerTakeChangedBalances() throws SplitException, GroupException {
+        Group ledger = Group.ofLedger("trip", "nikola", "ivan", "peter");
+        ledger.split("nikola", 300, Map.of("nikola", 1, "ivan", 2, "peter", 1));
+        ledger.split("peter", 100, Map.of("nikola", 2, "ivan", 1, "peter", 1));
+
+        Group.BalanceChanges changes = ledger.takeChangedBalances();
+
+        assertArrayEquals(new String[] {"nikola", "ivan"}, changes.members(), "Peter is settled-up");
+        assertArrayEquals(new long[] {175, -175}, changes.changes(), "The changes are not as expected");
+        assertEquals(0, ledger.takeChangedBalances().members().length, "Everything was already taken");
+    }
+}
@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InboxTest {
+    private static List<Notification> notifications(int from, int to) {
+        List<Notification> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add(Notification.ofText("Notification " + i));
+        }
+
+        return result;
+    }
+
+    @Test
+    void testReadGoesThroughThePages() {
+        Inbox inbox = new Inbox(100);
+        notifications(0, 10).forEach(inbox::add);
+
+        NotificationPage first = inbox.read(6);
+        NotificationPage second = inbox.read(6);
+
+        assertIterableEquals(notifications(0, 6), first.notifications(), "The oldest were expected first");
+        assertEquals(4, first.remaining(), "Four notifications were left for the next page");
+        assertIterableEquals(notifications(6, 10), second.notifications(), "The rest were expected next");
+        assertEquals(10, second.cursor(), "Every notification was read");
+        assertTrue(inbox.read(6).notifications().isEmpty(), "Nothing was left to read");
+    }
+
+    @Test
+    void testOverflowIsCollapsedIntoSummaries() {
+        Inbox inbox = new Inbox(2);
+        inbox.add(Notification.ofText("Notification 0"));
+        for (int i = 1; i <= 3; i++) {
+            inbox.add(GroupNotification.ofText("trip", "Group notification " + i));
+        }
+
+        NotificationPage page = inbox.read(10);
+
+        assertIterableEquals(List.of(Notification.ofText("... and 1 older notifications from your friends"),
+                GroupNotification.ofText("trip", "... and 1 older notifications in group [trip]"),
+                GroupNotification.ofText("trip", "Group notification 2"),
+                GroupNotification.ofText("trip", "Group notification 3")),
+            page.notifications(), "The summaries were expected in front of the newest notifications");
+        assertTrue(inbox.read(10).notifications().isEmpty(), "The summaries were expected to be delivered once");
+    }
+
+    @Test
+    void testMarkReadRepeatsARead() {
+        Inbox inbox = new Inbox(100);
+        notifications(0, 5).forEach(inbox::add);
+
+        inbox.markRead(3);
+
+        assertIterableEquals(notifications(3, 5), inbox.getUnread(), "The first three were read");
+    }
+
+    @Test
+    void testNotificationCoveredByAnEarlierReadIsNotUnread() {
+        Inbox inbox = new Inbox(100);
+        inbox.markRead(1); //e.g. the cursor reached the log before the notification
+
+        inbox.add(Notification.ofText("Notification 0"));
+
+        assertTrue(inbox.getUnread().isEmpty(), "The notification was already read");
+    }
+}
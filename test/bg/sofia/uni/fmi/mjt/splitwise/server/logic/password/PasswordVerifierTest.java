@@ -0,0 +1,71 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+
+class PasswordVerifierTest {
+    @Test
+    void testVerifyRemembersTheRecentLogins() {
+        PasswordHasher hasher = Mockito.spy(new Pbkdf2PasswordHasher(1_000));
+        PasswordVerifier verifier = new PasswordVerifier(hasher, 1, 16, 16);
+        String hash = hasher.hash("qwerty");
+
+        assertTrue(verifier.verify("nikola", "qwerty", hash), "The password was expected to match");
+        assertTrue(verifier.verify("nikola", "qwerty", hash), "The password was expected to match again");
+        assertFalse(verifier.verify("nikola", "qwerty1", hash), "A different password must not match");
+
+        Mockito.verify(hasher, times(1)).verify("qwerty", hash);
+        assertEquals(new PasswordMetrics(2, 1, 0), verifier.getMetrics(), "Only the second login was cached");
+    }
+
+    @Test
+    void testVerifyHashesAgainWhenTheStoredHashChanged() {
+        PasswordHasher hasher = Mockito.spy(new Pbkdf2PasswordHasher(1_000));
+        PasswordVerifier verifier = new PasswordVerifier(hasher, 1, 16, 16);
+
+        assertTrue(verifier.verify("nikola", "qwerty", "qwerty"), "The plaintext password was expected to match");
+        String hash = verifier.hash("qwerty");
+        assertTrue(verifier.verify("nikola", "qwerty", hash), "The new hash was expected to match");
+
+        Mockito.verify(hasher, times(1)).verify("qwerty", hash);
+    }
+
+    @Test
+    void testVerifyIsRefusedWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordHasher hasher = Mockito.mock(PasswordHasher.class);
+        Mockito.when(hasher.verify(Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+
+        PasswordVerifier verifier = new PasswordVerifier(hasher, 1, 1, 16);
+        Thread hashing = new Thread(() -> verifier.verify("nikola", "qwerty", "hash"));
+        Thread waiting = new Thread(() -> verifier.verify("peter", "qwerty", "hash"));
+        hashing.start();
+        started.await();
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(AuthenticationException.class, () -> verifier.verify("ivan", "qwerty", "hash"),
+            "The login over the queue capacity was expected to be refused");
+
+        release.countDown();
+        hashing.join();
+        waiting.join();
+        assertEquals(new PasswordMetrics(2, 0, 1), verifier.getMetrics(), "One login was expected to be refused");
+    }
+}
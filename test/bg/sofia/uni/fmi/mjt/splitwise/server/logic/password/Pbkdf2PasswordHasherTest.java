@@ -0,0 +1,34 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.password;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Pbkdf2PasswordHasherTest {
+    private final PasswordHasher hasher = new Pbkdf2PasswordHasher(1_000);
+
+    @Test
+    void testVerifyAcceptsOnlyTheHashedPassword() {
+        String hash = hasher.hash("qwerty");
+
+        assertTrue(hasher.verify("qwerty", hash), "The hashed password was expected to match");
+        assertFalse(hasher.verify("qwerty1", hash), "A different password must not match");
+        assertNotEquals(hash, hasher.hash("qwerty"), "Every hash was expected to have its own salt");
+    }
+
+    @Test
+    void testVerifyComparesAPlaintextPassword() {
+        assertTrue(hasher.verify("qwerty", "qwerty"), "A password stored before the hashing must still match");
+        assertFalse(hasher.verify("qwerty1", "qwerty"), "A different password must not match");
+    }
+
+    @Test
+    void testNeedsRehashPlaintextAndOtherIterations() {
+        assertTrue(hasher.needsRehash("qwerty"), "A plaintext password must be hashed");
+        assertTrue(hasher.needsRehash(new Pbkdf2PasswordHasher(2_000).hash("qwerty")),
+            "A hash with other iterations must be hashed again");
+        assertFalse(hasher.needsRehash(hasher.hash("qwerty")), "A current hash must be kept");
+    }
+}
@@ -0,0 +1,257 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.Database;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.ReceiveException;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordVerifier;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.Pbkdf2PasswordHasher;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs a million random operations from several threads and checks that every balance equals the sum of the
+ * operations which succeeded, i.e. that no update was lost or applied twice.
+ */
+class SplitWiseConcurrencyTest {
+    private static final int USERS = 16;
+    private static final int GROUP_SIZE = 4;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 1_000_000;
+
+    private static final String PASSWORD = "qwerty";
+    private static final String REASON = "stress";
+    private static final String FRIENDS_SCOPE = "friends";
+
+    SplitWiseAPI splitWiseAPI;
+
+    List<String> usernames;
+    Map<String, List<String>> groupMembers;
+
+    //"scope:creditor>debtor" -> how many cents the debtor was charged minus how many were received back
+    Map<String, LongAdder> debts;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SplitWise splitWise = new SplitWise(new NoOpDatabase());
+        splitWise.setPasswordVerifier(new PasswordVerifier(new Pbkdf2PasswordHasher(1_000), 1, 16, 16)); //fast
+        splitWiseAPI = splitWise;
+
+        usernames = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String username = "user" + i;
+            usernames.add(username);
+            splitWiseAPI.signUp(username, PASSWORD, "First", "Last");
+        }
+
+        for (int i = 0; i < USERS; i++) {
+            for (int j = i + 1; j < USERS; j++) {
+                splitWiseAPI.addFriend(usernames.get(i), usernames.get(j));
+            }
+        }
+
+        groupMembers = new HashMap<>();
+        for (int i = 0; i < USERS; i += GROUP_SIZE / 2) { //overlapping groups
+            List<String> members = new ArrayList<>();
+            for (int j = 0; j < GROUP_SIZE; j++) {
+                members.add(usernames.get((i + j) % USERS));
+            }
+
+            String groupName = "group" + i;
+            splitWiseAPI.createGroup(members.get(0), groupName,
+                members.subList(1, GROUP_SIZE).toArray(String[]::new));
+            groupMembers.put(groupName, members);
+        }
+
+        debts = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    void testConcurrentOperationsKeepBalancesConsistent() throws Exception {
+        List<String> groupNames = new ArrayList<>(groupMembers.keySet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS / THREADS; i++) {
+                    runRandomOperation(groupNames);
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        for (String left : usernames) {
+            for (String right : usernames) {
+                if (!left.equals(right)) {
+                    User leftUser = splitWiseAPI.getUsers().get(left);
+                    assertEquals(expected(FRIENDS_SCOPE, left, right), leftUser.owesToUser(right),
+                        "Lost update between the friends " + left + " and " + right);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry : groupMembers.entrySet()) {
+            Group group = splitWiseAPI.getGroups().get(entry.getKey());
+            for (String left : entry.getValue()) {
+                for (String right : entry.getValue()) {
+                    if (!left.equals(right)) {
+                        assertEquals(expected(entry.getKey(), left, right),
+                            group.leftOwesToRight(left, right),
+                            "Lost update in group " + entry.getKey() + " between " + left + " and " + right);
+                    }
+                }
+            }
+        }
+    }
+
+    private void runRandomOperation(List<String> groupNames) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                String payer = usernames.get(random.nextInt(USERS));
+                String friend = otherThan(payer, usernames, random);
+
+                splitWiseAPI.split(payer, 2, friend, REASON); //the friend owes 1
+                add(FRIENDS_SCOPE, payer, friend, 1);
+            }
+            case 1 -> {
+                String receiver = usernames.get(random.nextInt(USERS));
+                String sender = otherThan(receiver, usernames, random);
+
+                try {
+                    splitWiseAPI.receive(receiver, 1, sender);
+                    add(FRIENDS_SCOPE, receiver, sender, -1);
+                } catch (ReceiveException e) {
+                    //the sender did not owe anything, the balance must be unchanged
+                }
+            }
+            case 2 -> {
+                String groupName = groupNames.get(random.nextInt(groupNames.size()));
+                List<String> members = groupMembers.get(groupName);
+                String payer = members.get(random.nextInt(GROUP_SIZE));
+
+                splitWiseAPI.splitInGroup(payer, GROUP_SIZE, groupName, REASON); //everyone else owes 1
+                for (String member : members) {
+                    if (!member.equals(payer)) {
+                        add(groupName, payer, member, 1);
+                    }
+                }
+            }
+            default -> {
+                String groupName = groupNames.get(random.nextInt(groupNames.size()));
+                List<String> members = groupMembers.get(groupName);
+                String receiver = members.get(random.nextInt(GROUP_SIZE));
+                String sender = otherThan(receiver, members, random);
+
+                try {
+                    splitWiseAPI.receiveInGroup(receiver, 1, groupName, sender);
+                    add(groupName, receiver, sender, -1);
+                } catch (ReceiveException e) {
+                    //the sender did not owe anything, the balance must be unchanged
+                }
+            }
+        }
+    }
+
+    private static String otherThan(String username, List<String> candidates, ThreadLocalRandom random) {
+        String other;
+        do {
+            other = candidates.get(random.nextInt(candidates.size()));
+        } while (other.equals(username));
+
+        return other;
+    }
+
+    private void add(String scope, String creditor, String debtor, long cents) {
+        debts.computeIfAbsent(scope + ":" + creditor + ">" + debtor, k -> new LongAdder()).add(cents);
+    }
+
+    private long expected(String scope, String left, String right) {
+        LongAdder leftOwes = debts.get(scope + ":" + right + ">" + left);
+        LongAdder rightOwes = debts.get(scope + ":" + left + ">" + right);
+
+        return (leftOwes == null ? 0 : leftOwes.sum()) - (rightOwes == null ? 0 : rightOwes.sum());
+    }
+
+    /**
+     * A mock would record every one of the million invocations
+     */
+    private static class NoOpDatabase implements Database {
+        @Override
+        public Map<String, User> loadUsers() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void addUser(User user) {
+        }
+
+        @Override
+        public void addPayment(String username, Payment payment) {
+        }
+
+        @Override
+        public PaymentPage loadPayments(String username, PaymentQuery query) {
+            return PaymentPage.empty();
+        }
+
+        @Override
+        public void addFriendNotification(String username, Notification notification) {
+        }
+
+        @Override
+        public void addGroupNotification(String username, GroupNotification groupNotification) {
+        }
+
+        @Override
+        public void updatePassword(UserPersonal personal) {
+        }
+
+        @Override
+        public void markNotificationsRead(String username, long cursor) {
+        }
+
+        @Override
+        public void updateFriendsList(User user) {
+        }
+
+        @Override
+        public void updateGroup(Group group) {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public Map<String, Group> loadGroups() {
+            return new HashMap<>();
+        }
+    }
+}
@@ -12,21 +12,26 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.UserNotFoundExcept
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.GroupNotification;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.Notification;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordVerifier;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.Pbkdf2PasswordHasher;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.Payment;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.payment.PaymentQuery;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.clearInvocations;
@@ -34,7 +39,6 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 public class SplitWisePaymentsTest {
-    private static final double DELTA = 0.01;
 
     Database database = Mockito.mock(Database.class);
 
@@ -58,16 +62,18 @@ public class SplitWisePaymentsTest {
         peter = new UserPersonal("peter123", "Peter", "Ivanov", "qwerty");
         ivan = new UserPersonal("ivan123", "Ivan", "Petrov", "qwerty");
 
-        friendsPayment = new Payment(nikola.getUsername(), 20.44, "toilet paper", Set.of(peter.getUsername()));
+        friendsPayment = new Payment(nikola.getUsername(), 2044, "toilet paper", Set.of(peter.getUsername()));
         groupPayment =
-            new Payment(nikola.getUsername(), 30.33, "cinema tickets", Set.of(peter.getUsername(), ivan.getUsername()));
+            new Payment(nikola.getUsername(), 3033, "cinema tickets", Set.of(peter.getUsername(), ivan.getUsername()));
     }
 
     @BeforeEach
     void setSplitWiseAPI()
         throws UserAlreadyExists, InvalidUserData, GroupException, UserNotFoundException, SplitException,
         FriendException {
-        splitWiseAPI = new SplitWise(database);
+        SplitWise splitWise = new SplitWise(database);
+        splitWise.setPasswordVerifier(new PasswordVerifier(new Pbkdf2PasswordHasher(1_000), 1, 16, 16)); //fast
+        splitWiseAPI = splitWise;
 
         splitWiseAPI.signUp(nikola.getUsername(), nikola.getPassword(), nikola.getFirstName(), nikola.getLastName());
         splitWiseAPI.signUp(peter.getUsername(), peter.getPassword(), peter.getFirstName(), peter.getLastName());
@@ -96,31 +102,31 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInvalidStrings() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receive("", 5, "    "),
+                splitWiseAPI.receive("", 500, "    "),
             "Exception was expected to be thrown because of invalid strings");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
-    void testReceiveDoubleTooLong() {
+    void testReceiveZeroAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receive(nikola.getUsername(), 5.555, peter.getUsername()),
-            "Exception was expected to be thrown because the double has more than 2 decimal places");
+                splitWiseAPI.receive(nikola.getUsername(), 0, peter.getUsername()),
+            "Exception was expected to be thrown because the amount is zero");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
-    void testReceiveNegativeDouble() {
+    void testReceiveNegativeAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receive(nikola.getUsername(), -5, peter.getUsername()),
-            "Exception was expected to be thrown because the double is negative");
+                splitWiseAPI.receive(nikola.getUsername(), -500, peter.getUsername()),
+            "Exception was expected to be thrown because the amount is negative");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
     void testReceiveThrowsAuthenticationExc() {
         assertThrows(AuthenticationException.class, () ->
-                splitWiseAPI.receive("randomUser", 5, peter.getUsername()),
+                splitWiseAPI.receive("randomUser", 500, peter.getUsername()),
             "Exception was expected to be thrown because the logged-in user does not exist");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -128,7 +134,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveThrowsUserNotFound() {
         assertThrows(UserNotFoundException.class, () ->
-                splitWiseAPI.receive(nikola.getUsername(), 5, "randomUser"),
+                splitWiseAPI.receive(nikola.getUsername(), 500, "randomUser"),
             "Exception was expected to be thrown because the sender does not exist");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -136,7 +142,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveThrowsFriendExc() {
         assertThrows(FriendException.class, () ->
-                splitWiseAPI.receive(nikola.getUsername(), 5, ivan.getUsername()),
+                splitWiseAPI.receive(nikola.getUsername(), 500, ivan.getUsername()),
             "Exception was expected to be thrown because ivan is not friend with nikola");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -144,7 +150,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveNotOwingMoney() {
         assertThrows(ReceiveException.class, () ->
-                splitWiseAPI.receive(peter.getUsername(), 5, nikola.getUsername()),
+                splitWiseAPI.receive(peter.getUsername(), 500, nikola.getUsername()),
             "Exception was expected to be thrown because nikola does not owe money to peter");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -152,20 +158,20 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveTooBigAmount() {
         assertThrows(ReceiveException.class, () ->
-                splitWiseAPI.receive(nikola.getUsername(), 500, peter.getUsername()),
+                splitWiseAPI.receive(nikola.getUsername(), 50000, peter.getUsername()),
             "Exception was expected to be thrown because peter does not owe so much money to nikola");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
     void testReceiveTestIsReceived() throws UserNotFoundException, FriendException, ReceiveException {
-        double received = 5;
+        long received = 500;
         splitWiseAPI.receive(nikola.getUsername(), received, peter.getUsername());
 
         User peterUser = splitWiseAPI.findUser(peter.getUsername());
 
-        double expected = friendsPayment.amount() / 2 - received;
-        assertEquals(expected, peterUser.owesToUser(nikola.getUsername()), DELTA,
+        long expected = friendsPayment.amount() / 2 - received;
+        assertEquals(expected, peterUser.owesToUser(nikola.getUsername()),
             "The new owed amount is not as expected");
 
         Mockito.verify(database, times(2)).updateFriendsList(any());
@@ -174,31 +180,31 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInGroupInvalidStrings() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receiveInGroup("", 5, "    ", null),
+                splitWiseAPI.receiveInGroup("", 500, "    ", null),
             "Exception was expected to be thrown because of invalid strings");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
-    void testReceiveInGroupDoubleTooLong() {
+    void testReceiveInGroupZeroAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 5.555, groupName, peter.getUsername()),
-            "Exception was expected to be thrown because the double has more than 2 decimal places");
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 0, groupName, peter.getUsername()),
+            "Exception was expected to be thrown because the amount is zero");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
-    void testReceiveInGroupNegativeDouble() {
+    void testReceiveInGroupNegativeAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), -5, groupName, peter.getUsername()),
-            "Exception was expected to be thrown because the double is negative");
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), -500, groupName, peter.getUsername()),
+            "Exception was expected to be thrown because the amount is negative");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
     void testReceiveInGroupThrowsAuthenticationExc() {
         assertThrows(AuthenticationException.class, () ->
-                splitWiseAPI.receiveInGroup("randomUser", 5, groupName, peter.getUsername()),
+                splitWiseAPI.receiveInGroup("randomUser", 500, groupName, peter.getUsername()),
             "Exception was expected to be thrown because the logged-in user does not exist");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -206,7 +212,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInGroupThrowsUserNotFound() {
         assertThrows(UserNotFoundException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 5, groupName, "randomUser"),
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 500, groupName, "randomUser"),
             "Exception was expected to be thrown because the sender does not exist");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -214,7 +220,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInGroupGroupNotFound() {
         assertThrows(GroupException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 5, "randomGroup", peter.getUsername()),
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 500, "randomGroup", peter.getUsername()),
             "Exception was expected to be thrown because the group does not exist");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -225,7 +231,7 @@ public class SplitWisePaymentsTest {
         splitWiseAPI.createGroup(ivan.getUsername(), notPartOf, peter.getUsername());
 
         assertThrows(GroupException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 5, notPartOf, peter.getUsername()),
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 500, notPartOf, peter.getUsername()),
             "Exception was expected to be thrown because the receiver is not in the group");
         Mockito.verify(database, times(1)).updateGroup(any());
     }
@@ -236,7 +242,7 @@ public class SplitWisePaymentsTest {
         splitWiseAPI.createGroup(nikola.getUsername(), notPartOf, ivan.getUsername());
 
         assertThrows(GroupException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 5, notPartOf, peter.getUsername()),
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 500, notPartOf, peter.getUsername()),
             "Exception was expected to be thrown because the sender is not in the group");
         Mockito.verify(database, times(1)).updateGroup(any());
     }
@@ -244,7 +250,7 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInGroupNotOwingMoney() {
         assertThrows(ReceiveException.class, () ->
-                splitWiseAPI.receiveInGroup(peter.getUsername(), 5, groupName, nikola.getUsername()),
+                splitWiseAPI.receiveInGroup(peter.getUsername(), 500, groupName, nikola.getUsername()),
             "Exception was expected to be thrown because nikola does not owe money to peter");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -252,22 +258,22 @@ public class SplitWisePaymentsTest {
     @Test
     void testReceiveInGroupTooBigAmount() {
         assertThrows(ReceiveException.class, () ->
-                splitWiseAPI.receiveInGroup(nikola.getUsername(), 500, groupName, peter.getUsername()),
+                splitWiseAPI.receiveInGroup(nikola.getUsername(), 50000, groupName, peter.getUsername()),
             "Exception was expected to be thrown because peter does not owe so much money to nikola");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
     void testReceiveInGroupTestIsReceived() throws UserNotFoundException, GroupException, ReceiveException {
-        double received = 5;
+        long received = 500;
         splitWiseAPI.receiveInGroup(nikola.getUsername(), received, groupName, peter.getUsername());
 
         Group group = splitWiseAPI.findGroup(groupName);
 
-        double expected = groupPayment.amount() / 3 - received;
-        assertEquals(expected, group.leftOwesToRight(peter.getUsername(), nikola.getUsername()), DELTA,
+        long expected = groupPayment.amount() / 3 - received;
+        assertEquals(expected, group.leftOwesToRight(peter.getUsername(), nikola.getUsername()),
             "The new owed amount is not as expected");
-        assertEquals(-1 * expected, group.leftOwesToRight(nikola.getUsername(), peter.getUsername()), DELTA,
+        assertEquals(-1 * expected, group.leftOwesToRight(nikola.getUsername(), peter.getUsername()),
             "The new owed amount is not as expected");
 
         Mockito.verify(database, times(1)).updateGroup(any());
@@ -275,45 +281,53 @@ public class SplitWisePaymentsTest {
 
     @Test
     void testSplitRecalculatingDebts() throws UserNotFoundException, SplitException, FriendException {
-        double split = 10;
+        long split = 1000;
         splitWiseAPI.split(peter.getUsername(), split, nikola.getUsername(), "splitting backwards");
 
         User peterUser = splitWiseAPI.findUser(peter.getUsername());
         User nikolaUser = splitWiseAPI.findUser(nikola.getUsername());
 
-        double peterOwes = friendsPayment.amount() / 2 - split / 2;
-        assertEquals(peterOwes, peterUser.owesToUser(nikola.getUsername()), DELTA,
+        long peterOwes = friendsPayment.amount() / 2 - split / 2;
+        assertEquals(peterOwes, peterUser.owesToUser(nikola.getUsername()),
             "The dept was not precalculated properly");
-        assertEquals(-1 * peterOwes, nikolaUser.owesToUser(peterUser.getUsername()), DELTA,
+        assertEquals(-1 * peterOwes, nikolaUser.owesToUser(peterUser.getUsername()),
             "The dept was not precalculated properly");
     }
 
     @Test
     void testGetPaymentsOfInvalidStrings() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.getPaymentsOf(""),
+                splitWiseAPI.getPaymentsOf("", PaymentQuery.newest(10)),
             "Exception was expected to be thrown because of invalid strings");
     }
 
     @Test
     void testGetPaymentsOfThrowsAuthenticationExc() {
         assertThrows(AuthenticationException.class, () ->
-                splitWiseAPI.getPaymentsOf("randomUser"),
+                splitWiseAPI.getPaymentsOf("randomUser", PaymentQuery.newest(10)),
             "Exception was expected to be thrown because the logged-in user does not exist");
     }
 
     @Test
-    void testGetPaymentsOfReturnsList() {
-        List<Payment> actual = splitWiseAPI.getPaymentsOf(nikola.getUsername());
-        List<Payment> expected = List.of(friendsPayment, groupPayment);
-        assertIterableEquals(expected, actual, "The payments are not as expected");
+    void testSplitInGroupAddsThePaymentToTheDatabase() throws GroupException, SplitException {
+        splitWiseAPI.splitInGroup(groupPayment.issuer(), groupPayment.amount(), groupName, groupPayment.reason());
+
+        ArgumentCaptor<Payment> captor = ArgumentCaptor.forClass(Payment.class);
+        Mockito.verify(database).addPayment(Mockito.eq(nikola.getUsername()), captor.capture());
+        Payment actual = captor.getValue();
+
+        assertEquals(groupPayment, new Payment(actual.issuer(), actual.amount(), actual.reason(),
+            actual.splitWith(), groupPayment.time()), "The payment is not as expected");
     }
 
     @Test
-    void testGetPaymentsOfReturnsEmptyList() {
-        List<Payment> actual = splitWiseAPI.getPaymentsOf(ivan.getUsername());
-        List<Payment> expected = new ArrayList<>();
-        assertIterableEquals(expected, actual, "The method must return empty list");
+    void testGetPaymentsOfReturnsThePageOfTheDatabase() {
+        PaymentQuery query = new PaymentQuery(5, 2, 0, Long.MAX_VALUE);
+        PaymentPage page = new PaymentPage(List.of(friendsPayment, groupPayment), 3);
+        Mockito.when(database.loadPayments(nikola.getUsername(), query)).thenReturn(page);
+
+        assertSame(page, splitWiseAPI.getPaymentsOf(nikola.getUsername(), query),
+            "The page was expected to be read from the database");
     }
 
     @Test
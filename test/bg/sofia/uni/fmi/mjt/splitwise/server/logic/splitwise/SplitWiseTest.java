@@ -1,5 +1,6 @@
 package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
 
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.calculation.Settlement.Transfer;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.database.Database;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.AuthenticationException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.FriendException;
@@ -10,6 +11,10 @@ import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.UserAlreadyExists;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.exceptions.UserNotFoundException;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Group;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPage;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.notification.NotificationPusher;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.PasswordVerifier;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.password.Pbkdf2PasswordHasher;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
 import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
 import org.junit.jupiter.api.BeforeAll;
@@ -17,11 +22,19 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.atMostOnce;
 import static org.mockito.Mockito.clearInvocations;
@@ -29,7 +42,6 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 class SplitWiseTest {
-    private static final double DELTA = 0.01;
 
     Database database = Mockito.mock(Database.class);
 
@@ -50,7 +62,9 @@ class SplitWiseTest {
 
     @BeforeEach
     void setSplitWiseAPI() throws UserAlreadyExists, InvalidUserData, GroupException, UserNotFoundException {
-        splitWiseAPI = new SplitWise(database);
+        SplitWise splitWise = new SplitWise(database);
+        splitWise.setPasswordVerifier(new PasswordVerifier(new Pbkdf2PasswordHasher(1_000), 1, 16, 16)); //fast
+        splitWiseAPI = splitWise;
 
         splitWiseAPI.signUp(nikola.getUsername(), nikola.getPassword(), nikola.getFirstName(), nikola.getLastName());
         splitWiseAPI.signUp(peter.getUsername(), peter.getPassword(), peter.getFirstName(), peter.getLastName());
@@ -67,19 +81,83 @@ class SplitWiseTest {
     @Test
     void testLoginSuccessful() {
         assertTrue(splitWiseAPI.login(nikola.getUsername(), nikola.getPassword()), "The user was expected to log in");
-        Mockito.verify(database).clearNotifications(nikola.getUsername());
+        Mockito.verify(database, never()).markNotificationsRead(anyString(), anyLong());
+        Mockito.verify(database, never()).updatePassword(any()); //hashed on sign up already
+    }
+
+    @Test
+    void testLoginHashesAPlaintextPasswordOnce() {
+        UserPersonal legacy = new UserPersonal("legacy123", "Old", "Account", "qwerty");
+        Mockito.when(database.loadUsers()).thenReturn(Map.of(legacy.getUsername(), new User(legacy)));
+
+        SplitWise reloaded = new SplitWise(database);
+        reloaded.setPasswordVerifier(new PasswordVerifier(new Pbkdf2PasswordHasher(1_000), 1, 16, 16));
+
+        assertTrue(reloaded.login(legacy.getUsername(), "qwerty"), "The plaintext password must still log in");
+        assertTrue(legacy.getPassword().startsWith("pbkdf2-sha256$"), "The password was expected to be hashed");
+        assertTrue(reloaded.login(legacy.getUsername(), "qwerty"), "The hashed password must log in");
+        assertFalse(reloaded.login(legacy.getUsername(), "qwerty1"), "The password is incorrect");
+        Mockito.verify(database, times(1)).updatePassword(legacy);
     }
 
     @Test
     void testLoginNoSuchUser() {
         assertFalse(splitWiseAPI.login("dragan", nikola.getPassword()), "There is no such user");
-        Mockito.verify(database, never()).clearNotifications(anyString());
     }
 
     @Test
     void testLoginInvalidPassword() {
         assertFalse(splitWiseAPI.login(nikola.getUsername(), "incorrectPass123"), "The password is incorrect");
-        Mockito.verify(database, never()).clearNotifications(anyString());
+    }
+
+    @Test
+    void testReadNotificationsInPages() {
+        NotificationPage first = splitWiseAPI.readNotifications(peter.getUsername(), 1);
+        NotificationPage second = splitWiseAPI.readNotifications(peter.getUsername(), 1);
+
+        assertEquals(1, first.notifications().size(), "The page was expected to have one notification");
+        assertEquals(1, first.remaining(), "Peter was also added as a friend");
+        assertTrue(second.notifications().get(0).getText().contains("added you as a friend"),
+            "The second page was expected to have the next notification");
+        assertEquals(0, second.remaining(), "Every notification was read");
+
+        Mockito.verify(database).markNotificationsRead(peter.getUsername(), 1);
+        Mockito.verify(database).markNotificationsRead(peter.getUsername(), 2);
+    }
+
+    @Test
+    void testReadNotificationsWithoutNewOnes() {
+        NotificationPage page = splitWiseAPI.readNotifications(nikola.getUsername(), 10);
+
+        assertTrue(page.notifications().isEmpty(), "Nikola has no notifications");
+        Mockito.verify(database, never()).markNotificationsRead(anyString(), anyLong());
+    }
+
+    @Test
+    void testPushedNotificationsSkipTheInbox() throws Exception {
+        ((SplitWise) splitWiseAPI).setNotificationPusher((recipients, notification) -> Set.copyOf(recipients));
+        splitWiseAPI.readNotifications(peter.getUsername(), 10); //the earlier ones
+
+        splitWiseAPI.split(nikola.getUsername(), 2000, peter.getUsername(), "lunch");
+
+        assertTrue(splitWiseAPI.readNotifications(peter.getUsername(), 10).notifications().isEmpty(),
+            "The pushed notification was not expected in the inbox");
+        Mockito.verify(database, never()).addFriendNotification(anyString(), any());
+    }
+
+    @Test
+    void testNotificationsNotPushedGoToTheInbox() throws Exception {
+        NotificationPusher onlyIvan = (recipients, notification) -> {
+            Set<String> pushed = new HashSet<>(recipients);
+            pushed.retainAll(Set.of(ivan.getUsername()));
+            return pushed;
+        };
+        ((SplitWise) splitWiseAPI).setNotificationPusher(onlyIvan);
+
+        splitWiseAPI.splitInGroup(nikola.getUsername(), 3000, groupName, "dinner");
+
+        Mockito.verify(database).addGroupNotification(Mockito.eq(peter.getUsername()), any());
+        Mockito.verify(database, never()).addGroupNotification(Mockito.eq(ivan.getUsername()), any());
     }
 
     @Test
@@ -135,8 +213,9 @@ class SplitWiseTest {
         UserPersonal mitko = new UserPersonal("mitko123", "Dimitar", "Mitkov", "qwerty");
         splitWiseAPI.signUp(mitko.getUsername(), mitko.getPassword(), mitko.getFirstName(), mitko.getLastName());
 
-        assertEquals(splitWiseAPI.findUser(mitko.getUsername()).getPersonal(), mitko,
-            "The signed up user could not be found in the system");
+        UserPersonal found = splitWiseAPI.findUser(mitko.getUsername()).getPersonal();
+        assertEquals(mitko.toString(), found.toString(), "The signed up user could not be found in the system");
+        assertNotEquals(mitko.getPassword(), found.getPassword(), "The password must not be stored in plaintext");
         Mockito.verify(database, times(1)).addUser(any()); //because of @BeforeEach
     }
 
@@ -256,34 +335,115 @@ class SplitWiseTest {
         Mockito.verify(database, times(1)).updateGroup(any());
     }
 
+    @Test
+    void testCreateLedgerGroupIsCreated() throws UserNotFoundException, GroupException {
+        String testGroupName = "ledgerGroup";
+        splitWiseAPI.createLedgerGroup(nikola.getUsername(), testGroupName, peter.getUsername(), ivan.getUsername());
+
+        Group added = splitWiseAPI.findGroup(testGroupName);
+
+        assertTrue(added.isLedger(), "A ledger group was expected");
+        assertTrue(added.hasMember(nikola.getUsername()), "Group was created without nikola inside");
+        Mockito.verify(database, times(1)).updateGroup(any());
+    }
+
+    @Test
+    void testGetStatusShowsOnlyTheGroupsOfTheUser() throws UserNotFoundException, GroupException {
+        splitWiseAPI.createGroup(ivan.getUsername(), "withoutNikola", peter.getUsername());
+
+        String status = splitWiseAPI.getStatus(nikola.getUsername());
+
+        assertTrue(status.contains(groupName), "The group of nikola was expected in the status");
+        assertFalse(status.contains("withoutNikola"), "Nikola is not part of this group");
+    }
+
+    @Test
+    void testGetStatusIsCachedUntilABalanceChanges() throws GroupException, SplitException {
+        SplitWise splitWise = (SplitWise) splitWiseAPI;
+        String before = splitWise.getStatus(ivan.getUsername());
+
+        assertSame(before, splitWise.getStatus(ivan.getUsername()), "The status was expected to be cached");
+
+        splitWise.splitInGroup(nikola.getUsername(), 3000, groupName, "Dinner");
+
+        assertTrue(splitWise.getStatus(ivan.getUsername()).contains("10.00"), "The status must show the split");
+        assertEquals(1, splitWise.getStatusCacheMetrics().hits(), "Only the second call was expected to hit");
+        assertEquals(1, splitWise.getStatusCacheMetrics().invalidations(), "The status of ivan was invalidated");
+    }
+
+    @Test
+    void testGetStatusShowsTheLoadedGroups() throws GroupException {
+        Group loaded = new Group("loadedGroup", nikola.getUsername(), ivan.getUsername());
+        Mockito.when(database.loadUsers()).thenReturn(Map.of(nikola.getUsername(), new User(nikola)));
+        Mockito.when(database.loadGroups()).thenReturn(Map.of(loaded.getName(), loaded));
+
+        SplitWise reloaded = new SplitWise(database);
+
+        assertTrue(reloaded.getStatus(nikola.getUsername()).contains(loaded.getName()),
+            "The groups loaded from the database were expected in the status");
+    }
+
+    @Test
+    void testSettleUpSkipsTheFriendInTheMiddle() throws UserNotFoundException, UserAlreadyExists, SplitException,
+        FriendException {
+        splitWiseAPI.addFriend(peter.getUsername(), ivan.getUsername());
+        splitWiseAPI.split(nikola.getUsername(), 2000, peter.getUsername(), "Dinner");
+        splitWiseAPI.split(peter.getUsername(), 2000, ivan.getUsername(), "Taxi");
+
+        List<Transfer> transfers = splitWiseAPI.settleUp(nikola.getUsername());
+
+        assertEquals(List.of(new Transfer(ivan.getUsername(), nikola.getUsername(), 1000)), transfers,
+            "Ivan was expected to pay nikola directly");
+    }
+
+    @Test
+    void testSettleUpInGroup() throws GroupException, SplitException {
+        splitWiseAPI.splitInGroup(nikola.getUsername(), 3000, groupName, "Dinner");
+        splitWiseAPI.splitInGroup(ivan.getUsername(), 3000, groupName, "Lunch");
+
+        List<Transfer> transfers = splitWiseAPI.settleUpInGroup(peter.getUsername(), groupName);
+
+        assertEquals(2, transfers.size(), "Peter was expected to pay both payers");
+        assertTrue(transfers.stream().allMatch(transfer -> transfer.from().equals(peter.getUsername())),
+            "Only peter owes money");
+    }
+
+    @Test
+    void testSettleUpInGroupNotMember() throws UserNotFoundException, GroupException {
+        splitWiseAPI.createGroup(ivan.getUsername(), "notPartOf", peter.getUsername());
+
+        assertThrows(GroupException.class, () -> splitWiseAPI.settleUpInGroup(nikola.getUsername(), "notPartOf"),
+            "Exception was expected because nikola is not part of the group");
+    }
+
     @Test
     void testSplitInvalidStrings() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.split("", 555.55, "    ", null),
+                splitWiseAPI.split("", 55555, "    ", null),
             "Exception was expected to be thrown because of invalid strings");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
-    void testSplitDoubleTooLong() {
+    void testSplitZeroAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.split(nikola.getUsername(), 555.555, peter.getUsername(), "beer and chips"),
-            "Exception was expected to be thrown because the double has more than 2 decimal places");
+                splitWiseAPI.split(nikola.getUsername(), 0, peter.getUsername(), "beer and chips"),
+            "Exception was expected to be thrown because the amount is zero");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
-    void testSplitNegativeDouble() {
+    void testSplitNegativeAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.split(nikola.getUsername(), -555.50, peter.getUsername(), "beer and chips"),
-            "Exception was expected to be thrown because the double is negative");
+                splitWiseAPI.split(nikola.getUsername(), -55550, peter.getUsername(), "beer and chips"),
+            "Exception was expected to be thrown because the amount is negative");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
     void testSplitThrowsAuthenticationExc() {
         assertThrows(AuthenticationException.class, () ->
-                splitWiseAPI.split("randomUser", 555.50, peter.getUsername(), "beer and chips"),
+                splitWiseAPI.split("randomUser", 55550, peter.getUsername(), "beer and chips"),
             "Exception was expected to be thrown because the logged-in user does not exist");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -291,7 +451,7 @@ class SplitWiseTest {
     @Test
     void testSplitThrowsUserNotFound() {
         assertThrows(UserNotFoundException.class, () ->
-                splitWiseAPI.split(nikola.getUsername(), 555.50, "randomUser", "beer and chips"),
+                splitWiseAPI.split(nikola.getUsername(), 55550, "randomUser", "beer and chips"),
             "Exception was expected to be thrown");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -299,7 +459,7 @@ class SplitWiseTest {
     @Test
     void testSplitThrowsSplitExc() {
         assertThrows(SplitException.class, () ->
-                splitWiseAPI.split(nikola.getUsername(), 0.01, peter.getUsername(), "beer and chips"),
+                splitWiseAPI.split(nikola.getUsername(), 1, peter.getUsername(), "beer and chips"),
             "Exception was expected to be thrown because the amount is not enough to be split");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
@@ -307,21 +467,21 @@ class SplitWiseTest {
     @Test
     void testSplitThrowsFriendExc() {
         assertThrows(FriendException.class, () ->
-                splitWiseAPI.split(nikola.getUsername(), 555.51, ivan.getUsername(), "beer and chips"),
+                splitWiseAPI.split(nikola.getUsername(), 55551, ivan.getUsername(), "beer and chips"),
             "Exception was expected to be thrown");
         Mockito.verify(database, never()).updateFriendsList(any());
     }
 
     @Test
     void testSplitTestIsSplit() throws UserNotFoundException, SplitException, FriendException {
-        splitWiseAPI.split(nikola.getUsername(), 120.26, peter.getUsername(), "beer and chips");
+        splitWiseAPI.split(nikola.getUsername(), 12026, peter.getUsername(), "beer and chips");
 
         Friendship friendship = splitWiseAPI.getUsers().get(nikola.getUsername()).getFriendsList().getFriendships()
             .get(peter.getUsername());
 
-        assertEquals(friendship.getUserOwes(nikola.getUsername()), -60.13, DELTA,
+        assertEquals(friendship.getUserOwes(nikola.getUsername()), -6013,
             "The amount that the user has to receive is not calculated properly");
-        assertEquals(friendship.getUserOwes(peter.getUsername()), 60.13, DELTA,
+        assertEquals(friendship.getUserOwes(peter.getUsername()), 6013,
             "The amount that the user owes is not calculated properly");
 
         Mockito.verify(database, times(2)).updateFriendsList(any());
@@ -330,31 +490,31 @@ class SplitWiseTest {
     @Test
     void testSplitInGroupInvalidStrings() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.splitInGroup("", 555.55, "    ", null),
+                splitWiseAPI.splitInGroup("", 55555, "    ", null),
             "Exception was expected to be thrown because of invalid strings");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
-    void testSplitInGroupDoubleTooLong() {
+    void testSplitInGroupZeroAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.splitInGroup(nikola.getUsername(), 555.555, groupName, "beer and chips"),
-            "Exception was expected to be thrown because the double has more than 2 decimal places");
+                splitWiseAPI.splitInGroup(nikola.getUsername(), 0, groupName, "beer and chips"),
+            "Exception was expected to be thrown because the amount is zero");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
-    void testSplitInGroupNegativeDouble() {
+    void testSplitInGroupNegativeAmount() {
         assertThrows(IllegalArgumentException.class, () ->
-                splitWiseAPI.splitInGroup(nikola.getUsername(), -555.50, groupName, "beer and chips"),
-            "Exception was expected to be thrown because the double is negative");
+                splitWiseAPI.splitInGroup(nikola.getUsername(), -55550, groupName, "beer and chips"),
+            "Exception was expected to be thrown because the amount is negative");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
     void testSplitInGroupThrowsAuthenticationExc() {
         assertThrows(AuthenticationException.class, () ->
-                splitWiseAPI.splitInGroup("randomUser", 555.50, groupName, "beer and chips"),
+                splitWiseAPI.splitInGroup("randomUser", 55550, groupName, "beer and chips"),
             "Exception was expected to be thrown because the logged-in user does not exist");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -362,7 +522,7 @@ class SplitWiseTest {
     @Test
     void testSplitInGroupGroupNotExisting() {
         assertThrows(GroupException.class, () ->
-                splitWiseAPI.splitInGroup(nikola.getUsername(), 555.50, "randomGroupName212", "beer and chips"),
+                splitWiseAPI.splitInGroup(nikola.getUsername(), 55550, "randomGroupName212", "beer and chips"),
             "Exception was expected to be thrown");
         Mockito.verify(database, never()).updateGroup(any());
     }
@@ -373,7 +533,7 @@ class SplitWiseTest {
         splitWiseAPI.createGroup(ivan.getUsername(), notPartOf, peter.getUsername());
 
         assertThrows(GroupException.class, () ->
-                splitWiseAPI.splitInGroup(nikola.getUsername(), 555.50, notPartOf, "beer and chips"),
+                splitWiseAPI.splitInGroup(nikola.getUsername(), 55550, notPartOf, "beer and chips"),
             "Exception was expected to be thrown");
         Mockito.verify(database, times(1)).updateGroup(any());
     }
@@ -381,25 +541,25 @@ class SplitWiseTest {
     @Test
     void testSplitInGroupThrowsSplitExc() {
         assertThrows(SplitException.class, () ->
-                splitWiseAPI.splitInGroup(nikola.getUsername(), 0.02, groupName, "beer and chips"),
+                splitWiseAPI.splitInGroup(nikola.getUsername(), 2, groupName, "beer and chips"),
             "Exception was expected to be thrown because the amount is not enough to be split");
         Mockito.verify(database, never()).updateGroup(any());
     }
 
     @Test
     void testSplitInGroupTestIsSplit() throws SplitException, GroupException, UserNotFoundException {
-        double split = 30.45;
+        long split = 3045;
         splitWiseAPI.splitInGroup(nikola.getUsername(), split, groupName, "beer and chips");
 
         Group group = splitWiseAPI.findGroup(groupName);
 
-        double expected = split / 3;
+        long expected = split / 3;
 
-        assertEquals(expected, group.leftOwesToRight(ivan.getUsername(), nikola.getUsername()), DELTA,
+        assertEquals(expected, group.leftOwesToRight(ivan.getUsername(), nikola.getUsername()),
             "The amount that nikola has to receive is not calculated properly");
-        assertEquals(expected, group.leftOwesToRight(peter.getUsername(), nikola.getUsername()), DELTA,
+        assertEquals(expected, group.leftOwesToRight(peter.getUsername(), nikola.getUsername()),
             "The amount that nikola has to receive is not calculated properly");
-        assertEquals(0, group.leftOwesToRight(ivan.getUsername(), peter.getUsername()), DELTA,
+        assertEquals(0, group.leftOwesToRight(ivan.getUsername(), peter.getUsername()),
             "Ivan should not be in debt with peter");
 
         Mockito.verify(database, times(1)).updateGroup(any());
@@ -0,0 +1,47 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StatusCacheTest {
+    StatusCache cache;
+
+    @BeforeEach
+    void setCache() {
+        cache = new StatusCache();
+    }
+
+    @Test
+    void testGetAfterPut() {
+        cache.put("nikola", cache.version("nikola"), "status");
+
+        assertEquals("status", cache.get("nikola"), "The status was expected to be cached");
+        assertEquals(1, cache.getMetrics().hits(), "The get was expected to be a hit");
+    }
+
+    @Test
+    void testInvalidateDropsTheStatus() {
+        cache.put("nikola", cache.version("nikola"), "status");
+
+        cache.invalidate(List.of("nikola", "ivan"));
+
+        assertNull(cache.get("nikola"), "The status was expected to be dropped");
+        assertEquals(1, cache.getMetrics().invalidations(), "Only the status of nikola was cached");
+        assertEquals(1, cache.getMetrics().misses(), "The get was expected to be a miss");
+    }
+
+    @Test
+    void testPutOfAStatusRenderedBeforeAnInvalidation() {
+        long version = cache.version("nikola");
+        cache.invalidate("nikola"); //a balance changed while the status was rendered
+
+        cache.put("nikola", version, "old status");
+
+        assertNull(cache.get("nikola"), "The old status must not be cached");
+    }
+}
@@ -0,0 +1,97 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.splitwise;
+
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.FriendsList;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.friend.Friendship;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.User;
+import bg.sofia.uni.fmi.mjt.splitwise.server.logic.user.UserPersonal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserCacheTest {
+    UserCache cache;
+
+    @BeforeEach
+    void setCache() {
+        Map<String, UserPersonal> personals = Map.of(
+            "nikola", new UserPersonal("nikola", "Nikola", "Nikolov", "password"),
+            "ivan", new UserPersonal("ivan", "Ivan", "Ivanov", "password"),
+            "peter", new UserPersonal("peter", "Peter", "Petrov", "password"));
+
+        cache = new UserCache(personals, UserCacheTest::load, 2);
+    }
+
+    private static User load(UserPersonal personal) {
+        //nikola and ivan are friends, as they would be on disk
+        FriendsList friendsList = new FriendsList(personal.getUsername());
+        if (!personal.getUsername().equals("peter")) {
+            friendsList.addFriendship(new Friendship("nikola", "ivan"));
+        }
+
+        return new User(personal, new LinkedList<>(), new LinkedList<>(), friendsList);
+    }
+
+    @Test
+    void testGetLoadsOnlyOnce() {
+        User first = cache.get("nikola");
+        User second = cache.get("nikola");
+
+        assertSame(first, second, "The user was expected to be loaded once");
+        assertEquals(1, cache.getMetrics().misses(), "The first get was expected to be a miss");
+        assertEquals(1, cache.getMetrics().hits(), "The second get was expected to be a hit");
+    }
+
+    @Test
+    void testGetOfAnUnknownUser() {
+        assertNull(cache.get("george"), "There is no such user");
+        assertFalse(cache.contains("george"), "There is no such user");
+    }
+
+    @Test
+    void testGetEvictsTheLeastRecentlyUsed() {
+        cache.get("nikola");
+        cache.get("ivan");
+        cache.get("nikola");
+        cache.get("peter");
+
+        UserCacheMetrics metrics = cache.getMetrics();
+        assertEquals(3, metrics.users(), "Every user was expected to be known");
+        assertEquals(2, metrics.resident(), "Only two users fit in the cache");
+        assertEquals(1, metrics.evictions(), "Ivan was expected to be evicted");
+    }
+
+    @Test
+    void testAnEvictedUserInUseIsNotLoadedAgain() {
+        User nikola = cache.get("nikola");
+        cache.get("ivan");
+        cache.get("peter"); //evicts nikola
+
+        assertSame(nikola, cache.get("nikola"), "There must not be two copies of a user");
+    }
+
+    @Test
+    void testALoadedUserSharesTheFriendshipsOfItsFriends() {
+        User nikola = cache.get("nikola");
+        User ivan = cache.get("ivan");
+
+        assertSame(nikola.getFriendsList().getFriendships().get("ivan"),
+            ivan.getFriendsList().getFriendships().get("nikola"), "Both friends must change the same friendship");
+    }
+
+    @Test
+    void testAdd() {
+        User george = new User(new UserPersonal("george", "George", "Georgiev", "password"));
+
+        assertTrue(cache.add(george), "The user was expected to be added");
+        assertFalse(cache.add(george), "The user was already added");
+        assertSame(george, cache.get("george"), "The added user was expected to be in the cache");
+    }
+}
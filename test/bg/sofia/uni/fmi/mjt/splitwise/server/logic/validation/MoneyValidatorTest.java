@@ -0,0 +1,39 @@
+package bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation;
+
+import org.junit.jupiter.api.Test;
+
+import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator.CENTS_INVALID;
+import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator.MAX_CENTS;
+import static bg.sofia.uni.fmi.mjt.splitwise.server.logic.validation.MoneyValidator.getCents;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyValidatorTest {
+    @Test
+    void testGetCentsParsesUpToTwoDecimalPlaces() {
+        assertEquals(1200, getCents("12"), "A whole amount was expected");
+        assertEquals(1250, getCents("12.5"), "One decimal place means tens of cents");
+        assertEquals(1205, getCents("12.05"), "Two decimal places were expected");
+        assertEquals(CENTS_INVALID, getCents("12.050"), "More than two decimal places are invalid");
+    }
+
+    @Test
+    void testGetCentsRefusesPointWithoutDigits() {
+        assertEquals(CENTS_INVALID, getCents("12."), "A trailing point is invalid");
+        assertEquals(CENTS_INVALID, getCents(".5"), "A leading point is invalid");
+    }
+
+    @Test
+    void testGetCentsRefusesAmountsOverTheMaximum() {
+        assertEquals(MAX_CENTS, getCents("10000000000"), "The maximum amount is valid");
+        assertEquals(CENTS_INVALID, getCents("10000000000.01"), "A cent over the maximum is invalid");
+        assertEquals(CENTS_INVALID, getCents("92233720368547758.07"), "An amount which overflows is invalid");
+        assertEquals(CENTS_INVALID, getCents("9".repeat(40)), "An amount which overflows is invalid");
+    }
+
+    @Test
+    void testValidateCentsRefusesAmountsOverTheMaximum() {
+        assertThrows(IllegalArgumentException.class, () -> MoneyValidator.validateCents(MAX_CENTS + 1),
+            "An amount over the maximum must be refused");
+    }
+}